@@ -1,5 +1,6 @@
 package com.videoframecatcher.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
@@ -13,26 +14,52 @@ import java.util.concurrent.Executor;
 @EnableAsync
 public class ApplicationConfig implements WebMvcConfigurer {
 
+    /**
+     * 相册处理线程池，由处理队列的工作线程按空闲槽位提交任务，线程数与processing.queue.concurrency一致
+     * 不在提交线程上执行：线程已满时拒绝，工作线程把任务交还处理队列
+     * 帧处理各阶段在流水线自己的工作线程上执行，其中的FFmpeg进程由ProcessGovernor统一准入
+     */
     @Bean(name = "videoProcessingExecutor")
-    public Executor videoProcessingExecutor() {
+    public Executor videoProcessingExecutor(@Value("${processing.queue.concurrency:2}") int concurrency) {
+        return boundedExecutor(concurrency, "VideoProcessing-");
+    }
+
+    /**
+     * 渐进式接收线程池，与处理队列的线程分开：渐进式处理由上传请求线程提交，需要立即开始，
+     * 不能在队列中等待，也不能在请求线程上执行；线程已满时拒绝，相册改为上传完成后经处理队列处理
+     */
+    @Bean(name = "progressiveIngestExecutor")
+    public Executor progressiveIngestExecutor(
+            @Value("${storage.upload.progressive-ingest.max-concurrent:2}") int maxConcurrent) {
+        return boundedExecutor(maxConcurrent, "ProgressiveIngest-");
+    }
+
+    /**
+     * 入队后探测视频、细化预计耗时的线程池，在相册记录提交后执行，不占用请求线程
+     * 单线程排队执行；积压过多时丢弃，任务领取后处理开始时仍会按探测结果更新预计耗时
+     */
+    @Bean(name = "queueEstimateExecutor")
+    public Executor queueEstimateExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(2);
-        executor.setMaxPoolSize(4);
-        executor.setQueueCapacity(10);
-        executor.setThreadNamePrefix("VideoProcessing-");
-        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(100);
+        executor.setThreadNamePrefix("QueueEstimate-");
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.DiscardPolicy());
         executor.initialize();
         return executor;
     }
 
-    @Bean(name = "imageProcessingExecutor")
-    public Executor imageProcessingExecutor() {
+    /**
+     * 固定线程数、不排队的线程池，线程已满时抛出TaskRejectedException
+     */
+    private ThreadPoolTaskExecutor boundedExecutor(int threads, String threadNamePrefix) {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(20);
-        executor.setThreadNamePrefix("ImageProcessing-");
-        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setCorePoolSize(Math.max(1, threads));
+        executor.setMaxPoolSize(Math.max(1, threads));
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix(threadNamePrefix);
+        executor.setRejectedExecutionHandler(new java.util.concurrent.ThreadPoolExecutor.AbortPolicy());
         executor.initialize();
         return executor;
     }
@@ -28,6 +28,7 @@ public class SecurityConfig {
                 .requestMatchers("/api-docs/**", "/swagger-ui/**", "/swagger-ui.html").permitAll()
                 .requestMatchers("/actuator/health", "/actuator/info").permitAll()
                 .requestMatchers("/api/albums").permitAll() // 允许创建相册
+                .requestMatchers("/api/albums/uploads", "/api/albums/uploads/**").permitAll() // 允许分片上传创建相册
                 .requestMatchers("/api/albums/*/image/**").permitAll() // 允许访问图片
                 .requestMatchers("/api/frames/*/image").permitAll() // 允许访问帧图像
                 .anyRequest().authenticated()
@@ -46,8 +47,9 @@ public class SecurityConfig {
     public CorsConfigurationSource corsConfigurationSource() {
         CorsConfiguration configuration = new CorsConfiguration();
         configuration.setAllowedOriginPatterns(List.of("*"));
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "HEAD", "DELETE", "OPTIONS"));
         configuration.setAllowedHeaders(Arrays.asList("*"));
+        configuration.setExposedHeaders(Arrays.asList("Location", "Upload-Offset", "Upload-Length"));
         configuration.setAllowCredentials(true);
         configuration.setMaxAge(3600L);
 
@@ -0,0 +1,34 @@
+package com.videoframecatcher.config;
+
+import com.videoframecatcher.service.impl.ServingLatencyMonitor;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+/**
+ * 记录前台图像请求的耗时（含响应体写出），供后台并发调节器判断前台延迟
+ */
+class ServingLatencyInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = ServingLatencyInterceptor.class.getName() + ".start";
+
+    private final ServingLatencyMonitor monitor;
+
+    ServingLatencyInterceptor(ServingLatencyMonitor monitor) {
+        this.monitor = monitor;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        if (request.getAttribute(START_ATTRIBUTE) instanceof Long start) {
+            monitor.record(System.nanoTime() - start);
+        }
+    }
+}
@@ -1,9 +1,11 @@
 package com.videoframecatcher.config;
 
+import com.videoframecatcher.service.impl.ServingLatencyMonitor;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.converter.HttpMessageConverter;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
 
@@ -12,6 +14,12 @@ import java.util.List;
 @Configuration
 public class WebConfig implements WebMvcConfigurer {
 
+    private final ServingLatencyMonitor servingLatencyMonitor;
+
+    public WebConfig(ServingLatencyMonitor servingLatencyMonitor) {
+        this.servingLatencyMonitor = servingLatencyMonitor;
+    }
+
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
         // 静态资源处理
@@ -23,6 +31,13 @@ public class WebConfig implements WebMvcConfigurer {
                 .addResourceLocations("file:./storage/");
     }
 
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        // 前台图像请求的耗时，后台处理按其p95调整并发
+        registry.addInterceptor(new ServingLatencyInterceptor(servingLatencyMonitor))
+                .addPathPatterns("/frames/*/image", "/files/**");
+    }
+
     @Override
     public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
         // 配置JSON转换器
@@ -34,8 +49,9 @@ public class WebConfig implements WebMvcConfigurer {
     public void addCorsMappings(CorsRegistry registry) {
         registry.addMapping("/api/**")
                 .allowedOriginPatterns("*")
-                .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
+                .allowedMethods("GET", "POST", "PUT", "PATCH", "HEAD", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("Location", "Upload-Offset", "Upload-Length")
                 .allowCredentials(true)
                 .maxAge(3600);
     }
@@ -95,6 +95,14 @@ public class AlbumController {
         return ResponseEntity.ok(album);
     }
 
+    @PostMapping("/{id}/cancel")
+    @Operation(summary = "取消处理", description = "终止正在进行的视频处理，已生成的帧保留")
+    public ResponseEntity<AlbumDTO> cancelProcessing(
+            @Parameter(description = "相册ID") @PathVariable Long id) {
+        AlbumDTO album = albumService.cancelProcessing(id);
+        return ResponseEntity.ok(album);
+    }
+
     @GetMapping("/processing/count")
     @Operation(summary = "获取正在处理的相册数量", description = "返回当前正在处理的相册数量")
     public ResponseEntity<Long> getProcessingAlbumsCount() {
@@ -67,8 +67,13 @@ public class FrameController {
         }
 
         MediaType mediaType = MediaType.IMAGE_JPEG;
-        if (imageResource.getFilename() != null && imageResource.getFilename().toLowerCase().endsWith(".heic")) {
+        String imageFilename = imageResource.getFilename() != null ? imageResource.getFilename().toLowerCase() : "";
+        if (imageFilename.endsWith(".heic")) {
             mediaType = MediaType.APPLICATION_OCTET_STREAM; // HEIC files
+        } else if (imageFilename.endsWith(".webp")) {
+            mediaType = MediaType.parseMediaType("image/webp");
+        } else if (imageFilename.endsWith(".png")) {
+            mediaType = MediaType.IMAGE_PNG;
         }
 
         return ResponseEntity.ok()
@@ -0,0 +1,103 @@
+package com.videoframecatcher.controller;
+
+import com.videoframecatcher.dto.AlbumDTO;
+import com.videoframecatcher.dto.UploadCreateRequest;
+import com.videoframecatcher.dto.UploadSessionDTO;
+import com.videoframecatcher.service.AlbumService;
+import com.videoframecatcher.service.ChunkedUploadService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+
+/**
+ * 可续传的分片上传（参照tus协议）
+ * 创建会话 → HEAD查询偏移量 → PATCH按偏移量追加 → 完成后创建相册
+ */
+@RestController
+@RequestMapping("/albums/uploads")
+@Tag(name = "Chunked Upload", description = "可续传的分片上传API")
+public class UploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+
+    private final ChunkedUploadService chunkedUploadService;
+    private final AlbumService albumService;
+
+    public UploadController(ChunkedUploadService chunkedUploadService, AlbumService albumService) {
+        this.chunkedUploadService = chunkedUploadService;
+        this.albumService = albumService;
+    }
+
+    @PostMapping
+    @Operation(summary = "创建上传", description = "声明文件名和总大小，返回上传ID")
+    public ResponseEntity<UploadSessionDTO> createUpload(@Valid @RequestBody UploadCreateRequest request) {
+        UploadSessionDTO upload = chunkedUploadService.createUpload(request);
+        URI location = ServletUriComponentsBuilder.fromCurrentRequest()
+                .path("/{uploadId}").buildAndExpand(upload.getUploadId()).toUri();
+        return ResponseEntity.created(location)
+                .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(upload.getLength()))
+                .body(upload);
+    }
+
+    @RequestMapping(value = "/{uploadId}", method = RequestMethod.HEAD)
+    @Operation(summary = "查询偏移量", description = "返回已接收的字节数，断线后从此处继续")
+    public ResponseEntity<Void> getOffset(
+            @Parameter(description = "上传ID") @PathVariable String uploadId) {
+        UploadSessionDTO upload = chunkedUploadService.getUpload(uploadId);
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(upload.getLength()))
+                .build();
+    }
+
+    @GetMapping("/{uploadId}")
+    @Operation(summary = "获取上传详情", description = "返回上传会话信息及已接收的字节数")
+    public ResponseEntity<UploadSessionDTO> getUpload(
+            @Parameter(description = "上传ID") @PathVariable String uploadId) {
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(chunkedUploadService.getUpload(uploadId));
+    }
+
+    @PatchMapping(value = "/{uploadId}", consumes = {"application/offset+octet-stream", "application/octet-stream"})
+    @Operation(summary = "追加数据", description = "请求体为从Upload-Offset开始的一段文件数据")
+    public ResponseEntity<Void> appendChunk(
+            @Parameter(description = "上传ID") @PathVariable String uploadId,
+            @Parameter(description = "本段起始偏移量") @RequestHeader(UPLOAD_OFFSET) long offset,
+            HttpServletRequest request) throws IOException {
+        long newOffset = chunkedUploadService.appendChunk(uploadId, offset, request.getInputStream());
+        // 文件头足以判断容器时，在上传过程中开始提取帧
+        albumService.startProgressiveIngest(uploadId);
+        return ResponseEntity.noContent()
+                .header(UPLOAD_OFFSET, String.valueOf(newOffset))
+                .build();
+    }
+
+    @PostMapping("/{uploadId}/complete")
+    @Operation(summary = "完成上传", description = "全部数据接收后创建相册并开始处理")
+    public ResponseEntity<AlbumDTO> completeUpload(
+            @Parameter(description = "上传ID") @PathVariable String uploadId) {
+        AlbumDTO album = albumService.createAlbumFromUpload(uploadId);
+        return ResponseEntity.ok(album);
+    }
+
+    @DeleteMapping("/{uploadId}")
+    @Operation(summary = "放弃上传", description = "删除上传会话及已接收的数据")
+    public ResponseEntity<Void> deleteUpload(
+            @Parameter(description = "上传ID") @PathVariable String uploadId) {
+        chunkedUploadService.deleteUpload(uploadId);
+        return ResponseEntity.noContent().build();
+    }
+}
@@ -1,7 +1,9 @@
 package com.videoframecatcher.dto;
 
+import com.videoframecatcher.entity.ExtractionMode;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
 import jakarta.validation.constraints.Size;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -14,6 +16,16 @@ public class AlbumCreateRequest {
     @Size(max = 255, message = "相册名称长度不能超过255个字符")
     private String name;
 
+    // 帧提取模式，未指定时按固定帧率提取
+    private ExtractionMode extractionMode;
+
+    // 帧预算：固定帧率模式下提取帧数的上下限，未指定时取配置的默认值
+    @Positive(message = "最少帧数必须大于0")
+    private Integer minFrames;
+
+    @Positive(message = "最多帧数必须大于0")
+    private Integer maxFrames;
+
     // Getters and Setters
     public MultipartFile getVideoFile() {
         return videoFile;
@@ -30,4 +42,28 @@ public class AlbumCreateRequest {
     public void setName(String name) {
         this.name = name;
     }
-}
\ No newline at end of file
+
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    public Integer getMinFrames() {
+        return minFrames;
+    }
+
+    public void setMinFrames(Integer minFrames) {
+        this.minFrames = minFrames;
+    }
+
+    public Integer getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(Integer maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+}
@@ -2,6 +2,7 @@ package com.videoframecatcher.dto;
 
 import com.fasterxml.jackson.annotation.JsonFormat;
 import com.videoframecatcher.entity.AlbumStatus;
+import com.videoframecatcher.entity.ExtractionMode;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -21,11 +22,21 @@ public class AlbumDTO {
     private String storageType;
     private String storagePath;
     private AlbumStatus status;
+    private ExtractionMode extractionMode;
     private Long frameCount;
+    private Integer expectedFrameCount;
+    private Integer minFrames;
+    private Integer maxFrames;
+    // 固定帧率模式实际采用的每秒帧数
+    private BigDecimal samplingRate;
     private Long favoriteCount;
     private Long totalFrameSize;
     private BigDecimal processingProgress;
 
+    // 处理中的相册预计完成的时间，按队列中排在前面的任务和本相册的预计处理耗时估算
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime estimatedCompletionAt;
+
     @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
     private LocalDateTime createdAt;
 
@@ -140,6 +151,14 @@ public class AlbumDTO {
         this.status = status;
     }
 
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
     public Long getFrameCount() {
         return frameCount;
     }
@@ -148,6 +167,38 @@ public class AlbumDTO {
         this.frameCount = frameCount;
     }
 
+    public Integer getExpectedFrameCount() {
+        return expectedFrameCount;
+    }
+
+    public void setExpectedFrameCount(Integer expectedFrameCount) {
+        this.expectedFrameCount = expectedFrameCount;
+    }
+
+    public Integer getMinFrames() {
+        return minFrames;
+    }
+
+    public void setMinFrames(Integer minFrames) {
+        this.minFrames = minFrames;
+    }
+
+    public Integer getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(Integer maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    public BigDecimal getSamplingRate() {
+        return samplingRate;
+    }
+
+    public void setSamplingRate(BigDecimal samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+
     public Long getFavoriteCount() {
         return favoriteCount;
     }
@@ -172,6 +223,14 @@ public class AlbumDTO {
         this.processingProgress = processingProgress;
     }
 
+    public LocalDateTime getEstimatedCompletionAt() {
+        return estimatedCompletionAt;
+    }
+
+    public void setEstimatedCompletionAt(LocalDateTime estimatedCompletionAt) {
+        this.estimatedCompletionAt = estimatedCompletionAt;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -0,0 +1,84 @@
+package com.videoframecatcher.dto;
+
+import com.videoframecatcher.entity.ExtractionMode;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.Size;
+
+public class UploadCreateRequest {
+
+    @NotBlank(message = "相册名称不能为空")
+    @Size(max = 255, message = "相册名称长度不能超过255个字符")
+    private String name;
+
+    @NotBlank(message = "视频文件名不能为空")
+    @Size(max = 255, message = "视频文件名长度不能超过255个字符")
+    @Pattern(regexp = "(?i).+\\.(mp4|avi|mov|mkv)", message = "仅支持MP4、AVI、MOV、MKV格式")
+    private String filename;
+
+    // 视频文件总字节数，分片按此长度拼接
+    @NotNull(message = "文件大小不能为空")
+    @Positive(message = "文件大小必须大于0")
+    private Long length;
+
+    // 帧提取模式，未指定时按固定帧率提取
+    private ExtractionMode extractionMode;
+
+    // 帧预算：固定帧率模式下提取帧数的上下限，未指定时取配置的默认值
+    @Positive(message = "最少帧数必须大于0")
+    private Integer minFrames;
+
+    @Positive(message = "最多帧数必须大于0")
+    private Integer maxFrames;
+
+    // Getters and Setters
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public Long getLength() {
+        return length;
+    }
+
+    public void setLength(Long length) {
+        this.length = length;
+    }
+
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    public Integer getMinFrames() {
+        return minFrames;
+    }
+
+    public void setMinFrames(Integer minFrames) {
+        this.minFrames = minFrames;
+    }
+
+    public Integer getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(Integer maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+}
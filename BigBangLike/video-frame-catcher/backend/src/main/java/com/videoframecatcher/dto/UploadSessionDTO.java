@@ -0,0 +1,111 @@
+package com.videoframecatcher.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.videoframecatcher.entity.ExtractionMode;
+
+import java.time.LocalDateTime;
+
+public class UploadSessionDTO {
+
+    private String uploadId;
+    private String name;
+    private String filename;
+    private ExtractionMode extractionMode;
+    private Integer minFrames;
+    private Integer maxFrames;
+    private Long length;
+    private Long offset;
+    // 渐进式接收时在上传过程中创建的相册
+    private Long albumId;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public UploadSessionDTO() {}
+
+    // Getters and Setters
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(String uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getFilename() {
+        return filename;
+    }
+
+    public void setFilename(String filename) {
+        this.filename = filename;
+    }
+
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    public Integer getMinFrames() {
+        return minFrames;
+    }
+
+    public void setMinFrames(Integer minFrames) {
+        this.minFrames = minFrames;
+    }
+
+    public Integer getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(Integer maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    public Long getLength() {
+        return length;
+    }
+
+    public void setLength(Long length) {
+        this.length = length;
+    }
+
+    public Long getOffset() {
+        return offset;
+    }
+
+    public void setOffset(Long offset) {
+        this.offset = offset;
+    }
+
+    public Long getAlbumId() {
+        return albumId;
+    }
+
+    public void setAlbumId(Long albumId) {
+        this.albumId = albumId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+
+    public boolean isComplete() {
+        return offset != null && offset.equals(length);
+    }
+}
@@ -55,6 +55,32 @@ public class Album {
     @Column(nullable = false)
     private AlbumStatus status = AlbumStatus.PROCESSING;
 
+    @Enumerated(EnumType.STRING)
+    @Column(name = "extraction_mode", nullable = false, length = 20)
+    private ExtractionMode extractionMode = ExtractionMode.FIXED_RATE;
+
+    @Column(name = "expected_frame_count")
+    private Integer expectedFrameCount;
+
+    @Column(name = "min_frames")
+    private Integer minFrames;
+
+    @Column(name = "max_frames")
+    private Integer maxFrames;
+
+    @Column(name = "sampling_rate", precision = 12, scale = 6)
+    private BigDecimal samplingRate;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "processing_signature", length = 255)
+    private String processingSignature;
+
+    // 只由处理流水线通过 AlbumRepository.advanceProcessedThrough 推进，保存相册时不覆盖
+    @Column(name = "processed_through", insertable = false, updatable = false)
+    private Integer processedThrough;
+
     @CreatedDate
     @Column(name = "created_at", nullable = false, updatable = false)
     private LocalDateTime createdAt;
@@ -181,6 +207,66 @@ public class Album {
         this.status = status;
     }
 
+    public ExtractionMode getExtractionMode() {
+        return extractionMode;
+    }
+
+    public void setExtractionMode(ExtractionMode extractionMode) {
+        this.extractionMode = extractionMode;
+    }
+
+    public Integer getExpectedFrameCount() {
+        return expectedFrameCount;
+    }
+
+    public void setExpectedFrameCount(Integer expectedFrameCount) {
+        this.expectedFrameCount = expectedFrameCount;
+    }
+
+    public Integer getMinFrames() {
+        return minFrames;
+    }
+
+    public void setMinFrames(Integer minFrames) {
+        this.minFrames = minFrames;
+    }
+
+    public Integer getMaxFrames() {
+        return maxFrames;
+    }
+
+    public void setMaxFrames(Integer maxFrames) {
+        this.maxFrames = maxFrames;
+    }
+
+    public BigDecimal getSamplingRate() {
+        return samplingRate;
+    }
+
+    public void setSamplingRate(BigDecimal samplingRate) {
+        this.samplingRate = samplingRate;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public String getProcessingSignature() {
+        return processingSignature;
+    }
+
+    public void setProcessingSignature(String processingSignature) {
+        this.processingSignature = processingSignature;
+    }
+
+    public int getProcessedThrough() {
+        return processedThrough != null ? processedThrough : 0;
+    }
+
     public LocalDateTime getCreatedAt() {
         return createdAt;
     }
@@ -3,7 +3,8 @@ package com.videoframecatcher.entity;
 public enum AlbumStatus {
     PROCESSING("processing"),
     COMPLETED("completed"),
-    FAILED("failed");
+    FAILED("failed"),
+    CANCELLED("cancelled");
 
     private final String value;
 
@@ -0,0 +1,53 @@
+package com.videoframecatcher.entity;
+
+import jakarta.persistence.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * 集群级限制的资源行：授予槽位或领取写入额度时锁定，同时保存写入速率令牌桶的状态
+ */
+@Entity
+@Table(name = "cluster_resources")
+public class ClusterResource {
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(length = 32)
+    private ClusterResourceType name;
+
+    // 令牌桶中剩余的字节数，只用于BYTES_WRITTEN
+    @Column(nullable = false)
+    private Double tokens = 0.0;
+
+    @Column(name = "refilled_at", nullable = false)
+    private LocalDateTime refilledAt;
+
+    // Constructors
+    public ClusterResource() {}
+
+    // Getters and Setters
+    public ClusterResourceType getName() {
+        return name;
+    }
+
+    public void setName(ClusterResourceType name) {
+        this.name = name;
+    }
+
+    public Double getTokens() {
+        return tokens;
+    }
+
+    public void setTokens(Double tokens) {
+        this.tokens = tokens;
+    }
+
+    public LocalDateTime getRefilledAt() {
+        return refilledAt;
+    }
+
+    public void setRefilledAt(LocalDateTime refilledAt) {
+        this.refilledAt = refilledAt;
+    }
+}
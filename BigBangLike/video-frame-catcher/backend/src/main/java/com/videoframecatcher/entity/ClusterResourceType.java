@@ -0,0 +1,29 @@
+package com.videoframecatcher.entity;
+
+/**
+ * 集群级限制的资源：DECODE、ENCODE为并发槽位，BYTES_WRITTEN为存储写入速率
+ */
+public enum ClusterResourceType {
+    DECODE("decode"),
+    ENCODE("encode"),
+    BYTES_WRITTEN("bytes-written");
+
+    private final String value;
+
+    ClusterResourceType(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static ClusterResourceType fromValue(String value) {
+        for (ClusterResourceType type : ClusterResourceType.values()) {
+            if (type.value.equals(value)) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("Unknown cluster resource: " + value);
+    }
+}
@@ -0,0 +1,97 @@
+package com.videoframecatcher.entity;
+
+import jakarta.persistence.*;
+import org.springframework.data.annotation.CreatedDate;
+import org.springframework.data.jpa.domain.support.AuditingEntityListener;
+
+import java.time.LocalDateTime;
+
+/**
+ * 实例占用或等待的集群槽位，过期未续期的记录视为已释放
+ */
+@Entity
+@Table(name = "cluster_slots")
+@EntityListeners(AuditingEntityListener.class)
+public class ClusterSlot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private ClusterResourceType resource;
+
+    @Column(name = "node_id", nullable = false, length = 100)
+    private String nodeId;
+
+    // false表示实例正在等待该资源的槽位，用于在实例之间公平分配
+    @Column(nullable = false)
+    private Boolean granted;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @CreatedDate
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Constructors
+    public ClusterSlot() {}
+
+    public ClusterSlot(ClusterResourceType resource, String nodeId, boolean granted, LocalDateTime expiresAt) {
+        this.resource = resource;
+        this.nodeId = nodeId;
+        this.granted = granted;
+        this.expiresAt = expiresAt;
+    }
+
+    // Getters and Setters
+    public Long getId() {
+        return id;
+    }
+
+    public void setId(Long id) {
+        this.id = id;
+    }
+
+    public ClusterResourceType getResource() {
+        return resource;
+    }
+
+    public void setResource(ClusterResourceType resource) {
+        this.resource = resource;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Boolean getGranted() {
+        return granted;
+    }
+
+    public void setGranted(Boolean granted) {
+        this.granted = granted;
+    }
+
+    public LocalDateTime getExpiresAt() {
+        return expiresAt;
+    }
+
+    public void setExpiresAt(LocalDateTime expiresAt) {
+        this.expiresAt = expiresAt;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(LocalDateTime createdAt) {
+        this.createdAt = createdAt;
+    }
+}
@@ -0,0 +1,32 @@
+package com.videoframecatcher.entity;
+
+/**
+ * 帧提取模式
+ */
+public enum ExtractionMode {
+    // 按固定帧率采样，需要完整解码
+    FIXED_RATE("fixed_rate"),
+    // 只解码关键帧（I帧），时间戳取关键帧的实际显示时间，适合快速浏览
+    KEYFRAME("keyframe"),
+    // 按画面变化选帧，静态画面按最大间隔补帧，时间戳取帧的实际显示时间
+    SCENE("scene");
+
+    private final String value;
+
+    ExtractionMode(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static ExtractionMode fromValue(String value) {
+        for (ExtractionMode mode : ExtractionMode.values()) {
+            if (mode.value.equals(value)) {
+                return mode;
+            }
+        }
+        throw new IllegalArgumentException("Unknown extraction mode: " + value);
+    }
+}
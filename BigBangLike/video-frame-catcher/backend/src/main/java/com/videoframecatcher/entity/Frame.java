@@ -48,6 +48,9 @@ public class Frame {
     @Column(name = "quality_score", precision = 3, scale = 2)
     private BigDecimal qualityScore;
 
+    @Column(name = "perceptual_hash")
+    private Long perceptualHash;
+
     @Column(name = "is_favorite", nullable = false)
     private Boolean isFavorite = false;
 
@@ -162,6 +165,14 @@ public class Frame {
         this.qualityScore = qualityScore;
     }
 
+    public Long getPerceptualHash() {
+        return perceptualHash;
+    }
+
+    public void setPerceptualHash(Long perceptualHash) {
+        this.perceptualHash = perceptualHash;
+    }
+
     public Boolean getIsFavorite() {
         return isFavorite;
     }
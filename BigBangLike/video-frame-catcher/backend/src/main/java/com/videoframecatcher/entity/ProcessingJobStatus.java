@@ -0,0 +1,27 @@
+package com.videoframecatcher.entity;
+
+public enum ProcessingJobStatus {
+    PENDING("pending"),
+    RUNNING("running"),
+    DONE("done"),
+    FAILED("failed");
+
+    private final String value;
+
+    ProcessingJobStatus(String value) {
+        this.value = value;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public static ProcessingJobStatus fromValue(String value) {
+        for (ProcessingJobStatus status : ProcessingJobStatus.values()) {
+            if (status.value.equals(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Unknown processing job status: " + value);
+    }
+}
@@ -40,6 +40,17 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
     }
 
+    @ExceptionHandler(UploadConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleUploadConflict(UploadConflictException e) {
+        logger.warn("Upload conflict: {}", e.getMessage());
+        Map<String, Object> response = createErrorResponse(
+            HttpStatus.CONFLICT,
+            "Upload conflict",
+            e.getMessage()
+        );
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(response);
+    }
+
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<Map<String, Object>> handleValidationException(MethodArgumentNotValidException e) {
         logger.warn("Validation failed: {}", e.getMessage());
@@ -0,0 +1,11 @@
+package com.videoframecatcher.exception;
+
+/**
+ * 分片上传状态与请求不一致（偏移量不匹配、上传尚未完成等），客户端应先查询偏移量再继续
+ */
+public class UploadConflictException extends RuntimeException {
+
+    public UploadConflictException(String message) {
+        super(message);
+    }
+}
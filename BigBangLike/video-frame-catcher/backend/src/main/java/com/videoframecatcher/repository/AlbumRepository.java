@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -33,6 +34,16 @@ public interface AlbumRepository extends JpaRepository<Album, Long> {
      */
     Optional<Album> findByOriginalFilename(String originalFilename);
 
+    /**
+     * 查找内容哈希和处理参数都相同的已完成相册（排除指定相册），用于复用重复上传的处理结果
+     */
+    @Query("SELECT a FROM Album a WHERE a.contentHash = :contentHash AND a.processingSignature = :signature " +
+           "AND a.status = 'COMPLETED' AND a.id <> :excludeId ORDER BY a.id DESC")
+    List<Album> findCompletedByContentHash(@Param("contentHash") String contentHash,
+                                           @Param("signature") String signature,
+                                           @Param("excludeId") Long excludeId,
+                                           Pageable pageable);
+
     /**
      * 查找指定时间之后创建的相册
      */
@@ -52,6 +63,14 @@ public interface AlbumRepository extends JpaRepository<Album, Long> {
     @Query("UPDATE Album a SET a.status = :status, a.updatedAt = CURRENT_TIMESTAMP WHERE a.id = :id")
     int updateStatus(@Param("id") Long id, @Param("status") AlbumStatus status);
 
+    /**
+     * 推进相册的续传检查点（只增不减），由处理流水线在事务外调用
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE Album a SET a.processedThrough = :frameNumber WHERE a.id = :id AND COALESCE(a.processedThrough, 0) < :frameNumber")
+    int advanceProcessedThrough(@Param("id") Long id, @Param("frameNumber") int frameNumber);
+
     /**
      * 查找处理失败超过指定时间的相册
      */
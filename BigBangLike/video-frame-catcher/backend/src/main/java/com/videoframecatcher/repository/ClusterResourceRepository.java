@@ -0,0 +1,30 @@
+package com.videoframecatcher.repository;
+
+import com.videoframecatcher.entity.ClusterResource;
+import com.videoframecatcher.entity.ClusterResourceType;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface ClusterResourceRepository extends JpaRepository<ClusterResource, ClusterResourceType> {
+
+    /**
+     * 锁定资源行，同一资源的槽位授予和额度领取在各实例之间依次进行
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT r FROM ClusterResource r WHERE r.name = :name")
+    Optional<ClusterResource> lockByName(@Param("name") ClusterResourceType name);
+
+    /**
+     * 数据库的当前时间（事务开始时刻），各实例的过期判断和令牌补充都以数据库时钟为准，不受实例之间时钟偏差的影响
+     */
+    @Query("SELECT LOCAL DATETIME")
+    LocalDateTime currentTime();
+}
@@ -0,0 +1,50 @@
+package com.videoframecatcher.repository;
+
+import com.videoframecatcher.entity.ClusterResourceType;
+import com.videoframecatcher.entity.ClusterSlot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ClusterSlotRepository extends JpaRepository<ClusterSlot, Long> {
+
+    /**
+     * 资源上未过期的占用和等待记录
+     */
+    @Query("SELECT s FROM ClusterSlot s WHERE s.resource = :resource AND s.expiresAt >= :now")
+    List<ClusterSlot> findLive(@Param("resource") ClusterResourceType resource, @Param("now") LocalDateTime now);
+
+    /**
+     * 删除资源上已过期的记录（所属实例已失联）
+     */
+    @Modifying
+    @Query("DELETE FROM ClusterSlot s WHERE s.resource = :resource AND s.expiresAt < :now")
+    int deleteExpired(@Param("resource") ClusterResourceType resource, @Param("now") LocalDateTime now);
+
+    /**
+     * 删除实例在资源上的等待记录
+     */
+    @Modifying
+    @Query("DELETE FROM ClusterSlot s WHERE s.resource = :resource AND s.nodeId = :nodeId AND s.granted = false")
+    int deleteWaiting(@Param("resource") ClusterResourceType resource, @Param("nodeId") String nodeId);
+
+    /**
+     * 续期实例的全部未过期记录，返回续期的条数
+     */
+    @Modifying
+    @Query("UPDATE ClusterSlot s SET s.expiresAt = :expiresAt WHERE s.nodeId = :nodeId AND s.expiresAt >= :now")
+    int extendByNode(@Param("nodeId") String nodeId, @Param("now") LocalDateTime now,
+                     @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 持有未过期记录的实例数
+     */
+    @Query("SELECT COUNT(DISTINCT s.nodeId) FROM ClusterSlot s WHERE s.expiresAt >= :now")
+    long countLiveNodes(@Param("now") LocalDateTime now);
+}
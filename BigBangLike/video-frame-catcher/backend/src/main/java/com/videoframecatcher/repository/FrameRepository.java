@@ -31,6 +31,18 @@ public interface FrameRepository extends JpaRepository<Frame, Long> {
      */
     Optional<Frame> findByAlbumIdAndFrameNumber(Long albumId, Integer frameNumber);
 
+    /**
+     * 统计相册中帧号大于指定值的帧数
+     */
+    @Query("SELECT COUNT(f) FROM Frame f WHERE f.album.id = :albumId AND f.frameNumber > :frameNumber")
+    long countByAlbumIdAfterFrame(@Param("albumId") Long albumId, @Param("frameNumber") int frameNumber);
+
+    /**
+     * 获取相册中已入库的帧号及其感知哈希（用于断点续传），返回 [frameNumber, perceptualHash]
+     */
+    @Query("SELECT f.frameNumber, f.perceptualHash FROM Frame f WHERE f.album.id = :albumId")
+    List<Object[]> findFrameHashesByAlbumId(@Param("albumId") Long albumId);
+
     /**
      * 查找收藏的帧
      */
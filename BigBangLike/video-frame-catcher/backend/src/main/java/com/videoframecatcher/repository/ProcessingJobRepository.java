@@ -0,0 +1,91 @@
+package com.videoframecatcher.repository;
+
+import com.videoframecatcher.entity.ProcessingJob;
+import com.videoframecatcher.entity.ProcessingJobStatus;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessingJobRepository extends JpaRepository<ProcessingJob, Long> {
+
+    /**
+     * 锁定可领取的任务：到期的待处理任务及租约已过期的运行中任务
+     * 租约过期的任务最先领取，其余按预计耗时从短到长，每等待1秒预计耗时按aging秒折减，长任务不会一直被插队
+     * 已被其他事务锁定的行直接跳过，多个实例同时领取时不会互相等待或重复领取
+     */
+    @Query(value = "SELECT * FROM processing_jobs " +
+                   "WHERE (status = 'PENDING' AND available_at <= :now) " +
+                   "OR (status = 'RUNNING' AND lease_expires_at < :now) " +
+                   "ORDER BY CASE WHEN status = 'RUNNING' THEN 0 ELSE 1 END, " +
+                   "COALESCE(estimated_cost_seconds, 0) " +
+                   "- :aging * EXTRACT(EPOCH FROM (:now - COALESCE(created_at, available_at))), id " +
+                   "LIMIT :limit FOR UPDATE SKIP LOCKED",
+           nativeQuery = true)
+    List<ProcessingJob> lockClaimable(@Param("now") LocalDateTime now, @Param("aging") double aging,
+                                      @Param("limit") int limit);
+
+    /**
+     * 为相册加入待处理任务；相册已有未结束的任务时（唯一索引idx_processing_jobs_active_album）不插入，
+     * 多个实例同时加入时不会因唯一约束冲突而使调用方的事务失败
+     * @return 插入的行数，0表示已有未结束的任务
+     */
+    @Modifying
+    @Query(value = "INSERT INTO processing_jobs " +
+                   "(album_id, status, attempts, available_at, estimated_cost_seconds, created_at, updated_at) " +
+                   "VALUES (:albumId, 'PENDING', 0, :now, :cost, :now, :now) ON CONFLICT DO NOTHING",
+           nativeQuery = true)
+    int insertIfAbsent(@Param("albumId") Long albumId, @Param("now") LocalDateTime now, @Param("cost") Double cost);
+
+    /**
+     * 查找指定状态的全部任务
+     */
+    List<ProcessingJob> findByStatusIn(Collection<ProcessingJobStatus> statuses);
+
+    /**
+     * 更新相册未结束任务的预计耗时
+     */
+    @Modifying
+    @Query("UPDATE ProcessingJob j SET j.estimatedCostSeconds = :cost " +
+           "WHERE j.albumId = :albumId AND j.status IN ('PENDING', 'RUNNING')")
+    int updateEstimatedCost(@Param("albumId") Long albumId, @Param("cost") double cost);
+
+    /**
+     * 更新相册待处理任务的预计耗时，已开始执行的任务由处理过程自己更新
+     */
+    @Modifying
+    @Query("UPDATE ProcessingJob j SET j.estimatedCostSeconds = :cost " +
+           "WHERE j.albumId = :albumId AND j.status = 'PENDING'")
+    int updatePendingEstimatedCost(@Param("albumId") Long albumId, @Param("cost") double cost);
+
+    /**
+     * 查找并锁定相册处于指定状态的任务，正被其他事务领取时等待其提交
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM ProcessingJob j WHERE j.albumId = :albumId AND j.status IN :statuses")
+    List<ProcessingJob> lockByAlbumIdAndStatusIn(@Param("albumId") Long albumId,
+                                                 @Param("statuses") Collection<ProcessingJobStatus> statuses);
+
+    /**
+     * 续租：只有仍持有租约的实例能够续期，返回0表示租约已被其他实例接管或任务已删除
+     */
+    @Modifying
+    @Query("UPDATE ProcessingJob j SET j.leaseExpiresAt = :expiresAt " +
+           "WHERE j.id = :id AND j.leaseOwner = :owner AND j.status = 'RUNNING'")
+    int extendLease(@Param("id") Long id, @Param("owner") String owner, @Param("expiresAt") LocalDateTime expiresAt);
+
+    /**
+     * 删除指定时间之前结束的任务
+     */
+    @Modifying
+    @Query("DELETE FROM ProcessingJob j WHERE j.status IN ('DONE', 'FAILED') AND j.updatedAt < :threshold")
+    int deleteFinishedBefore(@Param("threshold") LocalDateTime threshold);
+}
@@ -3,20 +3,28 @@ package com.videoframecatcher.service;
 import com.videoframecatcher.dto.AlbumCreateRequest;
 import com.videoframecatcher.dto.AlbumDTO;
 import com.videoframecatcher.dto.AlbumStatisticsDTO;
+import com.videoframecatcher.dto.UploadSessionDTO;
 import com.videoframecatcher.entity.Album;
 import com.videoframecatcher.entity.AlbumStatus;
+import com.videoframecatcher.entity.ExtractionMode;
+import com.videoframecatcher.exception.UploadConflictException;
 import com.videoframecatcher.repository.AlbumRepository;
 import com.videoframecatcher.repository.FrameRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -29,13 +37,27 @@ public class AlbumService {
     private final FrameRepository frameRepository;
     private final VideoProcessingService videoProcessingService;
     private final StorageService storageService;
+    private final ChunkedUploadService chunkedUploadService;
+    private final ProcessingJobWorker processingJobWorker;
+    private final ProcessingJobService processingJobService;
+
+    @Value("${ffmpeg.frame-extraction.resume-on-startup:true}")
+    private boolean resumeOnStartup;
+
+    @Value("${storage.upload.progressive-ingest.enabled:true}")
+    private boolean progressiveIngestEnabled;
 
     public AlbumService(AlbumRepository albumRepository, FrameRepository frameRepository,
-                       VideoProcessingService videoProcessingService, StorageService storageService) {
+                       VideoProcessingService videoProcessingService, StorageService storageService,
+                       ChunkedUploadService chunkedUploadService, ProcessingJobWorker processingJobWorker,
+                       ProcessingJobService processingJobService) {
         this.albumRepository = albumRepository;
         this.frameRepository = frameRepository;
         this.videoProcessingService = videoProcessingService;
         this.storageService = storageService;
+        this.chunkedUploadService = chunkedUploadService;
+        this.processingJobWorker = processingJobWorker;
+        this.processingJobService = processingJobService;
     }
 
     public AlbumDTO createAlbum(AlbumCreateRequest request) {
@@ -51,11 +73,9 @@ public class AlbumService {
             }
 
             // 验证文件格式
-            String filename = originalFilename.toLowerCase();
-            if (!filename.endsWith(".mp4") && !filename.endsWith(".avi") &&
-                !filename.endsWith(".mov") && !filename.endsWith(".mkv")) {
-                throw new IllegalArgumentException("Unsupported video format. Supported formats: MP4, AVI, MOV, MKV");
-            }
+            validateVideoFormat(originalFilename);
+
+            validateFrameBudget(request.getMinFrames(), request.getMaxFrames());
 
             // 验证文件大小 (最大2GB)
             long maxFileSize = 2L * 1024 * 1024 * 1024; // 2GB
@@ -69,18 +89,23 @@ public class AlbumService {
             album.setOriginalFilename(originalFilename);
             album.setFileSize(request.getVideoFile().getSize());
             album.setStatus(AlbumStatus.PROCESSING);
+            album.setExtractionMode(request.getExtractionMode() != null
+                    ? request.getExtractionMode() : ExtractionMode.FIXED_RATE);
+            album.setMinFrames(request.getMinFrames());
+            album.setMaxFrames(request.getMaxFrames());
 
             // 保存相册记录
             Album savedAlbum = albumRepository.save(album);
 
             // 存储视频文件
-            String videoPath = storageService.storeVideo(request.getVideoFile(), savedAlbum.getId());
-            savedAlbum.setVideoPath(videoPath);
+            StoredVideo storedVideo = storageService.storeVideo(request.getVideoFile(), savedAlbum.getId());
+            savedAlbum.setVideoPath(storedVideo.getPath());
+            savedAlbum.setContentHash(storedVideo.getContentHash());
 
             // 更新相册记录
             savedAlbum = albumRepository.save(savedAlbum);
 
-            // 启动异步视频处理
+            // 启动异步视频处理（重复上传时在处理开始时复用已有相册的帧）
             videoProcessingService.processVideoAsync(savedAlbum.getId());
 
             logger.info("Album created successfully: {} for video: {}", savedAlbum.getId(), originalFilename);
@@ -92,10 +117,160 @@ public class AlbumService {
         }
     }
 
+    /**
+     * 由已接收全部数据的分片上传创建相册，视频文件原子移动到相册目录，不再复制
+     */
+    public AlbumDTO createAlbumFromUpload(String uploadId) {
+        UploadSessionDTO upload = chunkedUploadService.getUpload(uploadId);
+        if (!upload.isComplete()) {
+            throw new UploadConflictException("Upload incomplete: received " + upload.getOffset()
+                    + " of " + upload.getLength() + " bytes");
+        }
+        validateVideoFormat(upload.getFilename());
+        if (upload.getAlbumId() != null) {
+            return completeProgressiveUpload(uploadId, upload);
+        }
+
+        try {
+            // 创建相册记录
+            Album album = new Album();
+            album.setName(upload.getName());
+            album.setOriginalFilename(upload.getFilename());
+            album.setFileSize(upload.getLength());
+            album.setStatus(AlbumStatus.PROCESSING);
+            album.setExtractionMode(upload.getExtractionMode());
+            album.setMinFrames(upload.getMinFrames());
+            album.setMaxFrames(upload.getMaxFrames());
+
+            Album savedAlbum = albumRepository.save(album);
+
+            // 移入相册目录，内容哈希已在接收分片时计算
+            StoredVideo storedVideo = chunkedUploadService.completeUpload(uploadId, savedAlbum.getId());
+            savedAlbum.setVideoPath(storedVideo.getPath());
+            savedAlbum.setContentHash(storedVideo.getContentHash());
+            savedAlbum = albumRepository.save(savedAlbum);
+
+            videoProcessingService.processVideoAsync(savedAlbum.getId());
+
+            logger.info("Album created successfully: {} from upload: {}", savedAlbum.getId(), uploadId);
+            return convertToDTO(savedAlbum);
+
+        } catch (UploadConflictException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to create album from upload {}", uploadId, e);
+            throw new RuntimeException("Failed to create album: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 完成已在上传过程中开始处理的上传：只结束会话；渐进式处理已失败时用完整文件按正常流程重新处理
+     */
+    private AlbumDTO completeProgressiveUpload(String uploadId, UploadSessionDTO upload) {
+        Album album = albumRepository.findById(upload.getAlbumId()).orElse(null);
+        if (album == null) {
+            chunkedUploadService.deleteUpload(uploadId);
+            throw new IllegalArgumentException("Album of upload was deleted: " + upload.getAlbumId());
+        }
+
+        StoredVideo storedVideo = chunkedUploadService.completeUpload(uploadId, album.getId());
+        if (album.getStatus() == AlbumStatus.FAILED) {
+            // 处理线程已结束，此时写入内容哈希不会被覆盖
+            album.setContentHash(storedVideo.getContentHash());
+            album.setStatus(AlbumStatus.PROCESSING);
+            album = albumRepository.save(album);
+            videoProcessingService.processVideoAsync(album.getId());
+            logger.info("Progressive ingest of album {} failed, reprocessing completed upload {}",
+                    album.getId(), uploadId);
+        }
+        return convertToDTO(album);
+    }
+
+    /**
+     * 渐进式接收：已接收的文件头表明容器可从头顺序读取时，在上传过程中创建相册并开始提取帧
+     * 每次追加分片后调用；不满足条件或已经开始时直接返回，失败时等上传完成后按正常流程处理
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void startProgressiveIngest(String uploadId) {
+        if (!progressiveIngestEnabled) {
+            return;
+        }
+        Album savedAlbum = null;
+        boolean attached = false;
+        try {
+            UploadSessionDTO upload = chunkedUploadService.getUpload(uploadId);
+            if (upload.getAlbumId() != null || upload.isComplete()
+                    || !chunkedUploadService.claimProgressiveIngest(uploadId)) {
+                return;
+            }
+
+            Album album = new Album();
+            album.setName(upload.getName());
+            album.setOriginalFilename(upload.getFilename());
+            album.setFileSize(upload.getLength());
+            album.setStatus(AlbumStatus.PROCESSING);
+            album.setExtractionMode(upload.getExtractionMode());
+            album.setMinFrames(upload.getMinFrames());
+            album.setMaxFrames(upload.getMaxFrames());
+            savedAlbum = albumRepository.save(album);
+
+            // 视频文件硬链接到相册目录，随上传增长
+            String videoPath = chunkedUploadService.attachAlbum(uploadId, savedAlbum.getId());
+            attached = true;
+            savedAlbum.setVideoPath(videoPath);
+            savedAlbum = albumRepository.save(savedAlbum);
+
+            if (processingJobWorker.startProgressive(savedAlbum.getId(),
+                    () -> chunkedUploadService.openProgressiveStream(uploadId))) {
+                logger.info("Progressive ingest started for upload {} as album {}", uploadId, savedAlbum.getId());
+            }
+
+        } catch (Exception e) {
+            logger.warn("Failed to start progressive ingest for upload {}, will process after upload completes",
+                    uploadId, e);
+            if (savedAlbum != null) {
+                if (attached) {
+                    // 上传完成时按正常流程重新处理
+                    savedAlbum.setStatus(AlbumStatus.FAILED);
+                    albumRepository.save(savedAlbum);
+                } else {
+                    albumRepository.deleteById(savedAlbum.getId());
+                    storageService.deleteAlbumDirectory(savedAlbum.getId());
+                }
+            }
+        }
+    }
+
+    /**
+     * 开始处理相册：视频仍在本实例上传时跟随上传进度处理，否则加入处理队列处理完整文件
+     */
+    private void startProcessing(Long albumId) {
+        Optional<UploadSessionDTO> upload = chunkedUploadService.findUploadByAlbum(albumId);
+        if (upload.isPresent() && !upload.get().isComplete()
+                && processingJobWorker.startProgressive(albumId,
+                        () -> chunkedUploadService.openProgressiveStream(upload.get().getUploadId()))) {
+            return;
+        }
+        videoProcessingService.processVideoAsync(albumId);
+    }
+
+    private void validateFrameBudget(Integer minFrames, Integer maxFrames) {
+        if (minFrames != null && maxFrames != null && minFrames > maxFrames) {
+            throw new IllegalArgumentException("minFrames must not exceed maxFrames");
+        }
+    }
+
+    private void validateVideoFormat(String originalFilename) {
+        String filename = originalFilename.toLowerCase();
+        if (!filename.endsWith(".mp4") && !filename.endsWith(".avi") &&
+            !filename.endsWith(".mov") && !filename.endsWith(".mkv")) {
+            throw new IllegalArgumentException("Unsupported video format. Supported formats: MP4, AVI, MOV, MKV");
+        }
+    }
+
     @Transactional(readOnly = true)
     public Page<AlbumDTO> getAllAlbums(Pageable pageable) {
-        Page<Album> albums = albumRepository.findAll(pageable);
-        return albums.map(this::convertToDTO);
+        return convertPage(albumRepository.findAll(pageable));
     }
 
     @Transactional(readOnly = true)
@@ -107,8 +282,7 @@ public class AlbumService {
 
     @Transactional(readOnly = true)
     public Page<AlbumDTO> searchAlbums(String keyword, Pageable pageable) {
-        Page<Album> albums = albumRepository.findByNameContainingIgnoreCase(keyword, pageable);
-        return albums.map(this::convertToDTO);
+        return convertPage(albumRepository.findByNameContainingIgnoreCase(keyword, pageable));
     }
 
     @Transactional(readOnly = true)
@@ -137,39 +311,119 @@ public class AlbumService {
         );
     }
 
+    /**
+     * 停止处理需要等待处理线程退出，不在事务中进行，避免等待期间占用数据库连接；
+     * 删除相册记录在仓库方法自身的事务中完成
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void deleteAlbum(Long id) {
         Album album = albumRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Album not found: " + id));
 
-        // TODO: 删除相关的文件存储
-        // TODO: 停止正在进行的处理任务
+        // 先停止正在进行的处理，避免处理线程继续写入已删除相册的帧
+        if (album.getStatus() == AlbumStatus.PROCESSING) {
+            videoProcessingService.stopProcessing(id);
+        }
+
+        albumRepository.deleteById(id);
+
+        // 删除视频、帧和缩略图文件
+        try {
+            storageService.deleteAlbumDirectory(id);
+        } catch (Exception e) {
+            logger.warn("Failed to delete storage for album: {}", id, e);
+        }
+    }
+
+    /**
+     * 取消处理：终止正在运行的FFmpeg进程和排队中的帧处理，相册状态置为CANCELLED
+     * 已入库的帧保留
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public AlbumDTO cancelProcessing(Long id) {
+        Album album = albumRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Album not found: " + id));
+
+        if (album.getStatus() != AlbumStatus.PROCESSING) {
+            throw new RuntimeException("Album is not being processed: " + id);
+        }
+
+        videoProcessingService.stopProcessing(id);
+
+        // 处理线程退出时已将状态置为CANCELLED；没有运行中的处理（如服务重启后遗留的状态）时在这里更新
+        album = albumRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Album not found: " + id));
+        if (album.getStatus() == AlbumStatus.PROCESSING) {
+            album.setStatus(AlbumStatus.CANCELLED);
+            album = albumRepository.save(album);
+        }
 
-        albumRepository.delete(album);
+        logger.info("Processing cancelled for album: {}", id);
+        return convertToDTO(album);
     }
 
     public AlbumDTO retryProcessing(Long id) {
         Album album = albumRepository.findById(id)
                 .orElseThrow(() -> new RuntimeException("Album not found: " + id));
 
-        if (album.getStatus() != AlbumStatus.FAILED) {
-            throw new RuntimeException("Album is not in failed status: " + id);
+        if (album.getStatus() != AlbumStatus.FAILED && album.getStatus() != AlbumStatus.CANCELLED) {
+            throw new RuntimeException("Album is not in failed or cancelled status: " + id);
         }
 
         album.setStatus(AlbumStatus.PROCESSING);
         albumRepository.save(album);
 
         // 重新启动处理
-        videoProcessingService.processVideoAsync(album.getId());
+        startProcessing(album.getId());
 
         return convertToDTO(album);
     }
 
+    /**
+     * 服务启动时确保处于处理中的相册都有处理任务（已有任务的相册不重复加入），
+     * 停机时中断的任务在租约过期后由队列重新领取，已入库的帧不会重新处理
+     * 多个实例同时启动时入队是幂等的；单个相册失败只记录日志，不影响启动
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeInterruptedProcessing() {
+        if (!resumeOnStartup) {
+            return;
+        }
+        List<Album> interrupted = albumRepository.findByStatus(AlbumStatus.PROCESSING);
+        for (Album album : interrupted) {
+            logger.info("Resuming interrupted processing for album: {}", album.getId());
+            try {
+                startProcessing(album.getId());
+            } catch (RuntimeException e) {
+                logger.error("Failed to resume processing for album: {}", album.getId(), e);
+            }
+        }
+    }
+
     @Transactional(readOnly = true)
     public long getProcessingAlbumsCount() {
         return albumRepository.countProcessingAlbums();
     }
 
+    /**
+     * 一页相册共用一个队列快照估算完成时间
+     */
+    private Page<AlbumDTO> convertPage(Page<Album> albums) {
+        ProcessingJobService.QueueSnapshot queue = albums.getContent().stream()
+                .anyMatch(album -> album.getStatus() == AlbumStatus.PROCESSING)
+                ? processingJobService.queueSnapshot() : null;
+        return albums.map(album -> convertToDTO(album, queue));
+    }
+
     private AlbumDTO convertToDTO(Album album) {
+        return convertToDTO(album, album.getStatus() == AlbumStatus.PROCESSING
+                ? processingJobService.queueSnapshot() : null);
+    }
+
+    /**
+     * @param queue 处理队列快照，相册不在处理中时可为null
+     */
+    private AlbumDTO convertToDTO(Album album, ProcessingJobService.QueueSnapshot queue) {
         AlbumDTO dto = new AlbumDTO();
         dto.setId(album.getId());
         dto.setName(album.getName());
@@ -184,6 +438,10 @@ public class AlbumService {
         dto.setStorageType(album.getStorageType());
         dto.setStoragePath(album.getStoragePath());
         dto.setStatus(album.getStatus());
+        dto.setExtractionMode(album.getExtractionMode());
+        dto.setMinFrames(album.getMinFrames());
+        dto.setMaxFrames(album.getMaxFrames());
+        dto.setSamplingRate(album.getSamplingRate());
         dto.setCreatedAt(album.getCreatedAt());
         dto.setUpdatedAt(album.getUpdatedAt());
 
@@ -194,13 +452,27 @@ public class AlbumService {
             long totalFrameSize = frameRepository.getTotalFileSizeByAlbumId(album.getId());
 
             dto.setFrameCount(frameCount);
+            dto.setExpectedFrameCount(album.getExpectedFrameCount());
             dto.setFavoriteCount(favoriteCount);
             dto.setTotalFrameSize(totalFrameSize);
 
-            // 计算处理进度
-            if (album.getStatus() == AlbumStatus.PROCESSING && album.getDuration() != null) {
-                // TODO: 实现真实的处理进度计算
-                dto.setProcessingProgress(java.math.BigDecimal.valueOf(0.5));
+            // 计算处理进度：已处理帧数占预计帧数的比例，解码阶段尚无帧入库时取处理线程上报的进度
+            // 已处理的帧包括续传检查点以内的帧（含被丢弃的重复帧）和检查点之后已入库的帧
+            if (album.getStatus() == AlbumStatus.PROCESSING) {
+                double progress = videoProcessingService.getProcessingProgress(album.getId());
+                Integer expected = album.getExpectedFrameCount();
+                if (expected != null && expected > 0) {
+                    int processedThrough = album.getProcessedThrough();
+                    long processedFrames = processedThrough
+                            + frameRepository.countByAlbumIdAfterFrame(album.getId(), processedThrough);
+                    // 收尾完成前不显示100%
+                    progress = Math.max(progress, Math.min(0.99, (double) processedFrames / expected));
+                }
+                dto.setProcessingProgress(java.math.BigDecimal.valueOf(progress)
+                        .setScale(4, java.math.RoundingMode.HALF_UP));
+                if (queue != null) {
+                    dto.setEstimatedCompletionAt(queue.estimateCompletion(album.getId(), progress));
+                }
             }
         }
 
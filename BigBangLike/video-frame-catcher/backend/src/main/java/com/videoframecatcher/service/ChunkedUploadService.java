@@ -0,0 +1,80 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.dto.UploadCreateRequest;
+import com.videoframecatcher.dto.UploadSessionDTO;
+
+import java.io.InputStream;
+import java.util.Optional;
+
+/**
+ * 可续传的分片上传
+ * 客户端先创建上传会话，再按偏移量逐段追加，断线后查询已接收的偏移量继续，全部接收后移入相册目录
+ */
+public interface ChunkedUploadService {
+
+    /**
+     * 创建上传会话
+     * @param request 相册名称、文件名和文件总大小
+     * @return 偏移量为0的上传会话
+     */
+    UploadSessionDTO createUpload(UploadCreateRequest request);
+
+    /**
+     * 查询上传会话及已接收的偏移量
+     * @param uploadId 上传ID
+     */
+    UploadSessionDTO getUpload(String uploadId);
+
+    /**
+     * 在指定偏移量处追加一段数据，数据直接从请求流写入文件，不在内存中缓冲
+     * @param uploadId 上传ID
+     * @param offset 本段的起始偏移量，必须等于已接收的字节数
+     * @param data 本段数据
+     * @return 追加后的偏移量；连接中断时为实际写入的位置
+     */
+    long appendChunk(String uploadId, long offset, InputStream data);
+
+    /**
+     * 判断上传能否在接收过程中开始处理（渐进式接收）
+     * 根据已接收的文件头识别容器，可从头顺序读取时返回true；每个上传最多返回一次true，
+     * 文件头不足时返回false，之后的追加会再次判断
+     * @param uploadId 上传ID
+     */
+    boolean claimProgressiveIngest(String uploadId);
+
+    /**
+     * 将仍在接收的文件硬链接到相册的video目录，并把相册关联到上传
+     * @param uploadId 上传ID
+     * @param albumId 相册ID
+     * @return 相册中视频文件的路径，上传完成后即为完整文件
+     */
+    String attachAlbum(String uploadId, Long albumId);
+
+    /**
+     * 打开跟随上传进度读取的输入流：读到已接收数据的末尾时等待后续分片，读满文件总长度后结束
+     * 上传被放弃或长时间没有新数据时读取失败
+     * @param uploadId 上传ID
+     */
+    InputStream openProgressiveStream(String uploadId);
+
+    /**
+     * 查找关联到相册且尚未完成的上传
+     * @param albumId 相册ID
+     */
+    Optional<UploadSessionDTO> findUploadByAlbum(Long albumId);
+
+    /**
+     * 完成上传：将拼接好的文件原子移动到相册的video目录并结束会话
+     * 已关联相册的上传文件早已链接到相册目录，只结束会话
+     * @param uploadId 上传ID，必须已接收全部数据
+     * @param albumId 相册ID
+     * @return 存储路径、大小和内容哈希
+     */
+    StoredVideo completeUpload(String uploadId, Long albumId);
+
+    /**
+     * 放弃上传并删除已接收的数据
+     * @param uploadId 上传ID
+     */
+    void deleteUpload(String uploadId);
+}
@@ -0,0 +1,155 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.entity.ClusterResource;
+import com.videoframecatcher.entity.ClusterResourceType;
+import com.videoframecatcher.entity.ClusterSlot;
+import com.videoframecatcher.repository.ClusterResourceRepository;
+import com.videoframecatcher.repository.ClusterSlotRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 集群级并发限制的持久化部分（cluster_resources、cluster_slots表）
+ * 槽位：锁定资源行后统计未过期的占用记录，未达上限且本实例未超出公平份额时插入占用记录；
+ * 公平份额为上限按占用或等待该资源的实例数平分，其他实例都没有在等待时可以超出
+ * 写入速率：资源行保存令牌桶，按经过的时间补充，每个实例每次最多领取容量按实例数平分的额度
+ * 记录由所属实例定期续期，实例失联后记录过期，其占用的槽位自动释放
+ * 过期时间和令牌补充都按数据库时钟计算，各实例的本地时钟不参与比较
+ * 每个操作在独立事务中提交，返回时结果已对其他实例可见
+ */
+@Service
+@Transactional(propagation = Propagation.REQUIRES_NEW)
+public class ClusterLimitService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterLimitService.class);
+
+    private final ClusterResourceRepository resourceRepository;
+    private final ClusterSlotRepository slotRepository;
+
+    public ClusterLimitService(ClusterResourceRepository resourceRepository, ClusterSlotRepository slotRepository) {
+        this.resourceRepository = resourceRepository;
+        this.slotRepository = slotRepository;
+    }
+
+    /**
+     * 尝试占用一个槽位，未能占用时登记（或续期）本实例的等待记录
+     * @param resource 资源
+     * @param nodeId 实例标识
+     * @param limit 集群内的槽位上限
+     * @param ttl 记录的有效期，所属实例需在过期前续期
+     * @return 占用记录的ID，未能占用时为empty
+     */
+    public Optional<Long> tryAcquire(ClusterResourceType resource, String nodeId, int limit, Duration ttl) {
+        lockResource(resource);
+        LocalDateTime now = resourceRepository.currentTime();
+        slotRepository.deleteExpired(resource, now);
+
+        List<ClusterSlot> live = slotRepository.findLive(resource, now);
+        Set<String> nodes = new HashSet<>();
+        nodes.add(nodeId);
+        int granted = 0;
+        int mine = 0;
+        boolean othersWaiting = false;
+        ClusterSlot waiting = null;
+        for (ClusterSlot slot : live) {
+            nodes.add(slot.getNodeId());
+            boolean own = nodeId.equals(slot.getNodeId());
+            if (slot.getGranted()) {
+                granted++;
+                if (own) {
+                    mine++;
+                }
+            } else if (own) {
+                waiting = slot;
+            } else {
+                othersWaiting = true;
+            }
+        }
+
+        int fairShare = (limit + nodes.size() - 1) / nodes.size();
+        if (granted < limit && (mine < fairShare || !othersWaiting)) {
+            if (waiting != null) {
+                slotRepository.delete(waiting);
+            }
+            ClusterSlot slot = slotRepository.save(new ClusterSlot(resource, nodeId, true, now.plus(ttl)));
+            logger.debug("Granted {} slot {} to {} ({} of {} in use, fair share {})",
+                    resource.getValue(), slot.getId(), nodeId, granted + 1, limit, fairShare);
+            return Optional.of(slot.getId());
+        }
+
+        if (waiting == null) {
+            waiting = new ClusterSlot(resource, nodeId, false, now.plus(ttl));
+        } else {
+            waiting.setExpiresAt(now.plus(ttl));
+        }
+        slotRepository.save(waiting);
+        return Optional.empty();
+    }
+
+    /**
+     * 释放占用的槽位，记录已过期被删除时忽略
+     */
+    public void release(Long slotId) {
+        slotRepository.deleteById(slotId);
+    }
+
+    /**
+     * 撤销本实例在资源上的等待
+     */
+    public void cancelWaiting(ClusterResourceType resource, String nodeId) {
+        slotRepository.deleteWaiting(resource, nodeId);
+    }
+
+    /**
+     * 续期本实例的全部记录
+     * @return 续期的条数，少于本实例持有的记录数时说明部分记录已过期被其他实例清理
+     */
+    public int renew(String nodeId, Duration ttl) {
+        LocalDateTime now = resourceRepository.currentTime();
+        return slotRepository.extendByNode(nodeId, now, now.plus(ttl));
+    }
+
+    /**
+     * 从令牌桶领取写入额度
+     * @param requested 请求的字节数
+     * @param bytesPerSecond 集群内的写入速率上限
+     * @param burst 令牌桶容量（字节）
+     * @return 领取到的字节数，可能少于请求，令牌耗尽时为0
+     */
+    public long takeBytes(ClusterResourceType resource, long requested, long bytesPerSecond, long burst) {
+        ClusterResource bucket = lockResource(resource);
+        // 数据库时间取事务开始时刻，等待行锁期间其他实例可能已按更晚的时刻补充过，补充时刻不回退
+        LocalDateTime now = resourceRepository.currentTime();
+        if (bucket.getRefilledAt() != null && bucket.getRefilledAt().isAfter(now)) {
+            now = bucket.getRefilledAt();
+        }
+
+        double elapsedSeconds = bucket.getRefilledAt() != null
+                ? Duration.between(bucket.getRefilledAt(), now).toNanos() / 1e9 : 0;
+        double tokens = Math.min(burst, bucket.getTokens() + elapsedSeconds * bytesPerSecond);
+
+        long nodes = Math.max(1, slotRepository.countLiveNodes(now));
+        long granted = (long) Math.min(Math.min(requested, tokens), Math.ceil((double) burst / nodes));
+        granted = Math.max(0, granted);
+
+        bucket.setTokens(tokens - granted);
+        bucket.setRefilledAt(now);
+        resourceRepository.save(bucket);
+        return granted;
+    }
+
+    private ClusterResource lockResource(ClusterResourceType resource) {
+        return resourceRepository.lockByName(resource)
+                .orElseThrow(() -> new IllegalStateException("Cluster resource not found: " + resource));
+    }
+}
@@ -0,0 +1,213 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.entity.ClusterResourceType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 集群级并发限制在本实例的入口：解码、编码槽位和存储写入速率
+ * 槽位未能占用时按轮询间隔重试，直到占用成功或调用方取消；写入额度按块从集群令牌桶领取后在本地扣减
+ * 本实例持有和等待的记录由定时任务续期，实例失联后记录过期，槽位由其他实例回收
+ * 未启用（processing.cluster.enabled=false）或上限为0时不做任何限制，也不访问数据库
+ */
+@Component
+public class ClusterThrottle {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterThrottle.class);
+
+    // 每次从令牌桶领取的额度占每秒速率的比例，额度用完再领，减少数据库访问
+    private static final int BYTE_CHUNKS_PER_SECOND = 10;
+
+    private static final long MIN_BYTE_WAIT_MILLIS = 10;
+
+    private final ClusterLimitService limitService;
+    private final String nodeId;
+
+    // 本实例持有的槽位记录
+    private final Set<Long> heldSlots = ConcurrentHashMap.newKeySet();
+    // 本实例各资源上正在等待槽位的线程数
+    private final Map<ClusterResourceType, AtomicInteger> waiters = new ConcurrentHashMap<>();
+
+    private final ReentrantLock bytesLock = new ReentrantLock(true);
+    private long byteAllowance;
+
+    @Value("${processing.cluster.enabled:false}")
+    private boolean enabled;
+
+    @Value("${processing.cluster.max-decodes:8}")
+    private int maxDecodes;
+
+    @Value("${processing.cluster.max-encodes:32}")
+    private int maxEncodes;
+
+    @Value("${processing.cluster.max-bytes-written-per-second:268435456}")
+    private long maxBytesWrittenPerSecond;
+
+    @Value("${processing.cluster.slot-ttl-seconds:60}")
+    private long slotTtlSeconds;
+
+    @Value("${processing.cluster.poll-interval-ms:1000}")
+    private long pollIntervalMillis;
+
+    public ClusterThrottle(ClusterLimitService limitService, NodeIdentity nodeIdentity) {
+        this.limitService = limitService;
+        this.nodeId = nodeIdentity.getId();
+    }
+
+    /**
+     * 占用资源的一个槽位，占满时等待
+     * @param cancelled 返回true时停止等待并抛出CancellationException
+     * @return 槽位凭证，使用完毕后关闭
+     */
+    public Permit acquire(ClusterResourceType resource, BooleanSupplier cancelled) {
+        int limit = slotLimit(resource);
+        if (!enabled || limit <= 0) {
+            return new Permit(null);
+        }
+        AtomicInteger waiting = waiters.computeIfAbsent(resource, key -> new AtomicInteger());
+        waiting.incrementAndGet();
+        boolean acquired = false;
+        try {
+            boolean logged = false;
+            while (true) {
+                Optional<Long> slot = limitService.tryAcquire(resource, nodeId, limit, ttl());
+                if (slot.isPresent()) {
+                    acquired = true;
+                    heldSlots.add(slot.get());
+                    return new Permit(slot.get());
+                }
+                if (!logged) {
+                    logger.info("Waiting for a cluster {} slot (limit {})", resource.getValue(), limit);
+                    logged = true;
+                }
+                pause(resource, pollIntervalMillis, cancelled);
+            }
+        } finally {
+            // 最后一个等待的线程放弃时撤销等待记录，以免其他实例在此期间让出份额
+            if (waiting.decrementAndGet() == 0 && !acquired) {
+                try {
+                    limitService.cancelWaiting(resource, nodeId);
+                } catch (Exception e) {
+                    logger.warn("Failed to cancel waiting for cluster {} slot", resource.getValue(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入前领取写入额度，超出集群写入速率时等待
+     * @param bytes 即将写入的字节数
+     * @param cancelled 返回true时停止等待并抛出CancellationException
+     */
+    public void awaitBytesWritten(long bytes, BooleanSupplier cancelled) {
+        if (!enabled || maxBytesWrittenPerSecond <= 0 || bytes <= 0) {
+            return;
+        }
+        bytesLock.lock();
+        try {
+            long chunk = Math.max(1, maxBytesWrittenPerSecond / BYTE_CHUNKS_PER_SECOND);
+            while (byteAllowance < bytes) {
+                long deficit = bytes - byteAllowance;
+                byteAllowance += limitService.takeBytes(ClusterResourceType.BYTES_WRITTEN,
+                        Math.max(deficit, chunk), maxBytesWrittenPerSecond, maxBytesWrittenPerSecond);
+                if (byteAllowance < bytes) {
+                    long refillMillis = (bytes - byteAllowance) * 1000 / maxBytesWrittenPerSecond;
+                    pause(ClusterResourceType.BYTES_WRITTEN,
+                            Math.max(MIN_BYTE_WAIT_MILLIS, Math.min(pollIntervalMillis, refillMillis)), cancelled);
+                }
+            }
+            byteAllowance -= bytes;
+        } finally {
+            bytesLock.unlock();
+        }
+    }
+
+    /**
+     * 续期本实例持有和等待的记录
+     */
+    @Scheduled(fixedDelayString = "${processing.cluster.heartbeat-interval-ms:15000}")
+    public void renewSlots() {
+        if (!enabled) {
+            return;
+        }
+        int held = heldSlots.size();
+        boolean anyWaiting = waiters.values().stream().anyMatch(count -> count.get() > 0);
+        if (held == 0 && !anyWaiting) {
+            return;
+        }
+        try {
+            int renewed = limitService.renew(nodeId, ttl());
+            if (renewed < held) {
+                logger.warn("Only {} of {} cluster slots renewed, expired slots may have been reassigned",
+                        renewed, held);
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to renew cluster slots", e);
+        }
+    }
+
+    private int slotLimit(ClusterResourceType resource) {
+        return switch (resource) {
+            case DECODE -> maxDecodes;
+            case ENCODE -> maxEncodes;
+            case BYTES_WRITTEN -> throw new IllegalArgumentException("Not a slot resource: " + resource);
+        };
+    }
+
+    private Duration ttl() {
+        return Duration.ofSeconds(slotTtlSeconds);
+    }
+
+    private static void pause(ClusterResourceType resource, long millis, BooleanSupplier cancelled) {
+        if (cancelled.getAsBoolean()) {
+            throw new CancellationException("Cancelled while waiting for cluster " + resource.getValue());
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for cluster " + resource.getValue());
+        }
+    }
+
+    /**
+     * 槽位凭证，关闭多次只释放一次；未启用集群限制时关闭不做任何事
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final Long slotId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Long slotId) {
+            this.slotId = slotId;
+        }
+
+        @Override
+        public void close() {
+            if (slotId == null || !released.compareAndSet(false, true)) {
+                return;
+            }
+            heldSlots.remove(slotId);
+            try {
+                limitService.release(slotId);
+            } catch (Exception e) {
+                // 记录在过期后由其他实例清理
+                logger.warn("Failed to release cluster slot {}", slotId, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.videoframecatcher.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * 从视频中提取出的单帧
+ * 流式提取时携带内存中的JPEG数据，文件提取时携带临时文件路径
+ */
+public class ExtractedFrame {
+
+    private final int frameNumber;
+    private final double timestamp;
+    private final byte[] data;
+    private final String path;
+
+    private ExtractedFrame(int frameNumber, double timestamp, byte[] data, String path) {
+        this.frameNumber = frameNumber;
+        this.timestamp = timestamp;
+        this.data = data;
+        this.path = path;
+    }
+
+    public static ExtractedFrame fromData(int frameNumber, double timestamp, byte[] data) {
+        return new ExtractedFrame(frameNumber, timestamp, data, null);
+    }
+
+    public static ExtractedFrame fromFile(int frameNumber, double timestamp, String path) {
+        return new ExtractedFrame(frameNumber, timestamp, null, path);
+    }
+
+    /**
+     * 读取帧的JPEG数据
+     * @return 内存中的数据，或从临时文件读取的数据
+     */
+    public byte[] readData() throws IOException {
+        if (data != null) {
+            return data;
+        }
+        return Files.readAllBytes(Paths.get(path));
+    }
+
+    public int getFrameNumber() { return frameNumber; }
+
+    public double getTimestamp() { return timestamp; }
+
+    public byte[] getData() { return data; }
+
+    public String getPath() { return path; }
+
+    public boolean isInMemory() { return data != null; }
+}
@@ -1,8 +1,12 @@
 package com.videoframecatcher.service;
 
+import com.videoframecatcher.entity.ExtractionMode;
 import com.videoframecatcher.service.impl.FFmpegServiceImpl;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 public interface FFmpegService {
 
@@ -13,6 +17,14 @@ public interface FFmpegService {
      */
     FFmpegServiceImpl.VideoMetadata extractMetadata(String videoPath);
 
+    /**
+     * 提取视频元数据，内容哈希相同的视频共用探测结果（同一视频以不同路径再次上传时不再探测）
+     * @param videoPath 视频文件路径
+     * @param contentHash 完整文件的SHA-256，未知时为null
+     * @return 视频元数据
+     */
+    FFmpegServiceImpl.VideoMetadata extractMetadata(String videoPath, String contentHash);
+
     /**
      * 从视频提取帧
      * @param videoPath 视频文件路径
@@ -22,6 +34,93 @@ public interface FFmpegService {
      */
     List<String> extractFrames(String videoPath, String outputPattern, double framesPerSecond);
 
+    /**
+     * 按指定模式从视频提取帧
+     * FIXED_RATE按帧率采样，时间戳由帧号推算；KEYFRAME只解码关键帧，SCENE按场景变化选帧，
+     * 后两者的时间戳为帧的实际显示时间
+     * @param videoPath 视频文件路径
+     * @param outputPattern 输出文件模式（例如: "/path/to/output_%06d.jpg"）
+     * @param mode 提取模式
+     * @param framesPerSecond 每秒提取的帧数（仅FIXED_RATE使用）
+     * @return 提取的帧，按帧号排序
+     */
+    List<ExtractedFrame> extractFrames(String videoPath, String outputPattern, ExtractionMode mode, double framesPerSecond);
+
+    /**
+     * 按指定模式从视频提取帧，解码期间回调进度
+     * @param progressListener 已处理的视频时长（秒），在进程输出读取线程上回调，可能来自多个分段进程
+     */
+    List<ExtractedFrame> extractFrames(String videoPath, String outputPattern, ExtractionMode mode, double framesPerSecond,
+                                       DoubleConsumer progressListener);
+
+    /**
+     * 以流式方式从视频提取帧（FFmpeg通过image2pipe写入stdout，不落临时文件）
+     * 每解码出一帧即回调一次，回调在读取线程上同步执行
+     * 长视频会按时长分段并行解码，此时回调可能被多个读取线程并发调用
+     * @param videoPath 视频文件路径
+     * @param framesPerSecond 每秒提取的帧数
+     * @param frameConsumer 帧回调
+     * @return 提取的帧数量
+     */
+    int extractFramesStreaming(String videoPath, double framesPerSecond, Consumer<ExtractedFrame> frameConsumer);
+
+    /**
+     * 以流式方式从视频提取帧，从第skipFrames + 1帧开始（断点续传）
+     * 通过定位跳过已处理的部分，不解码其中的帧；帧号和时间戳与从头提取时一致
+     * @param videoPath 视频文件路径
+     * @param framesPerSecond 每秒提取的帧数
+     * @param skipFrames 跳过的前导帧数
+     * @param frameConsumer 帧回调
+     * @return 提取的帧数量（不含跳过的帧）
+     */
+    int extractFramesStreaming(String videoPath, double framesPerSecond, int skipFrames,
+                               Consumer<ExtractedFrame> frameConsumer);
+
+    /**
+     * 按指定模式以流式方式从视频提取帧
+     * @param videoPath 视频文件路径
+     * @param mode 提取模式
+     * @param framesPerSecond 每秒提取的帧数（仅FIXED_RATE使用）
+     * @param frameConsumer 帧回调
+     * @return 提取的帧数量
+     */
+    int extractFramesStreaming(String videoPath, ExtractionMode mode, double framesPerSecond,
+                               Consumer<ExtractedFrame> frameConsumer);
+
+    /**
+     * 从仍在接收的视频提取帧（渐进式接收），视频数据经stdin送入单个FFmpeg进程
+     * 输入流读到已接收数据的末尾时阻塞等待，FFmpeg随数据到达持续解码；输入只能顺序读取，不分段
+     * @param videoData 视频数据，读完即视为文件结束
+     * @param mode 提取模式
+     * @param framesPerSecond 每秒提取的帧数（仅FIXED_RATE使用）
+     * @param frameConsumer 帧回调，在读取线程上同步执行
+     * @return 提取的帧数量
+     */
+    int extractFramesProgressive(InputStream videoData, ExtractionMode mode, double framesPerSecond,
+                                 Consumer<ExtractedFrame> frameConsumer);
+
+    /**
+     * 单次解码同时输出原尺寸HEIC帧和缩略图
+     * 使用split滤镜将解码后的帧分为两路，整个相册只需启动一个FFmpeg进程
+     * @param videoPath 视频文件路径
+     * @param framesPerSecond 每秒提取的帧数
+     * @param framePattern 原尺寸帧输出模式（例如: "/path/frame_%06d.heic"）
+     * @param thumbnailPattern 缩略图输出模式（例如: "/path/frame_%06d_thumb.jpg"）
+     * @param heicQuality HEIC质量 (0-100)
+     * @param thumbnailWidth 缩略图宽度
+     * @param thumbnailHeight 缩略图高度
+     * @param thumbnailQuality 缩略图质量 (0-100)
+     * @param progressListener 已处理的视频时长（秒），可以为null
+     * @param frameConsumer 原尺寸帧（已封装为HEIC）及其缩略图写完后以帧文件路径回调，解码过程中随帧的产生逐个调用，
+     *                      在调用线程上按帧号顺序执行；回调抛出异常时终止解码
+     * @return 生成的原尺寸帧数量
+     */
+    int extractFramesWithThumbnails(String videoPath, double framesPerSecond,
+                                    String framePattern, String thumbnailPattern,
+                                    int heicQuality, int thumbnailWidth, int thumbnailHeight,
+                                    int thumbnailQuality, DoubleConsumer progressListener,
+                                    Consumer<String> frameConsumer);
+
     /**
      * 将图像转换为HEIC格式
      * @param inputPath 输入文件路径
@@ -31,6 +130,31 @@ public interface FFmpegService {
      */
     boolean convertToHEIC(String inputPath, String outputPath, int quality);
 
+    /**
+     * 将内存中的JPEG数据转换为HEIC格式（通过stdin输入）
+     * @param imageData JPEG数据
+     * @param outputPath 输出文件路径
+     * @param quality 质量 (0-100)
+     * @return 转换是否成功
+     */
+    boolean convertToHEIC(byte[] imageData, String outputPath, int quality);
+
+    /**
+     * 批量转换为HEIC格式，所有帧由同一个FFmpeg进程编码
+     * @param images JPEG数据列表（尺寸需一致）
+     * @param quality 质量 (0-100)
+     * @return 与输入一一对应的HEIC数据，转换失败的帧为null
+     */
+    List<byte[]> convertToHEIC(List<byte[]> images, int quality);
+
+    /**
+     * 打开HEIC批量编码会话，适合逐帧到达的流式场景
+     * 调用方负责关闭会话
+     * @param quality 质量 (0-100)
+     * @return 编码会话
+     */
+    HeicBatchEncoder openHeicBatchEncoder(int quality);
+
     /**
      * 生成缩略图
      * @param inputPath 输入文件路径
@@ -42,6 +166,17 @@ public interface FFmpegService {
      */
     boolean generateThumbnail(String inputPath, String outputPath, int width, int height, int quality);
 
+    /**
+     * 从内存中的JPEG数据生成缩略图（通过stdin输入）
+     * @param imageData JPEG数据
+     * @param outputPath 输出文件路径
+     * @param width 宽度
+     * @param height 高度
+     * @param quality 质量 (0-100)
+     * @return 生成是否成功
+     */
+    boolean generateThumbnail(byte[] imageData, String outputPath, int width, int height, int quality);
+
     /**
      * 验证视频文件是否有效
      * @param videoPath 视频文件路径
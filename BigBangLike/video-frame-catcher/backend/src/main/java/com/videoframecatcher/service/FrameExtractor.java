@@ -0,0 +1,55 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.entity.ExtractionMode;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 视频帧提取后端
+ * 通过 image.processing.extractor 选择实现（ffmpeg / opencv）
+ */
+public interface FrameExtractor {
+
+    /**
+     * 后端名称
+     */
+    String getName();
+
+    /**
+     * 是否支持指定的提取模式，不支持时由调用方回退到FFmpeg
+     */
+    boolean supports(ExtractionMode mode);
+
+    /**
+     * 以流式方式提取帧，每提取出一帧即回调一次（回调可能被并发调用）
+     * @param videoPath 视频文件路径
+     * @param mode 提取模式
+     * @param framesPerSecond 每秒提取的帧数（仅FIXED_RATE使用）
+     * @param frameConsumer 帧回调
+     * @return 提取的帧数量
+     */
+    int extractFrames(String videoPath, ExtractionMode mode, double framesPerSecond,
+                      Consumer<ExtractedFrame> frameConsumer);
+
+    /**
+     * 以流式方式提取帧，跳过前skipFrames帧（断点续传）
+     * 默认实现从头解码并丢弃这些帧，支持定位的后端应覆盖此方法
+     * @param skipFrames 跳过的前导帧数
+     * @return 提取的帧数量（不含跳过的帧）
+     */
+    default int extractFrames(String videoPath, ExtractionMode mode, double framesPerSecond, int skipFrames,
+                              Consumer<ExtractedFrame> frameConsumer) {
+        if (skipFrames <= 0) {
+            return extractFrames(videoPath, mode, framesPerSecond, frameConsumer);
+        }
+        AtomicInteger delivered = new AtomicInteger();
+        extractFrames(videoPath, mode, framesPerSecond, frame -> {
+            if (frame.getFrameNumber() > skipFrames) {
+                delivered.incrementAndGet();
+                frameConsumer.accept(frame);
+            }
+        });
+        return delivered.get();
+    }
+}
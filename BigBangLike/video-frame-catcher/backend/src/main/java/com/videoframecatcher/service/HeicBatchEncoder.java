@@ -0,0 +1,26 @@
+package com.videoframecatcher.service;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * HEIC批量编码会话
+ * 一个会话对应一个常驻的FFmpeg编码进程，连续提交的帧共用同一个编码器，
+ * 避免逐帧启动进程和初始化编码器的开销
+ */
+public interface HeicBatchEncoder extends AutoCloseable {
+
+    /**
+     * 提交一帧JPEG图像进行编码，输入管道满时阻塞
+     * 编码器有输出延迟，结果按提交顺序在编码器的读取线程上回调
+     * @param jpegData JPEG图像数据
+     * @param onEncoded 编码完成回调，参数为HEIC文件数据（单图像HEIF），编码失败时为null
+     */
+    void submit(byte[] jpegData, Consumer<byte[]> onEncoded) throws IOException;
+
+    /**
+     * 结束输入并等待所有已提交的帧完成回调
+     */
+    @Override
+    void close() throws IOException, InterruptedException;
+}
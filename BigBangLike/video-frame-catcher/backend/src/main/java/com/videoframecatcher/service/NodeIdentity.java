@@ -0,0 +1,39 @@
+package com.videoframecatcher.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.util.UUID;
+
+/**
+ * 本实例的标识，用于处理任务的租约和集群槽位的归属
+ */
+@Component
+public class NodeIdentity {
+
+    private static final Logger logger = LoggerFactory.getLogger(NodeIdentity.class);
+
+    private final String id;
+
+    public NodeIdentity(@Value("${processing.queue.node-id:}") String nodeId) {
+        this.id = nodeId.isBlank() ? defaultNodeId() : nodeId;
+        logger.info("Processing node id: {}", this.id);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    private static String defaultNodeId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "worker";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -0,0 +1,140 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.entity.Album;
+import com.videoframecatcher.entity.ExtractionMode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 相册处理耗时估算，用于处理队列的短任务优先排序和完成时间预估
+ * 耗时由两部分组成，两者在流水线中并行进行，取较大者：
+ * 解码 —— 与源视频的总像素量（时长 × 帧率 × 分辨率）和编码格式相关，速率按提取模式分别学习；
+ * 帧处理 —— 去重、HEIC编码、缩略图和存储，与提取的帧数和分辨率相关，按编码线程数分摊
+ * 两者的速率都从实际处理中观测到的阶段耗时按指数滑动平均更新，初始值为经验值
+ */
+@Component
+public class ProcessingCostEstimator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingCostEstimator.class);
+
+    // 元数据未知时的假设：1080p、30fps，码率约8Mbps
+    private static final double DEFAULT_MEGAPIXELS = 1920 * 1080 / 1_000_000.0;
+    private static final double DEFAULT_FRAME_RATE = 30;
+    private static final double ASSUMED_BYTES_PER_SECOND = 1_000_000;
+
+    // 探测、建目录、收尾等与视频规模无关的耗时（秒）
+    private static final double FIXED_OVERHEAD_SECONDS = 2;
+
+    // 单次观测与当前速率相差超过该倍数时视为异常值，截断后再参与平均
+    private static final double MAX_SAMPLE_RATIO = 20;
+
+    // 解码每百万像素帧的耗时（秒）初始值：关键帧模式只解码关键帧，场景模式需对每帧计算场景差异
+    private static final Map<ExtractionMode, Double> INITIAL_DECODE_RATES = Map.of(
+            ExtractionMode.FIXED_RATE, 1.0 / 800,
+            ExtractionMode.KEYFRAME, 1.0 / 20000,
+            ExtractionMode.SCENE, 1.0 / 500);
+
+    // 每提取一帧每百万像素的帧处理耗时（秒）初始值，以HEIC编码为主
+    private static final double INITIAL_FRAME_RATE = 0.14;
+
+    private final Map<ExtractionMode, Double> decodeRates = new EnumMap<>(INITIAL_DECODE_RATES);
+    private double frameRate = INITIAL_FRAME_RATE;
+
+    @Value("${processing.cost.learning-rate:0.2}")
+    private double learningRate;
+
+    @Value("${ffmpeg.frame-extraction.max-parallel-threads:4}")
+    private int frameParallelism;
+
+    /**
+     * 估算处理耗时
+     * @param album 相册，元数据未知时按文件大小推算时长
+     * @param expectedFrames 预计提取的帧数
+     * @return 预计耗时（秒）
+     */
+    public synchronized double estimateSeconds(Album album, int expectedFrames) {
+        double decodeSeconds = decodeUnits(album) * decodeRates.get(extractionMode(album));
+        double frameSeconds = expectedFrames * megapixels(album) * frameRate / Math.max(1, frameParallelism);
+        return Math.max(decodeSeconds, frameSeconds) + FIXED_OVERHEAD_SECONDS;
+    }
+
+    /**
+     * 记录一次完整解码的耗时（不含因帧处理跟不上而阻塞的时间）
+     */
+    public synchronized void recordDecode(Album album, double decodeSeconds) {
+        double units = decodeUnits(album);
+        if (units <= 0 || decodeSeconds <= 0) {
+            return;
+        }
+        ExtractionMode mode = extractionMode(album);
+        double rate = update(decodeRates.get(mode), decodeSeconds / units);
+        decodeRates.put(mode, rate);
+        logger.debug("Decode rate for {} mode updated to {} s per megapixel-frame", mode.getValue(), rate);
+    }
+
+    /**
+     * 记录一次处理中帧处理各阶段的累计耗时
+     * @param frames 进入帧处理流水线的帧数（包括去重丢弃的帧）
+     * @param busySeconds 各阶段工作线程的累计处理时间
+     */
+    public synchronized void recordFrames(Album album, long frames, double busySeconds) {
+        double units = frames * megapixels(album);
+        if (units <= 0 || busySeconds <= 0) {
+            return;
+        }
+        frameRate = update(frameRate, busySeconds / units);
+        logger.debug("Frame processing rate updated to {} s per megapixel", frameRate);
+    }
+
+    private double update(double current, double sample) {
+        double bounded = Math.max(current / MAX_SAMPLE_RATIO, Math.min(current * MAX_SAMPLE_RATIO, sample));
+        return current + learningRate * (bounded - current);
+    }
+
+    /**
+     * 解码工作量：源视频的百万像素帧数，按编码格式的解码复杂度加权
+     */
+    private static double decodeUnits(Album album) {
+        double frameRate = album.getFrameRate() != null && album.getFrameRate() > 0
+                ? album.getFrameRate() : DEFAULT_FRAME_RATE;
+        return durationSeconds(album) * frameRate * megapixels(album) * codecFactor(album.getVideoCodec());
+    }
+
+    private static double durationSeconds(Album album) {
+        if (album.getDuration() != null && album.getDuration().signum() > 0) {
+            return album.getDuration().doubleValue();
+        }
+        return album.getFileSize() != null ? album.getFileSize() / ASSUMED_BYTES_PER_SECOND : 0;
+    }
+
+    private static double megapixels(Album album) {
+        if (album.getWidth() != null && album.getHeight() != null && album.getWidth() > 0 && album.getHeight() > 0) {
+            return album.getWidth() * (double) album.getHeight() / 1_000_000.0;
+        }
+        return DEFAULT_MEGAPIXELS;
+    }
+
+    private static double codecFactor(String codec) {
+        if (codec == null) {
+            return 1.2;
+        }
+        return switch (codec.toLowerCase(Locale.ROOT)) {
+            case "h264", "avc" -> 1.0;
+            case "hevc", "h265" -> 1.6;
+            case "vp9" -> 1.8;
+            case "av1" -> 2.5;
+            case "mpeg4", "mpeg2video", "mjpeg" -> 0.8;
+            default -> 1.2;
+        };
+    }
+
+    private static ExtractionMode extractionMode(Album album) {
+        return album.getExtractionMode() != null ? album.getExtractionMode() : ExtractionMode.FIXED_RATE;
+    }
+}
@@ -0,0 +1,323 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.entity.AlbumStatus;
+import com.videoframecatcher.entity.ProcessingJob;
+import com.videoframecatcher.entity.ProcessingJobStatus;
+import com.videoframecatcher.repository.AlbumRepository;
+import com.videoframecatcher.repository.ProcessingJobRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * 持久化的相册处理任务队列（processing_jobs表）
+ * 任务随相册记录在同一事务中写入；各实例以 FOR UPDATE SKIP LOCKED 领取，领取后持有租约并定期续期，
+ * 租约过期的任务可被任意实例重新领取，失败的任务按指数退避重新排队，超过最大次数后置为失败
+ */
+@Service
+@Transactional
+public class ProcessingJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingJobService.class);
+
+    private static final List<ProcessingJobStatus> ACTIVE_STATUSES =
+            List.of(ProcessingJobStatus.PENDING, ProcessingJobStatus.RUNNING);
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final ProcessingJobRepository jobRepository;
+    private final AlbumRepository albumRepository;
+
+    @Value("${processing.queue.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${processing.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${processing.queue.retry-backoff-seconds:30}")
+    private long retryBackoffSeconds;
+
+    @Value("${processing.queue.max-backoff-seconds:1800}")
+    private long maxBackoffSeconds;
+
+    @Value("${processing.queue.retention-days:7}")
+    private long retentionDays;
+
+    @Value("${processing.queue.aging-factor:0.5}")
+    private double agingFactor;
+
+    @Value("${processing.queue.concurrency:2}")
+    private int concurrency;
+
+    public ProcessingJobService(ProcessingJobRepository jobRepository, AlbumRepository albumRepository) {
+        this.jobRepository = jobRepository;
+        this.albumRepository = albumRepository;
+    }
+
+    /**
+     * 为相册加入处理任务，已有未结束的任务时不重复加入（多个实例同时加入时也只有一个生效）
+     * 在调用方的事务中写入，相册记录提交之前任务不会被领取
+     * @param albumId 相册ID
+     * @param estimatedSeconds 预计处理耗时（秒），决定在队列中的先后
+     */
+    public void enqueue(Long albumId, double estimatedSeconds) {
+        if (jobRepository.insertIfAbsent(albumId, LocalDateTime.now(), estimatedSeconds) == 0) {
+            logger.debug("Album {} already has an active processing job", albumId);
+            return;
+        }
+        logger.info("Processing job queued for album: {} (estimated {}s)", albumId, Math.round(estimatedSeconds));
+    }
+
+    /**
+     * 处理开始后按实际的元数据和已入库的帧更新预计耗时
+     */
+    public void updateEstimate(Long albumId, double estimatedSeconds) {
+        jobRepository.updateEstimatedCost(albumId, estimatedSeconds);
+    }
+
+    /**
+     * 入队后探测到元数据时更新尚未领取的任务的预计耗时
+     */
+    public void updatePendingEstimate(Long albumId, double estimatedSeconds) {
+        jobRepository.updatePendingEstimatedCost(albumId, estimatedSeconds);
+    }
+
+    /**
+     * 领取可执行的任务：到期的待处理任务，以及租约已过期（执行实例已失联）的运行中任务
+     * @param owner 领取实例的标识
+     * @param limit 最多领取的任务数
+     */
+    public List<ProcessingJob> claim(String owner, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ProcessingJob> jobs = jobRepository.lockClaimable(now, agingFactor, limit);
+        for (ProcessingJob job : jobs) {
+            if (job.getStatus() == ProcessingJobStatus.RUNNING) {
+                logger.warn("Reclaiming job {} of album {} after lease of {} expired",
+                        job.getId(), job.getAlbumId(), job.getLeaseOwner());
+            }
+            lease(job, owner, now);
+        }
+        return jobRepository.saveAll(jobs);
+    }
+
+    /**
+     * 由指定实例直接执行相册的任务（渐进式接收的数据只在接收上传的实例上）：
+     * 接管未结束的任务，没有时新建；任务正由其他实例在租约内执行时返回empty
+     * 独立事务提交，返回时租约已对其他实例可见
+     * @param albumId 相册ID
+     * @param owner 执行实例的标识
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public Optional<ProcessingJob> claimForAlbum(Long albumId, String owner) {
+        LocalDateTime now = LocalDateTime.now();
+        List<ProcessingJob> active = jobRepository.lockByAlbumIdAndStatusIn(albumId, ACTIVE_STATUSES);
+        if (active.isEmpty()) {
+            // 与其他实例并发加入时以先插入的任务为准
+            jobRepository.insertIfAbsent(albumId, now, null);
+            active = jobRepository.lockByAlbumIdAndStatusIn(albumId, ACTIVE_STATUSES);
+            if (active.isEmpty()) {
+                return Optional.empty();
+            }
+        }
+        ProcessingJob job = active.get(0);
+        if (job.getStatus() == ProcessingJobStatus.RUNNING && job.getLeaseExpiresAt() != null
+                && job.getLeaseExpiresAt().isAfter(now)) {
+            return Optional.empty();
+        }
+        lease(job, owner, now);
+        return Optional.of(jobRepository.save(job));
+    }
+
+    /**
+     * 续租
+     * @return false表示租约已被其他实例接管或任务已删除（相册被删除），持有方应停止处理
+     */
+    public boolean renewLease(Long jobId, String owner) {
+        return jobRepository.extendLease(jobId, owner, LocalDateTime.now().plusSeconds(leaseSeconds)) > 0;
+    }
+
+    /**
+     * 任务结束（包括处理期间相册被取消），只有仍持有租约的实例能够结束任务
+     */
+    public void complete(Long jobId, String owner) {
+        findOwned(jobId, owner).ifPresent(job -> {
+            job.setStatus(ProcessingJobStatus.DONE);
+            job.setLeaseOwner(null);
+            job.setLeaseExpiresAt(null);
+            jobRepository.save(job);
+        });
+    }
+
+    /**
+     * 交还任务：本实例未能开始执行（执行线程已满、视频仍在上传），重新排队且不计入尝试次数
+     * @param delay 重新可被领取前的等待时间
+     */
+    public void release(Long jobId, String owner, Duration delay) {
+        findOwned(jobId, owner).ifPresent(job -> {
+            job.setStatus(ProcessingJobStatus.PENDING);
+            job.setLeaseOwner(null);
+            job.setLeaseExpiresAt(null);
+            job.setAttempts(Math.max(0, job.getAttempts() - 1));
+            job.setAvailableAt(LocalDateTime.now().plus(delay));
+            jobRepository.save(job);
+        });
+    }
+
+    /**
+     * 任务失败：未达到最大次数时按指数退避重新排队，相册在等待重试期间保持处理中；
+     * 达到最大次数后任务和相册都置为失败
+     */
+    public void fail(Long jobId, String owner, String error) {
+        findOwned(jobId, owner).ifPresent(job -> {
+            job.setLastError(error != null && error.length() > MAX_ERROR_LENGTH
+                    ? error.substring(0, MAX_ERROR_LENGTH) : error);
+            job.setLeaseOwner(null);
+            job.setLeaseExpiresAt(null);
+            if (job.getAttempts() < maxAttempts) {
+                long backoff = Math.min(maxBackoffSeconds,
+                        retryBackoffSeconds << Math.min(job.getAttempts() - 1, 20));
+                job.setStatus(ProcessingJobStatus.PENDING);
+                job.setAvailableAt(LocalDateTime.now().plusSeconds(backoff));
+                albumRepository.updateStatus(job.getAlbumId(), AlbumStatus.PROCESSING);
+                logger.warn("Job {} of album {} failed (attempt {}/{}), retrying in {}s: {}",
+                        jobId, job.getAlbumId(), job.getAttempts(), maxAttempts, backoff, error);
+            } else {
+                job.setStatus(ProcessingJobStatus.FAILED);
+                albumRepository.updateStatus(job.getAlbumId(), AlbumStatus.FAILED);
+                logger.error("Job {} of album {} failed after {} attempts: {}",
+                        jobId, job.getAlbumId(), job.getAttempts(), error);
+            }
+            jobRepository.save(job);
+        });
+    }
+
+    /**
+     * 读取当前未结束的全部任务，用于估算完成时间
+     * 同一次查询（如相册列表的一页）中的多个相册共用一个快照，不必逐个相册读取队列
+     */
+    @Transactional(readOnly = true)
+    public QueueSnapshot queueSnapshot() {
+        return new QueueSnapshot(jobRepository.findByStatusIn(ACTIVE_STATUSES), LocalDateTime.now());
+    }
+
+    /**
+     * 某一时刻未结束任务的快照
+     */
+    public final class QueueSnapshot {
+        private final Map<Long, ProcessingJob> jobsByAlbum = new HashMap<>();
+        private final List<ProcessingJob> active;
+        private final LocalDateTime now;
+        private final double runningRemaining;
+        private final long workers;
+
+        private QueueSnapshot(List<ProcessingJob> active, LocalDateTime now) {
+            this.active = active;
+            this.now = now;
+            double remaining = 0;
+            for (ProcessingJob job : active) {
+                jobsByAlbum.put(job.getAlbumId(), job);
+                if (job.getStatus() == ProcessingJobStatus.RUNNING) {
+                    remaining += remainingSeconds(job, now);
+                }
+            }
+            this.runningRemaining = remaining;
+            this.workers = Math.max(1, active.stream()
+                    .map(ProcessingJob::getLeaseOwner)
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .count());
+        }
+
+        /**
+         * 估算相册处理完成的时间
+         * 运行中的任务：已有进度时按已用时间和进度推算，否则取预计耗时减去已运行时间；
+         * 排队中的任务：加上运行中的任务和排在它前面的任务的剩余耗时，按各实例的处理槽位分摊
+         * @param albumId 相册ID
+         * @param progress 已完成的比例（0-1），未知时为0
+         * @return 预计完成时间，相册没有未结束的任务时为null
+         */
+        public LocalDateTime estimateCompletion(Long albumId, double progress) {
+            ProcessingJob target = jobsByAlbum.get(albumId);
+            if (target == null) {
+                return null;
+            }
+            if (target.getStatus() == ProcessingJobStatus.RUNNING) {
+                double remaining = remainingSeconds(target, now);
+                if (progress > 0.05 && target.getStartedAt() != null) {
+                    double elapsed = Duration.between(target.getStartedAt(), now).toMillis() / 1000.0;
+                    remaining = elapsed / progress * (1 - progress);
+                }
+                return now.plusSeconds(Math.round(remaining));
+            }
+
+            double targetPriority = priority(target, now);
+            double ahead = runningRemaining;
+            for (ProcessingJob job : active) {
+                if (job.getStatus() == ProcessingJobStatus.PENDING && job != target
+                        && priority(job, now) < targetPriority) {
+                    ahead += cost(job);
+                }
+            }
+            double wait = ahead / Math.max(1, workers * concurrency);
+            if (target.getAvailableAt().isAfter(now)) {
+                wait = Math.max(wait, Duration.between(now, target.getAvailableAt()).toMillis() / 1000.0);
+            }
+            return now.plusSeconds(Math.round(wait + cost(target)));
+        }
+    }
+
+    /**
+     * 清理已结束超过保留天数的任务
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void cleanupFinishedJobs() {
+        int deleted = jobRepository.deleteFinishedBefore(LocalDateTime.now().minusDays(retentionDays));
+        if (deleted > 0) {
+            logger.info("Removed {} finished processing jobs", deleted);
+        }
+    }
+
+    private void lease(ProcessingJob job, String owner, LocalDateTime now) {
+        job.setStatus(ProcessingJobStatus.RUNNING);
+        job.setLeaseOwner(owner);
+        job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+        job.setAttempts(job.getAttempts() + 1);
+        job.setStartedAt(now);
+    }
+
+    /**
+     * 与领取查询的排序一致：预计耗时减去按等待时间折减的部分，越小越先领取
+     */
+    private double priority(ProcessingJob job, LocalDateTime now) {
+        LocalDateTime queuedAt = job.getCreatedAt() != null ? job.getCreatedAt() : job.getAvailableAt();
+        return cost(job) - agingFactor * Duration.between(queuedAt, now).toMillis() / 1000.0;
+    }
+
+    private double remainingSeconds(ProcessingJob job, LocalDateTime now) {
+        if (job.getStartedAt() == null) {
+            return cost(job);
+        }
+        double elapsed = Duration.between(job.getStartedAt(), now).toMillis() / 1000.0;
+        return Math.max(0, cost(job) - elapsed);
+    }
+
+    private static double cost(ProcessingJob job) {
+        return job.getEstimatedCostSeconds() != null ? job.getEstimatedCostSeconds() : 0;
+    }
+
+    private Optional<ProcessingJob> findOwned(Long jobId, String owner) {
+        return jobRepository.findById(jobId)
+                .filter(job -> job.getStatus() == ProcessingJobStatus.RUNNING && owner.equals(job.getLeaseOwner()));
+    }
+}
@@ -0,0 +1,216 @@
+package com.videoframecatcher.service;
+
+import com.videoframecatcher.entity.Album;
+import com.videoframecatcher.entity.AlbumStatus;
+import com.videoframecatcher.entity.ProcessingJob;
+import com.videoframecatcher.repository.AlbumRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * 处理队列的工作线程：定时领取任务并在视频处理线程池中执行，执行期间定期续租
+ * 续租失败（租约被接管、相册被删除）或相册在其他实例上被取消时停止本地处理
+ * 执行线程已满时任务交还队列，不在调度线程或上传请求线程上执行
+ */
+@Component
+public class ProcessingJobWorker {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessingJobWorker.class);
+
+    // 视频仍在上传时任务交还队列后再次领取的等待时间
+    private static final Duration INCOMPLETE_VIDEO_DELAY = Duration.ofSeconds(30);
+
+    private final ProcessingJobService jobService;
+    private final VideoProcessingService videoProcessingService;
+    private final AlbumRepository albumRepository;
+    private final StorageService storageService;
+    private final Executor executor;
+    private final Executor progressiveExecutor;
+    private final String nodeId;
+
+    // 本实例正在执行的任务：相册ID -> 任务ID
+    private final ConcurrentHashMap<Long, Long> runningJobs = new ConcurrentHashMap<>();
+
+    @Value("${processing.queue.concurrency:2}")
+    private int concurrency;
+
+    public ProcessingJobWorker(ProcessingJobService jobService, VideoProcessingService videoProcessingService,
+                               AlbumRepository albumRepository, StorageService storageService,
+                               @Qualifier("videoProcessingExecutor") Executor executor,
+                               @Qualifier("progressiveIngestExecutor") Executor progressiveExecutor,
+                               NodeIdentity nodeIdentity) {
+        this.jobService = jobService;
+        this.videoProcessingService = videoProcessingService;
+        this.albumRepository = albumRepository;
+        this.storageService = storageService;
+        this.executor = executor;
+        this.progressiveExecutor = progressiveExecutor;
+        this.nodeId = nodeIdentity.getId();
+    }
+
+    /**
+     * 按空闲的执行槽位领取任务
+     */
+    @Scheduled(fixedDelayString = "${processing.queue.poll-interval-ms:2000}")
+    public void pollQueue() {
+        int free = concurrency - runningJobs.size();
+        if (free <= 0) {
+            return;
+        }
+        List<ProcessingJob> jobs;
+        try {
+            jobs = jobService.claim(nodeId, free);
+        } catch (Exception e) {
+            logger.error("Failed to claim processing jobs", e);
+            return;
+        }
+        for (ProcessingJob job : jobs) {
+            Long albumId = job.getAlbumId();
+            logger.info("Claimed job {} for album {} (attempt {})", job.getId(), albumId, job.getAttempts());
+            runningJobs.put(albumId, job.getId());
+            try {
+                executor.execute(() -> runJob(job.getId(), albumId, () -> {
+                    if (!requireCompleteVideo(job.getId(), albumId)) {
+                        return false;
+                    }
+                    videoProcessingService.processVideo(albumId);
+                    return true;
+                }));
+            } catch (RejectedExecutionException e) {
+                logger.info("No free processing thread for job {} of album {}, returning it to the queue",
+                        job.getId(), albumId);
+                runningJobs.remove(albumId, job.getId());
+                jobService.release(job.getId(), nodeId, Duration.ZERO);
+            }
+        }
+    }
+
+    /**
+     * 在本实例直接执行相册的渐进式处理：视频数据来自本实例正在接收的上传，不经过队列领取
+     * 任务同样持有租约，本实例失联时由其他实例在上传完成后按完整文件重新处理
+     * @param albumId 相册ID
+     * @param videoData 取得租约后才打开的视频数据流
+     * @return false表示未开始渐进式处理：任务正由其他实例执行，或渐进式接收线程已满，
+     *         此时任务交还队列，上传完成后按完整文件处理
+     */
+    public boolean startProgressive(Long albumId, Supplier<InputStream> videoData) {
+        Optional<ProcessingJob> claimed = jobService.claimForAlbum(albumId, nodeId);
+        if (claimed.isEmpty()) {
+            logger.info("Album {} is being processed by another worker, not starting progressive ingest", albumId);
+            return false;
+        }
+        Long jobId = claimed.get().getId();
+        InputStream stream;
+        try {
+            stream = videoData.get();
+        } catch (RuntimeException e) {
+            jobService.fail(jobId, nodeId, e.getMessage());
+            throw e;
+        }
+        runningJobs.put(albumId, jobId);
+        try {
+            progressiveExecutor.execute(() -> runJob(jobId, albumId, () -> {
+                videoProcessingService.processVideoProgressive(albumId, stream);
+                return true;
+            }));
+        } catch (RejectedExecutionException e) {
+            logger.info("Too many progressive ingests, album {} will be processed from the queue after upload",
+                    albumId);
+            runningJobs.remove(albumId, jobId);
+            closeQuietly(stream);
+            jobService.release(jobId, nodeId, Duration.ZERO);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * 续租，并停止已失去租约或已在其他实例上取消的本地处理
+     * 只发出取消，不等待处理线程退出，避免推迟其他任务的续租
+     */
+    @Scheduled(fixedDelayString = "${processing.queue.heartbeat-interval-ms:30000}")
+    public void renewLeases() {
+        runningJobs.forEach((albumId, jobId) -> {
+            try {
+                if (!jobService.renewLease(jobId, nodeId)) {
+                    // 任务可能已被其他实例领取，不能把相册置为已取消；任务记录按持有者更新，不会被改动
+                    logger.warn("Lost lease of job {} for album {}, abandoning local processing", jobId, albumId);
+                    videoProcessingService.abandonProcessing(albumId);
+                    return;
+                }
+                AlbumStatus status = albumRepository.findById(albumId).map(Album::getStatus).orElse(null);
+                if (status == AlbumStatus.CANCELLED) {
+                    logger.info("Album {} was cancelled, stopping local processing", albumId);
+                    videoProcessingService.cancelProcessing(albumId);
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to renew lease of job {} for album {}", jobId, albumId, e);
+            }
+        });
+    }
+
+    /**
+     * @param processing 执行处理，返回false表示任务已交还队列
+     */
+    private void runJob(Long jobId, Long albumId, Supplier<Boolean> processing) {
+        try {
+            Album album = albumRepository.findById(albumId).orElse(null);
+            if (album == null || album.getStatus() != AlbumStatus.PROCESSING) {
+                // 排队期间相册被删除或取消
+                logger.info("Album {} is no longer waiting for processing, skipping job {}", albumId, jobId);
+                jobService.complete(jobId, nodeId);
+                return;
+            }
+            if (processing.get()) {
+                jobService.complete(jobId, nodeId);
+            }
+        } catch (Exception e) {
+            logger.warn("Job {} for album {} failed", jobId, albumId, e);
+            try {
+                jobService.fail(jobId, nodeId, e.getMessage());
+            } catch (Exception ex) {
+                logger.error("Failed to record failure of job {}", jobId, ex);
+            }
+        } finally {
+            runningJobs.remove(albumId, jobId);
+        }
+    }
+
+    /**
+     * 渐进式处理失败或未能开始的任务，视频可能仍在上传：文件不完整时交还队列，稍后再领取，不计入尝试次数
+     * @return 视频是否已完整
+     */
+    private boolean requireCompleteVideo(Long jobId, Long albumId) {
+        Album album = albumRepository.findById(albumId)
+                .orElseThrow(() -> new RuntimeException("Album not found: " + albumId));
+        if (album.getVideoPath() != null && album.getFileSize() != null
+                && storageService.getFileSize(album.getVideoPath()) < album.getFileSize()) {
+            logger.info("Video of album {} is still uploading, postponing job {}", albumId, jobId);
+            jobService.release(jobId, nodeId, INCOMPLETE_VIDEO_DELAY);
+            return false;
+        }
+        return true;
+    }
+
+    private void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close video input", e);
+        }
+    }
+}
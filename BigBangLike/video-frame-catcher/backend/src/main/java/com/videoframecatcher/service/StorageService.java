@@ -4,16 +4,37 @@ import org.springframework.core.io.Resource;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public interface StorageService {
 
     /**
-     * 存储上传的视频文件
+     * 存储上传的视频文件，写入的同时计算内容的SHA-256
      * @param videoFile 视频文件
      * @param albumId 相册ID
-     * @return 文件存储路径
+     * @return 存储路径、大小和内容哈希
+     */
+    StoredVideo storeVideo(MultipartFile videoFile, Long albumId);
+
+    /**
+     * 将已完整写入的视频文件原子移动到相册的video目录，不再复制数据
+     * @param sourceFile 已写完的视频文件，应与存储目录位于同一文件系统
+     * @param originalFilename 原始文件名，用于确定扩展名
+     * @param albumId 相册ID
+     * @param contentHash 文件内容的SHA-256
+     * @return 存储路径、大小和内容哈希
+     */
+    StoredVideo moveVideo(Path sourceFile, String originalFilename, Long albumId, String contentHash);
+
+    /**
+     * 将仍在写入的视频文件硬链接到相册的video目录，链接与原文件共享数据，写入内容随即可见
+     * 文件系统不支持硬链接时抛出异常，不退回复制
+     * @param sourceFile 正在写入的视频文件
+     * @param originalFilename 原始文件名，用于确定扩展名
+     * @param albumId 相册ID
+     * @return 相册中视频文件的路径
      */
-    String storeVideo(MultipartFile videoFile, Long albumId);
+    String linkVideo(Path sourceFile, String originalFilename, Long albumId);
 
     /**
      * 存储帧图像文件
@@ -25,6 +46,15 @@ public interface StorageService {
      */
     String storeFrame(Long albumId, Integer frameNumber, byte[] imageData, String format);
 
+    /**
+     * 将其他相册中的文件放入目标相册目录下的相同相对位置
+     * 优先使用硬链接共享数据，文件系统不支持时退回复制
+     * @param sourcePath 源文件路径，须位于某个相册目录内
+     * @param albumId 目标相册ID
+     * @return 目标文件路径
+     */
+    String linkIntoAlbum(String sourcePath, Long albumId);
+
     /**
      * 存储缩略图文件
      * @param albumId 相册ID
@@ -34,6 +64,33 @@ public interface StorageService {
      */
     String storeThumbnail(Long albumId, Integer frameNumber, byte[] thumbnailData);
 
+    /**
+     * 存储指定格式的缩略图文件
+     * @param albumId 相册ID
+     * @param frameNumber 帧号
+     * @param thumbnailData 缩略图数据
+     * @param format 图像格式（jpg / webp / png）
+     * @return 缩略图存储路径
+     */
+    String storeThumbnail(Long albumId, Integer frameNumber, byte[] thumbnailData, String format);
+
+    /**
+     * 获取帧图像的输出路径模式，供FFmpeg直接写入存储目录
+     * 生成的文件名与storeFrame一致
+     * @param albumId 相册ID
+     * @param format 图像格式
+     * @return 路径模式（例如: ".../frames/original/frame_%06d.heic"）
+     */
+    String getFramePathPattern(Long albumId, String format);
+
+    /**
+     * 获取缩略图的输出路径模式，供FFmpeg直接写入存储目录
+     * 生成的文件名与storeThumbnail一致
+     * @param albumId 相册ID
+     * @return 路径模式（例如: ".../frames/thumbnails/frame_%06d_thumb.jpg"）
+     */
+    String getThumbnailPathPattern(Long albumId);
+
     /**
      * 加载文件
      * @param filePath 文件路径
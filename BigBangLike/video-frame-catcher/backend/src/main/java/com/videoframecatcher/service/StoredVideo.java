@@ -0,0 +1,27 @@
+package com.videoframecatcher.service;
+
+/**
+ * 已存储的上传视频
+ * 内容哈希在写入时流式计算，用于识别重复上传
+ */
+public class StoredVideo {
+
+    private final String path;
+    private final long size;
+    private final String contentHash;
+
+    public StoredVideo(String path, long size, String contentHash) {
+        this.path = path;
+        this.size = size;
+        this.contentHash = contentHash;
+    }
+
+    public String getPath() { return path; }
+
+    public long getSize() { return size; }
+
+    /**
+     * @return 文件内容的SHA-256，小写十六进制
+     */
+    public String getContentHash() { return contentHash; }
+}
@@ -0,0 +1,43 @@
+package com.videoframecatcher.service;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * 缩略图生成后端
+ * 通过 image.processing.thumbnail.engine 选择实现（ffmpeg / opencv / java）
+ */
+public interface ThumbnailEncoder {
+
+    /**
+     * 缩略图格式（jpg / webp / png），同时作为文件扩展名
+     */
+    String getFormat();
+
+    /**
+     * 生成缩略图，保持宽高比缩放到不超过指定尺寸
+     * @param frame 提取的帧
+     * @param imageData 帧的JPEG数据
+     * @param width 最大宽度
+     * @param height 最大高度
+     * @param quality 质量 (0-100)
+     * @return 编码后的缩略图数据，失败时返回null
+     */
+    byte[] createThumbnail(ExtractedFrame frame, byte[] imageData, int width, int height, int quality);
+
+    /**
+     * 是否使用调用方解码的像素，为false时调用方不必为缩略图解码整帧
+     */
+    default boolean usesDecodedImage() {
+        return false;
+    }
+
+    /**
+     * 基于调用方已解码的像素生成缩略图
+     * 进程内实现可直接使用像素避免重复解码，默认按JPEG数据生成
+     * @param decoded 已解码的帧图像，可能为null
+     */
+    default byte[] createThumbnail(ExtractedFrame frame, byte[] imageData, BufferedImage decoded,
+                                   int width, int height, int quality) {
+        return createThumbnail(frame, imageData, width, height, quality);
+    }
+}
@@ -1,18 +1,26 @@
 package com.videoframecatcher.service;
 
-import org.springframework.scheduling.annotation.Async;
+import java.io.InputStream;
 
 public interface VideoProcessingService {
 
     /**
-     * 异步处理视频
+     * 异步处理视频：加入持久化的处理队列，由任意实例的工作线程领取执行
      * @param albumId 相册ID
      */
-    @Async
     void processVideoAsync(Long albumId);
 
     /**
-     * 同步处理视频（用于测试）
+     * 处理仍在上传的视频（渐进式接收），帧随上传进度提取和入库
+     * 视频数据读完时文件已完整，随后补全元数据和内容哈希
+     * @param albumId 相册ID，其视频路径在上传完成后即为完整文件
+     * @param videoData 跟随上传进度读取的视频数据，处理结束后关闭
+     */
+    void processVideoProgressive(Long albumId, InputStream videoData);
+
+    /**
+     * 同步处理视频（由处理队列的工作线程调用）
+     * 失败时相册置为失败并抛出异常，取消时相册置为已取消并正常返回
      * @param albumId 相册ID
      */
     void processVideo(Long albumId);
@@ -25,8 +33,27 @@ public interface VideoProcessingService {
     double getProcessingProgress(Long albumId);
 
     /**
-     * 停止处理
+     * 停止处理：终止该相册的FFmpeg进程和排队中的帧处理，等待处理线程退出
      * @param albumId 相册ID
      */
     void stopProcessing(Long albumId);
+
+    /**
+     * 取消处理但不等待：终止该相册的FFmpeg进程并中止帧处理后立即返回，处理线程随后自行退出
+     * @param albumId 相册ID
+     */
+    void cancelProcessing(Long albumId);
+
+    /**
+     * 放弃处理：与取消相同地终止本地处理，但不更新相册状态（任务已由其他实例接管）
+     * @param albumId 相册ID
+     */
+    void abandonProcessing(Long albumId);
+
+    /**
+     * 调整帧处理流水线参与处理的工作线程比例，作用于正在处理和之后开始处理的相册
+     * 被暂停的编码线程关闭其编码进程；之后开始处理的相册按比例缩减预留的解码进程和编码器
+     * @param fraction 比例（0-1]，1表示全部工作线程
+     */
+    void setPipelineConcurrency(double fraction);
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package com.videoframecatcher.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * 面积平均（box）缩小算法，每个目标像素取其覆盖的源像素区域按覆盖面积加权的平均值
+ * 先纵向后横向分离计算：纵向累加是对整行连续字节的乘加，占绝大部分计算量，
+ * 在jdk.incubator.vector模块可用时由Vector API完成，否则使用标量循环
+ */
+final class AreaAverageScaler {
+
+    private static final Logger logger = LoggerFactory.getLogger(AreaAverageScaler.class);
+
+    private static final int CHANNELS = 3;
+
+    private static final boolean VECTOR_AVAILABLE = ModuleLayer.boot()
+            .findModule("jdk.incubator.vector")
+            .isPresent();
+
+    static {
+        if (!VECTOR_AVAILABLE) {
+            logger.info("jdk.incubator.vector not available, thumbnail downscaling uses scalar loops");
+        }
+    }
+
+    private AreaAverageScaler() {
+    }
+
+    /**
+     * 将图像缩小到指定尺寸（目标尺寸大于源尺寸时按源尺寸处理）
+     * @return TYPE_3BYTE_BGR图像
+     */
+    static BufferedImage scale(BufferedImage source, int targetWidth, int targetHeight) {
+        BufferedImage src = toBgr(source);
+        int srcWidth = src.getWidth();
+        int srcHeight = src.getHeight();
+        int dstWidth = Math.max(1, Math.min(targetWidth, srcWidth));
+        int dstHeight = Math.max(1, Math.min(targetHeight, srcHeight));
+
+        ComponentSampleModel sampleModel = (ComponentSampleModel) src.getRaster().getSampleModel();
+        int srcStride = sampleModel.getScanlineStride();
+        byte[] srcPixels = ((DataBufferByte) src.getRaster().getDataBuffer()).getData();
+
+        BufferedImage dst = new BufferedImage(dstWidth, dstHeight, BufferedImage.TYPE_3BYTE_BGR);
+        byte[] dstPixels = ((DataBufferByte) dst.getRaster().getDataBuffer()).getData();
+
+        Weights rows = Weights.of(srcHeight, dstHeight);
+        Weights columns = Weights.of(srcWidth, dstWidth);
+        int rowLength = srcWidth * CHANNELS;
+        float[] accumulator = new float[rowLength];
+
+        for (int y = 0; y < dstHeight; y++) {
+            // 纵向：把覆盖的源行按权重累加为一行
+            Arrays.fill(accumulator, 0f);
+            int firstRow = rows.first[y];
+            float[] rowWeights = rows.weights[y];
+            for (int k = 0; k < rowWeights.length; k++) {
+                int offset = (firstRow + k) * srcStride;
+                if (VECTOR_AVAILABLE) {
+                    VectorRowAccumulator.accumulate(srcPixels, offset, accumulator, rowLength, rowWeights[k]);
+                } else {
+                    accumulateScalar(srcPixels, offset, accumulator, 0, rowLength, rowWeights[k]);
+                }
+            }
+
+            // 横向：对累加行按列权重求和得到目标像素
+            int dstOffset = y * dstWidth * CHANNELS;
+            for (int x = 0; x < dstWidth; x++) {
+                int firstColumn = columns.first[x];
+                float[] columnWeights = columns.weights[x];
+                float b = 0f;
+                float g = 0f;
+                float r = 0f;
+                for (int k = 0; k < columnWeights.length; k++) {
+                    int index = (firstColumn + k) * CHANNELS;
+                    float w = columnWeights[k];
+                    b += accumulator[index] * w;
+                    g += accumulator[index + 1] * w;
+                    r += accumulator[index + 2] * w;
+                }
+                int out = dstOffset + x * CHANNELS;
+                dstPixels[out] = toByte(b);
+                dstPixels[out + 1] = toByte(g);
+                dstPixels[out + 2] = toByte(r);
+            }
+        }
+        return dst;
+    }
+
+    static void accumulateScalar(byte[] src, int srcOffset, float[] accumulator, int accumulatorOffset,
+                                 int length, float weight) {
+        for (int i = 0; i < length; i++) {
+            accumulator[accumulatorOffset + i] += (src[srcOffset + i] & 0xFF) * weight;
+        }
+    }
+
+    private static byte toByte(float value) {
+        int rounded = Math.round(value);
+        return (byte) Math.max(0, Math.min(255, rounded));
+    }
+
+    /**
+     * 转换为像素交错的BGR字节图像；ImageIO解码的彩色JPEG通常已是该格式，无需复制
+     */
+    private static BufferedImage toBgr(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR
+                && image.getRaster().getSampleModel() instanceof ComponentSampleModel
+                && image.getRaster().getParent() == null) {
+            return image;
+        }
+        BufferedImage converted = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_3BYTE_BGR);
+        Graphics2D graphics = converted.createGraphics();
+        try {
+            graphics.drawImage(image, 0, 0, null);
+        } finally {
+            graphics.dispose();
+        }
+        return converted;
+    }
+
+    /**
+     * 一个方向上每个目标像素覆盖的源像素范围及归一化权重
+     */
+    private static final class Weights {
+        private final int[] first;
+        private final float[][] weights;
+
+        private Weights(int[] first, float[][] weights) {
+            this.first = first;
+            this.weights = weights;
+        }
+
+        static Weights of(int sourceSize, int targetSize) {
+            double ratio = (double) sourceSize / targetSize;
+            int[] first = new int[targetSize];
+            float[][] weights = new float[targetSize][];
+            for (int i = 0; i < targetSize; i++) {
+                double start = i * ratio;
+                double end = Math.min(sourceSize, (i + 1) * ratio);
+                int from = (int) Math.floor(start);
+                int to = Math.min(sourceSize, (int) Math.ceil(end));
+                float[] w = new float[Math.max(1, to - from)];
+                for (int j = from; j < from + w.length; j++) {
+                    double covered = Math.min(j + 1, end) - Math.max(j, start);
+                    w[j - from] = (float) (Math.max(0, covered) / ratio);
+                }
+                first[i] = from;
+                weights[i] = w;
+            }
+            return new Weights(first, weights);
+        }
+    }
+}
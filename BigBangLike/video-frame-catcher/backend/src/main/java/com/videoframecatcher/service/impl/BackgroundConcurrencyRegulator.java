@@ -0,0 +1,103 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.service.VideoProcessingService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * 后台处理并发的自适应调节（加性增、乘性减）
+ * 每个周期检查前台图像请求的p95耗时和系统平均负载：任一超出阈值时按比例缩小后台并发，否则逐步恢复到配置值
+ * 后台并发以比例表示，不低于配置的下限，作用于流水线各阶段的活动线程数（暂停的编码线程关闭其编码进程）、
+ * FFmpeg进程数上限（短进程和相册的长进程预留都按它等待）以及之后开始的相册预留的解码进程和编码器数
+ */
+@Component
+public class BackgroundConcurrencyRegulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(BackgroundConcurrencyRegulator.class);
+
+    private final ServingLatencyMonitor latencyMonitor;
+    private final ProcessGovernor processGovernor;
+    private final VideoProcessingService videoProcessingService;
+    private final OperatingSystemMXBean operatingSystem = ManagementFactory.getOperatingSystemMXBean();
+
+    private volatile double fraction = 1.0;
+
+    @Value("${processing.adaptive.enabled:false}")
+    private boolean enabled;
+
+    @Value("${processing.adaptive.latency-slo-ms:250}")
+    private double latencySloMillis;
+
+    @Value("${processing.adaptive.max-load-per-core:1.5}")
+    private double maxLoadPerCore;
+
+    @Value("${processing.adaptive.min-fraction:0.25}")
+    private double minFraction;
+
+    @Value("${processing.adaptive.increase-step:0.1}")
+    private double increaseStep;
+
+    @Value("${processing.adaptive.decrease-factor:0.5}")
+    private double decreaseFactor;
+
+    @Value("${processing.adaptive.min-samples:20}")
+    private int minSamples;
+
+    public BackgroundConcurrencyRegulator(ServingLatencyMonitor latencyMonitor,
+                                          ProcessGovernor processGovernor,
+                                          VideoProcessingService videoProcessingService,
+                                          MeterRegistry meterRegistry) {
+        this.latencyMonitor = latencyMonitor;
+        this.processGovernor = processGovernor;
+        this.videoProcessingService = videoProcessingService;
+        Gauge.builder("processing.background.concurrency", this, regulator -> regulator.fraction)
+                .description("Fraction of configured background processing concurrency currently allowed")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(fixedDelayString = "${processing.adaptive.interval-ms:5000}")
+    public void adjust() {
+        ServingLatencyMonitor.Window window = latencyMonitor.drain();
+        if (!enabled) {
+            return;
+        }
+        // 请求太少时p95不可靠，只看负载
+        boolean latencyExceeded = window.requests() >= minSamples && window.p95Millis() > latencySloMillis;
+        double loadPerCore = loadPerCore();
+        boolean loadExceeded = loadPerCore > maxLoadPerCore;
+
+        double current = fraction;
+        double target = latencyExceeded || loadExceeded
+                ? Math.max(minFraction, current * decreaseFactor)
+                : Math.min(1.0, current + increaseStep);
+        if (target == current) {
+            return;
+        }
+        fraction = target;
+        int maxProcesses = Math.max(1, (int) Math.round(processGovernor.getConfiguredMaxProcesses() * target));
+        processGovernor.setMaxProcesses(maxProcesses);
+        videoProcessingService.setPipelineConcurrency(target);
+        logger.info("Background concurrency {} to {} ({} ffmpeg processes): p95 {} ms over {} requests, load {} per core",
+                target < current ? "reduced" : "raised", String.format("%.2f", target), maxProcesses,
+                String.format("%.1f", window.p95Millis()), window.requests(), String.format("%.2f", loadPerCore));
+    }
+
+    /**
+     * 每核平均负载，平台不支持时为0
+     */
+    private double loadPerCore() {
+        double load = operatingSystem.getSystemLoadAverage();
+        if (load < 0) {
+            return 0;
+        }
+        return load / Math.max(1, operatingSystem.getAvailableProcessors());
+    }
+}
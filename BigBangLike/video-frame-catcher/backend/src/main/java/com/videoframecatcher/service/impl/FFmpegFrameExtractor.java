@@ -0,0 +1,50 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.entity.ExtractionMode;
+import com.videoframecatcher.service.ExtractedFrame;
+import com.videoframecatcher.service.FFmpegService;
+import com.videoframecatcher.service.FrameExtractor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Consumer;
+
+/**
+ * 基于FFmpeg进程的帧提取（默认后端），支持全部提取模式
+ */
+@Service
+@ConditionalOnProperty(name = "image.processing.extractor", havingValue = "ffmpeg", matchIfMissing = true)
+public class FFmpegFrameExtractor implements FrameExtractor {
+
+    private final FFmpegService ffmpegService;
+
+    public FFmpegFrameExtractor(FFmpegService ffmpegService) {
+        this.ffmpegService = ffmpegService;
+    }
+
+    @Override
+    public String getName() {
+        return "ffmpeg";
+    }
+
+    @Override
+    public boolean supports(ExtractionMode mode) {
+        return true;
+    }
+
+    @Override
+    public int extractFrames(String videoPath, ExtractionMode mode, double framesPerSecond,
+                             Consumer<ExtractedFrame> frameConsumer) {
+        return ffmpegService.extractFramesStreaming(videoPath, mode, framesPerSecond, frameConsumer);
+    }
+
+    @Override
+    public int extractFrames(String videoPath, ExtractionMode mode, double framesPerSecond, int skipFrames,
+                             Consumer<ExtractedFrame> frameConsumer) {
+        // 固定帧率的帧号与时间一一对应，可以直接定位；其他模式的选帧依赖前面的画面，只能从头解码
+        if (skipFrames > 0 && (mode == null || mode == ExtractionMode.FIXED_RATE)) {
+            return ffmpegService.extractFramesStreaming(videoPath, framesPerSecond, skipFrames, frameConsumer);
+        }
+        return FrameExtractor.super.extractFrames(videoPath, mode, framesPerSecond, skipFrames, frameConsumer);
+    }
+}
@@ -0,0 +1,139 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.service.HeicBatchEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Consumer;
+
+/**
+ * 基于常驻FFmpeg进程的HEIC批量编码器
+ * 输入：JPEG帧通过image2pipe写入stdin；输出：HEVC裸流写到stdout，按AUD切分为逐帧数据，
+ * 每帧再封装为HEIF文件后回调；封装失败的帧按编码失败回调
+ */
+class FFmpegHeicBatchEncoder implements HeicBatchEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(FFmpegHeicBatchEncoder.class);
+
+    private final ProcessRunner.RunningProcess process;
+    private final OutputStream stdin;
+    private final Thread outputReader;
+
+    // 已提交但尚未输出的帧回调，编码器按输入顺序输出
+    private final Deque<Consumer<byte[]>> pending = new ArrayDeque<>();
+    private volatile boolean failed;
+    private boolean closed;
+
+    /**
+     * @param process 以pipeStdin和streamStdout方式启动的编码进程，stderr由执行器读取
+     */
+    FFmpegHeicBatchEncoder(ProcessRunner.RunningProcess process) {
+        this.process = process;
+        this.stdin = process.getOutputStream();
+        this.outputReader = Thread.ofVirtual().name("heic-encoder-out").start(this::readOutput);
+    }
+
+    @Override
+    public void submit(byte[] jpegData, Consumer<byte[]> onEncoded) throws IOException {
+        synchronized (pending) {
+            if (closed) {
+                throw new IllegalStateException("HEIC batch encoder already closed");
+            }
+            if (failed) {
+                throw new IOException("HEIC batch encoder failed: " + process.getErrorTail());
+            }
+            pending.addLast(onEncoded);
+        }
+        try {
+            // 写入在锁外进行，编码器输出积压时在这里阻塞，形成反压
+            synchronized (stdin) {
+                stdin.write(jpegData);
+                stdin.flush();
+            }
+        } catch (IOException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        synchronized (pending) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        try {
+            try {
+                stdin.close();
+            } catch (IOException e) {
+                logger.debug("Failed to close HEIC encoder stdin", e);
+            }
+            outputReader.join();
+            FFmpegServiceImpl.ProcessResult result = process.await();
+            if (result.getExitCode() != 0) {
+                logger.error("HEIC batch encoder exited with code {}: {}", result.getExitCode(), result.getError());
+            }
+        } finally {
+            if (process.isAlive()) {
+                process.destroy();
+            }
+            // 未得到输出的帧按编码失败回调，由调用方回退到原始格式
+            failPending();
+        }
+    }
+
+    private void readOutput() {
+        HevcAccessUnitReader reader = new HevcAccessUnitReader(process.getInputStream());
+        try {
+            byte[] accessUnit;
+            while ((accessUnit = reader.nextAccessUnit()) != null) {
+                Consumer<byte[]> callback;
+                synchronized (pending) {
+                    callback = pending.pollFirst();
+                }
+                if (callback == null) {
+                    logger.warn("HEIC batch encoder produced more frames than submitted");
+                    continue;
+                }
+                callback.accept(toHeif(accessUnit));
+            }
+        } catch (Exception e) {
+            // 回调异常（如下游流水线已失败）或读取异常时终止编码进程
+            logger.warn("HEIC batch encoder output aborted: {}", e.toString());
+            failed = true;
+            process.destroy();
+        }
+    }
+
+    private byte[] toHeif(byte[] accessUnit) {
+        try {
+            return HeifWriter.wrap(accessUnit);
+        } catch (IOException e) {
+            logger.warn("HEIC batch encoder produced an unusable frame: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void failPending() {
+        while (true) {
+            Consumer<byte[]> callback;
+            synchronized (pending) {
+                callback = pending.pollFirst();
+            }
+            if (callback == null) {
+                return;
+            }
+            try {
+                callback.accept(null);
+            } catch (RuntimeException e) {
+                logger.debug("Pending HEIC callback failed", e);
+            }
+        }
+    }
+}
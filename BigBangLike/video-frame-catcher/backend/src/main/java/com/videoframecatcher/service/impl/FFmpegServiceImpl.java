@@ -1,20 +1,45 @@
 package com.videoframecatcher.service.impl;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.videoframecatcher.entity.ExtractionMode;
+import com.videoframecatcher.service.ExtractedFrame;
 import com.videoframecatcher.service.FFmpegService;
+import com.videoframecatcher.service.HeicBatchEncoder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 @Service
 public class FFmpegServiceImpl implements FFmpegService {
@@ -27,41 +52,69 @@ public class FFmpegServiceImpl implements FFmpegService {
     @Value("${ffmpeg.ffprobe-path:ffprobe}")
     private String ffprobePath;
 
-    // 视频信息解析正则表达式
-    private static final Pattern DURATION_PATTERN = Pattern.compile(
-        "Duration: (\\d{2}):(\\d{2}):(\\d{2})\\.(\\d{2})"
-    );
-    private static final Pattern FRAME_RATE_PATTERN = Pattern.compile(
-        "(\\d+(?:\\.\\d+)?) fps"
-    );
-    private static final Pattern DIMENSIONS_PATTERN = Pattern.compile(
-        "(\\d{3,4})x(\\d{3,4})"
+    @Value("${ffmpeg.frame-extraction.max-parallel-threads:4}")
+    private int maxParallelThreads;
+
+    @Value("${ffmpeg.frame-extraction.segment.min-duration:120}")
+    private double minSegmentDuration;
+
+    @Value("${ffmpeg.frame-extraction.scene.threshold:0.3}")
+    private double sceneThreshold;
+
+    @Value("${ffmpeg.frame-extraction.scene.min-interval:1.0}")
+    private double sceneMinInterval;
+
+    @Value("${ffmpeg.frame-extraction.scene.max-interval:10.0}")
+    private double sceneMaxInterval;
+
+    @Value("${ffmpeg.process.extraction-timeout:21600}")
+    private long extractionTimeoutSeconds;
+
+    // 同时处理的相册数，用于把CPU令牌平分给各相册的解码和编码进程
+    @Value("${processing.queue.concurrency:2}")
+    private int albumConcurrency;
+
+    private final ProcessRunner processRunner;
+    private final ObjectMapper objectMapper;
+    private final VideoProbeCache probeCache;
+
+    // 探测时扫描视频包的时长（秒），用于估算关键帧间隔；只读取包头，不解码
+    private static final String PROBE_PACKET_INTERVAL = "%+30";
+
+    // 单次解码期间扫描输出目录、交付新写完的帧的间隔（毫秒）
+    private static final long SINGLE_PASS_POLL_MILLIS = 500;
+
+    // showinfo滤镜输出的帧显示时间，如 "[Parsed_showinfo_0 @ 0x...] n:   0 pts:  12800 pts_time:1.0 ..."
+    private static final Pattern SHOWINFO_PTS_PATTERN = Pattern.compile(
+        "\\[Parsed_showinfo[^\\]]*\\].*?\\bpts_time:\\s*(-?\\d+(?:\\.\\d+)?)"
     );
 
-    @Override
-    public VideoMetadata extractMetadata(String videoPath) {
-        try {
-            logger.info("Extracting metadata from video: {}", videoPath);
+    // 进度回调所需的FFmpeg参数：进度键值对写到stderr，关闭默认的状态行
+    private static final List<String> PROGRESS_ARGS = List.of("-progress", "pipe:2", "-nostats");
 
-            List<String> command = List.of(
-                ffprobePath,
-                "-v", "error",
-                "-show_entries", "stream=width,height,r_frame_rate,duration,codec_name",
-                "-show_entries", "format=duration,size",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                videoPath
-            );
+    // 渐进式接收时FFmpeg从stdin读取视频
+    private static final String PIPE_INPUT = "pipe:0";
 
-            ProcessResult result = executeCommand(command);
+    // 写入stdin的缓冲区大小
+    private static final int STDIN_BUFFER_SIZE = 256 * 1024;
 
-            if (result.getExitCode() != 0) {
-                throw new RuntimeException("Failed to extract video metadata: " + result.getError());
-            }
+    public FFmpegServiceImpl(ProcessRunner processRunner, ObjectMapper objectMapper,
+                             @Value("${ffmpeg.probe.cache-size:256}") int probeCacheSize) {
+        this.processRunner = processRunner;
+        this.objectMapper = objectMapper;
+        this.probeCache = new VideoProbeCache(probeCacheSize);
+    }
 
-            String output = result.getOutput();
-            logger.debug("FFprobe output: {}", output);
+    @Override
+    public VideoMetadata extractMetadata(String videoPath) {
+        return extractMetadata(videoPath, null);
+    }
 
-            return parseMetadata(output);
+    @Override
+    public VideoMetadata extractMetadata(String videoPath, String contentHash) {
+        try {
+            logger.info("Extracting metadata from video: {}", videoPath);
+            return probe(videoPath, contentHash);
 
         } catch (Exception e) {
             logger.error("Failed to extract metadata from video: {}", videoPath, e);
@@ -69,30 +122,161 @@ public class FFmpegServiceImpl implements FFmpegService {
         }
     }
 
+    /**
+     * 一次ffprobe调用获取格式、全部流和关键帧信息，结果按文件的抽样指纹缓存
+     * 校验、元数据提取和分段规划共用同一次探测
+     */
+    private VideoMetadata probe(String videoPath) throws IOException, InterruptedException {
+        return probe(videoPath, null);
+    }
+
+    /**
+     * @param contentHash 完整文件的SHA-256，不为null时也按内容哈希查找和缓存
+     */
+    private VideoMetadata probe(String videoPath, String contentHash) throws IOException, InterruptedException {
+        String fingerprint = VideoProbeCache.fingerprint(Paths.get(videoPath));
+        String contentKey = contentHash != null ? VideoProbeCache.contentKey(contentHash) : null;
+        VideoMetadata cached = contentKey != null ? probeCache.get(contentKey) : null;
+        if (cached == null) {
+            cached = probeCache.get(fingerprint);
+        }
+        if (cached != null) {
+            logger.debug("Using cached probe result for video: {}", videoPath);
+            // 同一次处理中的后续探测（分段规划等）按路径查找
+            probeCache.put(fingerprint, cached);
+            return cached;
+        }
+
+        List<String> command = List.of(
+            ffprobePath,
+            "-v", "error",
+            "-of", "json",
+            "-show_format",
+            "-show_streams",
+            "-show_entries", "packet=stream_index,pts_time,flags",
+            "-read_intervals", PROBE_PACKET_INTERVAL,
+            videoPath
+        );
+
+        ProcessResult result = executeCommand(command);
+
+        if (result.getExitCode() != 0) {
+            throw new RuntimeException("Failed to probe video: " + result.getError());
+        }
+
+        VideoMetadata metadata = VideoProbeParser.parse(objectMapper.readTree(result.getOutput()));
+        logger.info("Probed video {}: {}x{} {} at {} fps, {}s, rotation {}, keyframe interval {}s",
+                videoPath, metadata.getWidth(), metadata.getHeight(), metadata.getVideoCodec(),
+                metadata.getExactFrameRate(), metadata.getDuration(), metadata.getRotation(),
+                metadata.getKeyframeInterval());
+        probeCache.put(fingerprint, metadata);
+        if (contentKey != null) {
+            probeCache.put(contentKey, metadata);
+        }
+        return metadata;
+    }
+
     @Override
     public List<String> extractFrames(String videoPath, String outputPattern, double framesPerSecond) {
+        return extractFrames(videoPath, outputPattern, framesPerSecond, null);
+    }
+
+    private List<String> extractFrames(String videoPath, String outputPattern, double framesPerSecond,
+                                       DoubleConsumer progressListener) {
         try {
             logger.info("Extracting frames from video: {} at {} fps", videoPath, framesPerSecond);
 
-            List<String> command = new ArrayList<>();
-            command.add(ffmpegPath);
-            command.add("-i");
-            command.add(videoPath);
-            command.add("-vf");
-            command.add(String.format("fps=%s", framesPerSecond));
-            command.add("-q:v");
-            command.add("2"); // 高质量
+            List<Segment> segments = planSegments(videoPath, framesPerSecond, 0);
+            SegmentProgress progress = new SegmentProgress(segments.size(), progressListener);
+
+            runSegments(segments, (segment, liveProcesses) -> {
+                List<String> command = new ArrayList<>();
+                command.add(ffmpegPath);
+                command.addAll(segmentInputArgs(segment));
+                command.add("-i");
+                command.add(videoPath);
+                command.addAll(progress.args());
+                command.add("-vf");
+                command.add(String.format("fps=%s", framesPerSecond));
+                command.add("-q:v");
+                command.add("2"); // 高质量
+                command.addAll(segmentOutputArgs(segment, true));
+                command.add("-y"); // 覆盖现有文件
+                command.add(outputPattern);
+
+                ProcessResult result = processRunner.run(command, extractionOptions(liveProcesses, segments.size())
+                        .progressListener(progress.forSegment(segment.index())));
+
+                if (result.getExitCode() != 0) {
+                    throw new RuntimeException("Failed to extract frames: " + result.getError());
+                }
+                return 0;
+            });
+
+            List<String> framePaths = listExtractedFrames(outputPattern);
+            logger.info("Frame extraction completed successfully: {} frames", framePaths.size());
+            return framePaths;
+
+        } catch (Exception e) {
+            logger.error("Failed to extract frames from video: {}", videoPath, e);
+            throw new RuntimeException("Failed to extract frames", e);
+        }
+    }
+
+    @Override
+    public List<ExtractedFrame> extractFrames(String videoPath, String outputPattern, ExtractionMode mode,
+                                              double framesPerSecond) {
+        return extractFrames(videoPath, outputPattern, mode, framesPerSecond, null);
+    }
+
+    @Override
+    public List<ExtractedFrame> extractFrames(String videoPath, String outputPattern, ExtractionMode mode,
+                                              double framesPerSecond, DoubleConsumer progressListener) {
+        if (mode == null || mode == ExtractionMode.FIXED_RATE) {
+            return extractFrames(videoPath, outputPattern, framesPerSecond, progressListener).stream()
+                .map(path -> {
+                    int frameNumber = parseFrameNumber(path, outputPattern);
+                    return ExtractedFrame.fromFile(frameNumber, (frameNumber - 1) / framesPerSecond, path);
+                })
+                .toList();
+        }
+
+        try {
+            logger.info("Extracting frames from video: {} in {} mode", videoPath, mode.getValue());
+
+            SegmentProgress progress = new SegmentProgress(1, progressListener);
+            List<String> command = variableRateCommand(videoPath, mode);
+            command.addAll(progress.args());
             command.add("-y"); // 覆盖现有文件
             command.add(outputPattern);
 
-            ProcessResult result = executeCommand(command);
+            // 第n条showinfo日志对应第n个输出文件；stderr只保留末尾，时间戳在读取时收集
+            List<Double> timestamps = Collections.synchronizedList(new ArrayList<>());
+            ProcessResult result = processRunner.run(command, extractionOptions(null, 1)
+                    .progressListener(progress.forSegment(0))
+                    .stderrListener(line -> {
+                        Double timestamp = parseShowinfoTimestamp(line);
+                        if (timestamp != null) {
+                            timestamps.add(timestamp);
+                        }
+                    }));
 
             if (result.getExitCode() != 0) {
                 throw new RuntimeException("Failed to extract frames: " + result.getError());
             }
 
-            logger.info("Frame extraction completed successfully");
-            return result.getOutputLines();
+            List<ExtractedFrame> frames = new ArrayList<>();
+            for (String framePath : listExtractedFrames(outputPattern)) {
+                int frameNumber = parseFrameNumber(framePath, outputPattern);
+                if (frameNumber < 1 || frameNumber > timestamps.size()) {
+                    logger.warn("No presentation timestamp for extracted frame: {}", framePath);
+                    continue;
+                }
+                frames.add(ExtractedFrame.fromFile(frameNumber, timestamps.get(frameNumber - 1), framePath));
+            }
+
+            logger.info("Frame extraction completed successfully: {} frames", frames.size());
+            return frames;
 
         } catch (Exception e) {
             logger.error("Failed to extract frames from video: {}", videoPath, e);
@@ -100,28 +284,422 @@ public class FFmpegServiceImpl implements FFmpegService {
         }
     }
 
+    @Override
+    public int extractFramesStreaming(String videoPath, ExtractionMode mode, double framesPerSecond,
+                                      Consumer<ExtractedFrame> frameConsumer) {
+        if (mode == null || mode == ExtractionMode.FIXED_RATE) {
+            return extractFramesStreaming(videoPath, framesPerSecond, frameConsumer);
+        }
+
+        try {
+            logger.info("Streaming frames from video: {} in {} mode", videoPath, mode.getValue());
+
+            int frameCount = streamVariableRate(videoPath, mode, frameConsumer, null);
+
+            logger.info("Frame streaming completed successfully: {} frames", frameCount);
+            return frameCount;
+
+        } catch (RuntimeException e) {
+            logger.error("Failed to stream frames from video: {}", videoPath, e);
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to stream frames from video: {}", videoPath, e);
+            throw new RuntimeException("Failed to stream frames", e);
+        }
+    }
+
+    @Override
+    public int extractFramesStreaming(String videoPath, double framesPerSecond, Consumer<ExtractedFrame> frameConsumer) {
+        return extractFramesStreaming(videoPath, framesPerSecond, 0, frameConsumer);
+    }
+
+    @Override
+    public int extractFramesStreaming(String videoPath, double framesPerSecond, int skipFrames,
+                                      Consumer<ExtractedFrame> frameConsumer) {
+        try {
+            logger.info("Streaming frames from video: {} at {} fps starting after frame {}",
+                    videoPath, framesPerSecond, skipFrames);
+
+            List<Segment> segments = planSegments(videoPath, framesPerSecond, skipFrames);
+            int frameCount = runSegments(segments, (segment, liveProcesses) ->
+                    streamSegment(videoPath, framesPerSecond, segment, segments.size(), frameConsumer, liveProcesses, null));
+
+            logger.info("Frame streaming completed successfully: {} frames", frameCount);
+            return frameCount;
+
+        } catch (RuntimeException e) {
+            logger.error("Failed to stream frames from video: {}", videoPath, e);
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to stream frames from video: {}", videoPath, e);
+            throw new RuntimeException("Failed to stream frames", e);
+        }
+    }
+
+    @Override
+    public int extractFramesProgressive(InputStream videoData, ExtractionMode mode, double framesPerSecond,
+                                        Consumer<ExtractedFrame> frameConsumer) {
+        try {
+            logger.info("Streaming frames progressively from stdin in {} mode", mode.getValue());
+
+            // 输入不可定位，只能由一个进程从头解码
+            int frameCount = mode == ExtractionMode.FIXED_RATE
+                    ? streamSegment(PIPE_INPUT, framesPerSecond, new Segment(0, 0, 0, 0, 1), 1,
+                            frameConsumer, null, videoData)
+                    : streamVariableRate(PIPE_INPUT, mode, frameConsumer, videoData);
+
+            logger.info("Progressive frame streaming completed successfully: {} frames", frameCount);
+            return frameCount;
+
+        } catch (RuntimeException e) {
+            logger.error("Failed to stream frames progressively", e);
+            throw e;
+        } catch (Exception e) {
+            logger.error("Failed to stream frames progressively", e);
+            throw new RuntimeException("Failed to stream frames", e);
+        }
+    }
+
+    /**
+     * @param stdinSource 不为null时FFmpeg从stdin读取该输入（videoPath应为pipe:0），不设超时
+     */
+    private int streamSegment(String videoPath, double framesPerSecond, Segment segment, int segmentCount,
+                              Consumer<ExtractedFrame> frameConsumer, Set<Process> liveProcesses,
+                              InputStream stdinSource) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.addAll(segmentInputArgs(segment));
+        command.add("-i");
+        command.add(videoPath);
+        command.addAll(List.of(
+            "-vf", String.format("fps=%s", framesPerSecond),
+            "-q:v", "2" // 高质量
+        ));
+        command.addAll(segmentOutputArgs(segment, false));
+        command.addAll(List.of(
+            "-f", "image2pipe",
+            "-c:v", "mjpeg",
+            "pipe:1"
+        ));
+        ProcessRunner.RunningProcess process = processRunner.start(command,
+                inputOptions(extractionOptions(liveProcesses, segmentCount).streamStdout(), stdinSource));
+        StdinFeeder feeder = stdinSource != null ? new StdinFeeder(process, stdinSource) : null;
+        try {
+            int frameCount = 0;
+            MjpegFrameReader reader = new MjpegFrameReader(process.getInputStream());
+            byte[] jpeg;
+            while ((jpeg = reader.nextFrame()) != null) {
+                // 帧号从1开始，与文件模式的frame_%06d编号一致；fps滤镜输出的第一帧位于0秒
+                int frameNumber = segment.firstFrameNumber() + frameCount;
+                double timestamp = (frameNumber - 1) / framesPerSecond;
+                frameCount++;
+                frameConsumer.accept(ExtractedFrame.fromData(frameNumber, timestamp, jpeg));
+            }
+
+            ProcessResult result = process.await();
+            if (feeder != null) {
+                feeder.rethrowFailure();
+            }
+
+            if (result.getExitCode() != 0) {
+                throw new RuntimeException("Failed to extract frames: " + result.getError());
+            }
+            if (segment.isBounded() && frameCount < segment.maxFrames()) {
+                logger.warn("Segment {} produced {} of {} expected frames",
+                        segment.index(), frameCount, segment.maxFrames());
+            }
+            return frameCount;
+
+        } finally {
+            if (process.isAlive()) {
+                process.destroy();
+            }
+            if (feeder != null) {
+                feeder.stop();
+            }
+        }
+    }
+
+    /**
+     * 可变帧率模式的流式提取，每帧的时间戳来自showinfo日志
+     * showinfo在帧送入编码器之前输出日志，stderr读取线程按顺序把时间戳交给stdout读取线程
+     */
+    private int streamVariableRate(String videoPath, ExtractionMode mode,
+                                   Consumer<ExtractedFrame> frameConsumer, InputStream stdinSource) throws Exception {
+        List<String> command = variableRateCommand(videoPath, mode);
+        command.addAll(List.of(
+            "-f", "image2pipe",
+            "-c:v", "mjpeg",
+            "pipe:1"
+        ));
+        BlockingQueue<Double> timestamps = new LinkedBlockingQueue<>();
+        ProcessRunner.RunningProcess process = processRunner.start(command, inputOptions(extractionOptions(null, 1)
+                .streamStdout()
+                .stderrListener(line -> {
+                    Double timestamp = parseShowinfoTimestamp(line);
+                    if (timestamp != null) {
+                        timestamps.add(timestamp);
+                    }
+                }), stdinSource));
+        StdinFeeder feeder = stdinSource != null ? new StdinFeeder(process, stdinSource) : null;
+        try {
+            int frameCount = 0;
+            MjpegFrameReader reader = new MjpegFrameReader(process.getInputStream());
+            byte[] jpeg;
+            while ((jpeg = reader.nextFrame()) != null) {
+                double timestamp = nextTimestamp(timestamps, process, frameCount + 1);
+                frameCount++;
+                frameConsumer.accept(ExtractedFrame.fromData(frameCount, timestamp, jpeg));
+            }
+
+            ProcessResult result = process.await();
+            if (feeder != null) {
+                feeder.rethrowFailure();
+            }
+
+            if (result.getExitCode() != 0) {
+                throw new RuntimeException("Failed to extract frames: " + result.getError());
+            }
+            return frameCount;
+
+        } finally {
+            if (process.isAlive()) {
+                process.destroy();
+            }
+            if (feeder != null) {
+                feeder.stop();
+            }
+        }
+    }
+
+    /**
+     * 取下一帧的时间戳；stderr读取线程可能稍落后于stdout，stderr已读完仍没有时间戳时报错
+     */
+    private double nextTimestamp(BlockingQueue<Double> timestamps, ProcessRunner.RunningProcess process,
+                                 int frameNumber) throws InterruptedException {
+        while (true) {
+            Double timestamp = timestamps.poll(100, TimeUnit.MILLISECONDS);
+            if (timestamp != null) {
+                return timestamp;
+            }
+            if (process.isStderrClosed()) {
+                timestamp = timestamps.poll();
+                if (timestamp == null) {
+                    throw new RuntimeException("Missing presentation timestamp for frame " + frameNumber);
+                }
+                return timestamp;
+            }
+        }
+    }
+
+    /**
+     * 可变帧率模式的公共命令部分（输入、滤镜和帧率控制），调用方追加输出参数
+     * -vsync vfr按帧的实际时间戳输出，不复制或丢弃帧以凑成固定帧率
+     */
+    private List<String> variableRateCommand(String videoPath, ExtractionMode mode) {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        if (mode == ExtractionMode.KEYFRAME) {
+            // 解码器直接跳过非关键帧，非关键帧不会被解码
+            command.addAll(List.of("-skip_frame", "nokey"));
+        }
+        String filter = mode == ExtractionMode.SCENE ? sceneSelectFilter() + ",showinfo" : "showinfo";
+        command.addAll(List.of(
+            "-i", videoPath,
+            "-vf", filter,
+            "-vsync", "vfr",
+            "-q:v", "2" // 高质量
+        ));
+        return command;
+    }
+
+    /**
+     * 场景选帧表达式：第一帧必选；距上次选中超过最大间隔时补选；
+     * 场景变化分数超过阈值且距上次选中不少于最小间隔时选中
+     */
+    private String sceneSelectFilter() {
+        return String.format(
+            "select='gt(isnan(prev_selected_t)+gte(t-prev_selected_t,%s)+gt(scene,%s)*gte(t-prev_selected_t,%s),0)'",
+            sceneMaxInterval, sceneThreshold, sceneMinInterval);
+    }
+
+    private Double parseShowinfoTimestamp(String line) {
+        Matcher matcher = SHOWINFO_PTS_PATTERN.matcher(line);
+        return matcher.find() ? Double.valueOf(matcher.group(1)) : null;
+    }
+
+    @Override
+    public int extractFramesWithThumbnails(String videoPath, double framesPerSecond,
+                                           String framePattern, String thumbnailPattern,
+                                           int heicQuality, int thumbnailWidth, int thumbnailHeight,
+                                           int thumbnailQuality, DoubleConsumer progressListener,
+                                           Consumer<String> frameConsumer) {
+        try {
+            logger.info("Extracting frames and thumbnails in a single pass from video: {} at {} fps",
+                    videoPath, framesPerSecond);
+
+            // 解码一次，split为原尺寸和缩略图两路输出
+            String filterGraph = String.format("[0:v]fps=%s,split=2[full][thumb];[thumb]%s[small]",
+                    framesPerSecond, thumbnailScaleFilter(thumbnailWidth, thumbnailHeight));
+
+            List<Segment> segments = planSegments(videoPath, framesPerSecond, 0);
+            SegmentProgress progress = new SegmentProgress(segments.size(), progressListener);
+
+            // 解码在独立线程中进行，调用线程随之交付已写完的帧
+            FutureTask<Integer> extraction = new FutureTask<>(() -> runSegments(segments, (segment, liveProcesses) -> {
+                List<String> command = new ArrayList<>();
+                command.add(ffmpegPath);
+                command.addAll(segmentInputArgs(segment));
+                command.add("-i");
+                command.add(videoPath);
+                command.addAll(progress.args());
+                command.add("-filter_complex");
+                command.add(filterGraph);
+
+                command.add("-map");
+                command.add("[full]");
+                command.addAll(heicEncoderArgs(heicQuality));
+                command.addAll(segmentOutputArgs(segment, true));
+                // 先写临时文件再改名，目录中出现的帧文件都是完整的
+                command.addAll(List.of("-f", "image2", "-atomic_writing", "1", "-y", framePattern));
+
+                command.add("-map");
+                command.add("[small]");
+                command.addAll(thumbnailEncoderArgs(thumbnailQuality));
+                command.addAll(segmentOutputArgs(segment, true));
+                command.addAll(List.of("-f", "image2", "-atomic_writing", "1", "-y", thumbnailPattern));
+
+                ProcessResult result = processRunner.run(command, extractionOptions(liveProcesses, segments.size())
+                        .progressListener(progress.forSegment(segment.index())));
+
+                if (result.getExitCode() != 0) {
+                    throw new RuntimeException("Failed to extract frames: " + result.getError());
+                }
+                return 0;
+            }));
+            Thread worker = Thread.ofVirtual().name("single-pass-extraction").start(extraction);
+
+            Set<String> delivered = new HashSet<>();
+            try {
+                boolean finished = false;
+                while (!finished) {
+                    try {
+                        extraction.get(SINGLE_PASS_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                        finished = true;
+                    } catch (TimeoutException e) {
+                        // 仍在解码
+                    }
+                    deliverWrittenFrames(framePattern, thumbnailPattern, finished, delivered, frameConsumer);
+                }
+            } finally {
+                // 交付失败或调用线程被中断时终止解码，等FFmpeg进程退出后再返回
+                extraction.cancel(true);
+                worker.join();
+            }
+            logger.info("Single-pass extraction completed successfully: {} frames", delivered.size());
+            return delivered.size();
+
+        } catch (Exception e) {
+            logger.error("Failed to extract frames and thumbnails from video: {}", videoPath, e);
+            throw new RuntimeException("Failed to extract frames and thumbnails", e);
+        }
+    }
+
+    /**
+     * 交付单次解码已写完的帧：原尺寸帧和缩略图由两路输出分别写入，解码进行中只交付缩略图也已写完的帧，
+     * 解码结束后交付其余的帧（缩略图缺失时由调用方处理）
+     * @param delivered 已交付的帧文件路径，交付后加入
+     */
+    private void deliverWrittenFrames(String framePattern, String thumbnailPattern, boolean finished,
+                                      Set<String> delivered, Consumer<String> frameConsumer) throws IOException {
+        for (String framePath : listExtractedFrames(framePattern)) {
+            if (delivered.contains(framePath)) {
+                continue;
+            }
+            int frameNumber = parseFrameNumber(framePath, framePattern);
+            if (!finished && !Files.exists(Paths.get(String.format(thumbnailPattern, frameNumber)))) {
+                continue;
+            }
+            // image2按编码器输出的HEVC裸流逐帧写文件，需封装为HEIF后才是可读的HEIC文件
+            HeifWriter.wrapFile(Paths.get(framePath));
+            delivered.add(framePath);
+            frameConsumer.accept(framePath);
+        }
+    }
+
     @Override
     public boolean convertToHEIC(String inputPath, String outputPath, int quality) {
+        return convertToHEIC(inputPath, null, outputPath, quality);
+    }
+
+    @Override
+    public boolean convertToHEIC(byte[] imageData, String outputPath, int quality) {
+        return convertToHEIC("pipe:0", imageData, outputPath, quality);
+    }
+
+    @Override
+    public List<byte[]> convertToHEIC(List<byte[]> images, int quality) {
+        byte[][] results = new byte[images.size()][];
+        try (HeicBatchEncoder encoder = openHeicBatchEncoder(quality)) {
+            for (int i = 0; i < images.size(); i++) {
+                int index = i;
+                encoder.submit(images.get(i), heicData -> results[index] = heicData);
+            }
+        } catch (Exception e) {
+            logger.error("Batch HEIC conversion failed", e);
+        }
+        return java.util.Arrays.asList(results);
+    }
+
+    @Override
+    public HeicBatchEncoder openHeicBatchEncoder(int quality) {
+        List<String> command = new ArrayList<>();
+        command.add(ffmpegPath);
+        command.addAll(List.of(
+            "-f", "image2pipe",
+            "-c:v", "mjpeg",
+            "-i", "pipe:0",
+            // 每个输入帧对应一个输出帧，不按帧率复制或丢弃
+            "-vsync", "passthrough"
+        ));
+        command.addAll(heicEncoderArgs(quality, true));
+        command.addAll(List.of(
+            "-f", "hevc",
+            "pipe:1"
+        ));
+
+        try {
+            // 常驻进程的生命周期由编码会话管理，不设超时
+            // 每个相册的编码阶段有max-parallel-threads个常驻编码器
+            return new FFmpegHeicBatchEncoder(processRunner.start(command, ProcessRunner.options()
+                    .cpuThreads(threadShare(maxParallelThreads))
+                    .longRunning()
+                    .pipeStdin()
+                    .streamStdout()
+                    .timeout(Duration.ZERO)));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to start HEIC batch encoder", e);
+        }
+    }
+
+    private boolean convertToHEIC(String inputPath, byte[] stdinData, String outputPath, int quality) {
         try {
             logger.info("Converting image to HEIC: {} -> {}", inputPath, outputPath);
 
-            List<String> command = List.of(
-                ffmpegPath,
-                "-i", inputPath,
-                "-c:v", "libx265",
-                "-preset", "medium",
-                "-crf", String.valueOf(quality),
-                "-pix_fmt", "yuv420p",
-                "-y",
-                outputPath
-            );
+            List<String> command = new ArrayList<>();
+            command.add(ffmpegPath);
+            addInput(command, inputPath, stdinData);
+            command.addAll(heicEncoderArgs(quality));
+            // FFmpeg没有HEIF封装器，先输出HEVC裸流，再封装为HEIF
+            command.addAll(List.of("-frames:v", "1", "-f", "hevc", "-y", outputPath));
 
-            ProcessResult result = executeCommand(command);
+            ProcessResult result = processRunner.run(command, ProcessRunner.options().cpuThreads(1).stdin(stdinData));
 
             if (result.getExitCode() != 0) {
                 logger.error("Failed to convert to HEIC: {}", result.getError());
                 return false;
             }
+            HeifWriter.wrapFile(Paths.get(outputPath));
 
             logger.info("HEIC conversion completed successfully");
             return true;
@@ -134,20 +712,32 @@ public class FFmpegServiceImpl implements FFmpegService {
 
     @Override
     public boolean generateThumbnail(String inputPath, String outputPath, int width, int height, int quality) {
+        return generateThumbnail(inputPath, null, outputPath, width, height, quality);
+    }
+
+    @Override
+    public boolean generateThumbnail(byte[] imageData, String outputPath, int width, int height, int quality) {
+        return generateThumbnail("pipe:0", imageData, outputPath, width, height, quality);
+    }
+
+    private boolean generateThumbnail(String inputPath, byte[] stdinData, String outputPath,
+                                      int width, int height, int quality) {
         try {
             logger.info("Generating thumbnail: {} -> {}", inputPath, outputPath);
 
-            List<String> command = List.of(
-                ffmpegPath,
-                "-i", inputPath,
-                "-vf", String.format("scale=%d:%d:force_original_aspect_ratio=decrease", width, height),
-                "-q:v", String.valueOf(quality),
+            List<String> command = new ArrayList<>();
+            command.add(ffmpegPath);
+            addInput(command, inputPath, stdinData);
+            command.add("-vf");
+            command.add(thumbnailScaleFilter(width, height));
+            command.addAll(thumbnailEncoderArgs(quality));
+            command.addAll(List.of(
                 "-frames:v", "1",
                 "-y",
                 outputPath
-            );
+            ));
 
-            ProcessResult result = executeCommand(command);
+            ProcessResult result = processRunner.run(command, ProcessRunner.options().cpuThreads(1).stdin(stdinData));
 
             if (result.getExitCode() != 0) {
                 logger.error("Failed to generate thumbnail: {}", result.getError());
@@ -168,29 +758,16 @@ public class FFmpegServiceImpl implements FFmpegService {
         try {
             logger.info("Validating video file: {}", videoPath);
 
-            List<String> command = List.of(
-                ffprobePath,
-                "-v", "error",
-                "-show_entries", "format=duration",
-                "-of", "default=noprint_wrappers=1:nokey=1",
-                videoPath
-            );
-
-            ProcessResult result = executeCommand(command);
-
-            if (result.getExitCode() != 0) {
-                logger.error("Video validation failed: {}", result.getError());
+            VideoMetadata metadata = probe(videoPath);
+            if (metadata.getDuration() == null || metadata.getDuration().signum() <= 0) {
+                logger.error("Video validation failed: No duration information");
                 return false;
             }
-
-            String output = result.getOutput().trim();
-            if (output.isEmpty()) {
-                logger.error("Video validation failed: No duration information");
+            if (metadata.getWidth() == null || metadata.getWidth() <= 0) {
+                logger.error("Video validation failed: No video stream");
                 return false;
             }
-
-            double duration = Double.parseDouble(output);
-            return duration > 0;
+            return true;
 
         } catch (Exception e) {
             logger.error("Failed to validate video file: {}", videoPath, e);
@@ -200,101 +777,369 @@ public class FFmpegServiceImpl implements FFmpegService {
 
     @Override
     public ProcessResult executeCommand(List<String> command) throws IOException, InterruptedException {
-        logger.debug("Executing command: {}", String.join(" ", command));
+        return processRunner.run(command);
+    }
 
-        ProcessBuilder processBuilder = new ProcessBuilder(command);
-        processBuilder.redirectErrorStream(false);
+    /**
+     * 解码整段视频的命令：超时取 ffmpeg.process.extraction-timeout，liveProcesses不为空时登记运行中的进程
+     * @param segmentCount 同一视频并行解码的进程数，线程预算在各段之间平分
+     */
+    private ProcessRunner.Options extractionOptions(Set<Process> liveProcesses, int segmentCount) {
+        return ProcessRunner.options()
+                .timeout(Duration.ofSeconds(extractionTimeoutSeconds))
+                .trackIn(liveProcesses)
+                .cpuThreads(threadShare(segmentCount))
+                .longRunning();
+    }
 
-        Process process = processBuilder.start();
+    /**
+     * 单个进程请求的线程数：CPU令牌在同时处理的相册之间平分，再在相册的同类进程之间平分
+     * @param processesPerAlbum 每个相册同时运行的同类进程数
+     */
+    private int threadShare(int processesPerAlbum) {
+        int sharers = Math.max(1, processesPerAlbum) * Math.max(1, albumConcurrency);
+        return Math.max(1, processRunner.getCpuTokens() / sharers);
+    }
+
+    /**
+     * 从stdin读取输入时保持stdin打开，且不设超时：进程随上传持续运行，停滞由输入流自身检测
+     */
+    private ProcessRunner.Options inputOptions(ProcessRunner.Options options, InputStream stdinSource) {
+        return stdinSource != null ? options.pipeStdin().timeout(Duration.ZERO) : options;
+    }
 
-        // 读取输出
-        StringBuilder output = new StringBuilder();
-        StringBuilder error = new StringBuilder();
-        List<String> outputLines = new ArrayList<>();
+    /**
+     * 读取视频时长（秒），无法获取时返回0
+     */
+    private double probeDuration(String videoPath) throws IOException, InterruptedException {
+        try {
+            BigDecimal duration = probe(videoPath).getDuration();
+            return duration != null ? duration.doubleValue() : 0;
+        } catch (RuntimeException e) {
+            logger.error("Failed to probe video duration: {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * 按时长将视频划分为若干段，每段由独立的FFmpeg进程解码
+     * 段数取CPU令牌数与max-parallel-threads的较小值，且每段不短于min-duration；
+     * 段边界对齐到采样帧网格，保证各段的帧号和时间戳首尾相接
+     * @param skipFrames 跳过的前导帧数（续传时为已处理的帧），第一段从这些帧之后开始
+     */
+    private List<Segment> planSegments(String videoPath, double framesPerSecond, int skipFrames)
+            throws IOException, InterruptedException {
+        // 处理相册时段数不超过预留的解码进程数
+        int segmentCount = Math.max(1, processRunner.reservedDecoders(
+                Math.min(maxParallelThreads, processRunner.getCpuTokens())));
+        double skippedDuration = skipFrames / framesPerSecond;
+
+        double duration = segmentCount > 1 ? probeDuration(videoPath) : 0;
+        if (minSegmentDuration > 0) {
+            segmentCount = (int) Math.min(segmentCount, Math.floor((duration - skippedDuration) / minSegmentDuration));
+        }
+        int totalFrames = (int) Math.floor(duration * framesPerSecond) - skipFrames;
+        segmentCount = Math.max(1, Math.min(segmentCount, totalFrames));
+
+        if (segmentCount == 1) {
+            return List.of(new Segment(0, skippedDuration, 0, 0, skipFrames + 1));
+        }
+
+        int framesPerSegment = totalFrames / segmentCount;
+        List<Segment> segments = new ArrayList<>(segmentCount);
+        for (int i = 0; i < segmentCount; i++) {
+            int firstFrameIndex = skipFrames + i * framesPerSegment;
+            double start = firstFrameIndex / framesPerSecond;
+            boolean last = i == segmentCount - 1;
+            // 多读一帧的时长作为余量，由-frames:v精确截断，避免边界帧因取整丢失
+            double length = last ? 0 : (framesPerSegment + 1) / framesPerSecond;
+            int maxFrames = last ? 0 : framesPerSegment;
+            segments.add(new Segment(i, start, length, maxFrames, firstFrameIndex + 1));
+        }
+
+        logger.info("Splitting {}s video into {} segments of {} frames", duration, segmentCount, framesPerSegment);
+        return segments;
+    }
+
+    /**
+     * 分段的输入参数：输入定位和读取时长，须放在-i之前；解码线程数由进程准入时按线程预算加入
+     */
+    private List<String> segmentInputArgs(Segment segment) {
+        List<String> args = new ArrayList<>();
+        if (segment.start() > 0) {
+            args.add("-ss");
+            args.add(String.format(Locale.ROOT, "%.6f", segment.start()));
+        }
+        if (segment.isBounded()) {
+            args.add("-t");
+            args.add(String.format(Locale.ROOT, "%.6f", segment.length()));
+        }
+        return args;
+    }
+
+    /**
+     * 分段的输出参数：限制帧数，image2输出时从该段的起始帧号开始编号
+     */
+    private List<String> segmentOutputArgs(Segment segment, boolean numberedFiles) {
+        List<String> args = new ArrayList<>();
+        if (segment.isBounded()) {
+            args.add("-frames:v");
+            args.add(String.valueOf(segment.maxFrames()));
+        }
+        if (numberedFiles && segment.firstFrameNumber() > 1) {
+            args.add("-start_number");
+            args.add(String.valueOf(segment.firstFrameNumber()));
+        }
+        return args;
+    }
 
-        try (BufferedReader outputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-             BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+    /**
+     * 并发执行各分段，返回各段结果之和
+     * 任一分段失败时终止其余仍在运行的FFmpeg进程
+     */
+    private int runSegments(List<Segment> segments, SegmentTask task) throws Exception {
+        Set<Process> liveProcesses = ConcurrentHashMap.newKeySet();
+        if (segments.size() == 1) {
+            return task.run(segments.get(0), liveProcesses);
+        }
 
-            String line;
-            while ((line = outputReader.readLine()) != null) {
-                output.append(line).append("\n");
-                outputLines.add(line);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Integer>> futures = new ArrayList<>(segments.size());
+            for (Segment segment : segments) {
+                futures.add(executor.submit(() -> task.run(segment, liveProcesses)));
             }
 
-            while ((line = errorReader.readLine()) != null) {
-                error.append(line).append("\n");
+            int total = 0;
+            try {
+                for (Future<Integer> future : futures) {
+                    total += future.get();
+                }
+            } catch (ExecutionException | InterruptedException e) {
+                futures.forEach(future -> future.cancel(true));
+                liveProcesses.forEach(process -> {
+                    process.descendants().forEach(ProcessHandle::destroyForcibly);
+                    process.destroyForcibly();
+                });
+                if (e instanceof ExecutionException && e.getCause() instanceof Exception cause) {
+                    throw cause;
+                }
+                throw e;
             }
+            return total;
         }
+    }
 
-        int exitCode = process.waitFor();
-
-        ProcessResult result = new ProcessResult();
-        result.setExitCode(exitCode);
-        result.setOutput(output.toString());
-        result.setError(error.toString());
-        result.setOutputLines(outputLines);
+    private List<String> heicEncoderArgs(int quality) {
+        return heicEncoderArgs(quality, false);
+    }
 
-        logger.debug("Command completed with exit code: {}", exitCode);
-        if (exitCode != 0) {
-            logger.error("Command error output: {}", error.toString());
+    /**
+     * HEIC（HEVC静态帧）编码参数
+     * 每帧都是独立的关键帧并携带参数集，保证按帧拆分后的文件可单独解码；
+     * 输出到管道时加入AUD（访问单元分隔符）作为帧边界
+     */
+    private List<String> heicEncoderArgs(int quality, boolean accessUnitDelimiters) {
+        String x265Params = "keyint=1:repeat-headers=1:log-level=error";
+        if (accessUnitDelimiters) {
+            x265Params += ":aud=1";
         }
+        return List.of(
+            "-c:v", "libx265",
+            "-preset", "medium",
+            "-crf", String.valueOf(toCrf(quality)),
+            "-pix_fmt", "yuv420p",
+            "-x265-params", x265Params
+        );
+    }
 
-        return result;
+    private List<String> thumbnailEncoderArgs(int quality) {
+        return List.of("-q:v", String.valueOf(toJpegQScale(quality)));
     }
 
-    private VideoMetadata parseMetadata(String ffprobeOutput) {
-        VideoMetadata metadata = new VideoMetadata();
+    private String thumbnailScaleFilter(int width, int height) {
+        return String.format("scale=%d:%d:force_original_aspect_ratio=decrease", width, height);
+    }
 
-        String[] lines = ffprobeOutput.split("\n");
+    /**
+     * 将0-100的质量映射为x265的CRF（0-51，越小质量越高）
+     */
+    private int toCrf(int quality) {
+        int clamped = Math.max(0, Math.min(100, quality));
+        return Math.round(51 - clamped * 51 / 100.0f);
+    }
 
-        // 解析视频流信息
-        for (String line : lines) {
-            line = line.trim();
+    /**
+     * 将0-100的质量映射为MJPEG的qscale（2-31，越小质量越高）
+     */
+    private int toJpegQScale(int quality) {
+        int clamped = Math.max(0, Math.min(100, quality));
+        return Math.round(31 - clamped * 29 / 100.0f);
+    }
 
-            if (line.contains("Duration:")) {
-                Matcher matcher = DURATION_PATTERN.matcher(line);
-                if (matcher.find()) {
-                    int hours = Integer.parseInt(matcher.group(1));
-                    int minutes = Integer.parseInt(matcher.group(2));
-                    int seconds = Integer.parseInt(matcher.group(3));
-                    int centiseconds = Integer.parseInt(matcher.group(4));
+    private void addInput(List<String> command, String inputPath, byte[] stdinData) {
+        if (stdinData != null) {
+            command.add("-f");
+            command.add("image2pipe");
+        }
+        command.add("-i");
+        command.add(inputPath);
+    }
 
-                    double totalSeconds = hours * 3600 + minutes * 60 + seconds + centiseconds / 100.0;
-                    metadata.setDuration(BigDecimal.valueOf(totalSeconds).setScale(3, RoundingMode.HALF_UP));
-                }
-            }
+    /**
+     * 列出按输出模式（如 frame_%06d.jpg）生成的帧文件，按帧号排序
+     */
+    private List<String> listExtractedFrames(String outputPattern) throws IOException {
+        Path pattern = Paths.get(outputPattern);
+        Path directory = pattern.getParent() != null ? pattern.getParent() : Paths.get(".");
+        String filePattern = pattern.getFileName().toString();
+        int placeholder = filePattern.indexOf('%');
+        String prefix = placeholder >= 0 ? filePattern.substring(0, placeholder) : filePattern;
+        String suffix = placeholder >= 0 ? filePattern.substring(filePattern.indexOf('d', placeholder) + 1) : "";
+
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .map(path -> path.getFileName().toString())
+                .filter(name -> name.startsWith(prefix) && name.endsWith(suffix))
+                .sorted()
+                .map(name -> directory.resolve(name).toString())
+                .toList();
+        }
+    }
 
-            if (line.contains("fps")) {
-                Matcher matcher = FRAME_RATE_PATTERN.matcher(line);
-                if (matcher.find()) {
-                    double frameRate = Double.parseDouble(matcher.group(1));
-                    metadata.setFrameRate((int) Math.round(frameRate));
-                }
+    /**
+     * 从按输出模式生成的文件名中解析帧号，如 frame_%06d.jpg 对应 frame_000012.jpg -> 12
+     */
+    private int parseFrameNumber(String framePath, String outputPattern) {
+        String filePattern = Paths.get(outputPattern).getFileName().toString();
+        String filename = Paths.get(framePath).getFileName().toString();
+        int placeholder = filePattern.indexOf('%');
+        int suffixLength = filePattern.length() - (filePattern.indexOf('d', placeholder) + 1);
+        return Integer.parseInt(filename.substring(placeholder, filename.length() - suffixLength));
+    }
+
+    /**
+     * 汇总各分段FFmpeg进程的 -progress 输出，回调已处理的视频时长（秒）
+     * 各段以-ss定位后输出时间从0开始，因此各段out_time之和即为已处理时长
+     */
+    private static final class SegmentProgress {
+        private final double[] processed;
+        private final DoubleConsumer listener;
+
+        SegmentProgress(int segmentCount, DoubleConsumer listener) {
+            this.processed = new double[segmentCount];
+            this.listener = listener;
+        }
+
+        List<String> args() {
+            return listener != null ? PROGRESS_ARGS : List.of();
+        }
+
+        Consumer<Map<String, String>> forSegment(int index) {
+            if (listener == null) {
+                return null;
             }
+            return values -> {
+                String outTime = values.get("out_time_us");
+                if (outTime == null || outTime.isEmpty() || "N/A".equals(outTime)) {
+                    return;
+                }
+                double total;
+                synchronized (processed) {
+                    processed[index] = Long.parseLong(outTime) / 1_000_000.0;
+                    total = 0;
+                    for (double seconds : processed) {
+                        total += seconds;
+                    }
+                }
+                listener.accept(total);
+            };
+        }
+    }
+
+    /**
+     * 在独立线程中把输入数据写入FFmpeg的stdin，读完后关闭stdin
+     * 读取输入失败时终止进程，避免FFmpeg把截断的输入当作正常结束
+     */
+    private static final class StdinFeeder {
+
+        private final ProcessRunner.RunningProcess process;
+        private final Thread thread;
+        private volatile IOException failure;
+
+        StdinFeeder(ProcessRunner.RunningProcess process, InputStream source) {
+            this.process = process;
+            this.thread = Thread.ofVirtual().name("ffmpeg-stdin").start(() -> feed(source));
+        }
 
-            if (line.matches("\\d{3,4}x\\d{3,4}")) {
-                Matcher matcher = DIMENSIONS_PATTERN.matcher(line);
-                if (matcher.find()) {
-                    metadata.setWidth(Integer.parseInt(matcher.group(1)));
-                    metadata.setHeight(Integer.parseInt(matcher.group(2)));
+        private void feed(InputStream source) {
+            OutputStream stdin = process.getOutputStream();
+            byte[] buffer = new byte[STDIN_BUFFER_SIZE];
+            try {
+                int read;
+                while ((read = source.read(buffer)) != -1) {
+                    try {
+                        stdin.write(buffer, 0, read);
+                    } catch (IOException e) {
+                        // FFmpeg已退出或不再读取输入，结果由进程退出码决定
+                        logger.debug("FFmpeg stopped reading stdin: {}", e.toString());
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                failure = e;
+                process.destroy();
+            } finally {
+                try {
+                    stdin.close();
+                } catch (IOException e) {
+                    logger.debug("Failed to close FFmpeg stdin", e);
                 }
             }
+        }
 
-            if (line.startsWith("h264") || line.startsWith("h265") || line.startsWith("avc1")) {
-                metadata.setVideoCodec(line.trim());
+        void rethrowFailure() throws IOException {
+            IOException e = failure;
+            if (e != null) {
+                throw new IOException("Failed to read video input: " + e.getMessage(), e);
             }
         }
 
-        return metadata;
+        void stop() throws InterruptedException {
+            thread.interrupt();
+            thread.join();
+        }
     }
 
+    /**
+     * 视频分段：起始时间和时长以秒计，maxFrames为0表示读到视频末尾
+     */
+    private record Segment(int index, double start, double length, int maxFrames, int firstFrameNumber) {
+        boolean isBounded() {
+            return maxFrames > 0;
+        }
+    }
+
+    @FunctionalInterface
+    private interface SegmentTask {
+        int run(Segment segment, Set<Process> liveProcesses) throws Exception;
+    }
+
+    /**
+     * 视频元数据：width/height为旋转校正后的显示尺寸，frameRate为取整后的帧率
+     */
     public static class VideoMetadata {
         private BigDecimal duration;
         private Integer frameRate;
+        private Double exactFrameRate;
         private Integer width;
         private Integer height;
+        private Integer rotation;
         private String videoCodec;
+        private String formatName;
         private Long fileSize;
+        private Long bitRate;
+        private Double keyframeInterval;
+        private List<StreamInfo> streams = List.of();
 
         // Getters and Setters
         public BigDecimal getDuration() { return duration; }
@@ -314,6 +1159,75 @@ public class FFmpegServiceImpl implements FFmpegService {
 
         public Long getFileSize() { return fileSize; }
         public void setFileSize(Long fileSize) { this.fileSize = fileSize; }
+
+        public Double getExactFrameRate() { return exactFrameRate; }
+        public void setExactFrameRate(Double exactFrameRate) { this.exactFrameRate = exactFrameRate; }
+
+        public Integer getRotation() { return rotation; }
+        public void setRotation(Integer rotation) { this.rotation = rotation; }
+
+        public String getFormatName() { return formatName; }
+        public void setFormatName(String formatName) { this.formatName = formatName; }
+
+        public Long getBitRate() { return bitRate; }
+        public void setBitRate(Long bitRate) { this.bitRate = bitRate; }
+
+        public Double getKeyframeInterval() { return keyframeInterval; }
+        public void setKeyframeInterval(Double keyframeInterval) { this.keyframeInterval = keyframeInterval; }
+
+        public List<StreamInfo> getStreams() { return streams; }
+        public void setStreams(List<StreamInfo> streams) { this.streams = streams; }
+    }
+
+    /**
+     * 单个媒体流的信息，字段按流类型可能为null（如音频流没有宽高）
+     */
+    public static class StreamInfo {
+        private int index;
+        private String codecType;
+        private String codecName;
+        private Integer width;
+        private Integer height;
+        private Double frameRate;
+        private Long bitRate;
+        private Integer sampleRate;
+        private Integer channels;
+        private Double duration;
+        private String language;
+
+        // Getters and Setters
+        public int getIndex() { return index; }
+        public void setIndex(int index) { this.index = index; }
+
+        public String getCodecType() { return codecType; }
+        public void setCodecType(String codecType) { this.codecType = codecType; }
+
+        public String getCodecName() { return codecName; }
+        public void setCodecName(String codecName) { this.codecName = codecName; }
+
+        public Integer getWidth() { return width; }
+        public void setWidth(Integer width) { this.width = width; }
+
+        public Integer getHeight() { return height; }
+        public void setHeight(Integer height) { this.height = height; }
+
+        public Double getFrameRate() { return frameRate; }
+        public void setFrameRate(Double frameRate) { this.frameRate = frameRate; }
+
+        public Long getBitRate() { return bitRate; }
+        public void setBitRate(Long bitRate) { this.bitRate = bitRate; }
+
+        public Integer getSampleRate() { return sampleRate; }
+        public void setSampleRate(Integer sampleRate) { this.sampleRate = sampleRate; }
+
+        public Integer getChannels() { return channels; }
+        public void setChannels(Integer channels) { this.channels = channels; }
+
+        public Double getDuration() { return duration; }
+        public void setDuration(Double duration) { this.duration = duration; }
+
+        public String getLanguage() { return language; }
+        public void setLanguage(String language) { this.language = language; }
     }
 
     public static class ProcessResult {
@@ -321,6 +1235,7 @@ public class FFmpegServiceImpl implements FFmpegService {
         private String output;
         private String error;
         private List<String> outputLines;
+        private boolean timedOut;
 
         // Getters and Setters
         public int getExitCode() { return exitCode; }
@@ -332,7 +1247,16 @@ public class FFmpegServiceImpl implements FFmpegService {
         public String getError() { return error; }
         public void setError(String error) { this.error = error; }
 
-        public List<String> getOutputLines() { return outputLines; }
+        // 按需从output拆分，避免同一份输出保存多次
+        public List<String> getOutputLines() {
+            if (outputLines == null && output != null) {
+                outputLines = output.lines().toList();
+            }
+            return outputLines;
+        }
         public void setOutputLines(List<String> outputLines) { this.outputLines = outputLines; }
+
+        public boolean isTimedOut() { return timedOut; }
+        public void setTimedOut(boolean timedOut) { this.timedOut = timedOut; }
     }
 }
\ No newline at end of file
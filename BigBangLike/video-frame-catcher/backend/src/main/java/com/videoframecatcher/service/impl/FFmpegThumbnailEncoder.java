@@ -0,0 +1,65 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.service.ExtractedFrame;
+import com.videoframecatcher.service.FFmpegService;
+import com.videoframecatcher.service.ThumbnailEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 基于FFmpeg进程的缩略图生成（默认后端）
+ */
+@Service
+@ConditionalOnProperty(name = "image.processing.thumbnail.engine", havingValue = "ffmpeg", matchIfMissing = true)
+public class FFmpegThumbnailEncoder implements ThumbnailEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(FFmpegThumbnailEncoder.class);
+
+    private final FFmpegService ffmpegService;
+
+    @Value("${image.processing.thumbnail.format:jpg}")
+    private String format;
+
+    public FFmpegThumbnailEncoder(FFmpegService ffmpegService) {
+        this.ffmpegService = ffmpegService;
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public byte[] createThumbnail(ExtractedFrame frame, byte[] imageData, int width, int height, int quality) {
+        Path tempThumbnailPath = null;
+        try {
+            tempThumbnailPath = Files.createTempFile("thumb_", "." + format);
+
+            // 文件提取的帧直接读原文件，流式帧通过stdin输入
+            boolean generated = frame.isInMemory()
+                    ? ffmpegService.generateThumbnail(imageData, tempThumbnailPath.toString(), width, height, quality)
+                    : ffmpegService.generateThumbnail(frame.getPath(), tempThumbnailPath.toString(), width, height, quality);
+
+            return generated ? Files.readAllBytes(tempThumbnailPath) : null;
+
+        } catch (IOException e) {
+            logger.error("Failed to generate thumbnail for frame: {}", frame.getFrameNumber(), e);
+            return null;
+        } finally {
+            if (tempThumbnailPath != null) {
+                try {
+                    Files.deleteIfExists(tempThumbnailPath);
+                } catch (IOException e) {
+                    logger.warn("Failed to delete temp thumbnail: {}", tempThumbnailPath, e);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.videoframecatcher.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.util.Arrays;
+
+/**
+ * 帧质量评分：在缩小后的亮度平面上计算清晰度、曝光和噪声，合成0-1的分数
+ * - 清晰度：拉普拉斯响应的方差，越大边缘越锐利
+ * - 曝光：平均亮度偏离中间调的程度，以及过暗/过亮（截断）像素的比例
+ * - 噪声：Immerkær快速噪声估计（对二阶差分核的响应取绝对值平均）
+ * 实例持有可复用的缓冲区，不是线程安全的，每个工作线程使用各自的实例；
+ * 卷积核在jdk.incubator.vector模块可用时由Vector API计算
+ */
+final class FrameQualityScorer {
+
+    private static final Logger logger = LoggerFactory.getLogger(FrameQualityScorer.class);
+
+    // 亮度平面的最大宽度，更大的图像先按面积平均缩小
+    static final int SCORE_WIDTH = 320;
+
+    // 拉普拉斯方差达到该值时清晰度得分为0.5
+    private static final double SHARPNESS_MIDPOINT = 100.0;
+    // 噪声标准差达到该值时噪声扣分达到上限
+    private static final double NOISE_LIMIT = 12.0;
+    // 视为截断的亮度范围
+    private static final int CLIP_LOW = 5;
+    private static final int CLIP_HIGH = 250;
+    // 理想的平均亮度
+    private static final double TARGET_BRIGHTNESS = 118.0;
+
+    private static final double SHARPNESS_WEIGHT = 0.6;
+    private static final double EXPOSURE_WEIGHT = 0.3;
+    private static final double NOISE_WEIGHT = 0.1;
+
+    private static final boolean VECTOR_AVAILABLE = ModuleLayer.boot()
+            .findModule("jdk.incubator.vector")
+            .isPresent();
+
+    // 可复用的缓冲区，按需扩容
+    private float[] luma = new float[0];
+    private int[] columnCells = new int[0];
+    private int[] columnCounts = new int[0];
+    private int[] rowPixels = new int[0];
+    private final int[] histogram = new int[256];
+    private final double[] sums = new double[3];
+
+    /**
+     * @return 0-1的质量分数
+     */
+    double score(BufferedImage image) {
+        int width = Math.min(SCORE_WIDTH, image.getWidth());
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+        buildLumaPlane(image, width, height);
+
+        double exposure = exposureScore(width * height);
+        if (width < 3 || height < 3) {
+            return exposure;
+        }
+
+        // sums: [拉普拉斯和, 拉普拉斯平方和, 噪声核绝对值和]
+        Arrays.fill(sums, 0);
+        for (int y = 1; y < height - 1; y++) {
+            if (VECTOR_AVAILABLE) {
+                VectorQualityKernels.accumulateRow(luma, y * width, width, sums);
+            } else {
+                accumulateRowScalar(luma, y * width + 1, y * width + width - 1, width, sums);
+            }
+        }
+        int interior = (width - 2) * (height - 2);
+        double mean = sums[0] / interior;
+        double variance = Math.max(0, sums[1] / interior - mean * mean);
+        double noiseSigma = Math.sqrt(Math.PI / 2) * sums[2] / (6.0 * interior);
+
+        // 方差为σ²的独立噪声使拉普拉斯响应的方差增加20σ²（核系数平方和），扣除后只反映边缘
+        double edgeVariance = Math.max(0, variance - 20 * noiseSigma * noiseSigma);
+        double sharpness = edgeVariance / (edgeVariance + SHARPNESS_MIDPOINT);
+        double noisePenalty = Math.min(1.0, noiseSigma / NOISE_LIMIT);
+        double score = SHARPNESS_WEIGHT * sharpness + EXPOSURE_WEIGHT * exposure + NOISE_WEIGHT * (1 - noisePenalty);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Quality: laplacian variance {}, edge variance {}, exposure {}, noise sigma {}, score {}",
+                    variance, edgeVariance, exposure, noiseSigma, score);
+        }
+        return Math.max(0, Math.min(1, score));
+    }
+
+    /**
+     * 对[from, to)范围内的像素累加拉普拉斯响应、其平方和噪声核响应的绝对值
+     */
+    static void accumulateRowScalar(float[] luma, int from, int to, int width, double[] sums) {
+        double lapSum = 0;
+        double lapSquares = 0;
+        double noise = 0;
+        for (int i = from; i < to; i++) {
+            float center = luma[i];
+            float left = luma[i - 1];
+            float right = luma[i + 1];
+            float up = luma[i - width];
+            float down = luma[i + width];
+            float laplacian = 4 * center - left - right - up - down;
+            float corners = luma[i - width - 1] + luma[i - width + 1] + luma[i + width - 1] + luma[i + width + 1];
+            lapSum += laplacian;
+            lapSquares += laplacian * laplacian;
+            noise += Math.abs(4 * center - 2 * (left + right + up + down) + corners);
+        }
+        sums[0] += lapSum;
+        sums[1] += lapSquares;
+        sums[2] += noise;
+    }
+
+    /**
+     * 按面积平均将图像缩小为亮度平面，同时统计亮度直方图
+     */
+    private void buildLumaPlane(BufferedImage image, int width, int height) {
+        int srcWidth = image.getWidth();
+        int srcHeight = image.getHeight();
+        int size = width * height;
+        if (luma.length < size) {
+            luma = new float[size];
+        }
+        if (columnCells.length < srcWidth) {
+            columnCells = new int[srcWidth];
+            rowPixels = new int[srcWidth];
+        }
+        if (columnCounts.length < width) {
+            columnCounts = new int[width];
+        }
+        Arrays.fill(luma, 0, size, 0f);
+        Arrays.fill(columnCounts, 0, width, 0);
+        for (int x = 0; x < srcWidth; x++) {
+            columnCells[x] = (int) ((long) x * width / srcWidth);
+            columnCounts[columnCells[x]]++;
+        }
+
+        byte[] bgr = null;
+        int stride = 0;
+        if (image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            bgr = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            stride = ((ComponentSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+        }
+
+        int rowStart = 0;
+        int rowEnd = 0;
+        for (int ty = 0; ty < height; ty++) {
+            rowStart = rowEnd;
+            rowEnd = (int) ((long) (ty + 1) * srcHeight / height);
+            int cellRow = ty * width;
+            for (int y = rowStart; y < rowEnd; y++) {
+                if (bgr != null) {
+                    int offset = y * stride;
+                    for (int x = 0; x < srcWidth; x++, offset += 3) {
+                        int value = (29 * (bgr[offset] & 0xFF) + 150 * (bgr[offset + 1] & 0xFF)
+                                + 77 * (bgr[offset + 2] & 0xFF)) >> 8;
+                        luma[cellRow + columnCells[x]] += value;
+                    }
+                } else {
+                    image.getRGB(0, y, srcWidth, 1, rowPixels, 0, srcWidth);
+                    for (int x = 0; x < srcWidth; x++) {
+                        int rgb = rowPixels[x];
+                        int value = (77 * ((rgb >> 16) & 0xFF) + 150 * ((rgb >> 8) & 0xFF) + 29 * (rgb & 0xFF)) >> 8;
+                        luma[cellRow + columnCells[x]] += value;
+                    }
+                }
+            }
+            int rows = Math.max(1, rowEnd - rowStart);
+            for (int tx = 0; tx < width; tx++) {
+                luma[cellRow + tx] /= rows * columnCounts[tx];
+            }
+        }
+
+        Arrays.fill(histogram, 0);
+        for (int i = 0; i < size; i++) {
+            histogram[Math.min(255, (int) luma[i])]++;
+        }
+    }
+
+    private double exposureScore(int pixels) {
+        long total = 0;
+        int clipped = 0;
+        for (int value = 0; value < histogram.length; value++) {
+            total += (long) value * histogram[value];
+            if (value <= CLIP_LOW || value >= CLIP_HIGH) {
+                clipped += histogram[value];
+            }
+        }
+        double mean = (double) total / pixels;
+        double brightness = 1 - Math.min(1.0, Math.abs(mean - TARGET_BRIGHTNESS) / TARGET_BRIGHTNESS);
+        // 四分之一的像素被截断时曝光得分为0
+        double clipping = Math.min(1.0, 4.0 * clipped / pixels);
+        return brightness * (1 - clipping);
+    }
+}
@@ -9,10 +9,10 @@ import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.time.Duration;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -22,7 +22,11 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
 
     private static final Logger logger = LoggerFactory.getLogger(GPUAccelerationServiceImpl.class);
 
+    // 探测命令（nvidia-smi、vulkaninfo等）的超时时间，驱动异常时这些命令可能长时间无响应
+    private static final Duration DETECTION_TIMEOUT = Duration.ofSeconds(10);
+
     private final StorageService storageService;
+    private final ProcessRunner processRunner;
     private GPUType availableGPUType;
     private ExecutorService gpuExecutor;
     private boolean gpuInitialized = false;
@@ -42,8 +46,9 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
     @Value("${gpu.acceleration.intel-openvino.device:GPU}")
     private String intelOpenVINODevice;
 
-    public GPUAccelerationServiceImpl(StorageService storageService) {
+    public GPUAccelerationServiceImpl(StorageService storageService, ProcessRunner processRunner) {
         this.storageService = storageService;
+        this.processRunner = processRunner;
     }
 
     @PostConstruct
@@ -125,7 +130,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
             // 临时实现：使用FFmpeg的硬件加速
             String outputPath = System.getProperty("java.io.tmpdir") + "/gpu_" + outputFilename;
 
-            ProcessBuilder pb = new ProcessBuilder(
+            List<String> command = List.of(
                 "ffmpeg",
                 "-i", inputPath,
                 "-c:v", "libx265",
@@ -136,8 +141,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
                 outputPath
             );
 
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = processRunner.run(command, ProcessRunner.options().cpuThreads(1)).getExitCode();
 
             if (exitCode == 0) {
                 byte[] processedData = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(outputPath));
@@ -160,7 +164,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
             String outputPath = System.getProperty("java.io.tmpdir") + "/cuda_" + outputFilename;
 
             // 使用NVIDIA CUDA加速的FFmpeg
-            ProcessBuilder pb = new ProcessBuilder(
+            List<String> command = List.of(
                 "ffmpeg",
                 "-i", inputPath,
                 "-c:v", "h264_nvenc",
@@ -171,8 +175,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
                 outputPath
             );
 
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = processRunner.run(command, ProcessRunner.options().cpuThreads(1)).getExitCode();
 
             if (exitCode == 0) {
                 byte[] processedData = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(outputPath));
@@ -195,7 +198,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
             String outputPath = System.getProperty("java.io.tmpdir") + "/vulkan_" + outputFilename;
 
             // 使用AMD Vulkan加速
-            ProcessBuilder pb = new ProcessBuilder(
+            List<String> command = List.of(
                 "ffmpeg",
                 "-i", inputPath,
                 "-c:v", "libx264",
@@ -206,8 +209,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
                 outputPath
             );
 
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = processRunner.run(command, ProcessRunner.options().cpuThreads(1)).getExitCode();
 
             if (exitCode == 0) {
                 byte[] processedData = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(outputPath));
@@ -229,7 +231,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
         try {
             String outputPath = System.getProperty("java.io.tmpdir") + "/cpu_" + outputFilename;
 
-            ProcessBuilder pb = new ProcessBuilder(
+            List<String> command = List.of(
                 "ffmpeg",
                 "-i", inputPath,
                 "-c:v", "libx264",
@@ -240,8 +242,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
                 outputPath
             );
 
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = processRunner.run(command, ProcessRunner.options().cpuThreads(1)).getExitCode();
 
             if (exitCode == 0) {
                 byte[] processedData = java.nio.file.Files.readAllBytes(java.nio.file.Paths.get(outputPath));
@@ -296,9 +297,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
     private boolean detectIntelOpenVINO() {
         try {
             // 检查OpenVINO运行时是否可用
-            ProcessBuilder pb = new ProcessBuilder("python3", "-c", "import openvino");
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = runDetection("python3", "-c", "import openvino").getExitCode();
 
             if (exitCode == 0) {
                 logger.debug("Intel OpenVINO Python runtime available");
@@ -317,19 +316,13 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
 
         // 检查Intel GPU驱动
         try {
-            ProcessBuilder pb = new ProcessBuilder("wmic", "path", "win32_VideoController", "get", "name");
-            Process process = pb.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.toLowerCase().contains("intel") && line.toLowerCase().contains("arc")) {
-                        logger.debug("Intel Arc GPU detected");
-                        return true;
-                    }
+            FFmpegServiceImpl.ProcessResult result = runDetection("wmic", "path", "win32_VideoController", "get", "name");
+            for (String line : result.getOutputLines()) {
+                if (line.toLowerCase().contains("intel") && line.toLowerCase().contains("arc")) {
+                    logger.debug("Intel Arc GPU detected");
+                    return true;
                 }
             }
-            process.waitFor();
         } catch (Exception e) {
             logger.debug("Failed to detect Intel GPU", e);
         }
@@ -339,9 +332,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
 
     private boolean detectNVIDIA_CUDA() {
         try {
-            ProcessBuilder pb = new ProcessBuilder("nvidia-smi");
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = runDetection("nvidia-smi").getExitCode();
 
             if (exitCode == 0) {
                 logger.debug("NVIDIA CUDA available");
@@ -355,9 +346,7 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
 
     private boolean detectAMDVulkan() {
         try {
-            ProcessBuilder pb = new ProcessBuilder("vulkaninfo");
-            Process process = pb.start();
-            int exitCode = process.waitFor();
+            int exitCode = runDetection("vulkaninfo").getExitCode();
 
             if (exitCode == 0) {
                 logger.debug("AMD Vulkan available");
@@ -394,22 +383,22 @@ public class GPUAccelerationServiceImpl implements GPUAccelerationService {
 
     private double getNVIDIAGPUUsage() {
         try {
-            ProcessBuilder pb = new ProcessBuilder("nvidia-smi", "--query-gpu=utilization.gpu", "--format=csv,noheader,nounits");
-            Process process = pb.start();
-
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String line = reader.readLine();
-                if (line != null && !line.trim().isEmpty()) {
-                    return Double.parseDouble(line.trim()) / 100.0;
-                }
+            FFmpegServiceImpl.ProcessResult result =
+                    runDetection("nvidia-smi", "--query-gpu=utilization.gpu", "--format=csv,noheader,nounits");
+            List<String> lines = result.getOutputLines();
+            if (result.getExitCode() == 0 && !lines.isEmpty() && !lines.get(0).trim().isEmpty()) {
+                return Double.parseDouble(lines.get(0).trim()) / 100.0;
             }
-            process.waitFor();
         } catch (Exception e) {
             logger.debug("Failed to get NVIDIA GPU usage", e);
         }
         return 0.0;
     }
 
+    private FFmpegServiceImpl.ProcessResult runDetection(String... command) throws IOException, InterruptedException {
+        return processRunner.run(List.of(command), ProcessRunner.options().timeout(DETECTION_TIMEOUT));
+    }
+
     private double getIntelGPUUsage() {
         // Intel GPU使用率检测实现
         // 这里需要根据具体的Intel GPU监控工具来实现
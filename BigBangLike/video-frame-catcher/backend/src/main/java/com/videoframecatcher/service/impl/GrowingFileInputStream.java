@@ -0,0 +1,93 @@
+package com.videoframecatcher.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 跟随仍在写入的文件读取，读到当前末尾时等待新数据，读满声明的总长度后返回EOF
+ * 文件以打开时的句柄读取，之后被重命名或删除目录项不影响读取
+ */
+class GrowingFileInputStream extends InputStream {
+
+    private static final long POLL_INTERVAL_MILLIS = 200;
+
+    private final FileChannel channel;
+    private final long length;
+    private final BooleanSupplier writerAlive;
+    private final long stallTimeoutMillis;
+    private long position;
+
+    /**
+     * @param file 正在写入的文件
+     * @param length 文件的最终长度
+     * @param writerAlive 写入方是否仍在继续（如上传会话仍然存在），返回false且数据不足时读取失败
+     * @param stallTimeout 长时间没有新数据时读取失败
+     */
+    GrowingFileInputStream(Path file, long length, BooleanSupplier writerAlive, Duration stallTimeout)
+            throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        this.length = length;
+        this.writerAlive = writerAlive;
+        this.stallTimeoutMillis = stallTimeout.toMillis();
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        int read = read(one, 0, 1);
+        return read == -1 ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= length) {
+            return -1;
+        }
+        long waitedSince = 0;
+        while (true) {
+            int toRead = (int) Math.min(len, length - position);
+            int read = channel.read(ByteBuffer.wrap(b, off, toRead), position);
+            if (read > 0) {
+                position += read;
+                return read;
+            }
+
+            // 已到当前末尾：等待写入方追加
+            long now = System.currentTimeMillis();
+            if (waitedSince == 0) {
+                waitedSince = now;
+            } else if (now - waitedSince > stallTimeoutMillis) {
+                throw new IOException("No new data for " + stallTimeoutMillis / 1000 + "s at offset " + position);
+            }
+            if (!writerAlive.getAsBoolean() && channel.size() <= position) {
+                throw new IOException("Writer stopped at offset " + position + " of " + length);
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for data at offset " + position);
+            }
+        }
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, channel.size() - position));
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,339 @@
+package com.videoframecatcher.service.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 将一个HEVC访问单元（Annex B裸流，即x265输出的一帧）封装为单图像的HEIF文件（.heic）
+ * 文件结构：ftyp → meta（hdlr、pitm、iloc、iinf、iprp：hvcC + ispe）→ mdat
+ * 参数集（VPS/SPS/PPS）放入hvcC，条带以4字节长度前缀写入mdat；AUD和SEI不写入
+ * 图像尺寸从SPS解析（已扣除一致性裁剪窗口）
+ */
+final class HeifWriter {
+
+    private static final int NAL_VPS = 32;
+    private static final int NAL_SPS = 33;
+    private static final int NAL_PPS = 34;
+    // 0-31为VCL（条带）NAL
+    private static final int MAX_VCL_NAL = 31;
+
+    private static final int ITEM_ID = 1;
+
+    private HeifWriter() {
+    }
+
+    /**
+     * @param accessUnit 以起始码分隔的NAL单元，须包含VPS、SPS、PPS和至少一个条带
+     * @return HEIF文件数据
+     * @throws IOException 数据不是完整的HEVC帧
+     */
+    static byte[] wrap(byte[] accessUnit) throws IOException {
+        List<byte[]> vps = new ArrayList<>();
+        List<byte[]> sps = new ArrayList<>();
+        List<byte[]> pps = new ArrayList<>();
+        ByteArrayOutputStream slices = new ByteArrayOutputStream(accessUnit.length);
+        for (byte[] nal : splitNalUnits(accessUnit)) {
+            int type = (nal[0] >> 1) & 0x3F;
+            if (type == NAL_VPS) {
+                vps.add(nal);
+            } else if (type == NAL_SPS) {
+                sps.add(nal);
+            } else if (type == NAL_PPS) {
+                pps.add(nal);
+            } else if (type <= MAX_VCL_NAL) {
+                writeInt(slices, nal.length);
+                slices.write(nal);
+            }
+        }
+        if (vps.isEmpty() || sps.isEmpty() || pps.isEmpty() || slices.size() == 0) {
+            throw new IOException("Incomplete HEVC access unit: " + vps.size() + " VPS, " + sps.size()
+                    + " SPS, " + pps.size() + " PPS, " + slices.size() + " bytes of slices");
+        }
+        SequenceParameters params = SequenceParameters.parse(sps.get(0));
+
+        byte[] ftyp = box("ftyp", concat(ascii("heic"), intBytes(0), ascii("mif1"), ascii("heic")));
+        byte[] hdlr = fullBox("hdlr", 0, concat(intBytes(0), ascii("pict"), new byte[12], new byte[1]));
+        byte[] pitm = fullBox("pitm", 0, shortBytes(ITEM_ID));
+        byte[] infe = fullBox("infe", 2 << 24, concat(shortBytes(ITEM_ID), shortBytes(0), ascii("hvc1"), new byte[1]));
+        byte[] iinf = fullBox("iinf", 0, concat(shortBytes(1), infe));
+        byte[] ispe = fullBox("ispe", 0, concat(intBytes(params.width), intBytes(params.height)));
+        byte[] ipco = box("ipco", concat(hvcC(params, vps, sps, pps), ispe));
+        // 属性序号从1开始：hvcC（解码必需）、ispe
+        byte[] ipma = fullBox("ipma", 0, concat(intBytes(1), shortBytes(ITEM_ID), new byte[]{2, (byte) 0x81, 0x02}));
+        byte[] iprp = box("iprp", concat(ipco, ipma));
+
+        // iloc中的偏移是文件内的绝对偏移，iloc自身长度固定，可先按占位计算
+        int ilocLength = 12 + 2 + 2 + 2 + 2 + 2 + 4 + 4;
+        int metaLength = 12 + hdlr.length + pitm.length + ilocLength + iinf.length + iprp.length;
+        int dataOffset = ftyp.length + metaLength + 8;
+        byte[] iloc = fullBox("iloc", 0, concat(
+                new byte[]{0x44, 0x00},         // offset_size=4, length_size=4, base_offset_size=0
+                shortBytes(1),                  // item_count
+                shortBytes(ITEM_ID),
+                shortBytes(0),                  // data_reference_index：本文件
+                shortBytes(1),                  // extent_count
+                intBytes(dataOffset),
+                intBytes(slices.size())));
+        byte[] meta = fullBox("meta", 0, concat(hdlr, pitm, iloc, iinf, iprp));
+        if (meta.length != metaLength) {
+            throw new IllegalStateException("Unexpected HEIF meta box length " + meta.length);
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(dataOffset + slices.size());
+        out.write(ftyp);
+        out.write(meta);
+        writeInt(out, 8 + slices.size());
+        out.write(ascii("mdat"));
+        slices.writeTo(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 将文件中的HEVC访问单元原地替换为HEIF文件
+     */
+    static void wrapFile(Path path) throws IOException {
+        Files.write(path, wrap(Files.readAllBytes(path)));
+    }
+
+    /**
+     * 按3字节或4字节起始码切分NAL单元，去掉起始码和NAL末尾的填充0x00
+     */
+    static List<byte[]> splitNalUnits(byte[] data) {
+        List<byte[]> units = new ArrayList<>();
+        int start = -1;
+        int i = 0;
+        while (i + 2 < data.length) {
+            if (data[i] == 0 && data[i + 1] == 0 && data[i + 2] == 1) {
+                if (start >= 0) {
+                    addNalUnit(units, data, start, i);
+                }
+                i += 3;
+                start = i;
+            } else {
+                i++;
+            }
+        }
+        if (start >= 0) {
+            addNalUnit(units, data, start, data.length);
+        }
+        return units;
+    }
+
+    private static void addNalUnit(List<byte[]> units, byte[] data, int from, int to) {
+        int end = to;
+        while (end > from && data[end - 1] == 0) {
+            end--;
+        }
+        // NAL头占2字节
+        if (end - from >= 2) {
+            units.add(Arrays.copyOfRange(data, from, end));
+        }
+    }
+
+    /**
+     * HEVC解码器配置（ISO/IEC 14496-15 HEVCDecoderConfigurationRecord），NAL长度字段为4字节
+     */
+    private static byte[] hvcC(SequenceParameters params, List<byte[]> vps, List<byte[]> sps, List<byte[]> pps)
+            throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(1);                                   // configurationVersion
+        out.write(params.profileTierLevel);             // profile_space/tier/profile_idc、兼容标志、约束标志、level_idc
+        out.write(shortBytes(0xF000));                  // min_spatial_segmentation_idc = 0
+        out.write(0xFC);                                // parallelismType = 0
+        out.write(0xFC | params.chromaFormat);
+        out.write(0xF8 | params.bitDepthLumaMinus8);
+        out.write(0xF8 | params.bitDepthChromaMinus8);
+        out.write(shortBytes(0));                       // avgFrameRate
+        // constantFrameRate=0, numTemporalLayers, temporalIdNested, lengthSizeMinusOne=3
+        out.write((params.temporalLayers << 3) | (params.temporalIdNested ? 1 << 2 : 0) | 3);
+        out.write(3);                                   // numOfArrays
+        writeNalArray(out, NAL_VPS, vps);
+        writeNalArray(out, NAL_SPS, sps);
+        writeNalArray(out, NAL_PPS, pps);
+        return box("hvcC", out.toByteArray());
+    }
+
+    private static void writeNalArray(ByteArrayOutputStream out, int type, List<byte[]> units) throws IOException {
+        out.write(0x80 | type);                         // array_completeness = 1
+        out.write(shortBytes(units.size()));
+        for (byte[] unit : units) {
+            out.write(shortBytes(unit.length));
+            out.write(unit);
+        }
+    }
+
+    private static byte[] box(String type, byte[] payload) {
+        return concat(intBytes(8 + payload.length), ascii(type), payload);
+    }
+
+    /**
+     * @param versionAndFlags 高8位为version，低24位为flags
+     */
+    private static byte[] fullBox(String type, int versionAndFlags, byte[] payload) {
+        return box(type, concat(intBytes(versionAndFlags), payload));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    private static byte[] shortBytes(int value) {
+        return new byte[]{(byte) (value >>> 8), (byte) value};
+    }
+
+    private static void writeInt(ByteArrayOutputStream out, int value) {
+        out.writeBytes(intBytes(value));
+    }
+
+    /**
+     * hvcC和ispe所需的SPS字段
+     */
+    static final class SequenceParameters {
+        // general_profile_space到general_level_idc的12个字节，与hvcC中的对应字段逐位相同
+        final byte[] profileTierLevel;
+        final int temporalLayers;
+        final boolean temporalIdNested;
+        final int chromaFormat;
+        final int width;
+        final int height;
+        final int bitDepthLumaMinus8;
+        final int bitDepthChromaMinus8;
+
+        private SequenceParameters(byte[] profileTierLevel, int temporalLayers, boolean temporalIdNested,
+                                   int chromaFormat, int width, int height,
+                                   int bitDepthLumaMinus8, int bitDepthChromaMinus8) {
+            this.profileTierLevel = profileTierLevel;
+            this.temporalLayers = temporalLayers;
+            this.temporalIdNested = temporalIdNested;
+            this.chromaFormat = chromaFormat;
+            this.width = width;
+            this.height = height;
+            this.bitDepthLumaMinus8 = bitDepthLumaMinus8;
+            this.bitDepthChromaMinus8 = bitDepthChromaMinus8;
+        }
+
+        /**
+         * @param nal SPS NAL单元（含2字节NAL头，不含起始码）
+         */
+        static SequenceParameters parse(byte[] nal) throws IOException {
+            BitReader bits = new BitReader(unescape(nal, 2));
+            bits.skip(4);                                       // sps_video_parameter_set_id
+            int maxSubLayersMinus1 = bits.read(3);
+            boolean temporalIdNested = bits.read(1) == 1;
+
+            byte[] profileTierLevel = new byte[12];
+            for (int i = 0; i < profileTierLevel.length; i++) {
+                profileTierLevel[i] = (byte) bits.read(8);
+            }
+            boolean[] subLayerProfile = new boolean[maxSubLayersMinus1];
+            boolean[] subLayerLevel = new boolean[maxSubLayersMinus1];
+            for (int i = 0; i < maxSubLayersMinus1; i++) {
+                subLayerProfile[i] = bits.read(1) == 1;
+                subLayerLevel[i] = bits.read(1) == 1;
+            }
+            if (maxSubLayersMinus1 > 0) {
+                bits.skip(2 * (8 - maxSubLayersMinus1));        // reserved_zero_2bits
+            }
+            for (int i = 0; i < maxSubLayersMinus1; i++) {
+                bits.skip((subLayerProfile[i] ? 88 : 0) + (subLayerLevel[i] ? 8 : 0));
+            }
+
+            bits.readUnsignedExpGolomb();                       // sps_seq_parameter_set_id
+            int chromaFormat = bits.readUnsignedExpGolomb();
+            if (chromaFormat == 3) {
+                bits.skip(1);                                   // separate_colour_plane_flag
+            }
+            int width = bits.readUnsignedExpGolomb();
+            int height = bits.readUnsignedExpGolomb();
+            if (bits.read(1) == 1) {                            // conformance_window_flag
+                int subWidth = chromaFormat == 1 || chromaFormat == 2 ? 2 : 1;
+                int subHeight = chromaFormat == 1 ? 2 : 1;
+                width -= subWidth * (bits.readUnsignedExpGolomb() + bits.readUnsignedExpGolomb());
+                height -= subHeight * (bits.readUnsignedExpGolomb() + bits.readUnsignedExpGolomb());
+            }
+            int bitDepthLuma = bits.readUnsignedExpGolomb();
+            int bitDepthChroma = bits.readUnsignedExpGolomb();
+            if (width <= 0 || height <= 0 || chromaFormat > 3) {
+                throw new IOException("Invalid HEVC SPS: " + width + "x" + height + ", chroma " + chromaFormat);
+            }
+            return new SequenceParameters(profileTierLevel, maxSubLayersMinus1 + 1, temporalIdNested,
+                    chromaFormat, width, height, bitDepthLuma, bitDepthChroma);
+        }
+
+        /**
+         * 去掉NAL头和防竞争字节（0x000003中的0x03）
+         */
+        private static byte[] unescape(byte[] nal, int offset) {
+            byte[] rbsp = new byte[nal.length - offset];
+            int length = 0;
+            int zeros = 0;
+            for (int i = offset; i < nal.length; i++) {
+                int b = nal[i] & 0xFF;
+                if (zeros >= 2 && b == 3) {
+                    zeros = 0;
+                    continue;
+                }
+                zeros = b == 0 ? zeros + 1 : 0;
+                rbsp[length++] = (byte) b;
+            }
+            return Arrays.copyOf(rbsp, length);
+        }
+    }
+
+    private static final class BitReader {
+        private final byte[] data;
+        private int bitPosition;
+
+        BitReader(byte[] data) {
+            this.data = data;
+        }
+
+        int read(int count) throws IOException {
+            int value = 0;
+            for (int i = 0; i < count; i++) {
+                if (bitPosition >= data.length * 8) {
+                    throw new IOException("HEVC SPS ended unexpectedly");
+                }
+                int bit = (data[bitPosition >> 3] >> (7 - (bitPosition & 7))) & 1;
+                value = (value << 1) | bit;
+                bitPosition++;
+            }
+            return value;
+        }
+
+        void skip(int count) throws IOException {
+            if (bitPosition + count > data.length * 8) {
+                throw new IOException("HEVC SPS ended unexpectedly");
+            }
+            bitPosition += count;
+        }
+
+        int readUnsignedExpGolomb() throws IOException {
+            int leadingZeros = 0;
+            while (read(1) == 0) {
+                if (++leadingZeros > 30) {
+                    throw new IOException("Invalid Exp-Golomb code in HEVC SPS");
+                }
+            }
+            return (1 << leadingZeros) - 1 + read(leadingZeros);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.videoframecatcher.service.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 将FFmpeg输出的HEVC Annex B裸流按访问单元（即一帧）切分
+ * 要求编码器为每个访问单元输出AUD（x265参数aud=1），以AUD NAL作为帧边界
+ */
+class HevcAccessUnitReader {
+
+    private static final int NAL_AUD = 35;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int position;
+    private int limit;
+
+    // 当前访问单元的数据，按需扩容
+    private byte[] unit = new byte[256 * 1024];
+    private int unitLength;
+
+    // 连续0x00的个数和是否刚读完起始码，用于跨缓冲区识别起始码
+    private int zeros;
+    private boolean afterStartCode;
+    private boolean eof;
+
+    HevcAccessUnitReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 读取下一个访问单元
+     * @return 访问单元数据（以AUD开头，包含参数集和条带），流结束时返回null
+     */
+    byte[] nextAccessUnit() throws IOException {
+        while (!eof) {
+            int b = read();
+            if (b < 0) {
+                eof = true;
+                break;
+            }
+            append(b);
+
+            if (afterStartCode) {
+                afterStartCode = false;
+                int nalType = (b >> 1) & 0x3F;
+                // 起始码（含前导0x00）和NAL头已追加，若之前已有数据则新访问单元从起始码开始
+                int startCodeLength = Math.min(zeros, 3) + 2;
+                int boundary = unitLength - startCodeLength;
+                zeros = 0;
+                if (nalType == NAL_AUD && boundary > 0) {
+                    byte[] completed = Arrays.copyOf(unit, boundary);
+                    System.arraycopy(unit, boundary, unit, 0, startCodeLength);
+                    unitLength = startCodeLength;
+                    return completed;
+                }
+                continue;
+            }
+
+            if (b == 0) {
+                zeros++;
+            } else {
+                afterStartCode = b == 1 && zeros >= 2;
+                if (!afterStartCode) {
+                    zeros = 0;
+                }
+            }
+        }
+
+        if (unitLength == 0) {
+            return null;
+        }
+        byte[] last = Arrays.copyOf(unit, unitLength);
+        unitLength = 0;
+        return last;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private void append(int b) {
+        if (unitLength == unit.length) {
+            unit = Arrays.copyOf(unit, unit.length * 2);
+        }
+        unit[unitLength++] = (byte) b;
+    }
+}
@@ -0,0 +1,72 @@
+package com.videoframecatcher.service.impl;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 按需解码图像：只读取文件头获取尺寸，或以降采样方式解码，避免为此生成原尺寸的像素数据
+ */
+final class ImageDecoding {
+
+    private ImageDecoding() {
+    }
+
+    /**
+     * 从文件头读取图像尺寸，不解码像素
+     * @return 尺寸；无法识别格式时返回null
+     */
+    static Dimension readDimensions(byte[] imageData) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            ImageReader reader = openReader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * 按整数步长隔行隔列解码，结果宽度不小于targetWidth（原图更窄时按原尺寸解码）
+     * @return 解码的图像；无法识别格式时返回null
+     */
+    static BufferedImage decodeSubsampled(byte[] imageData, int targetWidth) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            ImageReader reader = openReader(input);
+            if (reader == null) {
+                return null;
+            }
+            try {
+                int step = Math.max(1, reader.getWidth(0) / targetWidth);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static ImageReader openReader(ImageInputStream input) {
+        if (input == null) {
+            return null;
+        }
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+        if (!readers.hasNext()) {
+            return null;
+        }
+        ImageReader reader = readers.next();
+        reader.setInput(input, true, true);
+        return reader;
+    }
+}
@@ -0,0 +1,100 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.service.ExtractedFrame;
+import com.videoframecatcher.service.ThumbnailEncoder;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+/**
+ * 纯Java的进程内缩略图生成
+ * 直接使用流水线已解码的像素，经面积平均缩小后由ImageIO编码，不启动子进程也不产生临时文件
+ */
+@Service
+@ConditionalOnProperty(name = "image.processing.thumbnail.engine", havingValue = "java")
+public class JavaThumbnailEncoder implements ThumbnailEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(JavaThumbnailEncoder.class);
+
+    @Value("${image.processing.thumbnail.format:jpg}")
+    private String format;
+
+    @PostConstruct
+    public void init() {
+        // ImageIO默认不带WebP编码器
+        if (!ImageIO.getImageWritersByFormatName(format).hasNext()) {
+            throw new IllegalStateException("Thumbnail format not supported by java engine: " + format);
+        }
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public boolean usesDecodedImage() {
+        return true;
+    }
+
+    @Override
+    public byte[] createThumbnail(ExtractedFrame frame, byte[] imageData, int width, int height, int quality) {
+        return createThumbnail(frame, imageData, null, width, height, quality);
+    }
+
+    @Override
+    public byte[] createThumbnail(ExtractedFrame frame, byte[] imageData, BufferedImage decoded,
+                                  int width, int height, int quality) {
+        try {
+            BufferedImage source = decoded != null ? decoded : ImageIO.read(new ByteArrayInputStream(imageData));
+            if (source == null) {
+                logger.error("Failed to decode frame {} for thumbnail", frame.getFrameNumber());
+                return null;
+            }
+
+            // 保持宽高比，只缩小不放大
+            double scale = Math.min(1.0, Math.min((double) width / source.getWidth(),
+                    (double) height / source.getHeight()));
+            int targetWidth = (int) Math.max(1, Math.round(source.getWidth() * scale));
+            int targetHeight = (int) Math.max(1, Math.round(source.getHeight() * scale));
+
+            return encode(AreaAverageScaler.scale(source, targetWidth, targetHeight), quality);
+
+        } catch (Exception e) {
+            logger.error("Failed to create thumbnail for frame {}", frame.getFrameNumber(), e);
+            return null;
+        }
+    }
+
+    private byte[] encode(BufferedImage image, int quality) throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByFormatName(format);
+        ImageWriter writer = writers.next();
+        ByteArrayOutputStream output = new ByteArrayOutputStream(32 * 1024);
+        try (ImageOutputStream stream = ImageIO.createImageOutputStream(output)) {
+            writer.setOutput(stream);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (param.canWriteCompressed() && "jpg".equals(format)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(Math.max(1, Math.min(100, quality)) / 100f);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,481 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.dto.UploadCreateRequest;
+import com.videoframecatcher.dto.UploadSessionDTO;
+import com.videoframecatcher.entity.ExtractionMode;
+import com.videoframecatcher.exception.UploadConflictException;
+import com.videoframecatcher.service.ChunkedUploadService;
+import com.videoframecatcher.service.StorageService;
+import com.videoframecatcher.service.StoredVideo;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于本地文件的分片上传
+ * 每个会话对应上传目录下的数据文件（.part）和元数据文件（.properties），
+ * 已接收的偏移量即数据文件的长度，服务重启后会话仍可继续
+ */
+@Service
+public class LocalChunkedUploadServiceImpl implements ChunkedUploadService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalChunkedUploadServiceImpl.class);
+
+    // 单次transferFrom的最大字节数，实际由通道内部的小缓冲区分批读写
+    private static final long TRANSFER_CHUNK = 8L * 1024 * 1024;
+
+    private final StorageService storageService;
+
+    // 上传中的会话状态：串行化同一会话的追加，并持有随追加增量计算的SHA-256
+    private final ConcurrentHashMap<String, UploadState> states = new ConcurrentHashMap<>();
+
+    // 上传目录应与存储目录位于同一文件系统，完成时才能以重命名代替复制
+    @Value("${storage.upload.path:./storage/uploads}")
+    private String uploadPath;
+
+    @Value("${storage.upload.max-size:53687091200}")
+    private long maxUploadSize;
+
+    @Value("${storage.upload.expiry-hours:24}")
+    private long expiryHours;
+
+    @Value("${storage.upload.progressive-ingest.stall-timeout-seconds:600}")
+    private long stallTimeoutSeconds;
+
+    public LocalChunkedUploadServiceImpl(StorageService storageService) {
+        this.storageService = storageService;
+    }
+
+    @Override
+    public UploadSessionDTO createUpload(UploadCreateRequest request) {
+        if (request.getLength() > maxUploadSize) {
+            throw new IllegalArgumentException("Video file too large. Maximum size: " + maxUploadSize + " bytes");
+        }
+        if (request.getMinFrames() != null && request.getMaxFrames() != null
+                && request.getMinFrames() > request.getMaxFrames()) {
+            throw new IllegalArgumentException("minFrames must not exceed maxFrames");
+        }
+        String uploadId = UUID.randomUUID().toString();
+        try {
+            Files.createDirectories(Paths.get(uploadPath));
+            Files.createFile(partFile(uploadId));
+
+            Properties metadata = new Properties();
+            metadata.setProperty("name", request.getName());
+            metadata.setProperty("filename", request.getFilename());
+            metadata.setProperty("length", String.valueOf(request.getLength()));
+            metadata.setProperty("extractionMode", (request.getExtractionMode() != null
+                    ? request.getExtractionMode() : ExtractionMode.FIXED_RATE).name());
+            if (request.getMinFrames() != null) {
+                metadata.setProperty("minFrames", String.valueOf(request.getMinFrames()));
+            }
+            if (request.getMaxFrames() != null) {
+                metadata.setProperty("maxFrames", String.valueOf(request.getMaxFrames()));
+            }
+            metadata.setProperty("createdAt", LocalDateTime.now().toString());
+            writeMetadata(uploadId, metadata);
+
+            logger.info("Upload {} created for {} ({} bytes)", uploadId, request.getFilename(), request.getLength());
+            return loadSession(uploadId);
+
+        } catch (IOException e) {
+            logger.error("Failed to create upload for {}", request.getFilename(), e);
+            throw new RuntimeException("Failed to create upload", e);
+        }
+    }
+
+    @Override
+    public UploadSessionDTO getUpload(String uploadId) {
+        return loadSession(uploadId);
+    }
+
+    @Override
+    public long appendChunk(String uploadId, long offset, InputStream data) {
+        UploadSessionDTO session = loadSession(uploadId);
+        UploadState state = states.computeIfAbsent(uploadId, id -> new UploadState());
+
+        synchronized (state) {
+            try (FileChannel channel = FileChannel.open(partFile(uploadId), StandardOpenOption.WRITE)) {
+                long current = channel.size();
+                if (offset != current) {
+                    throw new UploadConflictException("Upload offset mismatch: expected " + current + " but got " + offset);
+                }
+                long length = session.getLength();
+
+                // 摘要只能顺序累加：从头开始时新建，与文件长度不一致（如重启后）时放弃，完成时重新计算
+                if (current == 0) {
+                    state.digest = newDigest();
+                    state.digestedBytes = 0;
+                } else if (state.digest != null && state.digestedBytes != current) {
+                    state.digest = null;
+                }
+
+                InputStream input = state.digest != null ? new DigestingInputStream(data, state) : data;
+                ReadableByteChannel source = Channels.newChannel(input);
+                long position = current;
+                try {
+                    while (position < length) {
+                        long transferred = channel.transferFrom(source, position, Math.min(TRANSFER_CHUNK, length - position));
+                        if (transferred <= 0) {
+                            break;
+                        }
+                        position += transferred;
+                    }
+                } finally {
+                    // 连接中断时可能有已读入摘要但未写入文件的数据，此时摘要作废
+                    if (state.digest != null && state.digestedBytes != channel.size()) {
+                        state.digest = null;
+                    }
+                }
+
+                if (position == length && data.read() != -1) {
+                    throw new IllegalArgumentException("Chunk exceeds declared upload length " + length);
+                }
+
+                logger.debug("Upload {} received {} bytes, offset {}/{}", uploadId, position - current, position, length);
+                return position;
+
+            } catch (IOException e) {
+                // 客户端断开：已写入的部分保留，客户端查询偏移量后继续
+                logger.warn("Upload {} interrupted: {}", uploadId, e.toString());
+                return currentOffset(uploadId);
+            }
+        }
+    }
+
+    @Override
+    public boolean claimProgressiveIngest(String uploadId) {
+        UploadState state = states.computeIfAbsent(uploadId, id -> new UploadState());
+
+        synchronized (state) {
+            Properties metadata = readMetadata(uploadId);
+            if (metadata.getProperty("progressive") != null) {
+                return false;
+            }
+            long length = Long.parseLong(metadata.getProperty("length"));
+            long offset = currentOffset(uploadId);
+            int headerLength = (int) Math.min(offset, StreamableContainer.PROBE_BYTES);
+
+            byte[] header = new byte[headerLength];
+            try (InputStream input = Files.newInputStream(partFile(uploadId))) {
+                headerLength = input.readNBytes(header, 0, headerLength);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to read upload header: " + uploadId, e);
+            }
+            Boolean streamable = StreamableContainer.isStreamable(header,
+                    offset >= length || headerLength >= StreamableContainer.PROBE_BYTES);
+            if (streamable == null) {
+                return false;
+            }
+
+            // 判断结果只记录一次：不可顺序读取的文件等上传完成后按正常流程处理
+            metadata.setProperty("progressive", streamable.toString());
+            writeMetadata(uploadId, metadata);
+            logger.info("Upload {} container is {}streamable", uploadId, streamable ? "" : "not ");
+            return streamable;
+        }
+    }
+
+    @Override
+    public String attachAlbum(String uploadId, Long albumId) {
+        UploadState state = states.computeIfAbsent(uploadId, id -> new UploadState());
+
+        synchronized (state) {
+            Properties metadata = readMetadata(uploadId);
+            String videoPath = storageService.linkVideo(partFile(uploadId), metadata.getProperty("filename"), albumId);
+            metadata.setProperty("albumId", albumId.toString());
+            metadata.setProperty("videoPath", videoPath);
+            writeMetadata(uploadId, metadata);
+            return videoPath;
+        }
+    }
+
+    @Override
+    public InputStream openProgressiveStream(String uploadId) {
+        UploadSessionDTO session = loadSession(uploadId);
+        Path metadata = metadataFile(uploadId);
+        try {
+            // 会话元数据在上传被放弃或过期清理时删除，完成时也会删除，但此时数据已全部写入
+            return new GrowingFileInputStream(partFile(uploadId), session.getLength(),
+                    () -> Files.exists(metadata), Duration.ofSeconds(stallTimeoutSeconds));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open upload for reading: " + uploadId, e);
+        }
+    }
+
+    @Override
+    public Optional<UploadSessionDTO> findUploadByAlbum(Long albumId) {
+        Path dir = Paths.get(uploadPath);
+        if (!Files.isDirectory(dir)) {
+            return Optional.empty();
+        }
+        String expected = String.valueOf(albumId);
+        try (var files = Files.newDirectoryStream(dir, "*.properties")) {
+            for (Path file : files) {
+                String uploadId = file.getFileName().toString().replace(".properties", "");
+                try {
+                    if (expected.equals(readMetadata(uploadId).getProperty("albumId"))) {
+                        return Optional.of(loadSession(uploadId));
+                    }
+                } catch (RuntimeException e) {
+                    // 会话在遍历期间被删除或ID不合法
+                    logger.debug("Skipping upload {}: {}", uploadId, e.getMessage());
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to search uploads for album {}", albumId, e);
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public StoredVideo completeUpload(String uploadId, Long albumId) {
+        UploadSessionDTO session = loadSession(uploadId);
+        UploadState state = states.computeIfAbsent(uploadId, id -> new UploadState());
+
+        synchronized (state) {
+            try {
+                Path part = partFile(uploadId);
+                long size = Files.size(part);
+                if (size != session.getLength()) {
+                    throw new UploadConflictException("Upload incomplete: received " + size + " of " + session.getLength() + " bytes");
+                }
+
+                String contentHash;
+                if (state.digest != null && state.digestedBytes == size) {
+                    contentHash = HexFormat.of().formatHex(state.digest.digest());
+                } else {
+                    logger.info("Upload {} digest not available, hashing assembled file", uploadId);
+                    contentHash = hashFile(part);
+                }
+
+                StoredVideo stored;
+                if (session.getAlbumId() != null) {
+                    // 渐进式接收：数据已通过硬链接位于相册目录，删除上传目录中的链接即可
+                    stored = new StoredVideo(readMetadata(uploadId).getProperty("videoPath"), size, contentHash);
+                    Files.delete(part);
+                } else {
+                    stored = storageService.moveVideo(part, session.getFilename(), albumId, contentHash);
+                }
+                Files.deleteIfExists(metadataFile(uploadId));
+                states.remove(uploadId);
+                return stored;
+
+            } catch (IOException e) {
+                logger.error("Failed to complete upload {}", uploadId, e);
+                throw new RuntimeException("Failed to complete upload", e);
+            }
+        }
+    }
+
+    @Override
+    public void deleteUpload(String uploadId) {
+        loadSession(uploadId);
+        UploadState state = states.computeIfAbsent(uploadId, id -> new UploadState());
+        synchronized (state) {
+            removeFiles(uploadId);
+            states.remove(uploadId);
+        }
+        logger.info("Upload {} deleted", uploadId);
+    }
+
+    /**
+     * 清理长时间没有新数据的上传
+     */
+    @Scheduled(fixedDelay = 3600000)
+    public void cleanupExpiredUploads() {
+        Path dir = Paths.get(uploadPath);
+        if (!Files.isDirectory(dir)) {
+            return;
+        }
+        Instant threshold = Instant.now().minus(Duration.ofHours(expiryHours));
+        try (var parts = Files.newDirectoryStream(dir, "*.part")) {
+            for (Path part : parts) {
+                String uploadId = part.getFileName().toString().replace(".part", "");
+                try {
+                    if (Files.getLastModifiedTime(part).toInstant().isBefore(threshold)) {
+                        removeFiles(uploadId);
+                        states.remove(uploadId);
+                        logger.info("Expired upload {} removed", uploadId);
+                    }
+                } catch (IOException e) {
+                    logger.error("Failed to check upload {}", uploadId, e);
+                }
+            }
+        } catch (IOException e) {
+            logger.error("Failed to cleanup expired uploads", e);
+        }
+    }
+
+    private UploadSessionDTO loadSession(String uploadId) {
+        Properties metadata = readMetadata(uploadId);
+
+        UploadSessionDTO session = new UploadSessionDTO();
+        session.setUploadId(uploadId);
+        session.setName(metadata.getProperty("name"));
+        session.setFilename(metadata.getProperty("filename"));
+        session.setLength(Long.parseLong(metadata.getProperty("length")));
+        session.setExtractionMode(ExtractionMode.valueOf(metadata.getProperty("extractionMode")));
+        session.setMinFrames(parseInteger(metadata.getProperty("minFrames")));
+        session.setMaxFrames(parseInteger(metadata.getProperty("maxFrames")));
+        session.setCreatedAt(LocalDateTime.parse(metadata.getProperty("createdAt")));
+        String albumId = metadata.getProperty("albumId");
+        session.setAlbumId(albumId != null ? Long.valueOf(albumId) : null);
+        session.setOffset(currentOffset(uploadId));
+        return session;
+    }
+
+    private static Integer parseInteger(String value) {
+        return value != null ? Integer.valueOf(value) : null;
+    }
+
+    private Properties readMetadata(String uploadId) {
+        Properties metadata = new Properties();
+        try (Reader reader = Files.newBufferedReader(metadataFile(uploadId), StandardCharsets.UTF_8)) {
+            metadata.load(reader);
+        } catch (NoSuchFileException e) {
+            throw new IllegalArgumentException("Upload not found: " + uploadId);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read upload: " + uploadId, e);
+        }
+        return metadata;
+    }
+
+    /**
+     * 先写临时文件再原子替换，读取方不会看到写了一半的元数据
+     */
+    private void writeMetadata(String uploadId, Properties metadata) {
+        Path target = metadataFile(uploadId);
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        try {
+            try (Writer writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                metadata.store(writer, null);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to write upload metadata: " + uploadId, e);
+        }
+    }
+
+    private long currentOffset(String uploadId) {
+        try {
+            return Files.size(partFile(uploadId));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to read upload offset: " + uploadId, e);
+        }
+    }
+
+    private void removeFiles(String uploadId) {
+        try {
+            Files.deleteIfExists(partFile(uploadId));
+            Files.deleteIfExists(metadataFile(uploadId));
+        } catch (IOException e) {
+            logger.error("Failed to delete upload files: {}", uploadId, e);
+        }
+    }
+
+    private Path partFile(String uploadId) {
+        return Paths.get(uploadPath, validUploadId(uploadId) + ".part");
+    }
+
+    private Path metadataFile(String uploadId) {
+        return Paths.get(uploadPath, validUploadId(uploadId) + ".properties");
+    }
+
+    /**
+     * 上传ID来自请求路径，只接受UUID，避免拼出上传目录以外的路径
+     */
+    private String validUploadId(String uploadId) {
+        try {
+            return UUID.fromString(uploadId).toString();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid upload id: " + uploadId);
+        }
+    }
+
+    private String hashFile(Path file) throws IOException {
+        MessageDigest digest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream input = Files.newInputStream(file)) {
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static class UploadState {
+        private MessageDigest digest;
+        private long digestedBytes;
+    }
+
+    /**
+     * 读取时同步更新会话的摘要和已摘要字节数
+     */
+    private static class DigestingInputStream extends FilterInputStream {
+
+        private final UploadState state;
+
+        DigestingInputStream(InputStream in, UploadState state) {
+            super(in);
+            this.state = state;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (b != -1) {
+                state.digest.update((byte) b);
+                state.digestedBytes++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (read > 0) {
+                state.digest.update(b, off, read);
+                state.digestedBytes += read;
+            }
+            return read;
+        }
+    }
+}
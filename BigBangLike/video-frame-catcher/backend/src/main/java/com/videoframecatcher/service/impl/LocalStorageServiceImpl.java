@@ -1,6 +1,7 @@
 package com.videoframecatcher.service.impl;
 
 import com.videoframecatcher.service.StorageService;
+import com.videoframecatcher.service.StoredVideo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -12,6 +13,10 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
 import java.nio.file.*;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Service
@@ -26,7 +31,7 @@ public class LocalStorageServiceImpl implements StorageService {
     private String tempPath;
 
     @Override
-    public String storeVideo(MultipartFile videoFile, Long albumId) {
+    public StoredVideo storeVideo(MultipartFile videoFile, Long albumId) {
         try {
             // 创建相册目录结构
             String albumBasePath = createAlbumDirectory(albumId);
@@ -42,18 +47,73 @@ public class LocalStorageServiceImpl implements StorageService {
 
             Path targetLocation = Paths.get(videoDir, filename);
 
-            // 保存文件
-            Files.copy(videoFile.getInputStream(), targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            // 保存文件，写入过程中同步计算SHA-256，不再额外读一遍文件
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            long size;
+            try (InputStream input = new DigestInputStream(videoFile.getInputStream(), digest)) {
+                size = Files.copy(input, targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String contentHash = HexFormat.of().formatHex(digest.digest());
 
-            logger.info("Video file stored successfully: {}", targetLocation);
-            return targetLocation.toString();
+            logger.info("Video file stored successfully: {} (sha256 {})", targetLocation, contentHash);
+            return new StoredVideo(targetLocation.toString(), size, contentHash);
 
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         } catch (IOException e) {
             logger.error("Failed to store video file", e);
             throw new RuntimeException("Failed to store video file", e);
         }
     }
 
+    @Override
+    public StoredVideo moveVideo(Path sourceFile, String originalFilename, Long albumId, String contentHash) {
+        try {
+            Path targetLocation = videoLocation(originalFilename, albumId);
+            long size = Files.size(sourceFile);
+
+            // 同一文件系统内为重命名，不复制数据；目标路径上不会出现写了一半的文件
+            try {
+                Files.move(sourceFile, targetLocation, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                logger.warn("Atomic move not supported from {} to {}, falling back to copy", sourceFile, targetLocation);
+                Files.move(sourceFile, targetLocation, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            logger.info("Video file moved into album {}: {} (sha256 {})", albumId, targetLocation, contentHash);
+            return new StoredVideo(targetLocation.toString(), size, contentHash);
+
+        } catch (IOException e) {
+            logger.error("Failed to move video file into album {}", albumId, e);
+            throw new RuntimeException("Failed to move video file", e);
+        }
+    }
+
+    @Override
+    public String linkVideo(Path sourceFile, String originalFilename, Long albumId) {
+        try {
+            Path targetLocation = videoLocation(originalFilename, albumId);
+            Files.deleteIfExists(targetLocation);
+            Files.createLink(targetLocation, sourceFile);
+
+            logger.info("Video file linked into album {}: {}", albumId, targetLocation);
+            return targetLocation.toString();
+
+        } catch (IOException | UnsupportedOperationException e) {
+            logger.error("Failed to link video file into album {}", albumId, e);
+            throw new RuntimeException("Failed to link video file", e);
+        }
+    }
+
+    private Path videoLocation(String originalFilename, Long albumId) throws IOException {
+        String albumBasePath = createAlbumDirectory(albumId);
+        Path videoDir = Paths.get(albumBasePath, "video");
+        Files.createDirectories(videoDir);
+
+        String extension = getFileExtension(StringUtils.cleanPath(originalFilename));
+        return videoDir.resolve("original" + (extension != null ? "." + extension : ""));
+    }
+
     @Override
     public String storeFrame(Long albumId, Integer frameNumber, byte[] imageData, String format) {
         try {
@@ -76,15 +136,51 @@ public class LocalStorageServiceImpl implements StorageService {
         }
     }
 
+    @Override
+    public String linkIntoAlbum(String sourcePath, Long albumId) {
+        try {
+            Path albumsRoot = Paths.get(basePath, "albums").toAbsolutePath().normalize();
+            Path source = Paths.get(sourcePath).toAbsolutePath().normalize();
+            if (!source.startsWith(albumsRoot) || albumsRoot.relativize(source).getNameCount() < 2) {
+                throw new IllegalArgumentException("Source file is not inside an album directory: " + sourcePath);
+            }
+
+            // 去掉源相册ID这一级目录，保留其下的相对路径
+            Path relative = albumsRoot.relativize(source);
+            Path target = Paths.get(basePath, "albums", albumId.toString())
+                    .resolve(relative.subpath(1, relative.getNameCount()));
+            Files.createDirectories(target.getParent());
+            Files.deleteIfExists(target);
+
+            try {
+                Files.createLink(target, source);
+            } catch (UnsupportedOperationException | FileSystemException e) {
+                logger.debug("Hard link not available for {}, copying instead: {}", source, e.toString());
+                Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+
+            return target.toString();
+
+        } catch (IOException e) {
+            logger.error("Failed to link file {} into album {}", sourcePath, albumId, e);
+            throw new RuntimeException("Failed to link file into album: " + sourcePath, e);
+        }
+    }
+
     @Override
     public String storeThumbnail(Long albumId, Integer frameNumber, byte[] thumbnailData) {
+        return storeThumbnail(albumId, frameNumber, thumbnailData, "jpg");
+    }
+
+    @Override
+    public String storeThumbnail(Long albumId, Integer frameNumber, byte[] thumbnailData, String format) {
         try {
             String albumBasePath = createAlbumDirectory(albumId);
             String thumbnailsDir = Paths.get(albumBasePath, "frames", "thumbnails").toString();
 
             Files.createDirectories(Paths.get(thumbnailsDir));
 
-            String filename = String.format("frame_%06d_thumb.jpg", frameNumber);
+            String filename = String.format("frame_%06d_thumb.%s", frameNumber, format);
             Path targetLocation = Paths.get(thumbnailsDir, filename);
 
             Files.write(targetLocation, thumbnailData);
@@ -98,6 +194,18 @@ public class LocalStorageServiceImpl implements StorageService {
         }
     }
 
+    @Override
+    public String getFramePathPattern(Long albumId, String format) {
+        String albumBasePath = createAlbumDirectory(albumId);
+        return Paths.get(albumBasePath, "frames", "original", "frame_%06d." + format).toString();
+    }
+
+    @Override
+    public String getThumbnailPathPattern(Long albumId) {
+        String albumBasePath = createAlbumDirectory(albumId);
+        return Paths.get(albumBasePath, "frames", "thumbnails", "frame_%06d_thumb.jpg").toString();
+    }
+
     @Override
     public Resource loadFile(String filePath) {
         try {
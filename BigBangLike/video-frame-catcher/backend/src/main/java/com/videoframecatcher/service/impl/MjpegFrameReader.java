@@ -0,0 +1,146 @@
+package com.videoframecatcher.service.impl;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * 将FFmpeg image2pipe输出的MJPEG字节流切分为单张JPEG
+ * 按JPEG段结构解析（SOI -> 段 -> SOS熵编码数据 -> EOI），不依赖帧大小
+ */
+class MjpegFrameReader {
+
+    private static final int MARKER_PREFIX = 0xFF;
+    private static final int SOI = 0xD8;
+    private static final int EOI = 0xD9;
+    private static final int SOS = 0xDA;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[64 * 1024];
+    private int position;
+    private int limit;
+
+    // 当前帧的输出缓冲区，按需扩容
+    private byte[] frame = new byte[256 * 1024];
+    private int frameLength;
+
+    MjpegFrameReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * 读取下一张JPEG
+     * @return JPEG数据，流结束时返回null
+     */
+    byte[] nextFrame() throws IOException {
+        frameLength = 0;
+
+        // 定位SOI标记，跳过帧之间可能存在的填充字节
+        int previous = -1;
+        while (true) {
+            int b = read();
+            if (b < 0) {
+                return null;
+            }
+            if (previous == MARKER_PREFIX && b == SOI) {
+                break;
+            }
+            previous = b;
+        }
+        append(MARKER_PREFIX);
+        append(SOI);
+
+        int marker = readMarker();
+        while (true) {
+            append(MARKER_PREFIX);
+            append(marker);
+
+            if (marker == EOI) {
+                return Arrays.copyOf(frame, frameLength);
+            }
+            if (isStandalone(marker)) {
+                marker = readMarker();
+                continue;
+            }
+
+            int high = readRequired();
+            int low = readRequired();
+            append(high);
+            append(low);
+            int segmentLength = (high << 8) | low;
+            for (int i = 2; i < segmentLength; i++) {
+                append(readRequired());
+            }
+
+            marker = marker == SOS ? copyEntropyCodedData() : readMarker();
+        }
+    }
+
+    /**
+     * 复制SOS之后的熵编码数据，直到遇到下一个真实标记
+     * 数据中的0xFF会以0xFF00或RSTn形式出现，它们属于数据本身
+     */
+    private int copyEntropyCodedData() throws IOException {
+        while (true) {
+            int b = readRequired();
+            if (b != MARKER_PREFIX) {
+                append(b);
+                continue;
+            }
+            int next = readRequired();
+            while (next == MARKER_PREFIX) {
+                next = readRequired();
+            }
+            if (next == 0x00 || (next >= 0xD0 && next <= 0xD7)) {
+                append(MARKER_PREFIX);
+                append(next);
+                continue;
+            }
+            return next;
+        }
+    }
+
+    private int readMarker() throws IOException {
+        int b = readRequired();
+        if (b != MARKER_PREFIX) {
+            throw new IOException("Corrupt MJPEG stream: expected marker, got 0x" + Integer.toHexString(b));
+        }
+        int marker = readRequired();
+        while (marker == MARKER_PREFIX) {
+            marker = readRequired();
+        }
+        return marker;
+    }
+
+    private static boolean isStandalone(int marker) {
+        return marker == 0x01 || (marker >= 0xD0 && marker <= 0xD7);
+    }
+
+    private int readRequired() throws IOException {
+        int b = read();
+        if (b < 0) {
+            throw new EOFException("MJPEG stream ended in the middle of a frame");
+        }
+        return b;
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = in.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+        }
+        return buffer[position++] & 0xFF;
+    }
+
+    private void append(int b) {
+        if (frameLength == frame.length) {
+            frame = Arrays.copyOf(frame, frame.length * 2);
+        }
+        frame[frameLength++] = (byte) b;
+    }
+}
@@ -0,0 +1,102 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.entity.ExtractionMode;
+import com.videoframecatcher.service.ExtractedFrame;
+import com.videoframecatcher.service.FrameExtractor;
+import jakarta.annotation.PostConstruct;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.videoio.VideoCapture;
+import org.opencv.videoio.Videoio;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Consumer;
+
+/**
+ * 基于OpenCV VideoCapture的进程内帧提取
+ * 帧直接解码到复用的Mat缓冲区，只有采样点上的帧才做颜色转换和JPEG编码，不启动外部进程
+ */
+@Service
+@ConditionalOnProperty(name = "image.processing.extractor", havingValue = "opencv")
+public class OpenCvFrameExtractor implements FrameExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenCvFrameExtractor.class);
+
+    // 提取帧的JPEG质量，与FFmpeg后端的 -q:v 2 相当
+    private static final int JPEG_QUALITY = 95;
+
+    @PostConstruct
+    public void init() {
+        OpenCvSupport.ensureLoaded();
+    }
+
+    @Override
+    public String getName() {
+        return "opencv";
+    }
+
+    @Override
+    public boolean supports(ExtractionMode mode) {
+        // 关键帧和场景模式依赖FFmpeg的解码器选项和滤镜
+        return mode == null || mode == ExtractionMode.FIXED_RATE;
+    }
+
+    @Override
+    public int extractFrames(String videoPath, ExtractionMode mode, double framesPerSecond,
+                             Consumer<ExtractedFrame> frameConsumer) {
+        if (!supports(mode)) {
+            throw new IllegalArgumentException("Extraction mode not supported by OpenCV backend: " + mode);
+        }
+
+        logger.info("Extracting frames with OpenCV from video: {} at {} fps", videoPath, framesPerSecond);
+
+        VideoCapture capture = new VideoCapture(videoPath);
+        Mat frame = new Mat();
+        MatOfByte jpeg = new MatOfByte();
+        MatOfInt encodeParams = new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, JPEG_QUALITY);
+        try {
+            if (!capture.isOpened()) {
+                throw new RuntimeException("Failed to open video: " + videoPath);
+            }
+
+            double sourceFps = capture.get(Videoio.CAP_PROP_FPS);
+            // 允许采样点前半个源帧的误差，与FFmpeg fps滤镜的就近取帧一致
+            double toleranceMs = sourceFps > 0 ? 500.0 / sourceFps : 0;
+            double intervalMs = 1000.0 / framesPerSecond;
+
+            int frameCount = 0;
+            double nextSampleMs = 0;
+            // grab只解码不转换，未到采样点的帧不做retrieve
+            while (capture.grab()) {
+                double positionMs = capture.get(Videoio.CAP_PROP_POS_MSEC);
+                if (positionMs + toleranceMs < nextSampleMs) {
+                    continue;
+                }
+                if (!capture.retrieve(frame) || frame.empty()) {
+                    continue;
+                }
+                if (!Imgcodecs.imencode(".jpg", frame, jpeg, encodeParams)) {
+                    throw new RuntimeException("Failed to encode frame at " + positionMs + "ms");
+                }
+
+                frameCount++;
+                frameConsumer.accept(ExtractedFrame.fromData(frameCount, positionMs / 1000.0, jpeg.toArray()));
+                nextSampleMs = frameCount * intervalMs;
+            }
+
+            logger.info("OpenCV frame extraction completed successfully: {} frames", frameCount);
+            return frameCount;
+
+        } finally {
+            capture.release();
+            frame.release();
+            jpeg.release();
+            encodeParams.release();
+        }
+    }
+}
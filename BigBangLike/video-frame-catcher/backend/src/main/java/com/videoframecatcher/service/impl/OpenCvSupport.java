@@ -0,0 +1,30 @@
+package com.videoframecatcher.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * OpenCV本地库加载（org.openpnp:opencv自带各平台的本地库）
+ */
+final class OpenCvSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenCvSupport.class);
+
+    private static volatile boolean loaded;
+
+    private OpenCvSupport() {
+    }
+
+    static void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        synchronized (OpenCvSupport.class) {
+            if (!loaded) {
+                nu.pattern.OpenCV.loadLocally();
+                loaded = true;
+                logger.info("OpenCV native library loaded");
+            }
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.service.ExtractedFrame;
+import com.videoframecatcher.service.ThumbnailEncoder;
+import jakarta.annotation.PostConstruct;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Size;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.opencv.imgproc.Imgproc;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * 基于OpenCV的进程内缩略图生成（imdecode -> INTER_AREA缩放 -> imencode）
+ */
+@Service
+@ConditionalOnProperty(name = "image.processing.thumbnail.engine", havingValue = "opencv")
+public class OpenCvThumbnailEncoder implements ThumbnailEncoder {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenCvThumbnailEncoder.class);
+
+    // PNG压缩级别（0-9），缩略图优先速度
+    private static final int PNG_COMPRESSION = 3;
+
+    @Value("${image.processing.thumbnail.format:jpg}")
+    private String format;
+
+    @PostConstruct
+    public void init() {
+        OpenCvSupport.ensureLoaded();
+    }
+
+    @Override
+    public String getFormat() {
+        return format;
+    }
+
+    @Override
+    public byte[] createThumbnail(ExtractedFrame frame, byte[] imageData, int width, int height, int quality) {
+        MatOfByte input = new MatOfByte(imageData);
+        Mat source = null;
+        Mat resized = new Mat();
+        MatOfByte output = new MatOfByte();
+        MatOfInt encodeParams = encodeParams(quality);
+        try {
+            source = Imgcodecs.imdecode(input, Imgcodecs.IMREAD_COLOR);
+            if (source == null || source.empty()) {
+                logger.error("Failed to decode frame {} for thumbnail", frame.getFrameNumber());
+                return null;
+            }
+
+            // 保持宽高比，只缩小不放大
+            double scale = Math.min(1.0, Math.min((double) width / source.cols(), (double) height / source.rows()));
+            Size size = new Size(Math.max(1, Math.round(source.cols() * scale)),
+                    Math.max(1, Math.round(source.rows() * scale)));
+            Imgproc.resize(source, resized, size, 0, 0, Imgproc.INTER_AREA);
+
+            if (!Imgcodecs.imencode("." + format, resized, output, encodeParams)) {
+                logger.error("Failed to encode thumbnail for frame {} as {}", frame.getFrameNumber(), format);
+                return null;
+            }
+            return output.toArray();
+
+        } finally {
+            input.release();
+            if (source != null) {
+                source.release();
+            }
+            resized.release();
+            output.release();
+            encodeParams.release();
+        }
+    }
+
+    private MatOfInt encodeParams(int quality) {
+        int clamped = Math.max(1, Math.min(100, quality));
+        switch (format) {
+            case "webp":
+                return new MatOfInt(Imgcodecs.IMWRITE_WEBP_QUALITY, clamped);
+            case "png":
+                return new MatOfInt(Imgcodecs.IMWRITE_PNG_COMPRESSION, PNG_COMPRESSION);
+            default:
+                return new MatOfInt(Imgcodecs.IMWRITE_JPEG_QUALITY, clamped);
+        }
+    }
+}
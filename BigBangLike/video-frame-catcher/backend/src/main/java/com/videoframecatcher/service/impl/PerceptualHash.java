@@ -0,0 +1,68 @@
+package com.videoframecatcher.service.impl;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+/**
+ * 64位差值哈希（dHash）
+ * 将图像按面积平均缩小为9x8的灰度网格，逐行比较相邻两格的亮度得到64位，
+ * 对压缩噪声和轻微亮度变化不敏感，两帧哈希的汉明距离越小画面越接近
+ */
+final class PerceptualHash {
+
+    private static final int GRID_WIDTH = 9;
+    private static final int GRID_HEIGHT = 8;
+
+    // 降采样解码的目标宽度，远大于网格宽度即可保证每格有足够的采样点
+    private static final int SAMPLE_WIDTH = 144;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * 以降采样方式解码JPEG并计算哈希，不生成原尺寸的像素数据
+     * @return 哈希值；无法解码时返回null
+     */
+    static Long compute(byte[] imageData) throws IOException {
+        BufferedImage image = ImageDecoding.decodeSubsampled(imageData, SAMPLE_WIDTH);
+        return image != null ? compute(image) : null;
+    }
+
+    static long compute(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        long[] luma = new long[GRID_WIDTH * GRID_HEIGHT];
+        int[] counts = new int[GRID_WIDTH * GRID_HEIGHT];
+
+        int[] row = new int[width];
+        for (int y = 0; y < height; y++) {
+            image.getRGB(0, y, width, 1, row, 0, width);
+            int cellRow = y * GRID_HEIGHT / height * GRID_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int rgb = row[x];
+                int cell = cellRow + x * GRID_WIDTH / width;
+                luma[cell] += (((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114);
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int gy = 0; gy < GRID_HEIGHT; gy++) {
+            for (int gx = 0; gx < GRID_WIDTH - 1; gx++) {
+                int left = gy * GRID_WIDTH + gx;
+                // 交叉相乘比较平均值，避免除法；图像小于网格时空格的计数为0，按0处理
+                long leftValue = luma[left] * Math.max(1, counts[left + 1]);
+                long rightValue = luma[left + 1] * Math.max(1, counts[left]);
+                hash = (hash << 1) | (leftValue > rightValue ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * 两个哈希的汉明距离（0-64）
+     */
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,379 @@
+package com.videoframecatcher.service.impl;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntSupplier;
+
+/**
+ * 本节点FFmpeg进程的准入控制和CPU线程分配
+ * 进程数上限和CPU令牌：所有受控进程都计入，令牌总数默认为CPU核数，
+ * 每个进程按分得的令牌数以 -threads 等参数显式限定FFmpeg使用的线程数
+ * 长时间运行的进程（整段解码、常驻编码器）：相册在流水线启动前整体预留（reserve），此时尚未占用任何下游资源，
+ * 进程槽位或令牌不足时排队等待；预留的进程数和每个进程的线程数由实际分得的槽位和令牌决定，
+ * 流水线按预留结果确定分段解码进程数和编码器数，运行期间长进程从预留中领取，不再排队，
+ * 否则它们在等待下游帧处理时再排队等待槽位会形成循环等待；领取超出预留时报错，而不是越过进程数上限；
+ * 不属于任何预留的长进程在进程数达到上限时等待，同一时刻至少放行一个进程
+ * 逐帧的短进程（缩略图、单帧转换）：进程数达到上限或令牌已领完时排队等待；
+ * 同一时刻至少放行一个短进程（令牌已领完时按1个线程执行），长进程占满时短进程仍能逐个执行，不会死锁
+ */
+@Component
+public class ProcessGovernor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessGovernor.class);
+
+    // 等待预留时检查处理是否已取消的间隔
+    private static final long RESERVE_CHECK_MILLIS = 500;
+    // 预留的槽位都在使用时等待归还的时长：进程退出后凭证异步释放，重启的编码器可能稍早于归还领取
+    private static final long RESERVATION_RETURN_WAIT_MILLIS = 5000;
+
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition slotReleased = lock.newCondition();
+    private final int cpuTokens;
+    private final int configuredMaxProcesses;
+    private int maxProcesses;
+    private int running;
+    private int runningShort;
+    private int reservedProcesses;
+    private int freeTokens;
+
+    public ProcessGovernor(@Value("${ffmpeg.governor.max-processes:0}") int maxProcesses,
+                           @Value("${ffmpeg.governor.cpu-tokens:0}") int cpuTokens,
+                           MeterRegistry meterRegistry) {
+        this.cpuTokens = cpuTokens > 0 ? cpuTokens : Runtime.getRuntime().availableProcessors();
+        this.configuredMaxProcesses = maxProcesses > 0 ? maxProcesses : this.cpuTokens * 2;
+        this.maxProcesses = configuredMaxProcesses;
+        this.freeTokens = this.cpuTokens;
+        logger.info("FFmpeg process governor: at most {} processes, {} CPU tokens", this.maxProcesses, this.cpuTokens);
+
+        Gauge.builder("ffmpeg.processes.running", this, governor -> governor.snapshot(() -> governor.running))
+                .description("FFmpeg processes currently admitted by the process governor")
+                .register(meterRegistry);
+        Gauge.builder("ffmpeg.cpu.tokens.used", this,
+                        governor -> governor.snapshot(() -> governor.cpuTokens - governor.freeTokens))
+                .description("CPU tokens handed out to running FFmpeg processes as thread budgets")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 准入一个不属于预留的进程
+     * @param requestedThreads 请求的线程数，0表示不限（取剩余的全部令牌）
+     * @param longRunning 是否为长时间运行的进程
+     * @return 准入凭证，进程结束后必须释放
+     */
+    public Grant admit(int requestedThreads, boolean longRunning) throws InterruptedException {
+        return admit(requestedThreads, longRunning, null);
+    }
+
+    /**
+     * 准入一个进程
+     * @param requestedThreads 请求的线程数，0表示不限（取剩余的全部令牌）；从预留中领取时使用预留的线程数
+     * @param longRunning 是否为长时间运行的进程；长进程不等待令牌，令牌已领完时按1个线程执行
+     * @param reservation 长进程所属的预留，已关闭或为null时按不属于预留的进程准入
+     * @return 准入凭证，进程结束后必须释放
+     * @throws IllegalStateException 组内同时运行的长进程超出了预留的槽位
+     */
+    public Grant admit(int requestedThreads, boolean longRunning, Reservation reservation)
+            throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            if (longRunning && reservation != null && !reservation.closed) {
+                return reservation.admit();
+            }
+            if (longRunning) {
+                while (running >= maxProcesses && running > 0) {
+                    slotReleased.await();
+                }
+            } else {
+                while ((running >= maxProcesses || freeTokens <= 0) && runningShort > 0) {
+                    slotReleased.await();
+                }
+                runningShort++;
+            }
+            running++;
+            int wanted = requestedThreads > 0 ? requestedThreads : cpuTokens;
+            int tokens = Math.max(0, Math.min(wanted, freeTokens));
+            freeTokens -= tokens;
+            return new Grant(tokens, longRunning, null);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 为一个相册的长进程整体预留进程槽位和CPU令牌，在流水线启动前调用
+     * 进程槽位或令牌不足时等待，直到至少能分得一个进程和一个令牌；
+     * 本节点没有其他预留时直接放行，保证总能有相册在处理
+     * 分得的进程数少于请求时按比例分给解码和编码，有编码器时至少各分得一个（此时可能超出上限一个进程）
+     * @param decoders 希望同时运行的解码进程数
+     * @param encoders 希望同时运行的常驻编码器数，0表示不需要
+     * @param tokens 希望领取的令牌数，在预留的进程之间平分
+     * @param cancelled 返回true时停止等待并抛出CancellationException
+     * @return 预留，分得的进程数和令牌数可能少于请求，处理结束后必须关闭
+     */
+    public Reservation reserve(int decoders, int encoders, int tokens, BooleanSupplier cancelled)
+            throws InterruptedException {
+        decoders = Math.max(1, decoders);
+        encoders = Math.max(0, encoders);
+        lock.lockInterruptibly();
+        try {
+            boolean logged = false;
+            while ((running >= maxProcesses || freeTokens <= 0) && reservedProcesses > 0) {
+                if (cancelled.getAsBoolean()) {
+                    throw new CancellationException("Cancelled while waiting for FFmpeg process slots");
+                }
+                if (!logged) {
+                    logger.info("Waiting for FFmpeg process slots: {} of {} running, {} CPU tokens free",
+                            running, maxProcesses, freeTokens);
+                    logged = true;
+                }
+                slotReleased.await(RESERVE_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            int granted = Math.max(encoders > 0 ? 2 : 1, Math.min(decoders + encoders,
+                    Math.min(maxProcesses - running, freeTokens)));
+            int grantedTokens = Math.max(0, Math.min(Math.max(tokens, granted), freeTokens));
+            int grantedDecoders = encoders > 0
+                    ? Math.max(1, Math.min(decoders, granted * decoders / (decoders + encoders)))
+                    : granted;
+            running += granted;
+            reservedProcesses += granted;
+            freeTokens -= grantedTokens;
+            return new Reservation(grantedDecoders, granted - grantedDecoders, grantedTokens);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getCpuTokens() {
+        return cpuTokens;
+    }
+
+    /**
+     * 配置的进程数上限，运行期间的调整以此为基准
+     */
+    public int getConfiguredMaxProcesses() {
+        return configuredMaxProcesses;
+    }
+
+    public int getMaxProcesses() {
+        lock.lock();
+        try {
+            return maxProcesses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 调整进程数上限，调小时已运行的进程和已有的预留不受影响，之后的短进程和长进程预留按新的上限等待
+     */
+    public void setMaxProcesses(int maxProcesses) {
+        lock.lock();
+        try {
+            this.maxProcesses = Math.max(1, maxProcesses);
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Grant grant) {
+        lock.lock();
+        try {
+            running--;
+            if (!grant.longRunning) {
+                runningShort--;
+            }
+            freeTokens += grant.tokens;
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void returnToReservation(Reservation reservation) {
+        lock.lock();
+        try {
+            reservation.inUse--;
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void release(Reservation reservation) {
+        lock.lock();
+        try {
+            if (reservation.closed) {
+                return;
+            }
+            reservation.closed = true;
+            running -= reservation.processes;
+            reservedProcesses -= reservation.processes;
+            freeTokens += reservation.tokens;
+            slotReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double snapshot(IntSupplier value) {
+        lock.lock();
+        try {
+            return value.getAsInt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 在没有显式指定线程数的FFmpeg命令中加入线程预算：
+     * 每个输入前加 -threads（解码），最后一个输入之后加 -threads（第一个输出的编码），
+     * 全局的 -filter_threads / -filter_complex_threads（滤镜），x265参数中的 pools（HEVC编码线程池）
+     * 命令中已有 -threads 时原样返回
+     */
+    static List<String> applyThreadBudget(List<String> command, int threads) {
+        if (command.contains("-threads")) {
+            return command;
+        }
+        String budget = String.valueOf(threads);
+        int lastInput = command.lastIndexOf("-i");
+        List<String> result = new ArrayList<>(command.size() + 12);
+        result.add(command.get(0));
+        result.addAll(List.of("-filter_threads", budget, "-filter_complex_threads", budget));
+        for (int i = 1; i < command.size(); i++) {
+            String arg = command.get(i);
+            if ("-i".equals(arg)) {
+                result.add("-threads");
+                result.add(budget);
+            }
+            if ("-x265-params".equals(arg) && i + 1 < command.size() && !command.get(i + 1).contains("pools=")) {
+                result.add(arg);
+                result.add(command.get(++i) + ":pools=" + budget);
+                continue;
+            }
+            result.add(arg);
+            if (i == lastInput + 1) {
+                result.add("-threads");
+                result.add(budget);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 准入凭证，释放多次只生效一次
+     */
+    public final class Grant {
+
+        private final int tokens;
+        private final boolean longRunning;
+        // 从预留中领取时不为null，释放时归还给预留
+        private final Reservation reservation;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Grant(int tokens, boolean longRunning, Reservation reservation) {
+            this.tokens = tokens;
+            this.longRunning = longRunning;
+            this.reservation = reservation;
+        }
+
+        /**
+         * 分配给进程的线程数；只有令牌已领完时作为唯一放行的短进程（或不属于预留的长进程）运行才为1
+         */
+        public int threads() {
+            return Math.max(1, tokens);
+        }
+
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                if (reservation != null) {
+                    returnToReservation(reservation);
+                } else {
+                    ProcessGovernor.this.release(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个相册的长进程预留：decoders + encoders个进程槽位，令牌在其间平分
+     * 长进程从预留中领取凭证，不再经过全局排队；关闭后归还全部槽位和令牌
+     */
+    public final class Reservation implements AutoCloseable {
+
+        private final int decoders;
+        private final int encoders;
+        private final int processes;
+        private final int tokens;
+        // 以下由ProcessGovernor的锁保护
+        private int inUse;
+        private boolean closed;
+
+        private Reservation(int decoders, int encoders, int tokens) {
+            this.decoders = decoders;
+            this.encoders = encoders;
+            this.processes = decoders + encoders;
+            this.tokens = tokens;
+        }
+
+        /**
+         * 分得的解码进程数（分段解码的段数上限）
+         */
+        public int decoders() {
+            return decoders;
+        }
+
+        /**
+         * 分得的常驻编码器数
+         */
+        public int encoders() {
+            return encoders;
+        }
+
+        /**
+         * 每个进程的线程数，至少为1
+         */
+        public int threadsPerProcess() {
+            return Math.max(1, tokens / processes);
+        }
+
+        /**
+         * 从预留中领取一个进程槽位，持有ProcessGovernor的锁时调用
+         * 槽位都在使用时等待刚退出的进程归还，超时仍未归还说明组内的长进程超出了预留
+         */
+        private Grant admit() throws InterruptedException {
+            long remaining = TimeUnit.MILLISECONDS.toNanos(RESERVATION_RETURN_WAIT_MILLIS);
+            while (inUse >= processes && !closed) {
+                if (remaining <= 0) {
+                    throw new IllegalStateException("Long-running FFmpeg processes exceed the reservation of "
+                            + processes + " processes");
+                }
+                remaining = slotReleased.awaitNanos(remaining);
+            }
+            if (closed) {
+                // 等待期间预留已关闭，组内的处理已结束
+                throw new IllegalStateException("FFmpeg process reservation was closed");
+            }
+            inUse++;
+            return new Grant(threadsPerProcess(), true, this);
+        }
+
+        @Override
+        public void close() {
+            release(this);
+        }
+    }
+}
@@ -0,0 +1,511 @@
+package com.videoframecatcher.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 外部进程执行器，FFmpeg/ffprobe和GPU服务的所有子进程都通过它启动
+ * stdout和stderr由虚拟线程并发读取，任一管道写满都不会阻塞另一个；
+ * stderr只保留末尾若干行；超时后终止整个进程树；
+ * 命令带有 -progress pipe:2 时解析进度键值对并在进程运行期间回调；
+ * 在进程组内启动的进程登记到该组，取消进程组时统一终止；
+ * 指定了线程预算的FFmpeg进程先经ProcessGovernor准入，按分得的线程数改写命令，进程结束后归还
+ */
+@Component
+public class ProcessRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProcessRunner.class);
+
+    // -progress输出的键值行，如 "out_time_us=12000000"，每组以 "progress=continue|end" 结束
+    private static final Pattern PROGRESS_LINE_PATTERN = Pattern.compile("^([a-z_0-9]+)=(\\S*)$");
+
+    // stderr单行保留的最大长度
+    private static final int MAX_STDERR_LINE_CHARS = 4096;
+
+    // 当前线程所属的进程组；处理线程进入进程组后，它创建的线程（分段解码、流水线工作线程）自动继承
+    private static final InheritableThreadLocal<ProcessGroup> CURRENT_GROUP = new InheritableThreadLocal<>();
+
+    @Value("${ffmpeg.process.timeout:300}")
+    private long defaultTimeoutSeconds;
+
+    @Value("${ffmpeg.process.stderr-tail-lines:200}")
+    private int stderrTailLines;
+
+    private final ProcessGovernor governor;
+
+    public ProcessRunner(ProcessGovernor governor) {
+        this.governor = governor;
+    }
+
+    /**
+     * 以默认选项执行命令并等待结束
+     */
+    public FFmpegServiceImpl.ProcessResult run(List<String> command) throws IOException, InterruptedException {
+        return run(command, options());
+    }
+
+    /**
+     * 执行命令并等待结束
+     */
+    public FFmpegServiceImpl.ProcessResult run(List<String> command, Options options)
+            throws IOException, InterruptedException {
+        return start(command, options).await();
+    }
+
+    /**
+     * 启动命令，调用方通过返回的句柄读取stdout（streamStdout时）或写入stdin（pipeStdin时），
+     * 并负责调用await()或destroy()
+     */
+    public RunningProcess start(List<String> command, Options options) throws IOException {
+        Duration timeout = options.timeout != null ? options.timeout : Duration.ofSeconds(defaultTimeoutSeconds);
+        if (options.cpuThreads < 0) {
+            logger.debug("Executing command: {}", String.join(" ", command));
+            return new RunningProcess(command, options, timeout, stderrTailLines, null);
+        }
+
+        ProcessGovernor.Grant grant;
+        ProcessGroup group = CURRENT_GROUP.get();
+        try {
+            grant = governor.admit(options.cpuThreads, options.longRunning,
+                    options.longRunning && group != null ? group.reservation : null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for process admission: " + command.get(0));
+        }
+        List<String> budgeted = ProcessGovernor.applyThreadBudget(command, grant.threads());
+        logger.debug("Executing command with {} threads: {}", grant.threads(), String.join(" ", budgeted));
+        try {
+            return new RunningProcess(budgeted, options, timeout, stderrTailLines, grant);
+        } catch (IOException | RuntimeException e) {
+            grant.release();
+            throw e;
+        }
+    }
+
+    /**
+     * 本节点用于FFmpeg线程预算的CPU令牌总数
+     */
+    public int getCpuTokens() {
+        return governor.getCpuTokens();
+    }
+
+    /**
+     * 为当前进程组预留长进程（见ProcessGovernor.reserve），进程槽位不足时等待，进程组取消时停止等待
+     * 组内此后启动的长进程从预留中领取准入凭证；预留关闭后恢复直接准入
+     */
+    public ProcessGovernor.Reservation reserveLongRunning(int decoders, int encoders, int tokens)
+            throws InterruptedException {
+        ProcessGroup group = CURRENT_GROUP.get();
+        ProcessGovernor.Reservation reservation =
+                governor.reserve(decoders, encoders, tokens, group != null ? group::isCancelled : () -> false);
+        if (group != null) {
+            group.reservation = reservation;
+        }
+        return reservation;
+    }
+
+    /**
+     * 当前进程组预留的解码进程数，没有预留时为defaultCount
+     */
+    public int reservedDecoders(int defaultCount) {
+        ProcessGroup group = CURRENT_GROUP.get();
+        ProcessGovernor.Reservation reservation = group != null ? group.reservation : null;
+        return reservation != null ? Math.min(defaultCount, reservation.decoders()) : defaultCount;
+    }
+
+    public static Options options() {
+        return new Options();
+    }
+
+    /**
+     * 进程组：一个相册处理任务启动的所有子进程
+     * 取消后组内运行中的进程树被强制终止，之后在组内启动进程会抛出CancellationException
+     */
+    public static final class ProcessGroup {
+
+        private final String name;
+        private final Set<RunningProcess> processes = ConcurrentHashMap.newKeySet();
+        private volatile boolean cancelled;
+        // 组内长进程的预留，由reserveLongRunning设置
+        private volatile ProcessGovernor.Reservation reservation;
+
+        public ProcessGroup(String name) {
+            this.name = name;
+        }
+
+        /**
+         * 当前线程进入进程组，返回的Scope关闭时退出
+         */
+        public Scope enter() {
+            ProcessGroup previous = CURRENT_GROUP.get();
+            CURRENT_GROUP.set(this);
+            return () -> {
+                if (previous != null) {
+                    CURRENT_GROUP.set(previous);
+                } else {
+                    CURRENT_GROUP.remove();
+                }
+            };
+        }
+
+        /**
+         * 取消进程组并终止组内所有进程树
+         */
+        public void cancel() {
+            cancelled = true;
+            int count = processes.size();
+            processes.forEach(RunningProcess::destroy);
+            logger.info("Process group {} cancelled, destroyed {} running processes", name, count);
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public int getRunningCount() {
+            return processes.size();
+        }
+
+        private void register(RunningProcess process) {
+            processes.add(process);
+            process.process.onExit().thenRun(() -> processes.remove(process));
+            // 登记与取消并发时，由这里补充终止
+            if (cancelled) {
+                process.destroy();
+            }
+        }
+
+        public interface Scope extends AutoCloseable {
+            @Override
+            void close();
+        }
+    }
+
+    /**
+     * 进程执行选项
+     */
+    public static final class Options {
+        private byte[] stdinData;
+        private boolean pipeStdin;
+        private boolean streamStdout;
+        private Duration timeout;
+        private Consumer<String> stderrListener;
+        private Consumer<Map<String, String>> progressListener;
+        private Set<Process> liveProcesses;
+        private int cpuThreads = -1;
+        private boolean longRunning;
+
+        private Options() {
+        }
+
+        /**
+         * 通过stdin写入的数据，写完后关闭stdin
+         */
+        public Options stdin(byte[] data) {
+            this.stdinData = data;
+            return this;
+        }
+
+        /**
+         * stdin保持打开，由调用方通过 RunningProcess.getOutputStream() 写入
+         */
+        public Options pipeStdin() {
+            this.pipeStdin = true;
+            return this;
+        }
+
+        /**
+         * stdout不由执行器读取，由调用方通过 RunningProcess.getInputStream() 读取二进制数据
+         */
+        public Options streamStdout() {
+            this.streamStdout = true;
+            return this;
+        }
+
+        /**
+         * 超时时间，Duration.ZERO表示不限制；未设置时使用 ffmpeg.process.timeout
+         */
+        public Options timeout(Duration timeout) {
+            this.timeout = timeout;
+            return this;
+        }
+
+        /**
+         * stderr逐行回调（不含-progress键值行），在读取线程上执行
+         */
+        public Options stderrListener(Consumer<String> listener) {
+            this.stderrListener = listener;
+            return this;
+        }
+
+        /**
+         * 进度回调，每收到一组完整的-progress键值对调用一次，在读取线程上执行
+         */
+        public Options progressListener(Consumer<Map<String, String>> listener) {
+            this.progressListener = listener;
+            return this;
+        }
+
+        /**
+         * 运行期间将进程登记到集合中，便于调用方统一终止
+         */
+        public Options trackIn(Set<Process> liveProcesses) {
+            this.liveProcesses = liveProcesses;
+            return this;
+        }
+
+        /**
+         * 受进程准入控制的FFmpeg命令：按请求的线程数领取CPU令牌（可能少于请求），
+         * 命令中没有 -threads 时按分得的线程数加入线程参数；0表示取剩余的全部令牌
+         */
+        public Options cpuThreads(int requested) {
+            this.cpuThreads = Math.max(0, requested);
+            return this;
+        }
+
+        /**
+         * 长时间运行的进程（整段解码、常驻编码器）：从进程组的预留中领取准入凭证，超出预留时报错；
+         * 没有预留时在进程数达到上限时等待，不等待令牌
+         */
+        public Options longRunning() {
+            this.longRunning = true;
+            return this;
+        }
+    }
+
+    /**
+     * 运行中的进程
+     */
+    public static final class RunningProcess {
+
+        private final List<String> command;
+        private final Options options;
+        private final Duration timeout;
+        private final Process process;
+        private final Deque<String> stderrTail = new ArrayDeque<>();
+        private final int stderrTailLines;
+        private final ByteArrayOutputStream stdout;
+        private final Thread stdoutReader;
+        private final Thread stderrReader;
+        private volatile boolean timedOut;
+
+        private RunningProcess(List<String> command, Options options, Duration timeout, int stderrTailLines,
+                               ProcessGovernor.Grant grant) throws IOException {
+            this.command = command;
+            this.options = options;
+            this.timeout = timeout;
+            this.stderrTailLines = Math.max(1, stderrTailLines);
+            ProcessGroup group = CURRENT_GROUP.get();
+            if (group != null && group.isCancelled()) {
+                throw new CancellationException("Process group cancelled: " + group.name);
+            }
+            this.process = new ProcessBuilder(command).start();
+            if (grant != null) {
+                process.onExit().thenRun(grant::release);
+            }
+            if (group != null) {
+                group.register(this);
+            }
+            if (options.liveProcesses != null) {
+                options.liveProcesses.add(process);
+            }
+
+            if (options.stdinData != null) {
+                // 在独立线程中写入，以免与输出读取互相阻塞
+                Thread.ofVirtual().start(() -> {
+                    try (OutputStream stdin = process.getOutputStream()) {
+                        stdin.write(options.stdinData);
+                    } catch (IOException e) {
+                        logger.debug("Failed to write process stdin", e);
+                    }
+                });
+            } else if (!options.pipeStdin) {
+                process.getOutputStream().close();
+            }
+
+            if (options.streamStdout) {
+                this.stdout = null;
+                this.stdoutReader = null;
+            } else {
+                this.stdout = new ByteArrayOutputStream();
+                this.stdoutReader = Thread.ofVirtual().start(this::readStdout);
+            }
+            this.stderrReader = Thread.ofVirtual().start(this::readStderr);
+
+            if (!timeout.isZero() && !timeout.isNegative()) {
+                process.onExit()
+                        .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                        .exceptionally(e -> {
+                            if (e instanceof TimeoutException) {
+                                timedOut = true;
+                                logger.warn("Command timed out after {}s, destroying: {}",
+                                        timeout.toSeconds(), command.get(0));
+                                destroy();
+                            }
+                            return null;
+                        });
+            }
+        }
+
+        public InputStream getInputStream() {
+            return process.getInputStream();
+        }
+
+        public OutputStream getOutputStream() {
+            return process.getOutputStream();
+        }
+
+        public boolean isAlive() {
+            return process.isAlive();
+        }
+
+        public Process getProcess() {
+            return process;
+        }
+
+        /**
+         * stderr是否已读取完毕（此后不会再有stderr回调）
+         */
+        public boolean isStderrClosed() {
+            return !stderrReader.isAlive();
+        }
+
+        /**
+         * 等待进程结束和输出读取完毕
+         */
+        public FFmpegServiceImpl.ProcessResult await() throws InterruptedException {
+            try {
+                int exitCode = process.waitFor();
+                if (stdoutReader != null) {
+                    stdoutReader.join();
+                }
+                stderrReader.join();
+
+                FFmpegServiceImpl.ProcessResult result = new FFmpegServiceImpl.ProcessResult();
+                result.setExitCode(exitCode);
+                result.setOutput(stdout != null ? stdout.toString(StandardCharsets.UTF_8) : "");
+                String error = getErrorTail();
+                if (timedOut) {
+                    error += "Process timed out after " + timeout.toSeconds() + "s\n";
+                }
+                result.setError(error);
+                result.setTimedOut(timedOut);
+
+                logger.debug("Command completed with exit code: {}", exitCode);
+                if (exitCode != 0) {
+                    logger.error("Command error output: {}", error);
+                }
+                return result;
+
+            } catch (InterruptedException e) {
+                destroy();
+                throw e;
+            } finally {
+                if (options.liveProcesses != null) {
+                    options.liveProcesses.remove(process);
+                }
+            }
+        }
+
+        /**
+         * 强制终止进程及其所有子进程
+         */
+        public void destroy() {
+            process.descendants().forEach(ProcessHandle::destroyForcibly);
+            process.destroyForcibly();
+        }
+
+        /**
+         * stderr末尾的内容
+         */
+        public String getErrorTail() {
+            synchronized (stderrTail) {
+                StringBuilder builder = new StringBuilder();
+                for (String line : stderrTail) {
+                    builder.append(line).append('\n');
+                }
+                return builder.toString();
+            }
+        }
+
+        private void readStdout() {
+            try (InputStream in = process.getInputStream()) {
+                in.transferTo(stdout);
+            } catch (IOException e) {
+                logger.debug("Process stdout closed", e);
+            }
+        }
+
+        private void readStderr() {
+            Map<String, String> progress = new LinkedHashMap<>();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (options.progressListener != null && parseProgress(line, progress)) {
+                        continue;
+                    }
+                    if (options.stderrListener != null) {
+                        options.stderrListener.accept(line);
+                    }
+                    synchronized (stderrTail) {
+                        if (stderrTail.size() == stderrTailLines) {
+                            stderrTail.removeFirst();
+                        }
+                        stderrTail.addLast(line.length() > MAX_STDERR_LINE_CHARS
+                                ? line.substring(0, MAX_STDERR_LINE_CHARS) : line);
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("Process stderr closed", e);
+            }
+        }
+
+        /**
+         * 识别-progress键值行，凑齐一组时回调
+         * @return 是否为进度行
+         */
+        private boolean parseProgress(String line, Map<String, String> progress) {
+            Matcher matcher = PROGRESS_LINE_PATTERN.matcher(line);
+            if (!matcher.matches()) {
+                return false;
+            }
+            progress.put(matcher.group(1), matcher.group(2));
+            if ("progress".equals(matcher.group(1))) {
+                try {
+                    options.progressListener.accept(Collections.unmodifiableMap(new LinkedHashMap<>(progress)));
+                } catch (RuntimeException e) {
+                    logger.debug("Progress listener failed", e);
+                }
+                progress.clear();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.videoframecatcher.service.impl;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 前台图像请求（帧图像、存储文件）的耗时统计
+ * 样本按控制周期收集，取出时计算该周期的p95；超出容量后按蓄水池抽样替换，样本仍均匀覆盖整个周期
+ */
+@Component
+public class ServingLatencyMonitor {
+
+    private static final int MAX_SAMPLES = 4096;
+
+    private final long[] samples = new long[MAX_SAMPLES];
+    private final Timer timer;
+    // 本周期内的请求数（可能多于保留的样本数）
+    private int count;
+
+    public ServingLatencyMonitor(MeterRegistry meterRegistry) {
+        this.timer = Timer.builder("frame.serving.latency")
+                .description("Latency of frame image and stored file requests")
+                .publishPercentiles(0.95)
+                .register(meterRegistry);
+    }
+
+    public void record(long nanos) {
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+        synchronized (samples) {
+            if (count < MAX_SAMPLES) {
+                samples[count] = nanos;
+            } else {
+                int slot = ThreadLocalRandom.current().nextInt(count + 1);
+                if (slot < MAX_SAMPLES) {
+                    samples[slot] = nanos;
+                }
+            }
+            count++;
+        }
+    }
+
+    /**
+     * 取出本周期的统计并开始新的周期
+     */
+    public Window drain() {
+        long[] window;
+        int requests;
+        synchronized (samples) {
+            requests = count;
+            window = Arrays.copyOf(samples, Math.min(count, MAX_SAMPLES));
+            count = 0;
+        }
+        if (window.length == 0) {
+            return new Window(0, 0);
+        }
+        Arrays.sort(window);
+        int index = Math.max(0, (int) Math.ceil(window.length * 0.95) - 1);
+        return new Window(requests, window[index] / 1_000_000.0);
+    }
+
+    /**
+     * 一个周期的请求数和p95耗时（毫秒）
+     */
+    public record Window(int requests, double p95Millis) {
+    }
+}
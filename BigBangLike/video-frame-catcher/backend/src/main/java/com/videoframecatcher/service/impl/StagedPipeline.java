@@ -0,0 +1,301 @@
+package com.videoframecatcher.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 多阶段有界流水线
+ * 每个阶段有独立的有界队列和工作线程数，下游处理慢时上游在入队时阻塞，
+ * 压力逐级传回数据源（例如FFmpeg的stdout管道），内存中的待处理数据量始终有上限；
+ * 运行期间可按比例暂停各阶段的部分工作线程，以让出CPU和磁盘
+ */
+class StagedPipeline<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(StagedPipeline.class);
+
+    // 队列结束标记，每个工作线程消费一个
+    private static final Object END = new Object();
+
+    // 被暂停的工作线程检查是否恢复的间隔
+    private static final long PAUSE_CHECK_MILLIS = 100;
+
+    /**
+     * 阶段处理逻辑
+     */
+    interface StageWorker<T> {
+
+        /**
+         * 处理一个数据项，通过emitter将结果交给下一阶段（可以不发出或发出多个）
+         */
+        void process(T item, Consumer<T> emitter) throws Exception;
+
+        /**
+         * 工作线程退出前调用，用于刷新批量缓存等
+         */
+        default void close(Consumer<T> emitter) throws Exception {
+        }
+
+        /**
+         * 流水线失败、工作线程异常退出时调用，用于释放子进程等外部资源
+         */
+        default void abort() {
+        }
+
+        /**
+         * 工作线程被暂停前调用，用于释放常驻子进程、集群槽位等暂停期间不应占用的资源，恢复后按需重新获取
+         */
+        default void pause() {
+        }
+    }
+
+    private final String name;
+    private final List<Stage> stages = new ArrayList<>();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final List<Thread> threads = new ArrayList<>();
+    // 数据源提交的数据项数及因第一个阶段队列满而阻塞的时间
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder submitBlockedNanos = new LongAdder();
+    private boolean started;
+    private boolean finished;
+
+    StagedPipeline(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 追加一个阶段，该阶段的所有工作线程共享同一个StageWorker
+     * @param stageName 阶段名称（用于线程名和监控指标）
+     * @param workers 工作线程数
+     * @param queueCapacity 阶段输入队列容量
+     */
+    StagedPipeline<T> stage(String stageName, int workers, int queueCapacity, StageWorker<T> worker) {
+        return stagePerWorker(stageName, workers, queueCapacity, () -> worker);
+    }
+
+    /**
+     * 追加一个阶段，每个工作线程各自创建一个StageWorker，适合持有编码进程等不可共享的资源
+     */
+    StagedPipeline<T> stagePerWorker(String stageName, int workers, int queueCapacity,
+                                     Supplier<StageWorker<T>> workerFactory) {
+        if (started) {
+            throw new IllegalStateException("Pipeline already started: " + name);
+        }
+        stages.add(new Stage(stageName, Math.max(1, workers), Math.max(1, queueCapacity), workerFactory));
+        return this;
+    }
+
+    StagedPipeline<T> start() {
+        started = true;
+        for (int i = 0; i < stages.size(); i++) {
+            Stage stage = stages.get(i);
+            Stage next = i + 1 < stages.size() ? stages.get(i + 1) : null;
+            for (int w = 0; w < stage.workers; w++) {
+                int index = w;
+                threads.add(Thread.ofVirtual()
+                        .name(name + "-" + stage.name + "-" + w)
+                        .start(() -> runWorker(stage, next, index)));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * 向第一个阶段提交数据，队列满时阻塞；流水线已失败时抛出异常
+     */
+    void submit(T item) throws InterruptedException {
+        long start = System.nanoTime();
+        enqueue(stages.get(0), item);
+        submitBlockedNanos.add(System.nanoTime() - start);
+        submitted.increment();
+    }
+
+    /**
+     * 通知数据源已结束，等待所有阶段处理完毕（重复调用无副作用）
+     * 任一阶段抛出异常时，其余阶段被中断，异常在这里重新抛出
+     */
+    void finish() throws InterruptedException {
+        if (finished) {
+            rethrowFailure();
+            return;
+        }
+        finished = true;
+        Stage first = stages.get(0);
+        first.ending = true;
+        try {
+            for (int w = 0; w < first.workers; w++) {
+                enqueue(first, END);
+            }
+        } finally {
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * 放弃处理：中断所有工作线程并丢弃队列中的数据
+     */
+    void abort(Throwable cause) {
+        if (failure.compareAndSet(null, cause)) {
+            logger.warn("Aborting pipeline {}: {}", name, cause.toString());
+        }
+        threads.forEach(Thread::interrupt);
+        stages.forEach(stage -> stage.queue.clear());
+    }
+
+    /**
+     * 按比例设置各阶段参与处理的工作线程数（至少1个），其余工作线程处理完当前数据项后暂停，
+     * 比例调高后恢复；单线程的阶段不受影响。阶段输入结束后暂停的线程全部恢复以完成收尾
+     * @param fraction 参与处理的比例（0-1]
+     */
+    void setActiveFraction(double fraction) {
+        double clamped = Math.max(0, Math.min(1, fraction));
+        for (Stage stage : stages) {
+            stage.activeWorkers = Math.max(1, (int) Math.ceil(stage.workers * clamped));
+        }
+    }
+
+    /**
+     * 指定阶段输入队列中等待处理的数据量
+     */
+    int queueDepth(String stageName) {
+        for (Stage stage : stages) {
+            if (stage.name.equals(stageName)) {
+                return stage.queue.size();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 数据源已提交的数据项数
+     */
+    long submittedCount() {
+        return submitted.sum();
+    }
+
+    /**
+     * 数据源等待第一个阶段队列空位的累计时间，即下游处理跟不上时解码被阻塞的时间
+     */
+    long submitBlockedNanos() {
+        return submitBlockedNanos.sum();
+    }
+
+    /**
+     * 所有阶段工作线程处理数据的累计时间，不含等待下游队列空位的时间
+     */
+    long busyNanos() {
+        return stages.stream().mapToLong(stage -> stage.busyNanos.sum()).sum();
+    }
+
+    @SuppressWarnings("unchecked")
+    private void runWorker(Stage stage, Stage next, int index) {
+        // 本工作线程在emitter中等待下游队列的时间，不计入处理时间；
+        // StageWorker也可能在自己的线程上发出结果（如编码器的输出读取线程），那些等待不占用本线程，不扣除
+        Thread workerThread = Thread.currentThread();
+        long[] emitBlockedNanos = new long[1];
+        Consumer<T> emitter = next == null
+                ? item -> { }
+                : item -> {
+                    long start = System.nanoTime();
+                    try {
+                        enqueue(next, item);
+                        if (Thread.currentThread() == workerThread) {
+                            emitBlockedNanos[0] += System.nanoTime() - start;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("Interrupted while handing off to stage " + next.name, e);
+                    }
+                };
+
+        StageWorker<T> worker = stage.workerFactory.get();
+        try {
+            while (true) {
+                if (index >= stage.activeWorkers && !stage.ending) {
+                    worker.pause();
+                    while (index >= stage.activeWorkers && !stage.ending) {
+                        Thread.sleep(PAUSE_CHECK_MILLIS);
+                    }
+                }
+                Object item = stage.queue.take();
+                if (item == END) {
+                    break;
+                }
+                long start = System.nanoTime();
+                emitBlockedNanos[0] = 0;
+                worker.process((T) item, emitter);
+                stage.busyNanos.add(System.nanoTime() - start - emitBlockedNanos[0]);
+            }
+            worker.close(emitter);
+
+            // 本阶段最后一个退出的工作线程负责通知下一阶段结束
+            if (stage.remainingWorkers.decrementAndGet() == 0 && next != null) {
+                next.ending = true;
+                for (int w = 0; w < next.workers; w++) {
+                    enqueue(next, END);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            worker.abort();
+            abort(e);
+        } catch (Throwable e) {
+            logger.error("Stage {} of pipeline {} failed", stage.name, name, e);
+            worker.abort();
+            abort(e);
+        }
+    }
+
+    private void enqueue(Stage stage, Object item) throws InterruptedException {
+        // 定时重试而不是无限期put，流水线失败后生产者能及时退出
+        while (!stage.queue.offer(item, 200, TimeUnit.MILLISECONDS)) {
+            rethrowFailure();
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * 流水线已失败时抛出异常，供数据源在不提交数据的等待期间检查
+     */
+    void rethrowFailure() {
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw new IllegalStateException("Pipeline " + name + " failed", cause);
+        }
+    }
+
+    private final class Stage {
+        private final String name;
+        private final int workers;
+        private final BlockingQueue<Object> queue;
+        private final Supplier<StageWorker<T>> workerFactory;
+        private final AtomicInteger remainingWorkers;
+        private final LongAdder busyNanos = new LongAdder();
+        // 参与处理的工作线程数，序号不小于该值的工作线程暂停
+        private volatile int activeWorkers;
+        // 输入已结束（结束标记已开始入队）
+        private volatile boolean ending;
+
+        private Stage(String name, int workers, int queueCapacity, Supplier<StageWorker<T>> workerFactory) {
+            this.name = name;
+            this.workers = workers;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.workerFactory = workerFactory;
+            this.remainingWorkers = new AtomicInteger(workers);
+            this.activeWorkers = workers;
+        }
+    }
+}
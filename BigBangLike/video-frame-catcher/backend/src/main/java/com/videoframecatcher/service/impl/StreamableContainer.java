@@ -0,0 +1,109 @@
+package com.videoframecatcher.service.impl;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 根据文件头判断容器能否从头顺序读取（渐进式接收的前提）
+ * MKV/WebM和MPEG-TS总可以顺序读取；MP4/MOV只有moov在mdat之前（faststart或分片MP4）时可以，
+ * moov在文件末尾时必须等文件完整后再处理
+ */
+final class StreamableContainer {
+
+    // 判断所需读取的文件头长度上限，超过仍无法判断时按不可顺序读取处理
+    static final int PROBE_BYTES = 64 * 1024;
+
+    private static final int TS_PACKET_SIZE = 188;
+
+    private StreamableContainer() {
+    }
+
+    /**
+     * @param header 文件开头的数据
+     * @param complete header是否已包含判断所需的全部数据（文件已完整或已达到PROBE_BYTES）
+     * @return TRUE可顺序读取，FALSE不可，null表示数据不足、需要更多文件头
+     */
+    static Boolean isStreamable(byte[] header, boolean complete) {
+        Boolean result = detect(header);
+        if (result == null && complete) {
+            return Boolean.FALSE;
+        }
+        return result;
+    }
+
+    private static Boolean detect(byte[] header) {
+        if (header.length < 12) {
+            return null;
+        }
+        // Matroska/WebM：EBML头
+        if ((header[0] & 0xFF) == 0x1A && (header[1] & 0xFF) == 0x45
+                && (header[2] & 0xFF) == 0xDF && (header[3] & 0xFF) == 0xA3) {
+            return Boolean.TRUE;
+        }
+        // MPEG-TS：连续几个包的同步字节
+        if (header[0] == 0x47) {
+            if (header.length < 3 * TS_PACKET_SIZE + 1) {
+                return null;
+            }
+            if (header[TS_PACKET_SIZE] == 0x47 && header[2 * TS_PACKET_SIZE] == 0x47
+                    && header[3 * TS_PACKET_SIZE] == 0x47) {
+                return Boolean.TRUE;
+            }
+        }
+        String type = boxType(header, 4);
+        if ("ftyp".equals(type) || "moov".equals(type) || "free".equals(type)
+                || "wide".equals(type) || "skip".equals(type) || "mdat".equals(type)) {
+            return detectIsoBmff(header);
+        }
+        // AVI等其他容器：索引通常在文件末尾，不做渐进式处理
+        return Boolean.FALSE;
+    }
+
+    /**
+     * 依次读取顶层box头：先遇到moov（或分片的moof）可顺序读取，先遇到mdat则不可
+     */
+    private static Boolean detectIsoBmff(byte[] header) {
+        long offset = 0;
+        while (offset + 8 <= header.length) {
+            int pos = (int) offset;
+            long size = readUInt32(header, pos);
+            String type = boxType(header, pos + 4);
+            if ("moov".equals(type) || "moof".equals(type)) {
+                return Boolean.TRUE;
+            }
+            if ("mdat".equals(type)) {
+                return Boolean.FALSE;
+            }
+            if (size == 1) {
+                // 64位长度在类型之后
+                if (pos + 16 > header.length) {
+                    return null;
+                }
+                size = readUInt64(header, pos + 8);
+            } else if (size == 0) {
+                // 延伸到文件末尾的box之后不会再有moov
+                return Boolean.FALSE;
+            }
+            if (size < 8) {
+                return Boolean.FALSE;
+            }
+            offset += size;
+        }
+        return null;
+    }
+
+    private static String boxType(byte[] data, int pos) {
+        if (pos + 4 > data.length) {
+            return null;
+        }
+        return new String(data, pos, 4, StandardCharsets.ISO_8859_1);
+    }
+
+    private static long readUInt32(byte[] data, int pos) {
+        return ((long) (data[pos] & 0xFF) << 24) | ((data[pos + 1] & 0xFF) << 16)
+                | ((data[pos + 2] & 0xFF) << 8) | (data[pos + 3] & 0xFF);
+    }
+
+    private static long readUInt64(byte[] data, int pos) {
+        return (readUInt32(data, pos) << 32) | readUInt32(data, pos + 4);
+    }
+}
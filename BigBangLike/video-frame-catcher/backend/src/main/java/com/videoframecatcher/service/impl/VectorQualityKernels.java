@@ -0,0 +1,53 @@
+package com.videoframecatcher.service.impl;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于Vector API的质量评分卷积核：逐行计算拉普拉斯响应及其平方和噪声核响应的绝对值之和
+ * 单独成类，jdk.incubator.vector模块缺失时只要不调用就不会加载
+ */
+final class VectorQualityKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorQualityKernels() {
+    }
+
+    /**
+     * 累加亮度平面第row行（row为行首下标）内部像素的结果到sums
+     */
+    static void accumulateRow(float[] luma, int row, int width, double[] sums) {
+        FloatVector lapSum = FloatVector.zero(SPECIES);
+        FloatVector lapSquares = FloatVector.zero(SPECIES);
+        FloatVector noise = FloatVector.zero(SPECIES);
+
+        int from = row + 1;
+        int to = row + width - 1;
+        int i = from;
+        for (; i + SPECIES.length() <= to; i += SPECIES.length()) {
+            FloatVector center = FloatVector.fromArray(SPECIES, luma, i);
+            FloatVector horizontal = FloatVector.fromArray(SPECIES, luma, i - 1)
+                    .add(FloatVector.fromArray(SPECIES, luma, i + 1));
+            FloatVector vertical = FloatVector.fromArray(SPECIES, luma, i - width)
+                    .add(FloatVector.fromArray(SPECIES, luma, i + width));
+            FloatVector corners = FloatVector.fromArray(SPECIES, luma, i - width - 1)
+                    .add(FloatVector.fromArray(SPECIES, luma, i - width + 1))
+                    .add(FloatVector.fromArray(SPECIES, luma, i + width - 1))
+                    .add(FloatVector.fromArray(SPECIES, luma, i + width + 1));
+            FloatVector neighbours = horizontal.add(vertical);
+            FloatVector center4 = center.mul(4f);
+
+            FloatVector laplacian = center4.sub(neighbours);
+            lapSum = lapSum.add(laplacian);
+            lapSquares = laplacian.fma(laplacian, lapSquares);
+            noise = noise.add(center4.sub(neighbours.mul(2f)).add(corners).abs());
+        }
+
+        sums[0] += lapSum.reduceLanes(VectorOperators.ADD);
+        sums[1] += lapSquares.reduceLanes(VectorOperators.ADD);
+        sums[2] += noise.reduceLanes(VectorOperators.ADD);
+        FrameQualityScorer.accumulateRowScalar(luma, i, to, width, sums);
+    }
+}
@@ -0,0 +1,36 @@
+package com.videoframecatcher.service.impl;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * 基于Vector API的行累加：accumulator[i] += (src[offset + i] & 0xFF) * weight
+ * 单独成类，jdk.incubator.vector模块缺失时只要不调用就不会加载
+ */
+final class VectorRowAccumulator {
+
+    // 8个float通道对应8个字节，字节向量经零扩展转为int再转为float
+    private static final VectorSpecies<Float> FLOAT_SPECIES = FloatVector.SPECIES_256;
+    private static final VectorSpecies<Byte> BYTE_SPECIES = ByteVector.SPECIES_64;
+    private static final VectorSpecies<Integer> INT_SPECIES = IntVector.SPECIES_256;
+
+    private VectorRowAccumulator() {
+    }
+
+    static void accumulate(byte[] src, int offset, float[] accumulator, int length, float weight) {
+        FloatVector weights = FloatVector.broadcast(FLOAT_SPECIES, weight);
+        int bound = FLOAT_SPECIES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOAT_SPECIES.length()) {
+            IntVector widened = (IntVector) ByteVector.fromArray(BYTE_SPECIES, src, offset + i)
+                    .convertShape(VectorOperators.B2I, INT_SPECIES, 0);
+            FloatVector pixels = (FloatVector) widened.and(0xFF).convert(VectorOperators.I2F, 0);
+            pixels.fma(weights, FloatVector.fromArray(FLOAT_SPECIES, accumulator, i))
+                    .intoArray(accumulator, i);
+        }
+        AreaAverageScaler.accumulateScalar(src, offset + i, accumulator, i, length - i, weight);
+    }
+}
@@ -0,0 +1,86 @@
+package com.videoframecatcher.service.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 视频探测结果的LRU缓存，按文件的抽样指纹索引，内容哈希已知时也按内容哈希索引
+ * 同一视频重试、重新处理或以不同路径再次上传时不再启动ffprobe
+ */
+final class VideoProbeCache {
+
+    // 抽样取文件头、中、尾各一块，容器的元数据（moov等）位于文件头或文件尾
+    private static final int SAMPLE_SIZE = 1024 * 1024;
+
+    private final Map<String, FFmpegServiceImpl.VideoMetadata> entries;
+
+    VideoProbeCache(int capacity) {
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FFmpegServiceImpl.VideoMetadata> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    synchronized FFmpegServiceImpl.VideoMetadata get(String fingerprint) {
+        return entries.get(fingerprint);
+    }
+
+    synchronized void put(String fingerprint, FFmpegServiceImpl.VideoMetadata metadata) {
+        entries.put(fingerprint, metadata);
+    }
+
+    /**
+     * 按完整文件的SHA-256索引的键，与抽样指纹互不冲突
+     */
+    static String contentKey(String contentHash) {
+        return "sha256:" + contentHash;
+    }
+
+    /**
+     * 文件的抽样指纹：路径、修改时间、文件大小及头、中、尾三块数据的SHA-256，读取量与文件大小无关
+     * 抽样之外的内容不参与计算，不能作为内容哈希使用；路径和修改时间使同一位置被改写的文件不会命中旧的结果
+     */
+    static String fingerprint(Path path) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+
+        digest.update(path.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8));
+        digest.update(ByteBuffer.allocate(Long.BYTES).putLong(Files.getLastModifiedTime(path).toMillis()).flip());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            digest.update(ByteBuffer.allocate(Long.BYTES).putLong(size).flip());
+
+            ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_SIZE);
+            // 不超过三块的小文件整体参与计算
+            long[] offsets = size <= 3L * SAMPLE_SIZE
+                    ? new long[] {0, SAMPLE_SIZE, 2L * SAMPLE_SIZE}
+                    : new long[] {0, size / 2 - SAMPLE_SIZE / 2, size - SAMPLE_SIZE};
+            for (long offset : offsets) {
+                buffer.clear();
+                long position = offset;
+                while (buffer.hasRemaining() && channel.read(buffer, position) > 0) {
+                    position = offset + buffer.position();
+                }
+                buffer.flip();
+                digest.update(buffer);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+}
@@ -0,0 +1,183 @@
+package com.videoframecatcher.service.impl;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 解析 ffprobe -of json 的输出（format、streams及视频包的关键帧标记）
+ */
+final class VideoProbeParser {
+
+    private VideoProbeParser() {
+    }
+
+    static FFmpegServiceImpl.VideoMetadata parse(JsonNode root) {
+        FFmpegServiceImpl.VideoMetadata metadata = new FFmpegServiceImpl.VideoMetadata();
+
+        List<FFmpegServiceImpl.StreamInfo> streams = new ArrayList<>();
+        JsonNode video = null;
+        for (JsonNode node : root.path("streams")) {
+            streams.add(parseStream(node));
+            // 跳过封面图等附加图片流
+            if (video == null && "video".equals(node.path("codec_type").asText())
+                    && node.path("disposition").path("attached_pic").asInt(0) != 1) {
+                video = node;
+            }
+        }
+        metadata.setStreams(Collections.unmodifiableList(streams));
+
+        JsonNode format = root.path("format");
+        metadata.setFormatName(text(format, "format_name"));
+        metadata.setBitRate(longValue(format, "bit_rate"));
+        metadata.setFileSize(longValue(format, "size"));
+
+        Double duration = doubleValue(format, "duration");
+        if (duration == null && video != null) {
+            duration = doubleValue(video, "duration");
+        }
+        if (duration != null) {
+            metadata.setDuration(BigDecimal.valueOf(duration).setScale(3, RoundingMode.HALF_UP));
+        }
+
+        if (video != null) {
+            int rotation = rotation(video);
+            int width = video.path("width").asInt(0);
+            int height = video.path("height").asInt(0);
+            // FFmpeg解码时按旋转信息自动转正，帧的实际尺寸为旋转后的尺寸
+            boolean swap = rotation == 90 || rotation == 270;
+            metadata.setWidth(swap ? height : width);
+            metadata.setHeight(swap ? width : height);
+            metadata.setRotation(rotation);
+            metadata.setVideoCodec(text(video, "codec_name"));
+
+            Double frameRate = frameRate(video);
+            if (frameRate != null) {
+                metadata.setExactFrameRate(frameRate);
+                metadata.setFrameRate((int) Math.round(frameRate));
+            }
+            metadata.setKeyframeInterval(keyframeInterval(root.path("packets"), video.path("index").asInt()));
+        }
+        return metadata;
+    }
+
+    private static FFmpegServiceImpl.StreamInfo parseStream(JsonNode node) {
+        FFmpegServiceImpl.StreamInfo stream = new FFmpegServiceImpl.StreamInfo();
+        stream.setIndex(node.path("index").asInt());
+        stream.setCodecType(text(node, "codec_type"));
+        stream.setCodecName(text(node, "codec_name"));
+        if (node.has("width")) {
+            stream.setWidth(node.path("width").asInt());
+            stream.setHeight(node.path("height").asInt());
+        }
+        stream.setFrameRate(frameRate(node));
+        stream.setBitRate(longValue(node, "bit_rate"));
+        stream.setSampleRate(node.has("sample_rate") ? (int) node.path("sample_rate").asLong() : null);
+        stream.setChannels(node.has("channels") ? node.path("channels").asInt() : null);
+        stream.setDuration(doubleValue(node, "duration"));
+        stream.setLanguage(text(node.path("tags"), "language"));
+        return stream;
+    }
+
+    /**
+     * 精确帧率：优先取平均帧率，容器未给出时取基准帧率；音频流等没有帧率时返回null
+     */
+    private static Double frameRate(JsonNode stream) {
+        Double rate = rational(text(stream, "avg_frame_rate"));
+        return rate != null ? rate : rational(text(stream, "r_frame_rate"));
+    }
+
+    /**
+     * 旋转角度（0/90/180/270）：新版本ffprobe在side_data_list的显示矩阵中给出（逆时针为正），
+     * 旧版本在rotate标签中给出（顺时针为正）
+     */
+    private static int rotation(JsonNode video) {
+        int degrees = 0;
+        for (JsonNode sideData : video.path("side_data_list")) {
+            if (sideData.has("rotation")) {
+                degrees = -sideData.path("rotation").asInt();
+            }
+        }
+        JsonNode rotate = video.path("tags").path("rotate");
+        if (degrees == 0 && !rotate.isMissingNode()) {
+            degrees = rotate.asInt();
+        }
+        return ((degrees % 360) + 360) % 360;
+    }
+
+    /**
+     * 平均关键帧间隔（秒），按探测窗口内视频流关键帧包的时间戳计算；关键帧少于两个时返回null
+     */
+    private static Double keyframeInterval(JsonNode packets, int videoIndex) {
+        double first = Double.NaN;
+        double last = Double.NaN;
+        int keyframes = 0;
+        for (JsonNode packet : packets) {
+            if (packet.path("stream_index").asInt(-1) != videoIndex
+                    || !packet.path("flags").asText().startsWith("K")) {
+                continue;
+            }
+            Double time = doubleValue(packet, "pts_time");
+            if (time == null) {
+                continue;
+            }
+            if (keyframes == 0) {
+                first = time;
+            }
+            last = time;
+            keyframes++;
+        }
+        return keyframes >= 2 ? (last - first) / (keyframes - 1) : null;
+    }
+
+    private static Double rational(String value) {
+        if (value == null) {
+            return null;
+        }
+        int slash = value.indexOf('/');
+        try {
+            if (slash < 0) {
+                double parsed = Double.parseDouble(value);
+                return parsed > 0 ? parsed : null;
+            }
+            double numerator = Double.parseDouble(value.substring(0, slash));
+            double denominator = Double.parseDouble(value.substring(slash + 1));
+            return numerator > 0 && denominator > 0 ? numerator / denominator : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.path(field);
+        return value.isMissingNode() || value.isNull() ? null : value.asText();
+    }
+
+    private static Long longValue(JsonNode node, String field) {
+        String value = text(node, field);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Double doubleValue(JsonNode node, String field) {
+        String value = text(node, field);
+        if (value == null || "N/A".equals(value)) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
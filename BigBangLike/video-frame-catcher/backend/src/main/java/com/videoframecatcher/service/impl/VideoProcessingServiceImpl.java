@@ -2,31 +2,69 @@ package com.videoframecatcher.service.impl;
 
 import com.videoframecatcher.entity.Album;
 import com.videoframecatcher.entity.AlbumStatus;
+import com.videoframecatcher.entity.ClusterResourceType;
+import com.videoframecatcher.entity.ExtractionMode;
 import com.videoframecatcher.entity.Frame;
 import com.videoframecatcher.repository.AlbumRepository;
 import com.videoframecatcher.repository.FrameRepository;
+import com.videoframecatcher.service.ClusterThrottle;
+import com.videoframecatcher.service.ExtractedFrame;
 import com.videoframecatcher.service.FFmpegService;
+import com.videoframecatcher.service.FrameExtractor;
 import com.videoframecatcher.service.GPUAccelerationService;
+import com.videoframecatcher.service.HeicBatchEncoder;
+import com.videoframecatcher.service.ProcessingCostEstimator;
+import com.videoframecatcher.service.ProcessingJobService;
 import com.videoframecatcher.service.StorageService;
+import com.videoframecatcher.service.ThumbnailEncoder;
 import com.videoframecatcher.service.VideoProcessingService;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.scheduling.annotation.Async;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import javax.imageio.ImageIO;
+import java.awt.Dimension;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
 
 @Service
 @Transactional
@@ -34,22 +72,86 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
 
     private static final Logger logger = LoggerFactory.getLogger(VideoProcessingServiceImpl.class);
 
+    // 流水线阶段名称，同时用作队列深度指标的stage标签
+    private static final String STAGE_DEDUP = "dedup";
+    private static final String STAGE_ENCODE = "encode";
+    private static final String STAGE_THUMBNAIL = "thumbnail";
+    private static final String STAGE_STORE = "store";
+    private static final String STAGE_PERSIST = "persist";
+
+    // 关键帧/场景模式下用于估算帧数（进度显示）的平均选帧间隔，单位秒
+    private static final double ESTIMATED_SELECTION_INTERVAL = 2.0;
+
+    // 文件提取时解码阶段在总进度中的占比，其余部分按入库帧数计算
+    private static final double EXTRACTION_PROGRESS_SHARE = 0.5;
+
+    // 取消处理时等待处理线程退出的最长时间（秒）
+    private static final long STOP_TIMEOUT_SECONDS = 30;
+
     private final AlbumRepository albumRepository;
     private final FrameRepository frameRepository;
     private final FFmpegService ffmpegService;
     private final StorageService storageService;
+    private final ProcessingJobService processingJobService;
+    private final ProcessingCostEstimator costEstimator;
+    private final ClusterThrottle clusterThrottle;
+    private final ProcessRunner processRunner;
+    private final Executor estimateExecutor;
     private final GPUAccelerationService gpuAccelerationService;
+    private final FrameExtractor frameExtractor;
+    private final ThumbnailEncoder thumbnailEncoder;
 
     // 处理进度跟踪
     private final ConcurrentHashMap<Long, Double> processingProgress = new ConcurrentHashMap<>();
-    private final ConcurrentHashMap<Long, Boolean> processingCancellation = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, ProcessingContext> activeProcessing = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, StagedPipeline<FrameTask>> activePipelines = new ConcurrentHashMap<>();
+
+    // 流水线各阶段参与处理的工作线程比例，由后台并发调节器按前台负载调整
+    private volatile double pipelineConcurrency = 1.0;
 
     @Value("${ffmpeg.frame-extraction.frames-per-second:1.0}")
     private double framesPerSecond;
 
+    @Value("${ffmpeg.frame-extraction.frame-budget.min-frames:10}")
+    private int defaultMinFrames;
+
+    @Value("${ffmpeg.frame-extraction.frame-budget.max-frames:3600}")
+    private int defaultMaxFrames;
+
     @Value("${ffmpeg.frame-extraction.max-parallel-threads:4}")
     private int maxParallelThreads;
 
+    // 同时处理的相册数，每个相册预留的CPU令牌为总数的相应份额
+    @Value("${processing.queue.concurrency:2}")
+    private int albumConcurrency;
+
+    @Value("${ffmpeg.frame-extraction.streaming:true}")
+    private boolean streamingExtraction;
+
+    @Value("${ffmpeg.frame-extraction.single-pass:false}")
+    private boolean singlePassExtraction;
+
+    @Value("${ffmpeg.frame-extraction.pipeline.queue-capacity:8}")
+    private int pipelineQueueCapacity;
+
+    @Value("${ffmpeg.frame-extraction.pipeline.thumbnail-workers:2}")
+    private int thumbnailWorkers;
+
+    @Value("${ffmpeg.frame-extraction.pipeline.store-workers:2}")
+    private int storeWorkers;
+
+    @Value("${ffmpeg.frame-extraction.pipeline.persist-batch-size:50}")
+    private int persistBatchSize;
+
+    @Value("${ffmpeg.frame-extraction.pipeline.frame-retry-attempts:2}")
+    private int frameRetryAttempts;
+
+    @Value("${ffmpeg.frame-extraction.dedup.enabled:true}")
+    private boolean dedupEnabled;
+
+    @Value("${ffmpeg.frame-extraction.dedup.max-distance:2}")
+    private int dedupMaxDistance;
+
     @Value("${image.processing.heic-quality:80}")
     private int heicQuality;
 
@@ -62,35 +164,140 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
     @Value("${image.processing.thumbnail.quality:75}")
     private int thumbnailQuality;
 
+    @Value("${storage.reuse-duplicate-uploads:true}")
+    private boolean reuseDuplicateUploads;
+
     public VideoProcessingServiceImpl(
             AlbumRepository albumRepository,
             FrameRepository frameRepository,
             FFmpegService ffmpegService,
             StorageService storageService,
-            GPUAccelerationService gpuAccelerationService) {
+            GPUAccelerationService gpuAccelerationService,
+            FrameExtractor frameExtractor,
+            ThumbnailEncoder thumbnailEncoder,
+            ProcessingJobService processingJobService,
+            ProcessingCostEstimator costEstimator,
+            ClusterThrottle clusterThrottle,
+            ProcessRunner processRunner,
+            @Qualifier("queueEstimateExecutor") Executor estimateExecutor,
+            MeterRegistry meterRegistry) {
         this.albumRepository = albumRepository;
         this.frameRepository = frameRepository;
         this.ffmpegService = ffmpegService;
         this.storageService = storageService;
         this.gpuAccelerationService = gpuAccelerationService;
+        this.frameExtractor = frameExtractor;
+        this.thumbnailEncoder = thumbnailEncoder;
+        this.processingJobService = processingJobService;
+        this.costEstimator = costEstimator;
+        this.clusterThrottle = clusterThrottle;
+        this.processRunner = processRunner;
+        this.estimateExecutor = estimateExecutor;
+
+        // 各阶段队列深度（所有正在处理的相册之和）
+        for (String stage : List.of(STAGE_DEDUP, STAGE_ENCODE, STAGE_THUMBNAIL, STAGE_STORE, STAGE_PERSIST)) {
+            Gauge.builder("frame.pipeline.queue.depth", activePipelines,
+                            pipelines -> pipelines.values().stream().mapToInt(p -> p.queueDepth(stage)).sum())
+                    .tag("stage", stage)
+                    .description("Frames waiting in the input queue of a processing stage")
+                    .register(meterRegistry);
+        }
     }
 
+    /**
+     * 任务在调用方的事务中写入队列，由任意实例的工作线程领取后调用processVideo
+     * 入队时只按已有的元数据估算耗时（未探测时按文件大小推算），不在请求线程和调用方的事务中运行ffprobe；
+     * 尚未探测的视频在事务提交后由后台线程探测并细化预计耗时
+     */
     @Override
-    @Async
     public void processVideoAsync(Long albumId) {
+        Album album = albumRepository.findById(albumId).orElse(null);
+        if (album == null) {
+            return;
+        }
+        processingJobService.enqueue(albumId, estimateProcessingSeconds(album));
+        if (album.getDuration() == null && album.getVideoPath() != null) {
+            afterCommit(() -> estimateExecutor.execute(() -> refineEstimate(albumId)));
+        }
+    }
+
+    private double estimateProcessingSeconds(Album album) {
+        ExtractionMode mode = album.getExtractionMode() != null
+                ? album.getExtractionMode() : ExtractionMode.FIXED_RATE;
+        return costEstimator.estimateSeconds(album, expectedFrameCount(album, mode, samplingRate(album)));
+    }
+
+    /**
+     * 探测入队的视频并更新尚未领取的任务的预计耗时（探测结果有缓存，处理时不再重复）
+     * 元数据只用于估算，不写回相册，由处理过程写入；探测失败时保留按文件大小的估算，无效的视频在处理时报错
+     */
+    private void refineEstimate(Long albumId) {
         try {
-            processVideo(albumId);
+            Album album = albumRepository.findById(albumId).orElse(null);
+            if (album == null || album.getDuration() != null || album.getVideoPath() == null
+                    || album.getFileSize() == null
+                    || storageService.getFileSize(album.getVideoPath()) < album.getFileSize()) {
+                return;
+            }
+            FFmpegServiceImpl.VideoMetadata metadata =
+                    ffmpegService.extractMetadata(album.getVideoPath(), album.getContentHash());
+            album.setDuration(metadata.getDuration());
+            album.setFrameRate(metadata.getFrameRate());
+            album.setWidth(metadata.getWidth());
+            album.setHeight(metadata.getHeight());
+            album.setVideoCodec(metadata.getVideoCodec());
+            processingJobService.updatePendingEstimate(albumId, estimateProcessingSeconds(album));
         } catch (Exception e) {
-            logger.error("Async video processing failed for album: {}", albumId, e);
-            throw new RuntimeException(e);
+            logger.debug("Failed to probe video of album {} after queueing", albumId, e);
         }
     }
 
+    /**
+     * 在当前事务提交后执行，没有事务时立即执行
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * 处理过程不在单个事务中进行：状态和帧记录随处理逐步提交，
+     * 取消或失败时已写入的状态不会被回滚
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void processVideoProgressive(Long albumId, InputStream videoData) {
+        processVideo(albumId, videoData);
+    }
+
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void processVideo(Long albumId) {
-        logger.info("Starting video processing for album: {}", albumId);
+        processVideo(albumId, null);
+    }
 
-        try {
+    /**
+     * @param progressiveSource 不为null时视频仍在上传，从该输入流读取视频数据，处理结束后关闭
+     */
+    private void processVideo(Long albumId, InputStream progressiveSource) {
+        ProcessingContext context = new ProcessingContext(albumId);
+        if (activeProcessing.putIfAbsent(albumId, context) != null) {
+            logger.warn("Album {} is already being processed, ignoring request", albumId);
+            closeQuietly(progressiveSource);
+            return;
+        }
+        logger.info("Starting {}video processing for album: {}", progressiveSource != null ? "progressive " : "", albumId);
+
+        // 本线程及其创建的线程启动的FFmpeg进程都登记到相册的进程组，取消时统一终止
+        try (ProcessRunner.ProcessGroup.Scope ignored = context.processes.enter()) {
             Album album = albumRepository.findById(albumId)
                     .orElseThrow(() -> new RuntimeException("Album not found: " + albumId));
 
@@ -98,19 +305,38 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
             album.setStatus(AlbumStatus.PROCESSING);
             albumRepository.save(album);
             processingProgress.put(albumId, 0.0);
-            processingCancellation.put(albumId, false);
 
-            // 验证视频文件
-            if (!ffmpegService.validateVideoFile(album.getVideoPath())) {
-                throw new RuntimeException("Invalid video file");
-            }
+            if (progressiveSource != null) {
+                try (ClusterThrottle.Permit ignoredDecode = acquireDecodeSlot(context)) {
+                    processProgressively(album, progressiveSource);
+                }
+            } else {
+                // 重复上传：内容和处理参数都相同的已完成相册直接复用其帧，不再解码和编码
+                if (reuseProcessedAlbum(album)) {
+                    checkCancelled(albumId);
+                    album.setStatus(AlbumStatus.COMPLETED);
+                    albumRepository.save(album);
+                    processingProgress.put(albumId, 1.0);
+                    return;
+                }
+
+                // 验证视频文件
+                if (!ffmpegService.validateVideoFile(album.getVideoPath())) {
+                    checkCancelled(albumId);
+                    throw new RuntimeException("Invalid video file");
+                }
 
-            // 提取视频元数据
-            FFmpegServiceImpl.VideoMetadata metadata = ffmpegService.extractMetadata(album.getVideoPath());
-            updateAlbumMetadata(album, metadata);
+                // 提取视频元数据
+                FFmpegServiceImpl.VideoMetadata metadata =
+                        ffmpegService.extractMetadata(album.getVideoPath(), album.getContentHash());
+                updateAlbumMetadata(album, metadata);
 
-            // 提取帧
-            extractAndProcessFrames(album);
+                // 提取帧
+                try (ClusterThrottle.Permit ignoredDecode = acquireDecodeSlot(context)) {
+                    extractAndProcessFrames(album, null);
+                }
+            }
+            checkCancelled(albumId);
 
             // 更新相册状态为完成
             album.setStatus(AlbumStatus.COMPLETED);
@@ -120,26 +346,232 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
             logger.info("Video processing completed successfully for album: {}", albumId);
 
         } catch (Exception e) {
-            logger.error("Video processing failed for album: {}", albumId, e);
+            processingProgress.remove(albumId);
 
-            // 更新相册状态为失败
-            try {
-                Album album = albumRepository.findById(albumId).orElse(null);
-                if (album != null) {
-                    album.setStatus(AlbumStatus.FAILED);
-                    albumRepository.save(album);
+            // 取消导致的异常（进程被终止、流水线被中止）不视为失败
+            if (context.processes.isCancelled()) {
+                if (context.abandoned) {
+                    // 租约已转给其他实例，相册状态由新的持有者维护
+                    logger.info("Video processing abandoned for album: {}", albumId);
+                    return;
                 }
-            } catch (Exception ex) {
-                logger.error("Failed to update album status to FAILED", ex);
+                logger.info("Video processing cancelled for album: {}", albumId);
+                updateStatus(albumId, AlbumStatus.CANCELLED);
+                return;
             }
 
-            processingProgress.remove(albumId);
-            processingCancellation.remove(albumId);
+            logger.error("Video processing failed for album: {}", albumId, e);
+
+            // 更新相册状态为失败
+            updateStatus(albumId, AlbumStatus.FAILED);
 
             throw new RuntimeException("Video processing failed", e);
         } finally {
+            closeQuietly(progressiveSource);
+            activeProcessing.remove(albumId, context);
             // 清理临时文件
-            cleanupTempFiles();
+            cleanupTempFiles(albumId);
+            context.finished.countDown();
+        }
+    }
+
+    /**
+     * 解码整段视频前占用集群解码槽位，处理被取消时停止等待
+     */
+    private ClusterThrottle.Permit acquireDecodeSlot(ProcessingContext context) {
+        return clusterThrottle.acquire(ClusterResourceType.DECODE, context.processes::isCancelled);
+    }
+
+    private void updateStatus(Long albumId, AlbumStatus status) {
+        try {
+            Album album = albumRepository.findById(albumId).orElse(null);
+            if (album != null) {
+                album.setStatus(status);
+                albumRepository.save(album);
+            }
+        } catch (Exception ex) {
+            logger.error("Failed to update album status to {}", status, ex);
+        }
+    }
+
+    /**
+     * 已取消时抛出CancellationException，用于在处理阶段之间及时退出
+     */
+    private void checkCancelled(Long albumId) {
+        if (isCancelled(albumId)) {
+            throw new CancellationException("Processing cancelled for album " + albumId);
+        }
+    }
+
+    private boolean isCancelled(Long albumId) {
+        ProcessingContext context = activeProcessing.get(albumId);
+        return context != null && context.processes.isCancelled();
+    }
+
+    /**
+     * 影响处理结果的参数签名，内容哈希和签名都相同的相册处理结果可以互相复用
+     * 单次解码由FFmpeg生成缩略图，按缩略图去重和评分，结果与逐帧处理不同，提取方式也计入签名
+     */
+    private String processingSignature(Album album, ExtractionMode mode, boolean singlePass) {
+        return String.format(Locale.ROOT, "mode=%s;fps=%s;budget=%d-%d;dedup=%s;heic=%d;thumb=%dx%d@%d.%s;extract=%s",
+                mode.getValue(), framesPerSecond, minFrames(album), maxFrames(album),
+                dedupEnabled ? dedupMaxDistance : "off", heicQuality,
+                thumbnailWidth, thumbnailHeight, thumbnailQuality, thumbnailEncoder.getFormat(),
+                singlePass ? "single-pass" : "pipeline");
+    }
+
+    /**
+     * 是否使用单次解码：只用于本地文件的全新固定帧率处理（无法跳过已处理的帧），GPU加速时不使用
+     */
+    private boolean usesSinglePass(Album album, ExtractionMode mode, boolean hasStoredFrames,
+                                   InputStream progressiveSource) {
+        return singlePassExtraction && mode == ExtractionMode.FIXED_RATE && !hasStoredFrames
+                && album.getProcessedThrough() == 0
+                && progressiveSource == null && !gpuAccelerationService.isGPUSupported();
+    }
+
+    private int minFrames(Album album) {
+        return album.getMinFrames() != null ? album.getMinFrames() : defaultMinFrames;
+    }
+
+    private int maxFrames(Album album) {
+        return album.getMaxFrames() != null ? album.getMaxFrames() : defaultMaxFrames;
+    }
+
+    /**
+     * 固定帧率模式的采样率：按配置的每秒帧数计算的帧数超出相册帧预算时，按时长换算为恰好落在预算边界的采样率
+     * 补足最少帧数时不超过视频本身的帧率；时长未知时（渐进式接收）使用配置的每秒帧数
+     */
+    private double samplingRate(Album album) {
+        double duration = album.getDuration() != null ? album.getDuration().doubleValue() : 0;
+        if (duration <= 0) {
+            return framesPerSecond;
+        }
+        int min = minFrames(album);
+        int max = maxFrames(album);
+        double frames = duration * framesPerSecond;
+        double rate = framesPerSecond;
+        if (max > 0 && frames > max) {
+            rate = max / duration;
+        } else if (min > 0 && frames < min) {
+            rate = min / duration;
+            if (album.getFrameRate() != null && album.getFrameRate() > 0) {
+                rate = Math.max(framesPerSecond, Math.min(rate, album.getFrameRate()));
+            }
+        }
+        // 按列的精度向下取整，续传时读回的采样率与首次处理完全一致
+        BigDecimal rounded = BigDecimal.valueOf(rate).setScale(6, RoundingMode.DOWN);
+        return Math.max(rounded.doubleValue(), 0.000001);
+    }
+
+    /**
+     * 查找内容哈希和处理参数都相同的已完成相册，以硬链接复用其帧文件并复制帧记录
+     * 只用于尚无帧记录的相册，部分复用后失败的相册重试时按断点续传走正常处理
+     * @return 是否已复用，false时按正常流程处理
+     */
+    private boolean reuseProcessedAlbum(Album album) {
+        if (!reuseDuplicateUploads || album.getContentHash() == null
+                || frameRepository.countByAlbumId(album.getId()) > 0) {
+            return false;
+        }
+        Long albumId = album.getId();
+        ExtractionMode mode = album.getExtractionMode() != null
+                ? album.getExtractionMode() : ExtractionMode.FIXED_RATE;
+        String signature = processingSignature(album, mode, usesSinglePass(album, mode, false, null));
+
+        List<Album> sources = albumRepository.findCompletedByContentHash(
+                album.getContentHash(), signature, albumId, PageRequest.of(0, 1));
+        if (sources.isEmpty()) {
+            return false;
+        }
+        Album source = sources.get(0);
+        List<Frame> sourceFrames = frameRepository.findByAlbumId(source.getId());
+        logger.info("Album {} has the same content as completed album {}, reusing its {} frames",
+                albumId, source.getId(), sourceFrames.size());
+
+        album.setDuration(source.getDuration());
+        album.setFrameRate(source.getFrameRate());
+        album.setWidth(source.getWidth());
+        album.setHeight(source.getHeight());
+        album.setVideoCodec(source.getVideoCodec());
+        album.setExpectedFrameCount(sourceFrames.size());
+        album.setSamplingRate(source.getSamplingRate());
+        album.setProcessingSignature(signature);
+        albumRepository.save(album);
+
+        String albumName = sanitizeAlbumName(album);
+        List<Frame> batch = new ArrayList<>(persistBatchSize);
+        int linked = 0;
+        for (Frame sourceFrame : sourceFrames) {
+            checkCancelled(albumId);
+
+            Frame frame = new Frame();
+            frame.setAlbum(album);
+            frame.setFilename(buildFrameFilename(albumName, sourceFrame.getTimestamp().doubleValue(),
+                    sourceFrame.getFrameNumber()));
+            frame.setFilePath(storageService.linkIntoAlbum(sourceFrame.getFilePath(), albumId));
+            frame.setTimestamp(sourceFrame.getTimestamp());
+            frame.setFrameNumber(sourceFrame.getFrameNumber());
+            frame.setWidth(sourceFrame.getWidth());
+            frame.setHeight(sourceFrame.getHeight());
+            frame.setFileSize(sourceFrame.getFileSize());
+            frame.setFormat(sourceFrame.getFormat());
+            frame.setQualityScore(sourceFrame.getQualityScore());
+            frame.setPerceptualHash(sourceFrame.getPerceptualHash());
+            if (sourceFrame.getThumbnailPath() != null && !sourceFrame.getThumbnailPath().isEmpty()) {
+                frame.setThumbnailPath(storageService.linkIntoAlbum(sourceFrame.getThumbnailPath(), albumId));
+            }
+            batch.add(frame);
+
+            if (batch.size() >= persistBatchSize) {
+                frameRepository.saveAll(batch);
+                linked += batch.size();
+                batch.clear();
+                processingProgress.put(albumId, (double) linked / sourceFrames.size());
+            }
+        }
+        if (!batch.isEmpty()) {
+            frameRepository.saveAll(batch);
+        }
+        return true;
+    }
+
+    /**
+     * 渐进式接收：视频仍在上传，元数据按已接收的部分尽量探测，帧从跟随上传的输入流中提取
+     * 输入流读完时文件已完整，此时重新探测元数据，并写入读取过程中计算的内容哈希
+     */
+    private void processProgressively(Album album, InputStream source) throws Exception {
+        Long albumId = album.getId();
+        try {
+            // 可顺序读取的容器头部就包含流信息，时长可能要等文件完整才能得到
+            updateAlbumMetadata(album, ffmpegService.extractMetadata(album.getVideoPath()));
+        } catch (RuntimeException e) {
+            logger.info("Metadata not available yet for album {}, probing after upload completes", albumId);
+        }
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        DigestInputStream videoData = new DigestInputStream(source, digest);
+        extractAndProcessFrames(album, videoData);
+        checkCancelled(albumId);
+        // FFmpeg不一定读到输入末尾，读完剩余数据使哈希覆盖整个文件
+        videoData.transferTo(OutputStream.nullOutputStream());
+
+        album.setContentHash(HexFormat.of().formatHex(digest.digest()));
+        updateAlbumMetadata(album, ffmpegService.extractMetadata(album.getVideoPath(), album.getContentHash()));
+        if (album.getExpectedFrameCount() == null) {
+            album.setExpectedFrameCount((int) frameRepository.countByAlbumId(albumId));
+        }
+        albumRepository.save(album);
+    }
+
+    private void closeQuietly(InputStream input) {
+        if (input == null) {
+            return;
+        }
+        try {
+            input.close();
+        } catch (IOException e) {
+            logger.debug("Failed to close video input", e);
         }
     }
 
@@ -152,8 +584,323 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
         albumRepository.save(album);
     }
 
-    private void extractAndProcessFrames(Album album) throws IOException {
-        String videoPath = album.getVideoPath();
+    /**
+     * @param progressiveSource 不为null时从该输入流渐进式提取，此时时长可能未知，总帧数记为0
+     */
+    private void extractAndProcessFrames(Album album, InputStream progressiveSource)
+            throws IOException, InterruptedException {
+        Long albumId = album.getId();
+
+        ExtractionMode mode = album.getExtractionMode() != null
+                ? album.getExtractionMode() : ExtractionMode.FIXED_RATE;
+
+        // 上次处理留下的已入库帧：检查点以内的帧通过定位跳过，其余已入库的帧在提交时跳过
+        NavigableMap<Integer, Long> storedHashes = loadStoredHashes(albumId);
+
+        // 续传时沿用上次的采样率，帧号与已入库的帧保持一致（未记录采样率的旧相册按配置的每秒帧数处理）
+        double fps = storedHashes.isEmpty() ? samplingRate(album)
+                : album.getSamplingRate() != null ? album.getSamplingRate().doubleValue() : framesPerSecond;
+
+        // 计算总帧数（关键帧/场景模式为估算值）
+        int totalFrames = expectedFrameCount(album, mode, fps);
+
+        logger.info("Extracting {} frames ({} mode, {} fps) from video with duration {}s",
+                totalFrames, mode.getValue(), fps, album.getDuration());
+        processingJobService.updateEstimate(albumId,
+                costEstimator.estimateSeconds(album, Math.max(0, totalFrames - storedHashes.size())));
+
+        // 续传时参数已变化的相册混合了两套参数的结果，不再作为复用来源
+        boolean singlePass = usesSinglePass(album, mode, !storedHashes.isEmpty(), progressiveSource);
+        String signature = processingSignature(album, mode, singlePass);
+        album.setProcessingSignature(storedHashes.isEmpty()
+                || signature.equals(album.getProcessingSignature()) ? signature : null);
+        album.setSamplingRate(mode == ExtractionMode.FIXED_RATE ? BigDecimal.valueOf(fps) : null);
+        album.setExpectedFrameCount(totalFrames > 0 ? totalFrames : null);
+        albumRepository.save(album);
+
+        // 流水线启动前预留本相册的长进程（解码进程和常驻编码器），此时尚未占用下游资源，可以排队等待；
+        // 分段数和编码器数按实际分得的进程数确定，运行期间的长进程从预留中领取
+        // 请求的进程数按当前的后台并发比例缩减，前台负载高时启动的相册只占用相应份额
+        boolean useGPU = gpuAccelerationService.isGPUSupported();
+        double concurrency = pipelineConcurrency;
+        int decoders = progressiveSource != null ? 1 : Math.min(maxParallelThreads, processRunner.getCpuTokens());
+        int tokens = Math.max(1, processRunner.getCpuTokens() / Math.max(1, albumConcurrency));
+        try (ProcessGovernor.Reservation reservation = processRunner.reserveLongRunning(
+                scaleByConcurrency(decoders, concurrency),
+                useGPU ? 0 : scaleByConcurrency(maxParallelThreads, concurrency),
+                scaleByConcurrency(tokens, concurrency))) {
+            logger.info("Reserved {} decoders and {} encoders with {} threads each for album {}",
+                    reservation.decoders(), reservation.encoders(), reservation.threadsPerProcess(), albumId);
+            // GPU编码是逐帧的短进程，不占用预留
+            int encodeWorkers = useGPU ? maxParallelThreads : reservation.encoders();
+            extractAndProcessFrames(album, mode, fps, totalFrames, storedHashes, encodeWorkers, singlePass,
+                    progressiveSource);
+        }
+    }
+
+    /**
+     * 按后台并发比例缩减的数量，至少为1
+     */
+    private static int scaleByConcurrency(int count, double concurrency) {
+        return Math.max(1, (int) Math.ceil(count * concurrency));
+    }
+
+    /**
+     * 在预留的长进程内提取并处理帧
+     * @param encodeWorkers 编码阶段的工作线程数（每个线程一个常驻编码器）
+     * @param singlePass 先尝试单次解码，失败时回退到逐帧处理
+     */
+    private void extractAndProcessFrames(Album album, ExtractionMode mode, double fps, int totalFrames,
+                                         NavigableMap<Integer, Long> storedHashes, int encodeWorkers,
+                                         boolean singlePass, InputStream progressiveSource)
+            throws IOException, InterruptedException {
+        Long albumId = album.getId();
+
+        if (singlePass) {
+            if (extractSinglePass(album, fps)) {
+                processingProgress.put(albumId, 0.95);
+                return;
+            }
+            // 单次解码因取消而失败时不回退到逐帧处理
+            checkCancelled(albumId);
+            // 中途失败前已有帧入库，逐帧处理按续传跳过这些帧；结果混合了两种提取方式，不再作为复用来源
+            storedHashes = loadStoredHashes(albumId);
+            album.setProcessingSignature(null);
+            albumRepository.save(album);
+        }
+
+        Set<Integer> storedFrames = storedHashes.keySet();
+        ResumeCheckpoint checkpoint = new ResumeCheckpoint(albumId, album.getProcessedThrough(), storedFrames);
+        int resumeAfter = checkpoint.getProcessedThrough();
+        if (resumeAfter > 0 || !storedFrames.isEmpty()) {
+            logger.info("Resuming album {} with {} frames already stored, continuing after frame {}",
+                    albumId, storedFrames.size(), resumeAfter);
+        }
+
+        // 临时文件提取只适用于FFmpeg后端，进程内后端总是流式提取
+        boolean streaming = streamingExtraction || !"ffmpeg".equals(frameExtractor.getName())
+                || progressiveSource != null;
+        FrameFeed feed = new FrameFeed(albumId, storedFrames, resumeAfter);
+        StagedPipeline<FrameTask> pipeline = buildPipeline(album, totalFrames, storedHashes, resumeAfter,
+                checkpoint, streaming ? 0.0 : EXTRACTION_PROGRESS_SHARE, encodeWorkers, feed);
+        feed.attach(pipeline);
+        activePipelines.put(albumId, pipeline);
+        pipeline.setActiveFraction(pipelineConcurrency);
+        long extractionStart = System.nanoTime();
+        try {
+            if (streaming) {
+                streamAndProcessFrames(album, mode, fps, feed, resumeAfter, progressiveSource);
+            } else {
+                extractToTempAndProcessFrames(album, mode, fps, feed);
+            }
+            long extractionNanos = System.nanoTime() - extractionStart;
+            feed.awaitCompletion();
+            pipeline.finish();
+
+            // 完整处理的观测用于校准耗时估算：解码时间扣除因帧处理跟不上而阻塞的时间；
+            // 续传只解码部分视频，渐进式接收的解码速度受上传速度限制，都不参与校准
+            if (storedFrames.isEmpty() && progressiveSource == null) {
+                costEstimator.recordDecode(album, (extractionNanos - pipeline.submitBlockedNanos()) / 1e9);
+                costEstimator.recordFrames(album, pipeline.submittedCount(), pipeline.busyNanos() / 1e9);
+            }
+        } catch (IOException | InterruptedException | RuntimeException e) {
+            pipeline.abort(e);
+            throw e;
+        } finally {
+            activePipelines.remove(albumId);
+        }
+
+        // 重试后仍失败的帧不入库，相册置为失败，重试处理时只补这些帧
+        Set<Integer> lostFrames = feed.getLostFrames();
+        if (!lostFrames.isEmpty()) {
+            throw new RuntimeException(lostFrames.size() + " frames could not be processed: "
+                    + lostFrames.stream().sorted().limit(20).toList());
+        }
+    }
+
+    /**
+     * 相册中已入库的帧号及其感知哈希
+     */
+    private NavigableMap<Integer, Long> loadStoredHashes(Long albumId) {
+        NavigableMap<Integer, Long> storedHashes = new TreeMap<>();
+        for (Object[] row : frameRepository.findFrameHashesByAlbumId(albumId)) {
+            storedHashes.put((Integer) row[0], (Long) row[1]);
+        }
+        return storedHashes;
+    }
+
+    /**
+     * 预计提取的帧数（关键帧/场景模式为估算值），时长未知时为0
+     */
+    private int expectedFrameCount(Album album, ExtractionMode mode, double fps) {
+        double duration = album.getDuration() != null ? album.getDuration().doubleValue() : 0;
+        return duration <= 0 ? 0 : mode == ExtractionMode.FIXED_RATE
+                ? (int) Math.ceil(duration * fps)
+                : Math.max(1, (int) Math.ceil(duration / ESTIMATED_SELECTION_INTERVAL));
+    }
+
+    /**
+     * 单次解码多路输出：一个FFmpeg进程直接将HEIC帧和缩略图写入相册存储目录，
+     * 不再为每一帧单独启动HEIC转换和缩略图进程
+     * 帧随解码逐个交付并分批入库，每批一个短事务，帧列表和进度随提交逐步可见
+     * 以缩略图的感知哈希去重：与前一帧的参照（上一保留帧）相近的帧删除文件、不入库；
+     * 分段并行解码时各段的第一帧可能先于前一段的最后一帧交付，这些帧没有参照，总是保留
+     * @return 是否成功；失败时由调用方回退到逐帧处理，已入库的帧按续传跳过
+     */
+    private boolean extractSinglePass(Album album, double framesPerSecond) {
+        Long albumId = album.getId();
+        List<Frame> batch = new ArrayList<>(persistBatchSize);
+        AtomicInteger persisted = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        try {
+            String framePattern = storageService.getFramePathPattern(albumId, "heic");
+            String thumbnailPattern = storageService.getThumbnailPathPattern(albumId);
+            String albumName = sanitizeAlbumName(album);
+            int width = album.getWidth();
+            int height = album.getHeight();
+            // 原尺寸帧由FFmpeg直接写为HEIC，质量分数和感知哈希按缩略图计算
+            FrameQualityScorer qualityScorer = new FrameQualityScorer();
+            // 帧号 -> 处理完该帧时上一保留帧的哈希，每个分段只保留最新的一项；帧都在调用线程上交付
+            Map<Integer, Long> referenceHashes = new HashMap<>();
+
+            ffmpegService.extractFramesWithThumbnails(
+                    album.getVideoPath(), framesPerSecond, framePattern, thumbnailPattern,
+                    heicQuality, thumbnailWidth, thumbnailHeight, thumbnailQuality,
+                    extractionProgress(album, 0.95),
+                    framePath -> {
+                        checkCancelled(albumId);
+                        int frameNumber = parseFrameNumber(Paths.get(framePath).getFileName().toString());
+                        double timestamp = (frameNumber - 1) / framesPerSecond;
+                        String thumbnailPath = String.format(thumbnailPattern, frameNumber);
+                        boolean hasThumbnail = storageService.fileExists(thumbnailPath);
+                        BufferedImage thumbnail = hasThumbnail ? readImage(thumbnailPath) : null;
+                        Long hash = thumbnail != null ? PerceptualHash.compute(thumbnail) : null;
+                        Long reference = referenceHashes.remove(frameNumber - 1);
+                        if (dedupEnabled && hash != null && reference != null
+                                && PerceptualHash.distance(reference, hash) <= dedupMaxDistance) {
+                            referenceHashes.put(frameNumber, reference);
+                            storageService.deleteFile(framePath);
+                            storageService.deleteFile(thumbnailPath);
+                            skipped.incrementAndGet();
+                            return;
+                        }
+                        referenceHashes.put(frameNumber, hash);
+
+                        Frame frame = new Frame();
+                        frame.setAlbum(album);
+                        frame.setFilename(buildFrameFilename(albumName, timestamp, frameNumber));
+                        frame.setFilePath(framePath);
+                        frame.setTimestamp(BigDecimal.valueOf(timestamp).setScale(3, RoundingMode.HALF_UP));
+                        frame.setFrameNumber(frameNumber);
+                        frame.setWidth(width);
+                        frame.setHeight(height);
+                        frame.setFileSize(storageService.getFileSize(framePath));
+                        frame.setFormat("heic");
+                        frame.setQualityScore(thumbnail != null ? toScore(qualityScorer.score(thumbnail)) : null);
+                        frame.setThumbnailPath(hasThumbnail ? thumbnailPath : null);
+                        frame.setPerceptualHash(hash);
+                        batch.add(frame);
+
+                        if (batch.size() >= persistBatchSize) {
+                            frameRepository.saveAll(batch);
+                            persisted.addAndGet(batch.size());
+                            batch.clear();
+                        }
+                    });
+            if (!batch.isEmpty()) {
+                frameRepository.saveAll(batch);
+                persisted.addAndGet(batch.size());
+            }
+
+            logger.info("Single-pass extraction saved {} frames for album: {}, skipped {} near-duplicate frames",
+                    persisted.get(), albumId, skipped.get());
+            return true;
+
+        } catch (Exception e) {
+            logger.warn("Single-pass extraction failed for album: {} after saving {} frames, "
+                    + "falling back to per-frame processing", albumId, persisted.get(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 构建帧处理流水线：解码（FFmpeg，数据源）→ 去重 → 编码 → 缩略图 → 存储 → 入库
+     * 每个阶段有独立的有界队列和工作线程数，编码跟不上时解码在入队时阻塞
+     * @param storedHashes 续传时已入库的帧及其哈希，哈希作为去重的参照
+     * @param resumeAfter 续传起点，此前的帧都已入库或作为重复帧丢弃；这些帧和其后已入库的帧计入进度
+     * @param checkpoint 入库和去重丢弃的帧在这里登记，随入库批次推进续传检查点
+     * @param progressOffset 流水线开始时已计入的进度（文件提取时为解码阶段的占比）
+     * @param encodeWorkers 编码阶段的工作线程数
+     * @param feed 失败帧的重试入口
+     */
+    private StagedPipeline<FrameTask> buildPipeline(Album album, int totalFrames,
+                                                    NavigableMap<Integer, Long> storedHashes, int resumeAfter,
+                                                    ResumeCheckpoint checkpoint, double progressOffset,
+                                                    int encodeWorkers, FrameFeed feed) {
+        Long albumId = album.getId();
+        // 相册在整个处理过程中只加载一次
+        String albumName = sanitizeAlbumName(album);
+        boolean useGPU = gpuAccelerationService.isGPUSupported();
+        FrameProgress progress = new FrameProgress(albumId, totalFrames,
+                resumeAfter + storedHashes.tailMap(resumeAfter, false).size(), progressOffset);
+
+        StagedPipeline<FrameTask> pipeline = new StagedPipeline<>("frame-" + albumId);
+        if (dedupEnabled) {
+            // 去重依赖帧的先后顺序，只用一个工作线程
+            pipeline.stage(STAGE_DEDUP, 1, pipelineQueueCapacity, new DedupWorker(albumId, storedHashes, resumeAfter, checkpoint, progress, feed));
+        }
+        return pipeline
+                .stagePerWorker(STAGE_ENCODE, encodeWorkers, pipelineQueueCapacity,
+                        () -> new EncodeWorker(albumId, albumName, useGPU, feed))
+                .stagePerWorker(STAGE_THUMBNAIL, thumbnailWorkers, pipelineQueueCapacity, ThumbnailWorker::new)
+                .stage(STAGE_STORE, storeWorkers, pipelineQueueCapacity,
+                        (task, emitter) -> {
+                            if (storeFrame(album, task)) {
+                                emitter.accept(task);
+                            } else {
+                                feed.retryOrLose(task);
+                            }
+                        })
+                .stage(STAGE_PERSIST, 1, pipelineQueueCapacity,
+                        new PersistWorker(albumId, totalFrames, progress, checkpoint, feed))
+                .start();
+    }
+
+    /**
+     * 流式提取：提取后端每解码出一帧立即提交给流水线，
+     * 帧处理与视频解码并行进行，且不产生临时JPEG文件
+     * @param framesPerSecond 固定帧率模式的采样率（已按帧预算换算）
+     * @param resumeAfter 续传检查点，提取后端从其后开始解码
+     * @param progressiveSource 不为null时由FFmpeg从该输入流解码（渐进式接收）
+     */
+    private void streamAndProcessFrames(Album album, ExtractionMode mode, double framesPerSecond, FrameFeed feed,
+                                        int resumeAfter, InputStream progressiveSource) {
+        Consumer<ExtractedFrame> submitter = extracted -> {
+            try {
+                feed.submit(extracted);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while submitting frame " + extracted.getFrameNumber(), e);
+            }
+        };
+
+        if (progressiveSource != null) {
+            ffmpegService.extractFramesProgressive(progressiveSource, mode, framesPerSecond, submitter);
+        } else if (frameExtractor.supports(mode)) {
+            frameExtractor.extractFrames(album.getVideoPath(), mode, framesPerSecond, resumeAfter, submitter);
+        } else {
+            logger.info("Extractor {} does not support {} mode, using ffmpeg for album: {}",
+                    frameExtractor.getName(), mode.getValue(), album.getId());
+            ffmpegService.extractFramesStreaming(album.getVideoPath(), mode, framesPerSecond, submitter);
+        }
+    }
+
+    /**
+     * 文件提取：先将全部帧写入临时目录，再逐帧提交给流水线
+     */
+    private void extractToTempAndProcessFrames(Album album, ExtractionMode mode, double framesPerSecond,
+                                               FrameFeed feed)
+            throws IOException, InterruptedException {
         Long albumId = album.getId();
 
         // 创建临时目录
@@ -164,182 +911,542 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
         // 生成帧提取输出模式
         String framePattern = tempPath.toString() + "/frame_%06d.jpg";
 
-        // 计算总帧数
-        double duration = album.getDuration().doubleValue();
-        int totalFrames = (int) Math.ceil(duration * framesPerSecond);
-
-        logger.info("Extracting {} frames from video with duration {}s", totalFrames, duration);
+        try {
+            // 提取帧（帧号和时间戳由提取模式决定）
+            List<ExtractedFrame> extractedFrames = ffmpegService.extractFrames(
+                    album.getVideoPath(), framePattern, mode, framesPerSecond,
+                    extractionProgress(album, EXTRACTION_PROGRESS_SHARE));
 
-        // 提取帧
-        List<String> extractedFramePaths = ffmpegService.extractFrames(videoPath, framePattern, framesPerSecond);
+            for (ExtractedFrame extracted : extractedFrames) {
+                feed.submit(extracted);
+            }
+            // 临时文件在流水线处理完（包括重试的帧）之后才能删除
+            feed.awaitCompletion();
+        } finally {
+            // 清理临时文件
+            cleanupTempDirectory(tempPath);
+        }
+    }
 
-        // 处理提取的帧
-        List<Frame> frames = new ArrayList<>();
-        AtomicInteger processedCount = new AtomicInteger(0);
+    /**
+     * 去重阶段：计算帧的dHash，与上一保留帧的哈希距离不超过max-distance时丢弃该帧，
+     * 近似重复的帧不进入HEIC编码和缩略图阶段
+     * 分段并行解码时各段的帧交错到达，因此按帧号链接：帧n只与帧n-1处理完时的保留帧比较，
+     * 前一帧尚未到达（分段起点、读取失败后重试的帧）时总是保留；
+     * 续传时前一帧由上次处理留下：已入库的以它为参照，检查点以内未入库的是被丢弃的重复帧，
+     * 以它之前最近的已入库帧为参照
+     * 已通过去重的帧重试时直接放行，不再消耗或覆盖参照链
+     */
+    private class DedupWorker implements StagedPipeline.StageWorker<FrameTask> {
+
+        private final Long albumId;
+        private final NavigableMap<Integer, Long> storedHashes;
+        private final int resumeAfter;
+        private final ResumeCheckpoint checkpoint;
+        private final FrameProgress progress;
+        private final FrameFeed feed;
+        // 帧号 -> 处理完该帧时上一保留帧的哈希，每个分段只保留最新的一项
+        private final Map<Integer, Long> referenceHashes = new HashMap<>();
+        private int skipped;
+
+        DedupWorker(Long albumId, NavigableMap<Integer, Long> storedHashes, int resumeAfter,
+                    ResumeCheckpoint checkpoint, FrameProgress progress, FrameFeed feed) {
+            this.albumId = albumId;
+            this.storedHashes = storedHashes;
+            this.resumeAfter = resumeAfter;
+            this.checkpoint = checkpoint;
+            this.progress = progress;
+            this.feed = feed;
+        }
 
-        // 并行处理帧
-        extractedFramePaths.parallelStream().forEach(framePath -> {
+        @Override
+        public void process(FrameTask task, Consumer<FrameTask> emitter) {
+            if (task.deduplicated) {
+                emitter.accept(task);
+                return;
+            }
+            int frameNumber = task.extracted.getFrameNumber();
+            Long hash;
             try {
-                if (processingCancellation.getOrDefault(albumId, false)) {
-                    logger.info("Processing cancelled for album: {}", albumId);
-                    return;
-                }
+                task.frameData = task.extracted.readData();
+                hash = PerceptualHash.compute(task.frameData);
+            } catch (IOException e) {
+                logger.error("Failed to read frame {} for album: {}", frameNumber, albumId, e);
+                feed.retryOrLose(task);
+                return;
+            }
+            task.deduplicated = true;
+            if (hash == null) {
+                // 无法解码的帧交给后续阶段按原逻辑处理
+                emitter.accept(task);
+                return;
+            }
 
-                // 解析帧号
-                String filename = Paths.get(framePath).getFileName().toString();
-                int frameNumber = parseFrameNumber(filename);
+            Long reference = referenceHashes.remove(frameNumber - 1);
+            if (reference == null) {
+                reference = storedReference(frameNumber - 1);
+            }
+            if (reference != null && PerceptualHash.distance(reference, hash) <= dedupMaxDistance) {
+                referenceHashes.put(frameNumber, reference);
+                skipped++;
+                progress.add(1);
+                checkpoint.done(frameNumber);
+                // 连续的重复帧之间可能很久没有入库批次，检查点（其他实例据此显示进度）也随丢弃推进
+                checkpoint.recordIfAdvanced(persistBatchSize);
+                feed.completed();
+                return;
+            }
+            referenceHashes.put(frameNumber, hash);
+            task.perceptualHash = hash;
+            emitter.accept(task);
+        }
 
-                // 计算时间戳
-                double timestamp = frameNumber / framesPerSecond;
+        /**
+         * 上次处理留下的参照：检查点以内未入库的帧是被丢弃的重复帧，取它之前最近的已入库帧
+         */
+        private Long storedReference(int frameNumber) {
+            if (frameNumber <= resumeAfter) {
+                Map.Entry<Integer, Long> kept = storedHashes.floorEntry(frameNumber);
+                return kept != null ? kept.getValue() : null;
+            }
+            return storedHashes.get(frameNumber);
+        }
 
-                // 处理帧图像
-                Frame frame = processFrame(albumId, frameNumber, timestamp, framePath);
-                if (frame != null) {
-                    synchronized (frames) {
-                        frames.add(frame);
-                    }
-                }
+        @Override
+        public void close(Consumer<FrameTask> emitter) {
+            if (skipped > 0) {
+                logger.info("Skipped {} near-duplicate frames for album: {}", skipped, albumId);
+            }
+        }
+    }
+
+    /**
+     * 编码阶段：将原始帧转换为HEIC，转换失败时保留原始JPEG
+     * CPU编码时每个工作线程持有一个常驻的批量编码进程，而不是每帧启动一次FFmpeg，
+     * 编码进程运行期间占用一个集群编码槽位
+     */
+    private class EncodeWorker implements StagedPipeline.StageWorker<FrameTask> {
+
+        private final Long albumId;
+        private final String albumName;
+        private final boolean useGPU;
+        private final FrameFeed feed;
+        private HeicBatchEncoder encoder;
+        private ClusterThrottle.Permit encodeSlot;
+
+        EncodeWorker(Long albumId, String albumName, boolean useGPU, FrameFeed feed) {
+            this.albumId = albumId;
+            this.albumName = albumName;
+            this.useGPU = useGPU;
+            this.feed = feed;
+        }
 
-                // 更新进度
-                int processed = processedCount.incrementAndGet();
-                double progress = (double) processed / totalFrames;
-                processingProgress.put(albumId, Math.min(progress, 0.95)); // 留5%给最后的保存操作
+        @Override
+        public void process(FrameTask task, Consumer<FrameTask> emitter) {
+            if (isCancelled(albumId)) {
+                return;
+            }
 
-                if (processed % 10 == 0) {
-                    logger.info("Processed {}/{} frames for album: {}", processed, totalFrames, albumId);
+            ExtractedFrame extracted = task.extracted;
+            try {
+                task.frameFilename = buildFrameFilename(albumName, extracted.getTimestamp(), extracted.getFrameNumber());
+                if (task.frameData == null) {
+                    task.frameData = extracted.readData();
                 }
+            } catch (IOException e) {
+                logger.error("Failed to read frame {} for album: {}", extracted.getFrameNumber(), albumId, e);
+                feed.retryOrLose(task);
+                return;
+            }
 
-            } catch (Exception e) {
-                logger.error("Failed to process frame: {}", framePath, e);
+            if (useGPU) {
+                if (encodeWithGPU(albumId, task) || !feed.retry(task)) {
+                    emitter.accept(task);
+                }
+                return;
             }
-        });
 
-        // 批量保存帧数据
-        if (!frames.isEmpty()) {
-            frameRepository.saveAll(frames);
-            logger.info("Saved {} frames to database for album: {}", frames.size(), albumId);
+            if (encoder == null) {
+                try {
+                    encodeSlot = clusterThrottle.acquire(ClusterResourceType.ENCODE, () -> isCancelled(albumId));
+                    encoder = ffmpegService.openHeicBatchEncoder(heicQuality);
+                } catch (CancellationException e) {
+                    return;
+                } catch (RuntimeException e) {
+                    closeEncoder();
+                    throw e;
+                }
+            }
+            try {
+                // 编码结果在编码器的读取线程上回调，并从那里交给下一阶段
+                encoder.submit(task.frameData, heicData -> {
+                    if (heicData != null) {
+                        task.encodedData = heicData;
+                        task.encodedFormat = "heic";
+                    } else if (feed.retry(task)) {
+                        // 编码进程异常等暂时性失败，重新提交该帧
+                        return;
+                    } else {
+                        // 重试后仍失败，使用原始格式
+                        task.encodedData = task.frameData;
+                        task.encodedFormat = "jpg";
+                    }
+                    emitter.accept(task);
+                });
+            } catch (IOException e) {
+                // 编码进程异常退出：已提交的帧（包括当前帧）在关闭时按失败回调，下一帧重新启动编码器
+                logger.warn("HEIC batch encoder failed for album: {}, restarting", albumId, e);
+                closeEncoder();
+            }
+        }
+
+        @Override
+        public void close(Consumer<FrameTask> emitter) {
+            closeEncoder();
         }
 
-        // 清理临时文件
-        cleanupTempDirectory(tempPath);
+        @Override
+        public void abort() {
+            closeEncoder();
+        }
+
+        /**
+         * 暂停期间不保留编码进程和集群编码槽位，恢复后处理下一帧时重新启动编码器
+         */
+        @Override
+        public void pause() {
+            closeEncoder();
+        }
+
+        private void closeEncoder() {
+            try {
+                if (encoder != null) {
+                    encoder.close();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.warn("Interrupted while closing HEIC batch encoder for album: {}", albumId);
+            } catch (IOException e) {
+                logger.warn("Failed to close HEIC batch encoder for album: {}", albumId, e);
+            } finally {
+                encoder = null;
+                // 编码进程退出后再归还集群编码槽位
+                if (encodeSlot != null) {
+                    encodeSlot.close();
+                    encodeSlot = null;
+                }
+            }
+        }
     }
 
-    private Frame processFrame(Long albumId, int frameNumber, double timestamp, String framePath) {
+    /**
+     * GPU编码：GPU服务只接受文件输入，流式帧需先落盘
+     * @return 是否编码成功；失败时任务中为原始格式的数据
+     */
+    private boolean encodeWithGPU(Long albumId, FrameTask task) {
+        ExtractedFrame extracted = task.extracted;
+        int frameNumber = extracted.getFrameNumber();
         try {
-            // 检查GPU加速是否可用
-            boolean useGPU = gpuAccelerationService.isGPUSupported();
-
-            // 生成文件名
-            String albumName = getAlbumName(albumId);
-            String frameFilename = String.format("%s_%s_frame_%06d.heic",
-                    albumName,
-                    formatTimestamp(timestamp),
-                    frameNumber);
-
-            // 存储原始帧为HEIC格式
-            byte[] frameData = java.nio.file.Files.readAllBytes(Paths.get(framePath));
+            String framePath = extracted.getPath();
+            Path spilledPath = null;
+            if (framePath == null) {
+                spilledPath = Paths.get(System.getProperty("java.io.tmpdir"), "gpu_in_" + albumId + "_" + frameNumber + ".jpg");
+                java.nio.file.Files.write(spilledPath, task.frameData);
+                framePath = spilledPath.toString();
+            }
             String heicPath;
-
-            if (useGPU) {
-                // 使用GPU加速处理
-                heicPath = gpuAccelerationService.processWithGPU(framePath, frameFilename, heicQuality);
-            } else {
-                // CPU处理
-                String tempHeicPath = System.getProperty("java.io.tmpdir") + "/temp_" + frameFilename;
-                boolean converted = ffmpegService.convertToHEIC(framePath, tempHeicPath, heicQuality);
-
-                if (converted) {
-                    byte[] heicData = java.nio.file.Files.readAllBytes(Paths.get(tempHeicPath));
-                    heicPath = storageService.storeFrame(albumId, frameNumber, heicData, "heic");
-                    java.nio.file.Files.deleteIfExists(Paths.get(tempHeicPath));
-                } else {
-                    // HEIC转换失败，使用原始格式
-                    heicPath = storageService.storeFrame(albumId, frameNumber, frameData, "jpg");
+            try {
+                heicPath = gpuAccelerationService.processWithGPU(framePath, task.frameFilename, heicQuality);
+            } finally {
+                if (spilledPath != null) {
+                    java.nio.file.Files.deleteIfExists(spilledPath);
                 }
             }
 
-            // 生成缩略图
-            String thumbnailPath = generateThumbnail(framePath, albumId, frameNumber);
+            if (heicPath != null && java.nio.file.Files.exists(Paths.get(heicPath))) {
+                task.encodedData = java.nio.file.Files.readAllBytes(Paths.get(heicPath));
+                task.encodedFormat = "heic";
+                java.nio.file.Files.deleteIfExists(Paths.get(heicPath));
+                return true;
+            }
+        } catch (Exception e) {
+            logger.error("Failed to encode frame {} for album: {}", frameNumber, albumId, e);
+        }
 
-            // 获取图像尺寸和质量分数
-            java.awt.image.BufferedImage image = javax.imageio.ImageIO.read(new File(framePath));
-            int width = image.getWidth();
-            int height = image.getHeight();
-            double qualityScore = calculateQualityScore(image);
+        // HEIC转换失败，使用原始格式
+        task.encodedData = task.frameData;
+        task.encodedFormat = "jpg";
+        return false;
+    }
 
-            // 获取Album对象用于设置关系
-            Album albumEntity = albumRepository.findById(albumId).orElse(null);
+    /**
+     * 缩略图阶段：生成缩略图并计算质量分数
+     * 尺寸只读文件头；整帧只在缩略图后端需要像素时解码一次，否则质量评分使用降采样解码
+     */
+    private class ThumbnailWorker implements StagedPipeline.StageWorker<FrameTask> {
+
+        // 评分器持有可复用的缓冲区，每个工作线程一个
+        private final FrameQualityScorer qualityScorer = new FrameQualityScorer();
+
+        @Override
+        public void process(FrameTask task, Consumer<FrameTask> emitter) throws IOException {
+            Dimension size = ImageDecoding.readDimensions(task.frameData);
+            if (size != null) {
+                task.width = size.width;
+                task.height = size.height;
+            }
+
+            BufferedImage decoded = thumbnailEncoder.usesDecodedImage()
+                    ? ImageIO.read(new ByteArrayInputStream(task.frameData)) : null;
+            BufferedImage scoringImage = decoded != null ? decoded
+                    : ImageDecoding.decodeSubsampled(task.frameData, FrameQualityScorer.SCORE_WIDTH * 2);
+            if (scoringImage != null) {
+                task.qualityScore = qualityScorer.score(scoringImage);
+            }
+
+            task.thumbnailData = thumbnailEncoder.createThumbnail(task.extracted, task.frameData,
+                    decoded, thumbnailWidth, thumbnailHeight, thumbnailQuality);
+            emitter.accept(task);
+        }
+    }
+
+    /**
+     * 存储阶段：写入帧和缩略图文件，生成帧实体
+     * @return 是否继续处理该帧
+     */
+    private boolean storeFrame(Album album, FrameTask task) {
+        Long albumId = album.getId();
+        ExtractedFrame extracted = task.extracted;
+        int frameNumber = extracted.getFrameNumber();
+        try {
+            long bytes = task.encodedData.length + (task.thumbnailData != null ? task.thumbnailData.length : 0);
+            clusterThrottle.awaitBytesWritten(bytes, () -> isCancelled(albumId));
+            String framePath = storageService.storeFrame(albumId, frameNumber, task.encodedData, task.encodedFormat);
+
+            String thumbnailPath = null;
+            if (task.thumbnailData != null) {
+                thumbnailPath = storageService.storeThumbnail(albumId, frameNumber, task.thumbnailData,
+                        thumbnailEncoder.getFormat());
+            }
+
+            // 图像尺寸只从文件头读取
+            if (task.width == 0) {
+                Dimension size = ImageDecoding.readDimensions(task.frameData);
+                if (size == null) {
+                    throw new IOException("Unrecognized image data");
+                }
+                task.width = size.width;
+                task.height = size.height;
+            }
+            int width = task.width;
+            int height = task.height;
 
             // 创建帧对象
             Frame frame = new Frame();
-            frame.setAlbum(albumEntity);
-            frame.setFilename(frameFilename);
-            frame.setFilePath(heicPath);
-            frame.setTimestamp(BigDecimal.valueOf(timestamp).setScale(3, RoundingMode.HALF_UP));
+            frame.setAlbum(album);
+            frame.setFilename(task.frameFilename);
+            frame.setFilePath(framePath);
+            frame.setTimestamp(BigDecimal.valueOf(extracted.getTimestamp()).setScale(3, RoundingMode.HALF_UP));
             frame.setFrameNumber(frameNumber);
             frame.setWidth(width);
             frame.setHeight(height);
-            frame.setFileSize((long) frameData.length);
-            frame.setFormat(heicPath.endsWith(".heic") ? "heic" : "jpg");
-            frame.setQualityScore(BigDecimal.valueOf(qualityScore).setScale(2, RoundingMode.HALF_UP));
+            frame.setFileSize((long) task.encodedData.length);
+            frame.setFormat(task.encodedFormat);
+            frame.setQualityScore(toScore(task.qualityScore));
+            frame.setPerceptualHash(task.perceptualHash);
             frame.setThumbnailPath(thumbnailPath);
 
-            return frame;
+            task.frame = frame;
+            // 帧数据已写入存储，释放内存
+            task.frameData = null;
+            task.encodedData = null;
+            task.thumbnailData = null;
+            return true;
 
         } catch (Exception e) {
-            logger.error("Failed to process frame {}: {}", frameNumber, framePath, e);
-            return null;
+            logger.error("Failed to store frame {} for album: {}", frameNumber, albumId, e);
+            return false;
         }
     }
 
-    private String generateThumbnail(String framePath, Long albumId, int frameNumber) {
-        String tempThumbnailPath = System.getProperty("java.io.tmpdir") + "/thumb_" + frameNumber + ".jpg";
+    /**
+     * 流水线的处理进度：入库的帧和作为重复帧丢弃的帧都计为完成
+     * 总帧数未知（渐进式接收且时长未知）时不更新，进度按入库帧数由相册信息计算
+     */
+    private class FrameProgress {
+
+        private final Long albumId;
+        private final int totalFrames;
+        private final double offset;
+        private final AtomicInteger completed;
+
+        /**
+         * @param completedFrames 续传时已处理完的帧数
+         * @param offset 流水线开始时已计入的进度
+         */
+        FrameProgress(Long albumId, int totalFrames, int completedFrames, double offset) {
+            this.albumId = albumId;
+            this.totalFrames = totalFrames;
+            this.offset = offset;
+            this.completed = new AtomicInteger(completedFrames);
+        }
 
-        boolean generated = ffmpegService.generateThumbnail(
-                framePath,
-                tempThumbnailPath,
-                thumbnailWidth,
-                thumbnailHeight,
-                thumbnailQuality
-        );
+        /**
+         * @return 累计完成的帧数
+         */
+        int add(int frames) {
+            int done = completed.addAndGet(frames);
+            if (totalFrames > 0) {
+                double progress = offset + (double) done / totalFrames * (0.95 - offset);
+                processingProgress.put(albumId, Math.min(progress, 0.95)); // 留5%给最后的收尾操作
+            }
+            return done;
+        }
+    }
 
-        if (generated) {
-            try {
-                byte[] thumbnailData = java.nio.file.Files.readAllBytes(Paths.get(tempThumbnailPath));
-                String thumbnailPath = storageService.storeThumbnail(albumId, frameNumber, thumbnailData);
-                java.nio.file.Files.deleteIfExists(Paths.get(tempThumbnailPath));
-                return thumbnailPath;
-            } catch (IOException e) {
-                logger.error("Failed to store thumbnail for frame: {}", frameNumber, e);
+    /**
+     * 入库阶段：按批保存帧记录并更新进度
+     * 处理不在事务中进行，每批saveAll是一个独立的短事务，提交后帧即可被查询到，
+     * 实体随之脱离持久化上下文，内存占用不随视频长度增长
+     */
+    private class PersistWorker implements StagedPipeline.StageWorker<FrameTask> {
+
+        private final Long albumId;
+        private final int totalFrames;
+        private final FrameProgress progress;
+        private final ResumeCheckpoint checkpoint;
+        private final FrameFeed feed;
+        private final List<Frame> batch = new ArrayList<>();
+
+        PersistWorker(Long albumId, int totalFrames, FrameProgress progress, ResumeCheckpoint checkpoint,
+                      FrameFeed feed) {
+            this.albumId = albumId;
+            this.totalFrames = totalFrames;
+            this.progress = progress;
+            this.checkpoint = checkpoint;
+            this.feed = feed;
+        }
+
+        @Override
+        public void process(FrameTask task, Consumer<FrameTask> emitter) {
+            // 到达入库阶段的帧不再重试，入库失败会使整个流水线失败
+            feed.completed();
+            batch.add(task.frame);
+            if (batch.size() >= persistBatchSize) {
+                flush();
             }
         }
 
-        return null;
+        @Override
+        public void close(Consumer<FrameTask> emitter) {
+            flush();
+            // 最后一批之后被丢弃的重复帧
+            checkpoint.record();
+        }
+
+        private void flush() {
+            if (batch.isEmpty()) {
+                return;
+            }
+            frameRepository.saveAll(batch);
+            int saved = batch.size();
+            int completed = progress.add(saved);
+            batch.forEach(frame -> checkpoint.done(frame.getFrameNumber()));
+            batch.clear();
+            checkpoint.record();
+            logger.info("Persisted {} frames ({}/{} done) for album: {}", saved, completed, totalFrames, albumId);
+        }
     }
 
-    private double calculateQualityScore(java.awt.image.BufferedImage image) {
-        // 简单的质量分数计算（可以后续改进）
-        // 基于图像的对比度、清晰度等因素
+    /**
+     * 解码进度回调：按已处理的视频时长占总时长的比例，映射到[0, share]区间
+     */
+    private DoubleConsumer extractionProgress(Album album, double share) {
+        Long albumId = album.getId();
+        double duration = album.getDuration() != null ? album.getDuration().doubleValue() : 0;
+        return processedSeconds -> {
+            if (duration > 0) {
+                processingProgress.put(albumId, share * Math.min(1.0, processedSeconds / duration));
+            }
+        };
+    }
+
+    private BufferedImage readImage(String path) {
         try {
-            // 这里可以实现更复杂的质量评估算法
-            // 暂时返回基于图像大小的简单评分
-            int width = image.getWidth();
-            int height = image.getHeight();
-            return Math.min(1.0, (width * height) / (1920.0 * 1080.0));
-        } catch (Exception e) {
-            return 0.5; // 默认值
+            return ImageIO.read(new File(path));
+        } catch (IOException e) {
+            logger.warn("Failed to read image: {}", path, e);
+            return null;
         }
     }
 
+    private BigDecimal toScore(Double qualityScore) {
+        return qualityScore != null ? BigDecimal.valueOf(qualityScore).setScale(2, RoundingMode.HALF_UP) : null;
+    }
+
     @Override
     public double getProcessingProgress(Long albumId) {
         return processingProgress.getOrDefault(albumId, 0.0);
     }
 
     @Override
+    public void setPipelineConcurrency(double fraction) {
+        pipelineConcurrency = Math.max(0, Math.min(1, fraction));
+        activePipelines.values().forEach(pipeline -> pipeline.setActiveFraction(pipelineConcurrency));
+    }
+
+    /**
+     * 取消处理：终止相册的所有FFmpeg进程树，中止流水线并丢弃排队中的帧，
+     * 然后等待处理线程退出（临时文件在处理线程退出时清理，相册状态置为CANCELLED）
+     * 等待期间不持有事务和数据库连接
+     */
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public void stopProcessing(Long albumId) {
+        ProcessingContext context = cancel(albumId);
+        if (context == null) {
+            return;
+        }
+        try {
+            if (!context.finished.await(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Processing thread for album {} did not stop within {}s", albumId, STOP_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void cancelProcessing(Long albumId) {
+        cancel(albumId);
+    }
+
+    @Override
+    public void abandonProcessing(Long albumId) {
+        ProcessingContext context = activeProcessing.get(albumId);
+        if (context != null) {
+            context.abandoned = true;
+        }
+        cancel(albumId);
+    }
+
+    /**
+     * @return 被取消的处理，没有正在进行的处理时为null
+     */
+    private ProcessingContext cancel(Long albumId) {
+        ProcessingContext context = activeProcessing.get(albumId);
+        if (context == null) {
+            logger.info("No active processing to stop for album: {}", albumId);
+            return null;
+        }
         logger.info("Stopping video processing for album: {}", albumId);
-        processingCancellation.put(albumId, true);
+
+        context.processes.cancel();
+        StagedPipeline<FrameTask> pipeline = activePipelines.get(albumId);
+        if (pipeline != null) {
+            pipeline.abort(new CancellationException("Processing cancelled for album " + albumId));
+        }
+        return context;
     }
 
     private int parseFrameNumber(String filename) {
@@ -352,6 +1459,10 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
         }
     }
 
+    private String buildFrameFilename(String albumName, double timestamp, int frameNumber) {
+        return String.format("%s_%s_frame_%06d.heic", albumName, formatTimestamp(timestamp), frameNumber);
+    }
+
     private String formatTimestamp(double timestamp) {
         int hours = (int) (timestamp / 3600);
         int minutes = (int) ((timestamp % 3600) / 60);
@@ -359,16 +1470,228 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
         return String.format("%02d_%02d_%02d", hours, minutes, seconds);
     }
 
-    private String getAlbumName(Long albumId) {
-        try {
-            Album album = albumRepository.findById(albumId).orElse(null);
-            if (album != null) {
-                return album.getName().replaceAll("[^a-zA-Z0-9_-]", "_");
+    private String sanitizeAlbumName(Album album) {
+        if (album.getName() != null) {
+            return album.getName().replaceAll("[^a-zA-Z0-9_-]", "_");
+        }
+        return "album_" + album.getId();
+    }
+
+    /**
+     * 续传检查点：帧入库（批次提交后）或作为重复帧丢弃后即处理完毕，
+     * 从第1帧起连续处理完的最大帧号随入库批次写入相册，续传时从其后开始解码；
+     * 丢失的帧使检查点停在它之前，重试处理时从那里补起
+     */
+    private class ResumeCheckpoint {
+
+        private final Long albumId;
+        // 检查点之后已处理完的帧（乱序完成的帧、上次处理留下的已入库帧）
+        private final BitSet doneAhead = new BitSet();
+        private int processedThrough;
+        private int recordedThrough;
+
+        /**
+         * @param processedThrough 相册中记录的检查点
+         * @param storedFrames 已入库的帧，紧接检查点的连续帧直接计入
+         */
+        ResumeCheckpoint(Long albumId, int processedThrough, Set<Integer> storedFrames) {
+            this.albumId = albumId;
+            this.processedThrough = processedThrough;
+            this.recordedThrough = processedThrough;
+            for (int frameNumber : storedFrames) {
+                if (frameNumber > processedThrough) {
+                    doneAhead.set(frameNumber);
+                }
             }
-        } catch (Exception e) {
-            logger.warn("Failed to get album name for ID: {}", albumId, e);
+            advance();
+        }
+
+        synchronized int getProcessedThrough() {
+            return processedThrough;
+        }
+
+        synchronized void done(int frameNumber) {
+            doneAhead.set(frameNumber);
+            advance();
+        }
+
+        private void advance() {
+            while (doneAhead.get(processedThrough + 1)) {
+                doneAhead.clear(processedThrough + 1);
+                processedThrough++;
+            }
+        }
+
+        /**
+         * 将检查点写入相册；入库的帧在批次提交后才登记，检查点不会越过未提交的帧
+         */
+        void record() {
+            recordIfAdvanced(1);
+        }
+
+        /**
+         * 检查点比上次写入时推进了至少frames帧才写入
+         */
+        void recordIfAdvanced(int frames) {
+            int through;
+            synchronized (this) {
+                if (processedThrough - recordedThrough < Math.max(1, frames)) {
+                    return;
+                }
+                through = processedThrough;
+                recordedThrough = through;
+            }
+            albumRepository.advanceProcessedThrough(albumId, through);
+        }
+    }
+
+    /**
+     * 流水线的数据源入口：跳过检查点以内和已入库的帧，并把暂时性失败（读取、编码、存储）的帧重新提交，
+     * 每帧最多重试frameRetryAttempts次
+     * 在途计数覆盖从提交到进入入库阶段的整个过程，数据源结束后等待其归零再结束流水线
+     */
+    private class FrameFeed {
+
+        private final Long albumId;
+        private final Set<Integer> storedFrames;
+        private final int resumeAfter;
+        private final BlockingQueue<FrameTask> retryQueue = new LinkedBlockingQueue<>();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Set<Integer> lostFrames = ConcurrentHashMap.newKeySet();
+        private StagedPipeline<FrameTask> pipeline;
+
+        FrameFeed(Long albumId, Set<Integer> storedFrames, int resumeAfter) {
+            this.albumId = albumId;
+            this.storedFrames = storedFrames;
+            this.resumeAfter = resumeAfter;
+        }
+
+        void attach(StagedPipeline<FrameTask> pipeline) {
+            this.pipeline = pipeline;
+        }
+
+        /**
+         * 提交新提取的帧，顺带提交等待重试的帧；可被多个读取线程并发调用
+         */
+        void submit(ExtractedFrame extracted) throws InterruptedException {
+            int frameNumber = extracted.getFrameNumber();
+            if (frameNumber <= resumeAfter || storedFrames.contains(frameNumber)) {
+                return;
+            }
+            inFlight.incrementAndGet();
+            pipeline.submit(new FrameTask(extracted));
+            FrameTask retried;
+            while ((retried = retryQueue.poll()) != null) {
+                pipeline.submit(retried);
+            }
+        }
+
+        /**
+         * 失败的帧未超过重试次数时放回重试队列
+         * @return 是否已安排重试；返回false时由调用方决定降级或丢弃
+         */
+        boolean retry(FrameTask task) {
+            if (task.attempts >= frameRetryAttempts || isCancelled(albumId)) {
+                return false;
+            }
+            task.attempts++;
+            task.reset();
+            logger.warn("Retrying frame {} for album: {} (attempt {}/{})",
+                    task.extracted.getFrameNumber(), albumId, task.attempts, frameRetryAttempts);
+            retryQueue.add(task);
+            return true;
+        }
+
+        /**
+         * 重试或记为丢失，用于没有降级方案的失败（读取、存储）
+         */
+        void retryOrLose(FrameTask task) {
+            if (!retry(task)) {
+                int frameNumber = task.extracted.getFrameNumber();
+                logger.error("Giving up on frame {} for album: {} after {} retries",
+                        frameNumber, albumId, task.attempts);
+                lostFrames.add(frameNumber);
+                inFlight.decrementAndGet();
+            }
+        }
+
+        /**
+         * 帧已进入入库阶段，或作为重复帧被丢弃
+         */
+        void completed() {
+            inFlight.decrementAndGet();
+        }
+
+        /**
+         * 数据源结束后调用：继续提交重试的帧，直到所有帧入库或最终失败
+         */
+        void awaitCompletion() throws InterruptedException {
+            while (inFlight.get() > 0) {
+                checkCancelled(albumId);
+                FrameTask retried = retryQueue.poll(200, TimeUnit.MILLISECONDS);
+                if (retried != null) {
+                    pipeline.submit(retried);
+                } else {
+                    pipeline.rethrowFailure();
+                }
+            }
+        }
+
+        Set<Integer> getLostFrames() {
+            return lostFrames;
+        }
+    }
+
+    /**
+     * 正在进行的相册处理：进程组用于取消，finished在处理线程退出时释放
+     * abandoned表示因失去租约而放弃，退出时不更新相册状态
+     */
+    private static class ProcessingContext {
+        private final ProcessRunner.ProcessGroup processes;
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile boolean abandoned;
+
+        ProcessingContext(Long albumId) {
+            this.processes = new ProcessRunner.ProcessGroup("album-" + albumId);
+        }
+    }
+
+    /**
+     * 流水线中传递的单帧处理状态
+     */
+    private static class FrameTask {
+        private final ExtractedFrame extracted;
+        private String frameFilename;
+        private byte[] frameData;
+        private byte[] encodedData;
+        private String encodedFormat;
+        private byte[] thumbnailData;
+        private int width;
+        private int height;
+        private Long perceptualHash;
+        private Double qualityScore;
+        private Frame frame;
+        private int attempts;
+        // 已通过去重阶段（重试时不再参与去重）
+        private boolean deduplicated;
+
+        FrameTask(ExtractedFrame extracted) {
+            this.extracted = extracted;
+        }
+
+        /**
+         * 清除上一次尝试的中间结果；重试的帧重新提交到流水线，已通过去重的帧在去重阶段直接放行
+         */
+        void reset() {
+            frameData = null;
+            encodedData = null;
+            encodedFormat = null;
+            thumbnailData = null;
+            width = 0;
+            height = 0;
+            qualityScore = null;
+            frame = null;
         }
-        return "album_" + albumId;
     }
 
     private void cleanupTempDirectory(Path tempPath) {
@@ -389,15 +1712,18 @@ public class VideoProcessingServiceImpl implements VideoProcessingService {
         }
     }
 
-    private void cleanupTempFiles() {
-        // 清理遗留的临时文件
-        try {
-            String tempDir = System.getProperty("java.io.tmpdir");
-            java.nio.file.Files.walk(Paths.get(tempDir))
-                    .filter(path -> path.getFileName().toString().startsWith("vfc_"))
+    /**
+     * 清理相册遗留的临时文件（文件提取目录和GPU编码的落盘帧），不影响其他相册正在使用的临时文件
+     */
+    private void cleanupTempFiles(Long albumId) {
+        Path tempRoot = Paths.get(System.getProperty("java.io.tmpdir"));
+        cleanupTempDirectory(tempRoot.resolve("vfc_" + albumId));
+        String gpuPrefix = "gpu_in_" + albumId + "_";
+        try (java.util.stream.Stream<Path> files = java.nio.file.Files.list(tempRoot)) {
+            files.filter(path -> path.getFileName().toString().startsWith(gpuPrefix))
                     .forEach(path -> {
                         try {
-                            java.nio.file.Files.delete(path);
+                            java.nio.file.Files.deleteIfExists(path);
                         } catch (IOException e) {
                             logger.warn("Failed to delete temp file: {}", path, e);
                         }
@@ -0,0 +1,22 @@
+-- 集群级并发限制：各实例共享的解码、编码槽位和存储写入速率
+-- 每类资源一行，授予槽位或领取写入额度时锁定该行，各实例的判断依次进行
+CREATE TABLE cluster_resources (
+    name VARCHAR(32) PRIMARY KEY, -- 'DECODE', 'ENCODE', 'BYTES_WRITTEN'
+    tokens DOUBLE PRECISION NOT NULL DEFAULT 0, -- 写入速率令牌桶中剩余的字节数
+    refilled_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+INSERT INTO cluster_resources (name) VALUES ('DECODE'), ('ENCODE'), ('BYTES_WRITTEN');
+
+-- 槽位的占用和等待记录，由所属实例定期续期；实例失联后记录过期，其槽位随之释放
+CREATE TABLE cluster_slots (
+    id BIGSERIAL PRIMARY KEY,
+    resource VARCHAR(32) NOT NULL REFERENCES cluster_resources(name),
+    node_id VARCHAR(100) NOT NULL,
+    granted BOOLEAN NOT NULL, -- false表示该实例正在等待槽位
+    expires_at TIMESTAMP NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX idx_cluster_slots_resource ON cluster_slots(resource, expires_at);
+CREATE INDEX idx_cluster_slots_node ON cluster_slots(node_id);
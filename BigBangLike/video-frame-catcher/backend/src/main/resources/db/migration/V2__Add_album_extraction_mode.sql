@@ -0,0 +1,2 @@
+-- 相册帧提取模式：FIXED_RATE（固定帧率）或 KEYFRAME（仅关键帧）
+ALTER TABLE albums ADD COLUMN extraction_mode VARCHAR(20) NOT NULL DEFAULT 'FIXED_RATE';
@@ -0,0 +1,2 @@
+-- 相册预计提取的帧数（关键帧/场景模式为估算值），处理进度按已入库帧数与其比值计算
+ALTER TABLE albums ADD COLUMN expected_frame_count INTEGER;
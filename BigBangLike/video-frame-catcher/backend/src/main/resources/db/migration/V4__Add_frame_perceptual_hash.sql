@@ -0,0 +1,2 @@
+-- 帧的64位差值哈希（dHash），用于提取时跳过与上一保留帧近似重复的帧
+ALTER TABLE frames ADD COLUMN perceptual_hash BIGINT;
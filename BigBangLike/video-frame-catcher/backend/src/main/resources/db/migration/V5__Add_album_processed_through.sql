@@ -0,0 +1,2 @@
+-- 续传检查点：从第1帧起连续处理完（已入库或作为重复帧丢弃）的最大帧号，续传时从其后开始解码
+ALTER TABLE albums ADD COLUMN processed_through INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- 上传视频内容的SHA-256及处理参数签名，相同内容和参数的已完成相册可直接复用其帧
+ALTER TABLE albums ADD COLUMN content_hash VARCHAR(64);
+ALTER TABLE albums ADD COLUMN processing_signature VARCHAR(255);
+
+CREATE INDEX idx_albums_content_hash ON albums(content_hash);
@@ -0,0 +1,4 @@
+-- 相册的帧预算（固定帧率模式下帧数的上下限，为空时取配置的默认值）及据时长实际采用的采样率
+ALTER TABLE albums ADD COLUMN min_frames INTEGER;
+ALTER TABLE albums ADD COLUMN max_frames INTEGER;
+ALTER TABLE albums ADD COLUMN sampling_rate NUMERIC(12, 6);
@@ -0,0 +1,23 @@
+-- 相册处理任务队列：各实例以 FOR UPDATE SKIP LOCKED 领取任务，处理期间定期续租，
+-- 租约过期的任务（实例崩溃或重启）由其他实例重新领取，失败的任务按退避时间重试
+CREATE TABLE processing_jobs (
+    id BIGSERIAL PRIMARY KEY,
+    album_id BIGINT NOT NULL REFERENCES albums(id) ON DELETE CASCADE,
+    status VARCHAR(20) NOT NULL, -- 'PENDING', 'RUNNING', 'DONE', 'FAILED'
+    attempts INTEGER NOT NULL DEFAULT 0,
+    available_at TIMESTAMP NOT NULL,
+    lease_owner VARCHAR(100),
+    lease_expires_at TIMESTAMP,
+    last_error VARCHAR(1000),
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+-- 每个相册最多一个未结束的任务
+CREATE UNIQUE INDEX idx_processing_jobs_active_album ON processing_jobs(album_id)
+    WHERE status IN ('PENDING', 'RUNNING');
+CREATE INDEX idx_processing_jobs_claim ON processing_jobs(status, available_at);
+
+-- 升级前停留在处理中的相册加入队列
+INSERT INTO processing_jobs (album_id, status, available_at)
+SELECT id, 'PENDING', CURRENT_TIMESTAMP FROM albums WHERE status = 'PROCESSING';
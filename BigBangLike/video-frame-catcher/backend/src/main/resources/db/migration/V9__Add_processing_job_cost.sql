@@ -0,0 +1,4 @@
+-- 任务的预计处理耗时（秒），队列按预计耗时从短到长领取，等待时间越长优先级越高
+ALTER TABLE processing_jobs ADD COLUMN estimated_cost_seconds DOUBLE PRECISION;
+-- 最近一次开始执行的时间，用于估算运行中任务的剩余耗时
+ALTER TABLE processing_jobs ADD COLUMN started_at TIMESTAMP;
@@ -0,0 +1,208 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class HeifWriterTest {
+
+    private static final byte[] START_CODE = {0x00, 0x00, 0x00, 0x01};
+
+    // general_profile_space/tier/profile_idc（Main）、兼容标志、约束标志、general_level_idc（4.1）
+    private static final byte[] PROFILE_TIER_LEVEL = {
+            0x01, 0x60, 0x00, 0x00, 0x00, (byte) 0x90, 0x00, 0x00, 0x00, 0x00, 0x00, 0x7B};
+
+    // NAL头：type << 1，nuh_temporal_id_plus1 = 1
+    private static final byte[] AUD = {0x46, 0x01, 0x50};
+    private static final byte[] VPS = {0x40, 0x01, 0x0C, 0x01, (byte) 0xFF};
+    private static final byte[] PPS = {0x44, 0x01, (byte) 0xC1, 0x72};
+    private static final byte[] SEI = {0x4E, 0x01, 0x05, 0x02, 0x11, 0x22};
+    private static final byte[] IDR_SLICE = {0x26, 0x01, (byte) 0xAF, 0x12, 0x34};
+    private static final byte[] SECOND_SLICE = {0x26, 0x01, 0x33, 0x44};
+
+    @Test
+    void wrapsAnAccessUnitIntoASingleImageHeifFile() throws IOException {
+        // 1920x1088编码，一致性裁剪窗口底部裁掉8行
+        byte[] sps = sps(1920, 1088, 8);
+        byte[] heif = HeifWriter.wrap(concat(START_CODE, AUD, START_CODE, VPS, START_CODE, sps, START_CODE, PPS,
+                START_CODE, SEI, START_CODE, IDR_SLICE, new byte[]{0x00, 0x00, 0x01}, SECOND_SLICE, new byte[]{0x00}));
+        ByteBuffer file = ByteBuffer.wrap(heif);
+
+        int ftyp = findBox(file, 0, heif.length, "ftyp");
+        assertEquals(0, ftyp);
+        assertEquals("heic", type(file, ftyp + 8));
+        assertEquals("mif1", type(file, ftyp + 16));
+
+        int meta = findBox(file, 0, heif.length, "meta");
+        int metaEnd = meta + file.getInt(meta);
+        // meta是FullBox，子box从版本和标志之后开始
+        int iprp = findBox(file, meta + 12, metaEnd, "iprp");
+        int ipco = findBox(file, iprp + 8, iprp + file.getInt(iprp), "ipco");
+        int ipcoEnd = ipco + file.getInt(ipco);
+
+        int ispe = findBox(file, ipco + 8, ipcoEnd, "ispe");
+        assertEquals(1920, file.getInt(ispe + 12));
+        assertEquals(1080, file.getInt(ispe + 16));
+
+        int hvcC = findBox(file, ipco + 8, ipcoEnd, "hvcC");
+        int record = hvcC + 8;
+        assertEquals(1, heif[record]);
+        assertArrayEquals(PROFILE_TIER_LEVEL, Arrays.copyOfRange(heif, record + 1, record + 13));
+        assertEquals(0xFD, heif[record + 16] & 0xFF);   // chroma_format_idc = 1 (4:2:0)
+        assertEquals(0xF8, heif[record + 17] & 0xFF);   // bit_depth_luma_minus8 = 0
+        assertEquals(0xF8, heif[record + 18] & 0xFF);   // bit_depth_chroma_minus8 = 0
+        // numTemporalLayers = 1, temporalIdNested = 1, lengthSizeMinusOne = 3
+        assertEquals(0x0F, heif[record + 21]);
+        assertEquals(3, heif[record + 22]);
+        int array = record + 23;
+        for (byte[] expected : new byte[][]{VPS, sps, PPS}) {
+            assertEquals(0x80 | ((expected[0] >> 1) & 0x3F), heif[array] & 0xFF);
+            assertEquals(1, file.getShort(array + 1));
+            assertEquals(expected.length, file.getShort(array + 3));
+            assertArrayEquals(expected, Arrays.copyOfRange(heif, array + 5, array + 5 + expected.length));
+            array += 5 + expected.length;
+        }
+        assertEquals(hvcC + file.getInt(hvcC), array);
+
+        // iloc：offset_size = length_size = 4，一个item一个extent，偏移指向mdat的数据
+        int iloc = findBox(file, meta + 12, metaEnd, "iloc");
+        assertEquals(0x4400, file.getShort(iloc + 12) & 0xFFFF);
+        assertEquals(1, file.getShort(iloc + 14));
+        assertEquals(1, file.getShort(iloc + 16));
+        assertEquals(1, file.getShort(iloc + 20));
+        int offset = file.getInt(iloc + 22);
+        int length = file.getInt(iloc + 26);
+
+        int mdat = findBox(file, metaEnd, heif.length, "mdat");
+        assertEquals(mdat + 8, offset);
+        assertEquals(heif.length, offset + length);
+        // 只有条带写入mdat，各带4字节长度前缀，AUD和SEI不写入，末尾的填充0x00被去掉
+        assertArrayEquals(concat(intBytes(IDR_SLICE.length), IDR_SLICE, intBytes(SECOND_SLICE.length), SECOND_SLICE),
+                Arrays.copyOfRange(heif, offset, offset + length));
+    }
+
+    @Test
+    void rejectsAccessUnitsWithoutParameterSets() {
+        assertThrows(IOException.class,
+                () -> HeifWriter.wrap(concat(START_CODE, AUD, START_CODE, VPS, START_CODE, IDR_SLICE)));
+    }
+
+    @Test
+    void readsDimensionsWithoutConformanceWindow() throws IOException {
+        HeifWriter.SequenceParameters params = HeifWriter.SequenceParameters.parse(sps(640, 360, 0));
+
+        assertEquals(640, params.width);
+        assertEquals(360, params.height);
+        assertEquals(1, params.chromaFormat);
+    }
+
+    /**
+     * 单个子层、4:2:0、8位的SPS，裁剪窗口只裁底部；RBSP中连续的0x00按规范插入防竞争字节
+     */
+    private static byte[] sps(int codedWidth, int codedHeight, int bottomCropRows) {
+        BitWriter bits = new BitWriter();
+        bits.write(0, 4);                      // sps_video_parameter_set_id
+        bits.write(0, 3);                      // sps_max_sub_layers_minus1
+        bits.write(1, 1);                      // sps_temporal_id_nesting_flag
+        for (byte b : PROFILE_TIER_LEVEL) {
+            bits.write(b & 0xFF, 8);
+        }
+        bits.writeExpGolomb(0);                // sps_seq_parameter_set_id
+        bits.writeExpGolomb(1);                // chroma_format_idc
+        bits.writeExpGolomb(codedWidth);
+        bits.writeExpGolomb(codedHeight);
+        if (bottomCropRows > 0) {
+            bits.write(1, 1);
+            bits.writeExpGolomb(0);
+            bits.writeExpGolomb(0);
+            bits.writeExpGolomb(0);
+            bits.writeExpGolomb(bottomCropRows / 2);
+        } else {
+            bits.write(0, 1);
+        }
+        bits.writeExpGolomb(0);                // bit_depth_luma_minus8
+        bits.writeExpGolomb(0);                // bit_depth_chroma_minus8
+        bits.write(1, 1);                      // rbsp_stop_one_bit
+
+        ByteArrayOutputStream nal = new ByteArrayOutputStream();
+        nal.writeBytes(new byte[]{0x42, 0x01});
+        int zeros = 0;
+        for (byte b : bits.toByteArray()) {
+            if (zeros >= 2 && (b & 0xFF) <= 3) {
+                nal.write(3);
+                zeros = 0;
+            }
+            nal.write(b);
+            zeros = b == 0 ? zeros + 1 : 0;
+        }
+        return nal.toByteArray();
+    }
+
+    private static int findBox(ByteBuffer file, int from, int to, String type) {
+        int position = from;
+        while (position + 8 <= to) {
+            if (type.equals(type(file, position + 4))) {
+                return position;
+            }
+            position += file.getInt(position);
+        }
+        throw new AssertionError("Box " + type + " not found");
+    }
+
+    private static String type(ByteBuffer file, int position) {
+        byte[] type = new byte[4];
+        file.get(position, type);
+        return new String(type, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] intBytes(int value) {
+        return ByteBuffer.allocate(4).putInt(value).array();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class BitWriter {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int current;
+        private int count;
+
+        void write(int value, int bits) {
+            for (int i = bits - 1; i >= 0; i--) {
+                current = (current << 1) | ((value >> i) & 1);
+                if (++count == 8) {
+                    out.write(current);
+                    current = 0;
+                    count = 0;
+                }
+            }
+        }
+
+        void writeExpGolomb(int value) {
+            int code = value + 1;
+            int length = 32 - Integer.numberOfLeadingZeros(code);
+            write(0, length - 1);
+            write(code, length);
+        }
+
+        byte[] toByteArray() {
+            if (count > 0) {
+                write(0, 8 - count);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class HevcAccessUnitReaderTest {
+
+    private static final byte[] START_CODE_4 = {0x00, 0x00, 0x00, 0x01};
+    private static final byte[] START_CODE_3 = {0x00, 0x00, 0x01};
+
+    // NAL头：type << 1，nuh_temporal_id_plus1 = 1
+    private static final byte[] AUD = {0x46, 0x01, 0x50};
+    private static final byte[] VPS = {0x40, 0x01, 0x0C, 0x01, (byte) 0xFF};
+    private static final byte[] SPS = {0x42, 0x01, 0x01, 0x01, 0x60};
+    private static final byte[] PPS = {0x44, 0x01, (byte) 0xC1, 0x72};
+    private static final byte[] IDR_SLICE = {0x26, 0x01, (byte) 0xAF, 0x12, 0x34};
+    private static final byte[] TRAIL_SLICE = {0x02, 0x01, (byte) 0xD0, 0x56};
+
+    @Test
+    void splitsAtAccessUnitDelimitersWithFourByteStartCodes() throws IOException {
+        byte[] first = concat(START_CODE_4, AUD, START_CODE_4, VPS, START_CODE_4, SPS, START_CODE_4, PPS,
+                START_CODE_4, IDR_SLICE);
+        byte[] second = concat(START_CODE_4, AUD, START_CODE_4, TRAIL_SLICE);
+
+        assertAccessUnits(concat(first, second), first, second);
+    }
+
+    @Test
+    void splitsAtAccessUnitDelimitersWithThreeByteStartCodes() throws IOException {
+        byte[] first = concat(START_CODE_3, AUD, START_CODE_3, VPS, START_CODE_3, SPS, START_CODE_3, PPS,
+                START_CODE_3, IDR_SLICE);
+        byte[] second = concat(START_CODE_3, AUD, START_CODE_3, TRAIL_SLICE);
+
+        assertAccessUnits(concat(first, second), first, second);
+    }
+
+    @Test
+    void splitsAtDelimitersWithMixedStartCodeLengths() throws IOException {
+        // x265在AUD和参数集前用4字节起始码，条带前用3字节起始码
+        byte[] first = concat(START_CODE_4, AUD, START_CODE_4, VPS, START_CODE_4, SPS, START_CODE_4, PPS,
+                START_CODE_3, IDR_SLICE);
+        byte[] second = concat(START_CODE_3, AUD, START_CODE_3, TRAIL_SLICE);
+        byte[] third = concat(START_CODE_4, AUD, START_CODE_3, TRAIL_SLICE);
+
+        assertAccessUnits(concat(first, second, third), first, second, third);
+    }
+
+    @Test
+    void keepsTrailingZerosBeforeAFourByteStartCodeWithThePreviousUnit() throws IOException {
+        byte[] first = concat(START_CODE_4, AUD, START_CODE_3, IDR_SLICE, new byte[]{0x00});
+        byte[] second = concat(START_CODE_4, AUD, START_CODE_3, TRAIL_SLICE);
+
+        assertAccessUnits(concat(first, second), first, second);
+    }
+
+    @Test
+    void returnsNullForAnEmptyStream() throws IOException {
+        assertNull(new HevcAccessUnitReader(new ByteArrayInputStream(new byte[0])).nextAccessUnit());
+    }
+
+    /**
+     * 一次读完和逐字节读取（起始码被拆到多次读取中）都应切分出相同的访问单元
+     */
+    private static void assertAccessUnits(byte[] stream, byte[]... expected) throws IOException {
+        for (InputStream in : new InputStream[]{new ByteArrayInputStream(stream), new OneByteInputStream(stream)}) {
+            HevcAccessUnitReader reader = new HevcAccessUnitReader(in);
+            for (byte[] unit : expected) {
+                assertArrayEquals(unit, reader.nextAccessUnit());
+            }
+            assertNull(reader.nextAccessUnit());
+        }
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class OneByteInputStream extends InputStream {
+        private final ByteArrayInputStream data;
+
+        OneByteInputStream(byte[] data) {
+            this.data = new ByteArrayInputStream(data);
+        }
+
+        @Override
+        public int read() {
+            return data.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return data.read(buffer, offset, Math.min(length, 1));
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package com.videoframecatcher.service.impl;
+
+import com.videoframecatcher.dto.UploadCreateRequest;
+import com.videoframecatcher.exception.UploadConflictException;
+import com.videoframecatcher.service.StorageService;
+import com.videoframecatcher.service.StoredVideo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class LocalChunkedUploadServiceImplTest {
+
+    private static final int LENGTH = 3000;
+
+    @TempDir
+    Path directory;
+
+    private StorageService storageService;
+    private byte[] data;
+
+    @BeforeEach
+    void setUp() {
+        storageService = mock(StorageService.class);
+        // 模拟存储：读出移动前的文件内容，返回调用方给出的哈希
+        when(storageService.moveVideo(any(), any(), any(), any())).thenAnswer(invocation -> {
+            Path source = invocation.getArgument(0);
+            assertArrayEquals(data, Files.readAllBytes(source));
+            return new StoredVideo("videos/clip.mp4", Files.size(source), invocation.getArgument(3));
+        });
+        data = new byte[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            data[i] = (byte) (i * 7 + i / 13);
+        }
+    }
+
+    @Test
+    void appendsSequentialChunksAndHashesTheAssembledUpload() {
+        LocalChunkedUploadServiceImpl service = newService();
+        String uploadId = createUpload(service);
+
+        assertEquals(1000L, service.appendChunk(uploadId, 0, chunk(0, 1000)));
+        assertEquals(LENGTH, service.appendChunk(uploadId, 1000, chunk(1000, LENGTH)));
+
+        StoredVideo stored = service.completeUpload(uploadId, 1L);
+        assertEquals(sha256(data), stored.getContentHash());
+        assertEquals(LENGTH, stored.getSize());
+    }
+
+    @Test
+    void rejectsChunksThatDoNotStartAtTheReceivedOffset() {
+        LocalChunkedUploadServiceImpl service = newService();
+        String uploadId = createUpload(service);
+        service.appendChunk(uploadId, 0, chunk(0, 1000));
+
+        // 重发已接收的数据和跳过一段数据都与已接收的偏移量冲突
+        assertThrows(UploadConflictException.class, () -> service.appendChunk(uploadId, 500, chunk(500, 1500)));
+        assertThrows(UploadConflictException.class, () -> service.appendChunk(uploadId, 2000, chunk(2000, LENGTH)));
+        assertEquals(1000L, service.getUpload(uploadId).getOffset());
+        assertThrows(UploadConflictException.class, () -> service.completeUpload(uploadId, 1L));
+
+        service.appendChunk(uploadId, 1000, chunk(1000, LENGTH));
+        assertEquals(sha256(data), service.completeUpload(uploadId, 1L).getContentHash());
+    }
+
+    @Test
+    void rejectsDataBeyondTheDeclaredLength() {
+        LocalChunkedUploadServiceImpl service = newService();
+        String uploadId = createUpload(service);
+
+        byte[] oversized = Arrays.copyOf(data, LENGTH + 1);
+        assertThrows(IllegalArgumentException.class,
+                () -> service.appendChunk(uploadId, 0, new ByteArrayInputStream(oversized)));
+    }
+
+    @Test
+    void interruptedChunkInvalidatesTheDigestOfDataThatWasReadButNotWritten() {
+        LocalChunkedUploadServiceImpl service = newService();
+        String uploadId = createUpload(service);
+        service.appendChunk(uploadId, 0, chunk(0, 1000));
+
+        // 读入摘要的1500字节在写入文件前连接中断
+        long offset = service.appendChunk(uploadId, 1000, new InterruptedStream(chunk(1000, LENGTH), 1500));
+        assertTrue(offset >= 1000 && offset < LENGTH);
+        assertEquals(offset, service.getUpload(uploadId).getOffset());
+
+        // 客户端从查询到的偏移量继续，完成时的哈希仍与文件内容一致
+        service.appendChunk(uploadId, offset, chunk((int) offset, LENGTH));
+        assertEquals(sha256(data), service.completeUpload(uploadId, 1L).getContentHash());
+    }
+
+    @Test
+    void uploadResumedAfterRestartIsHashedFromTheAssembledFile() {
+        LocalChunkedUploadServiceImpl before = newService();
+        String uploadId = createUpload(before);
+        before.appendChunk(uploadId, 0, chunk(0, 1000));
+
+        // 重启后会话状态（摘要）丢失，偏移量由数据文件长度恢复
+        LocalChunkedUploadServiceImpl after = newService();
+        assertEquals(1000L, after.getUpload(uploadId).getOffset());
+        after.appendChunk(uploadId, 1000, chunk(1000, LENGTH));
+
+        assertEquals(sha256(data), after.completeUpload(uploadId, 1L).getContentHash());
+    }
+
+    private LocalChunkedUploadServiceImpl newService() {
+        LocalChunkedUploadServiceImpl service = new LocalChunkedUploadServiceImpl(storageService);
+        ReflectionTestUtils.setField(service, "uploadPath", directory.toString());
+        ReflectionTestUtils.setField(service, "maxUploadSize", 1024L * 1024);
+        ReflectionTestUtils.setField(service, "expiryHours", 24L);
+        ReflectionTestUtils.setField(service, "stallTimeoutSeconds", 600L);
+        return service;
+    }
+
+    private static String createUpload(LocalChunkedUploadServiceImpl service) {
+        UploadCreateRequest request = new UploadCreateRequest();
+        request.setName("clip");
+        request.setFilename("clip.mp4");
+        request.setLength((long) LENGTH);
+        return service.createUpload(request).getUploadId();
+    }
+
+    private InputStream chunk(int from, int to) {
+        return new ByteArrayInputStream(Arrays.copyOfRange(data, from, to));
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 每次读取少量字节且声明仍有数据可读，读满指定字节数后抛出异常，模拟上传中途断开
+     */
+    private static final class InterruptedStream extends InputStream {
+        private final InputStream in;
+        private int remaining;
+
+        InterruptedStream(InputStream in, int failAfter) {
+            this.in = in;
+            this.remaining = failAfter;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                throw new IOException("Connection reset");
+            }
+            int read = in.read(b, off, Math.min(Math.min(len, 100), remaining));
+            if (read > 0) {
+                remaining -= read;
+            }
+            return read;
+        }
+
+        @Override
+        public int available() {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class MjpegFrameReaderTest {
+
+    @Test
+    void splitsConsecutiveFramesAndSkipsPaddingBetweenThem() throws IOException {
+        byte[] first = jpeg(new byte[]{0x11, 0x22, 0x33});
+        byte[] second = jpeg(new byte[]{0x44, 0x55});
+        MjpegFrameReader reader = new MjpegFrameReader(
+                new ByteArrayInputStream(concat(first, new byte[]{0x00, 0x00}, second)));
+
+        assertArrayEquals(first, reader.nextFrame());
+        assertArrayEquals(second, reader.nextFrame());
+        assertNull(reader.nextFrame());
+    }
+
+    @Test
+    void keepsStuffedBytesAndRestartMarkersInEntropyCodedData() throws IOException {
+        // 0xFF00为数据中的0xFF，0xFFD0-0xFFD7为重启标记，都不是帧的结束
+        byte[] frame = jpeg(new byte[]{
+                0x12, (byte) 0xFF, 0x00, 0x34, (byte) 0xFF, (byte) 0xD0, 0x56,
+                (byte) 0xFF, (byte) 0xD7, (byte) 0xFF, 0x00, (byte) 0xFF, (byte) 0xD4, 0x78});
+        MjpegFrameReader reader = new MjpegFrameReader(new ByteArrayInputStream(frame));
+
+        assertArrayEquals(frame, reader.nextFrame());
+        assertNull(reader.nextFrame());
+    }
+
+    @Test
+    void reassemblesFramesDeliveredInSmallReads() throws IOException {
+        byte[] first = jpeg(new byte[]{0x01, (byte) 0xFF, 0x00, 0x02, (byte) 0xFF, (byte) 0xD3, 0x03});
+        byte[] second = jpeg(new byte[]{0x04, (byte) 0xFF, 0x00});
+        byte[] stream = concat(first, second);
+
+        // 每次只读到1个或3个字节，标记和段长度都会被拆到两次读取中
+        for (int chunk : new int[]{1, 3}) {
+            MjpegFrameReader reader = new MjpegFrameReader(new ChunkedInputStream(stream, chunk));
+            assertArrayEquals(first, reader.nextFrame());
+            assertArrayEquals(second, reader.nextFrame());
+            assertNull(reader.nextFrame());
+        }
+    }
+
+    @Test
+    void readsFramesLargerThanTheReadBuffer() throws IOException {
+        // 超过64KB的读取缓冲区和256KB的初始帧缓冲区，并让0xFF00跨越缓冲区边界
+        byte[] data = new byte[300 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 0xFE);
+        }
+        data[64 * 1024 - 1] = (byte) 0xFF;
+        data[64 * 1024] = 0x00;
+        byte[] large = jpeg(data);
+        byte[] small = jpeg(new byte[]{0x09});
+        MjpegFrameReader reader = new MjpegFrameReader(
+                new ChunkedInputStream(concat(large, small), 10_000));
+
+        assertArrayEquals(large, reader.nextFrame());
+        assertArrayEquals(small, reader.nextFrame());
+        assertNull(reader.nextFrame());
+    }
+
+    @Test
+    void failsWhenTheStreamEndsInsideAFrame() {
+        byte[] frame = jpeg(new byte[]{0x11, 0x22});
+        MjpegFrameReader reader = new MjpegFrameReader(
+                new ByteArrayInputStream(Arrays.copyOf(frame, frame.length - 2)));
+
+        assertThrows(EOFException.class, reader::nextFrame);
+    }
+
+    /**
+     * 最小的JPEG结构：SOI、APP0、SOS、熵编码数据、EOI
+     */
+    private static byte[] jpeg(byte[] entropyCodedData) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD8});
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xE0, 0x00, 0x07, 'J', 'F', 'I', 'F', 0x00});
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xDA, 0x00, 0x08, 0x01, 0x01, 0x00, 0x00, 0x3F, 0x00});
+        out.writeBytes(entropyCodedData);
+        out.writeBytes(new byte[]{(byte) 0xFF, (byte) 0xD9});
+        return out.toByteArray();
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 每次最多返回chunk个字节，模拟管道的分段读取
+     */
+    private static final class ChunkedInputStream extends InputStream {
+        private final ByteArrayInputStream data;
+        private final int chunk;
+
+        ChunkedInputStream(byte[] data, int chunk) {
+            this.data = new ByteArrayInputStream(data);
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read() {
+            return data.read();
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            return data.read(buffer, offset, Math.min(length, chunk));
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PerceptualHashTest {
+
+    @Test
+    void setsABitWhereTheLeftCellIsBrighter() {
+        // 从左到右变暗：每行8位都为1
+        assertEquals(-1L, PerceptualHash.compute(gradient(360, 240, true)));
+        // 从左到右变亮：全部为0
+        assertEquals(0L, PerceptualHash.compute(gradient(360, 240, false)));
+    }
+
+    @Test
+    void ignoresScaleAndSmallBrightnessChanges() {
+        BufferedImage frame = scene(640, 360, 0);
+        long hash = PerceptualHash.compute(frame);
+
+        assertEquals(hash, PerceptualHash.compute(scene(160, 90, 0)));
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.compute(scene(640, 360, 6))) <= 2);
+    }
+
+    @Test
+    void distinguishesDifferentScenes() {
+        long hash = PerceptualHash.compute(scene(640, 360, 0));
+        BufferedImage other = scene(640, 360, 0);
+        Graphics2D graphics = other.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, 320, 360);
+        graphics.dispose();
+
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.compute(other)) > 10);
+    }
+
+    @Test
+    void hashesJpegDataLikeTheDecodedImage() throws IOException {
+        BufferedImage frame = scene(640, 360, 0);
+        ByteArrayOutputStream jpeg = new ByteArrayOutputStream();
+        ImageIO.write(frame, "jpg", jpeg);
+
+        Long hash = PerceptualHash.compute(jpeg.toByteArray());
+        assertTrue(PerceptualHash.distance(PerceptualHash.compute(frame), hash) <= 2);
+        assertNull(PerceptualHash.compute(new byte[]{1, 2, 3}));
+    }
+
+    @Test
+    void distanceCountsDifferingBits() {
+        assertEquals(0, PerceptualHash.distance(0x1234L, 0x1234L));
+        assertEquals(2, PerceptualHash.distance(0b1010L, 0b0110L));
+        assertEquals(64, PerceptualHash.distance(0L, -1L));
+    }
+
+    private static BufferedImage gradient(int width, int height, boolean darkening) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int x = 0; x < width; x++) {
+            int level = 255 * x / (width - 1);
+            int gray = darkening ? 255 - level : level;
+            for (int y = 0; y < height; y++) {
+                image.setRGB(x, y, gray * 0x010101);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * 由几块亮度不同的区域组成的画面，brightness整体提高亮度
+     */
+    private static BufferedImage scene(int width, int height, int brightness) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        int[][] blocks = {{40, 200, 90, 160}, {180, 30, 120, 60}, {250, 120, 220, 20}};
+        for (int row = 0; row < blocks.length; row++) {
+            for (int column = 0; column < 4; column++) {
+                int gray = Math.min(255, blocks[row][column] + brightness);
+                graphics.setColor(new Color(gray, gray, gray));
+                graphics.fillRect(column * width / 4, row * height / 3, width / 4 + 1, height / 3 + 1);
+            }
+        }
+        graphics.dispose();
+        return image;
+    }
+}
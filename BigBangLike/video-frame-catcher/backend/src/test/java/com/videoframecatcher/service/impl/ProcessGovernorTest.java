@@ -0,0 +1,107 @@
+package com.videoframecatcher.service.impl;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ProcessGovernorTest {
+
+    @Test
+    void addsThreadBudgetBeforeEachInputAndAfterTheLastInput() {
+        List<String> command = List.of(
+                "ffmpeg", "-ss", "5", "-i", "video.mp4", "-i", "overlay.png",
+                "-filter_complex", "[0][1]overlay", "-c:v", "libx265", "-x265-params", "aud=1", "out.hevc");
+
+        assertEquals(List.of(
+                "ffmpeg", "-filter_threads", "2", "-filter_complex_threads", "2",
+                "-ss", "5", "-threads", "2", "-i", "video.mp4", "-threads", "2", "-i", "overlay.png",
+                "-threads", "2",
+                "-filter_complex", "[0][1]overlay", "-c:v", "libx265", "-x265-params", "aud=1:pools=2", "out.hevc"),
+                ProcessGovernor.applyThreadBudget(command, 2));
+    }
+
+    @Test
+    void addsThreadBudgetForASingleInput() {
+        List<String> command = List.of("ffmpeg", "-i", "pipe:0", "-f", "image2pipe", "pipe:1");
+
+        assertEquals(List.of(
+                "ffmpeg", "-filter_threads", "3", "-filter_complex_threads", "3",
+                "-threads", "3", "-i", "pipe:0", "-threads", "3", "-f", "image2pipe", "pipe:1"),
+                ProcessGovernor.applyThreadBudget(command, 3));
+    }
+
+    @Test
+    void keepsExistingX265Pools() {
+        List<String> command = List.of("ffmpeg", "-i", "in.jpg", "-x265-params", "pools=4:aud=1", "out.hevc");
+
+        assertEquals(List.of(
+                "ffmpeg", "-filter_threads", "1", "-filter_complex_threads", "1",
+                "-threads", "1", "-i", "in.jpg", "-threads", "1", "-x265-params", "pools=4:aud=1", "out.hevc"),
+                ProcessGovernor.applyThreadBudget(command, 1));
+    }
+
+    @Test
+    void leavesCommandsWithExplicitThreadsUnchanged() {
+        List<String> command = List.of("ffmpeg", "-threads", "8", "-i", "a.mp4", "-i", "b.mp4", "out.mp4");
+
+        assertSame(command, ProcessGovernor.applyThreadBudget(command, 2));
+    }
+
+    @Test
+    void longRunningProcessOutsideAReservationWaitsForAFreeSlot() throws Exception {
+        ProcessGovernor governor = new ProcessGovernor(1, 2, new SimpleMeterRegistry());
+        ProcessGovernor.Grant first = governor.admit(1, true);
+
+        FutureTask<ProcessGovernor.Grant> second = admitInBackground(() -> governor.admit(1, true));
+        Thread.sleep(200);
+        assertFalse(second.isDone());
+
+        first.release();
+        second.get(5, TimeUnit.SECONDS).release();
+    }
+
+    @Test
+    void reservedProcessWaitsForASlotReturnedByAnExitingProcess() throws Exception {
+        ProcessGovernor governor = new ProcessGovernor(4, 4, new SimpleMeterRegistry());
+        try (ProcessGovernor.Reservation reservation = governor.reserve(1, 1, 2, () -> false)) {
+            assertEquals(1, reservation.encoders());
+            ProcessGovernor.Grant decoder = governor.admit(0, true, reservation);
+            ProcessGovernor.Grant encoder = governor.admit(0, true, reservation);
+            assertEquals(1, encoder.threads());
+
+            // 重启的编码器在旧进程的凭证归还后领取
+            FutureTask<ProcessGovernor.Grant> restarted = admitInBackground(() -> governor.admit(0, true, reservation));
+            Thread.sleep(200);
+            assertFalse(restarted.isDone());
+            encoder.release();
+            restarted.get(5, TimeUnit.SECONDS).release();
+            decoder.release();
+        }
+    }
+
+    @Test
+    void failsWhenAReservedGroupExceedsItsReservation() throws Exception {
+        ProcessGovernor governor = new ProcessGovernor(4, 4, new SimpleMeterRegistry());
+        try (ProcessGovernor.Reservation reservation = governor.reserve(1, 0, 1, () -> false)) {
+            ProcessGovernor.Grant decoder = governor.admit(0, true, reservation);
+
+            assertThrows(IllegalStateException.class, () -> governor.admit(0, true, reservation));
+            decoder.release();
+        }
+    }
+
+    private static FutureTask<ProcessGovernor.Grant> admitInBackground(Callable<ProcessGovernor.Grant> admission) {
+        FutureTask<ProcessGovernor.Grant> task = new FutureTask<>(admission);
+        Thread.ofVirtual().start(task);
+        return task;
+    }
+}
@@ -0,0 +1,160 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StagedPipelineTest {
+
+    @Test
+    void passesEveryItemThroughAllStagesAndClosesEachWorkerOnce() throws InterruptedException {
+        List<Integer> collected = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger closed = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>("test")
+                .stage("double", 3, 2, new StagedPipeline.StageWorker<>() {
+                    @Override
+                    public void process(Integer item, Consumer<Integer> emitter) {
+                        emitter.accept(item * 2);
+                    }
+
+                    @Override
+                    public void close(Consumer<Integer> emitter) {
+                        closed.incrementAndGet();
+                    }
+                })
+                .stage("collect", 1, 2, new StagedPipeline.StageWorker<>() {
+                    @Override
+                    public void process(Integer item, Consumer<Integer> emitter) {
+                        collected.add(item);
+                    }
+
+                    @Override
+                    public void close(Consumer<Integer> emitter) {
+                        // 上一阶段的所有工作线程都已退出后才收到结束标记
+                        assertEquals(3, closed.get());
+                        collected.add(-1);
+                    }
+                })
+                .start();
+
+        for (int i = 1; i <= 100; i++) {
+            pipeline.submit(i);
+        }
+        pipeline.finish();
+
+        List<Integer> expected = new ArrayList<>(List.of(-1));
+        for (int i = 1; i <= 100; i++) {
+            expected.add(i * 2);
+        }
+        List<Integer> sorted = new ArrayList<>(collected);
+        Collections.sort(sorted);
+        assertEquals(expected, sorted);
+        // 收尾在最后一个数据项之后
+        assertEquals(-1, collected.get(collected.size() - 1));
+        // 重复调用无副作用
+        pipeline.finish();
+    }
+
+    @Test
+    void finishRethrowsTheFailureOfAStage() throws InterruptedException {
+        RuntimeException failure = new RuntimeException("broken frame");
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>("test")
+                .stage("fail", 1, 4, (item, emitter) -> {
+                    if (item == 3) {
+                        throw failure;
+                    }
+                    emitter.accept(item);
+                })
+                .stage("sink", 1, 4, (item, emitter) -> { })
+                .start();
+
+        IllegalStateException thrown = assertThrows(IllegalStateException.class, () -> {
+            for (int i = 1; i <= 100; i++) {
+                pipeline.submit(i);
+            }
+            pipeline.finish();
+        });
+        assertSame(failure, thrown.getCause());
+        assertSame(failure, assertThrows(IllegalStateException.class, pipeline::finish).getCause());
+    }
+
+    @Test
+    void abortInterruptsBlockedWorkersAndDiscardsQueuedItems() throws InterruptedException {
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger processed = new AtomicInteger();
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>("test")
+                .stage("block", 1, 4, (item, emitter) -> {
+                    processed.incrementAndGet();
+                    blocked.countDown();
+                    new CountDownLatch(1).await();
+                })
+                .start();
+
+        pipeline.submit(1);
+        blocked.await();
+        pipeline.submit(2);
+        pipeline.submit(3);
+        assertEquals(2, pipeline.queueDepth("block"));
+
+        CancellationException cause = new CancellationException("cancelled");
+        pipeline.abort(cause);
+
+        assertEquals(0, pipeline.queueDepth("block"));
+        assertSame(cause, assertThrows(IllegalStateException.class, pipeline::finish).getCause());
+        assertSame(cause, assertThrows(IllegalStateException.class, () -> pipeline.submit(4)).getCause());
+        assertEquals(1, processed.get());
+    }
+
+    @Test
+    void pausedWorkersReleaseResourcesAndResumeToFinishTheStage() throws InterruptedException {
+        Set<String> processingThreads = ConcurrentHashMap.newKeySet();
+        AtomicInteger paused = new AtomicInteger();
+        AtomicInteger closed = new AtomicInteger();
+        CountDownLatch processed = new CountDownLatch(20);
+        StagedPipeline<Integer> pipeline = new StagedPipeline<Integer>("test")
+                .stagePerWorker("work", 4, 2, () -> new StagedPipeline.StageWorker<>() {
+                    @Override
+                    public void process(Integer item, Consumer<Integer> emitter) {
+                        processingThreads.add(Thread.currentThread().getName());
+                        processed.countDown();
+                    }
+
+                    @Override
+                    public void close(Consumer<Integer> emitter) {
+                        closed.incrementAndGet();
+                    }
+
+                    @Override
+                    public void pause() {
+                        paused.incrementAndGet();
+                    }
+                });
+        // 4个工作线程中只有2个参与处理
+        pipeline.setActiveFraction(0.5);
+        pipeline.start();
+
+        for (int i = 0; i < 20; i++) {
+            pipeline.submit(i);
+        }
+        processed.await();
+        assertTrue(Set.of("test-work-0", "test-work-1").containsAll(processingThreads));
+        assertEquals(2, paused.get());
+
+        // 输入结束后暂停的工作线程恢复，各自消费结束标记并收尾
+        pipeline.finish();
+        assertEquals(4, closed.get());
+    }
+}
@@ -0,0 +1,100 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class StreamableContainerTest {
+
+    @Test
+    void mp4WithMoovBeforeMdatIsStreamable() {
+        byte[] header = concat(box("ftyp", 16), box("free", 8), box("moov", 100), box("mdat", 1000));
+
+        assertEquals(Boolean.TRUE, StreamableContainer.isStreamable(header, false));
+    }
+
+    @Test
+    void fragmentedMp4IsStreamable() {
+        byte[] header = concat(box("ftyp", 16), box("moof", 64));
+
+        assertEquals(Boolean.TRUE, StreamableContainer.isStreamable(header, false));
+    }
+
+    @Test
+    void mp4WithMoovAtTheEndIsNotStreamable() {
+        byte[] header = concat(box("ftyp", 16), box("mdat", 1000));
+
+        assertEquals(Boolean.FALSE, StreamableContainer.isStreamable(header, false));
+    }
+
+    @Test
+    void followsLargeBoxSizesToTheNextBox() {
+        // 64位长度的free box之后是moov
+        byte[] large = ByteBuffer.allocate(40).putInt(1).put(ascii("free")).putLong(40).array();
+        byte[] header = concat(box("ftyp", 16), large, box("moov", 8));
+
+        assertEquals(Boolean.TRUE, StreamableContainer.isStreamable(header, false));
+    }
+
+    @Test
+    void needsMoreDataUntilTheFirstMediaBoxIsReached() {
+        byte[] header = concat(box("ftyp", 16), box("free", 8), box("moov", 8));
+        // 只收到moov之前的box，文件头还不够判断
+        byte[] partial = Arrays.copyOf(header, 24 + 4);
+
+        assertNull(StreamableContainer.isStreamable(partial, false));
+        assertEquals(Boolean.FALSE, StreamableContainer.isStreamable(partial, true));
+        assertNull(StreamableContainer.isStreamable(new byte[8], false));
+    }
+
+    @Test
+    void matroskaIsStreamable() {
+        byte[] header = {0x1A, 0x45, (byte) 0xDF, (byte) 0xA3, (byte) 0x9F, 0x42, (byte) 0x86, (byte) 0x81,
+                0x01, 0x42, (byte) 0xF7, (byte) 0x81};
+
+        assertEquals(Boolean.TRUE, StreamableContainer.isStreamable(header, false));
+    }
+
+    @Test
+    void mpegTsIsStreamableOnceSeveralSyncBytesAreSeen() {
+        byte[] header = new byte[4 * 188];
+        for (int packet = 0; packet < 4; packet++) {
+            header[packet * 188] = 0x47;
+        }
+
+        assertNull(StreamableContainer.isStreamable(Arrays.copyOf(header, 2 * 188), false));
+        assertEquals(Boolean.TRUE, StreamableContainer.isStreamable(header, false));
+    }
+
+    @Test
+    void otherContainersAreNotStreamable() {
+        byte[] avi = concat(ascii("RIFF"), new byte[4], ascii("AVI LIST"));
+
+        assertEquals(Boolean.FALSE, StreamableContainer.isStreamable(avi, false));
+    }
+
+    /**
+     * 指定总长度的box，内容填0
+     */
+    private static byte[] box(String type, int size) {
+        return ByteBuffer.allocate(size).putInt(size).put(ascii(type)).array();
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (byte[] part : parts) {
+            out.writeBytes(part);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,77 @@
+package com.videoframecatcher.service.impl;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+class VideoProbeCacheTest {
+
+    private static final int SAMPLE_SIZE = 1024 * 1024;
+    private static final FileTime MODIFIED = FileTime.fromMillis(1_700_000_000_000L);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unchangedFileKeepsItsFingerprint() throws IOException {
+        Path video = write("a.mp4", data(4 * SAMPLE_SIZE));
+
+        assertEquals(VideoProbeCache.fingerprint(video), VideoProbeCache.fingerprint(video));
+    }
+
+    @Test
+    void sameContentAtAnotherPathHasADifferentFingerprint() throws IOException {
+        byte[] data = data(SAMPLE_SIZE);
+
+        assertNotEquals(VideoProbeCache.fingerprint(write("a.mp4", data)),
+                VideoProbeCache.fingerprint(write("b.mp4", data)));
+    }
+
+    @Test
+    void rewrittenFileHasADifferentFingerprint() throws IOException {
+        byte[] data = data(4 * SAMPLE_SIZE);
+        Path video = write("a.mp4", data);
+        String original = VideoProbeCache.fingerprint(video);
+
+        // 内容相同但修改时间变化
+        Files.setLastModifiedTime(video, FileTime.fromMillis(MODIFIED.toMillis() + 1000));
+        assertNotEquals(original, VideoProbeCache.fingerprint(video));
+
+        // 修改时间相同，抽样块（文件中部）中的数据变化
+        data[2 * SAMPLE_SIZE] ^= 1;
+        write("a.mp4", data);
+        assertNotEquals(original, VideoProbeCache.fingerprint(video));
+    }
+
+    @Test
+    void fileSizeIsPartOfTheFingerprintOfSmallFiles() throws IOException {
+        byte[] data = data(1000);
+        String full = VideoProbeCache.fingerprint(write("a.mp4", data));
+        byte[] truncated = new byte[999];
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+
+        assertNotEquals(full, VideoProbeCache.fingerprint(write("a.mp4", truncated)));
+    }
+
+    private Path write(String name, byte[] data) throws IOException {
+        Path path = directory.resolve(name);
+        Files.write(path, data);
+        Files.setLastModifiedTime(path, MODIFIED);
+        return path;
+    }
+
+    private static byte[] data(int size) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + i / 251);
+        }
+        return data;
+    }
+}
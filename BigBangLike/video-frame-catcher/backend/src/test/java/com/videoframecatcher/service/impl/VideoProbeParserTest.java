@@ -0,0 +1,118 @@
+package com.videoframecatcher.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class VideoProbeParserTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void parsesFormatVideoStreamAndKeyframeInterval() throws Exception {
+        FFmpegServiceImpl.VideoMetadata metadata = parse("""
+                {
+                  "streams": [
+                    {"index": 0, "codec_type": "video", "codec_name": "h264", "width": 1920, "height": 1080,
+                     "avg_frame_rate": "30000/1001", "r_frame_rate": "30/1", "bit_rate": "5000000"},
+                    {"index": 1, "codec_type": "audio", "codec_name": "aac", "sample_rate": "48000",
+                     "channels": 2, "avg_frame_rate": "0/0", "r_frame_rate": "0/0", "tags": {"language": "eng"}}
+                  ],
+                  "packets": [
+                    {"stream_index": 0, "pts_time": "0.000000", "flags": "K__"},
+                    {"stream_index": 1, "pts_time": "0.500000", "flags": "K__"},
+                    {"stream_index": 0, "pts_time": "1.000000", "flags": "___"},
+                    {"stream_index": 0, "pts_time": "2.000000", "flags": "K__"},
+                    {"stream_index": 0, "pts_time": "4.000000", "flags": "K_D"}
+                  ],
+                  "format": {"format_name": "mov,mp4,m4a,3gp,3g2,mj2", "duration": "12.3456",
+                             "size": "7340032", "bit_rate": "4756000"}
+                }
+                """);
+
+        assertEquals(new BigDecimal("12.346"), metadata.getDuration());
+        assertEquals("mov,mp4,m4a,3gp,3g2,mj2", metadata.getFormatName());
+        assertEquals(7340032L, metadata.getFileSize());
+        assertEquals(4756000L, metadata.getBitRate());
+        assertEquals(1920, metadata.getWidth());
+        assertEquals(1080, metadata.getHeight());
+        assertEquals(0, metadata.getRotation());
+        assertEquals("h264", metadata.getVideoCodec());
+        assertEquals(30000.0 / 1001, metadata.getExactFrameRate(), 1e-9);
+        assertEquals(30, metadata.getFrameRate());
+        assertEquals(2.0, metadata.getKeyframeInterval(), 1e-9);
+
+        assertEquals(2, metadata.getStreams().size());
+        FFmpegServiceImpl.StreamInfo audio = metadata.getStreams().get(1);
+        assertEquals("audio", audio.getCodecType());
+        assertEquals(48000, audio.getSampleRate());
+        assertEquals(2, audio.getChannels());
+        assertEquals("eng", audio.getLanguage());
+        assertNull(audio.getFrameRate());
+    }
+
+    @Test
+    void skipsAttachedPicturesAndSwapsDimensionsOfRotatedVideo() throws Exception {
+        FFmpegServiceImpl.VideoMetadata metadata = parse("""
+                {
+                  "streams": [
+                    {"index": 0, "codec_type": "video", "codec_name": "mjpeg", "width": 600, "height": 600,
+                     "disposition": {"attached_pic": 1}},
+                    {"index": 1, "codec_type": "video", "codec_name": "hevc", "width": 1920, "height": 1080,
+                     "avg_frame_rate": "0/0", "r_frame_rate": "25/1", "duration": "8.000000",
+                     "side_data_list": [{"side_data_type": "Display Matrix", "rotation": -90}]}
+                  ],
+                  "format": {"duration": "N/A"}
+                }
+                """);
+
+        assertEquals("hevc", metadata.getVideoCodec());
+        assertEquals(90, metadata.getRotation());
+        assertEquals(1080, metadata.getWidth());
+        assertEquals(1920, metadata.getHeight());
+        assertEquals(25.0, metadata.getExactFrameRate(), 1e-9);
+        assertEquals(new BigDecimal("8.000"), metadata.getDuration());
+        // 探测窗口内没有关键帧包
+        assertNull(metadata.getKeyframeInterval());
+    }
+
+    @Test
+    void readsRotationFromLegacyRotateTag() throws Exception {
+        FFmpegServiceImpl.VideoMetadata metadata = parse("""
+                {
+                  "streams": [
+                    {"index": 0, "codec_type": "video", "codec_name": "h264", "width": 1280, "height": 720,
+                     "avg_frame_rate": "24/1", "tags": {"rotate": "270"}}
+                  ],
+                  "format": {"duration": "3.0"}
+                }
+                """);
+
+        assertEquals(270, metadata.getRotation());
+        assertEquals(720, metadata.getWidth());
+        assertEquals(1280, metadata.getHeight());
+    }
+
+    @Test
+    void leavesVideoFieldsEmptyWithoutAVideoStream() throws Exception {
+        FFmpegServiceImpl.VideoMetadata metadata = parse("""
+                {
+                  "streams": [{"index": 0, "codec_type": "audio", "codec_name": "mp3"}],
+                  "format": {"duration": "180.5"}
+                }
+                """);
+
+        assertEquals(new BigDecimal("180.500"), metadata.getDuration());
+        assertNull(metadata.getWidth());
+        assertNull(metadata.getVideoCodec());
+        assertNull(metadata.getFrameRate());
+    }
+
+    private FFmpegServiceImpl.VideoMetadata parse(String json) throws Exception {
+        return VideoProbeParser.parse(objectMapper.readTree(json));
+    }
+}